@@ -23,6 +23,7 @@ import com.google.inject.Injector;
 import dk.dma.ais.abnormal.analyzer.reports.ReportScheduler;
 import dk.dma.ais.abnormal.analyzer.userargs.UserArguments;
 import dk.dma.ais.abnormal.application.ApplicationSupport;
+import dk.dma.ais.abnormal.application.statistics.MetricsHttpServer;
 import dk.dma.ais.reader.AisReader;
 import dk.dma.commons.app.AbstractDaemon;
 import org.slf4j.Logger;
@@ -70,12 +71,24 @@ public class AbnormalAnalyzerApp extends AbstractDaemon {
         statisticsService.start();
         reportScheduler.start();
 
-        reader.registerPacketHandler(packetHandler);
-        LOG.info("Starting AisDirectoryReader thread.");
-        reader.start();
-        LOG.info("Joining AisDirectoryReader thread.");
-        reader.join();
-        LOG.info("AisDirectoryReader thread finished.");
+        MetricsHttpServer metricsServer = null;
+        if (userArguments.getMetricsPort() > 0) {
+            metricsServer = new MetricsHttpServer(statisticsService, userArguments.getMetricsPort());
+            metricsServer.start();
+        }
+
+        try {
+            reader.registerPacketHandler(packetHandler);
+            LOG.info("Starting AisDirectoryReader thread.");
+            reader.start();
+            LOG.info("Joining AisDirectoryReader thread.");
+            reader.join();
+            LOG.info("AisDirectoryReader thread finished.");
+        } finally {
+            if (metricsServer != null) {
+                metricsServer.stop();
+            }
+        }
 
         statisticsService.dumpStatistics();
     }
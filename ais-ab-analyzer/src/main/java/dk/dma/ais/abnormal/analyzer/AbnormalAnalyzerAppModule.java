@@ -23,6 +23,8 @@ import com.google.inject.Provides;
 import com.google.inject.Scopes;
 import com.google.inject.Singleton;
 import com.google.inject.name.Named;
+import dk.dma.ais.abnormal.analyzer.analysis.FreeFlowAnalysis;
+import dk.dma.ais.abnormal.analyzer.analysis.FreeFlowCsvWriter;
 import dk.dma.ais.abnormal.analyzer.behaviour.BehaviourManager;
 import dk.dma.ais.abnormal.analyzer.behaviour.BehaviourManagerImpl;
 import dk.dma.ais.abnormal.analyzer.reports.ReportJobFactory;
@@ -30,7 +32,9 @@ import dk.dma.ais.abnormal.analyzer.reports.ReportMailer;
 import dk.dma.ais.abnormal.analyzer.reports.ReportScheduler;
 import dk.dma.ais.abnormal.analyzer.services.SafetyZoneService;
 import dk.dma.ais.abnormal.event.db.EventRepository;
+import dk.dma.ais.abnormal.event.db.WriteBehindEventRepository;
 import dk.dma.ais.abnormal.event.db.csv.CsvEventRepository;
+import dk.dma.ais.abnormal.event.db.log.LogEventRepository;
 import dk.dma.ais.abnormal.event.db.jpa.JpaEventRepository;
 import dk.dma.ais.abnormal.event.db.jpa.JpaSessionFactoryFactory;
 import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
@@ -71,6 +75,7 @@ import javax.annotation.concurrent.GuardedBy;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -79,20 +84,25 @@ import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Predicate;
 
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_AIS_DATASOURCE_DOWNSAMPLING;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_AIS_DATASOURCE_URL;
+import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_ANALYSIS_FREEFLOW_CSVFILE;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_APPL_GRID_RESOLUTION_DEFAULT;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_APPL_STATISTICS_DUMP_PERIOD;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_EVENTS_CSV_FILE;
+import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_EVENTS_CSV_MAX_FILE_AGE;
+import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_EVENTS_CSV_MAX_FILE_SIZE;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_EVENTS_H2_FILE;
+import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_EVENTS_LOG_DIR;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_EVENTS_PGSQL_HOST;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_EVENTS_PGSQL_NAME;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_EVENTS_PGSQL_PASSWORD;
@@ -229,9 +239,18 @@ public class AbnormalAnalyzerAppModule extends AbstractModule {
         try {
             if ("csv".equalsIgnoreCase(eventRepositoryType)) {
                 String csvFileName = configuration.getString(CONFKEY_EVENTS_CSV_FILE);
-                eventRepository = new CsvEventRepository(Files.newOutputStream(Paths.get(csvFileName), StandardOpenOption.CREATE_NEW), false);
+                eventRepository = new CsvEventRepository(
+                    Paths.get(csvFileName),
+                    configuration.getLong(CONFKEY_EVENTS_CSV_MAX_FILE_SIZE, CsvEventRepository.DEFAULT_MAX_FILE_SIZE / (1024 * 1024)) * 1024 * 1024,
+                    Duration.ofHours(configuration.getLong(CONFKEY_EVENTS_CSV_MAX_FILE_AGE, CsvEventRepository.DEFAULT_MAX_FILE_AGE.toHours())),
+                    getOrCreateAppStatisticsService().getStatisticsRegistry(),
+                    false
+                );
+            } else if ("log".equalsIgnoreCase(eventRepositoryType)) {
+                eventRepository = new LogEventRepository(Paths.get(configuration.getString(CONFKEY_EVENTS_LOG_DIR)), false);
             } else if ("h2".equalsIgnoreCase(eventRepositoryType)) {
                 SessionFactory sessionFactory = JpaSessionFactoryFactory.newH2SessionFactory(new File(configuration.getString(CONFKEY_EVENTS_H2_FILE)));
+                JpaSessionFactoryFactory.migrate(sessionFactory);
                 eventRepository = new JpaEventRepository(sessionFactory, false);
             } else if ("pgsql".equalsIgnoreCase(eventRepositoryType)) {
                 SessionFactory sessionFactory = JpaSessionFactoryFactory.newPostgresSessionFactory(
@@ -241,6 +260,7 @@ public class AbnormalAnalyzerAppModule extends AbstractModule {
                     configuration.getString(CONFKEY_EVENTS_PGSQL_USERNAME),
                     configuration.getString(CONFKEY_EVENTS_PGSQL_PASSWORD)
                 );
+                JpaSessionFactoryFactory.migrate(sessionFactory);
                 eventRepository = new JpaEventRepository(sessionFactory, false);
             } else {
                 throw new IllegalArgumentException("eventRepositoryType: " + eventRepositoryType);
@@ -253,7 +273,60 @@ public class AbnormalAnalyzerAppModule extends AbstractModule {
             throw new RuntimeException(e);
         }
 
-        return eventRepository;
+        WriteBehindEventRepository writeBehindEventRepository = new WriteBehindEventRepository(eventRepository, getOrCreateAppStatisticsService().getStatisticsRegistry());
+        final EventRepository delegate = eventRepository;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            FreeFlowCsvWriter csvWriter;
+            try {
+                lock.lock();
+                csvWriter = freeFlowCsvWriter;
+            } finally {
+                lock.unlock();
+            }
+            if (csvWriter != null) {
+                csvWriter.close();
+            }
+            try {
+                writeBehindEventRepository.close();
+            } catch (IllegalStateException e) {
+                LOG.error(e.getMessage(), e);
+            }
+            if (delegate instanceof Closeable) {
+                try {
+                    ((Closeable) delegate).close();
+                } catch (IOException e) {
+                    LOG.error(e.getMessage(), e);
+                }
+            }
+        }, "WriteBehindEventRepository-shutdown"));
+
+        return writeBehindEventRepository;
+    }
+
+    @GuardedBy("lock")
+    private FreeFlowCsvWriter freeFlowCsvWriter;
+
+    /**
+     * Provide the writer of the CSV file to which the free flow analysis appends its events - if configured.
+     * The writer is closed by the shutdown hook registered in provideEventRepository.
+     */
+    @Provides
+    @Singleton
+    Optional<FreeFlowCsvWriter> provideFreeFlowCsvWriter() {
+        String csvFileName = getConfiguration().getString(CONFKEY_ANALYSIS_FREEFLOW_CSVFILE, null);
+        if (isBlank(csvFileName)) {
+            return Optional.empty();
+        }
+
+        LOG.info("Free flow events are appended to CSV file: " + csvFileName.trim());
+        FreeFlowCsvWriter csvWriter = new FreeFlowCsvWriter(csvFileName.trim(), getOrCreateAppStatisticsService().getAnalysisCounter(FreeFlowAnalysis.class.getSimpleName(), "CSV records dropped"));
+        try {
+            lock.lock();
+            freeFlowCsvWriter = csvWriter;
+        } finally {
+            lock.unlock();
+        }
+        return Optional.of(csvWriter);
     }
 
     @Provides
@@ -16,6 +16,9 @@
 
 package dk.dma.ais.abnormal.analyzer;
 
+import dk.dma.ais.abnormal.application.statistics.Counter;
+import dk.dma.ais.abnormal.application.statistics.Gauge;
+
 /**
  * A statistics service class which can be called with updates for certain events, such as reception of
  * a packet or a message. Via the dumpStatistics() method the service can dump its collected statistics
@@ -23,6 +26,17 @@ package dk.dma.ais.abnormal.analyzer;
  */
 
 public interface AppStatisticsService extends dk.dma.ais.abnormal.application.statistics.AppStatisticsService {
+    /**
+     * Get (and register if necessary) the counter with the given name for the given analysis. Analyses should
+     * obtain their counters once and keep them, rather than calling incAnalysisStatistics() per event.
+     */
+    Counter getAnalysisCounter(String analysis, String statistic);
+
+    /**
+     * Get (and register if necessary) the gauge with the given name for the given analysis.
+     */
+    Gauge getAnalysisGauge(String analysis, String statistic);
+
     void incAnalysisStatistics(String analysis, String statistic);
     void setAnalysisStatistics(String analysis, String statistic, long value);
 }
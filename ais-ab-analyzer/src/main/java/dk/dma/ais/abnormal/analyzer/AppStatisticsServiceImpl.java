@@ -15,13 +15,14 @@
  */
 package dk.dma.ais.abnormal.analyzer;
 
+import dk.dma.ais.abnormal.application.statistics.Counter;
+import dk.dma.ais.abnormal.application.statistics.Gauge;
+import dk.dma.ais.abnormal.application.statistics.Metric;
+import dk.dma.ais.abnormal.application.statistics.StatisticsRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class for holding information on the file processing process
@@ -33,8 +34,6 @@ public class AppStatisticsServiceImpl extends dk.dma.ais.abnormal.application.st
         LOG.info(this.getClass().getSimpleName() + " created (" + this + ").");
     }
 
-    private Map<String, HashMap<String, Long>> allAnalysisStatistics = new ConcurrentHashMap<>();
-
     public AppStatisticsServiceImpl() {
     }
 
@@ -47,44 +46,35 @@ public class AppStatisticsServiceImpl extends dk.dma.ais.abnormal.application.st
         super.dumpStatistics();
 
         LOG.info("==== Abnormal analyzer statistics ====");
-        Set<String> statisticNames = this.allAnalysisStatistics.keySet();
-        for (String statisticName : statisticNames) {
+        StatisticsRegistry statisticsRegistry = getStatisticsRegistry();
+        for (String statisticName : statisticsRegistry.getGroupNames()) {
             LOG.info(String.format("%-30s %s", "Statistic name", statisticName));
 
-            HashMap<String, Long> statisticStatistics = this.allAnalysisStatistics.get(statisticName);
-            Set<String> statisticsNames = statisticStatistics.keySet();
-            for (String statisticsName : statisticsNames) {
-                Long statistics = statisticStatistics.get(statisticsName);
-                LOG.info(String.format("     %-25s %9d", statisticsName, statistics));
+            for (Map.Entry<String, Metric> statistics : statisticsRegistry.getMetrics(statisticName).entrySet()) {
+                LOG.info(String.format("     %-25s %9d", statistics.getKey(), statistics.getValue().getValue()));
             }
 
         }
         LOG.info("==== Abnormal analyzer statistics ====");
     }
 
+    @Override
+    public Counter getAnalysisCounter(String analysisName, String statisticsName) {
+        return getStatisticsRegistry().counter(analysisName, statisticsName);
+    }
+
+    @Override
+    public Gauge getAnalysisGauge(String analysisName, String statisticsName) {
+        return getStatisticsRegistry().gauge(analysisName, statisticsName);
+    }
+
     @Override
     public void incAnalysisStatistics(String analysisName, String statisticsName) {
-        HashMap<String, Long> analysisStatistics = (HashMap<String, Long>) this.allAnalysisStatistics.get(analysisName);
-        if (analysisStatistics == null) {
-            analysisStatistics = new HashMap<>();
-            this.allAnalysisStatistics.put(analysisName, analysisStatistics);
-        }
-        Long statistic = analysisStatistics.get(statisticsName);
-        if (statistic == null) {
-            statistic = 0L;
-            analysisStatistics.put(statisticsName, statistic);
-        }
-        statistic++;
-        analysisStatistics.put(statisticsName, statistic);
+        getAnalysisCounter(analysisName, statisticsName).increment();
     }
 
     @Override
     public void setAnalysisStatistics(String analysisName, String statisticsName, long value) {
-        HashMap<String, Long> analysisStatistics = (HashMap<String, Long>) this.allAnalysisStatistics.get(analysisName);
-        if (analysisStatistics == null) {
-            analysisStatistics = new HashMap<>();
-            this.allAnalysisStatistics.put(analysisName, analysisStatistics);
-        }
-        analysisStatistics.put(statisticsName, Long.valueOf(value));
+        getAnalysisGauge(analysisName, statisticsName).set(value);
     }
 }
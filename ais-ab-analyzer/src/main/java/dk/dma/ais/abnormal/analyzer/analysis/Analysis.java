@@ -38,6 +38,10 @@ import java.time.format.DateTimeFormatter;
 import java.util.Iterator;
 import java.util.List;
 
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+
 /**
  * An Analysis is a class which is known to the ais-ab-analyzer application and possesses certain public
  * methods which can be called to analyze and detect events.
@@ -122,9 +126,11 @@ public abstract class Analysis {
         Event ongoingEvent = eventRepository.findOngoingEventByVessel(mmsi, eventClass);
         if (ongoingEvent != null) {
             LocalDateTime timestamp = track.getTimeOfLastUpdateTyped();
-            ongoingEvent.setState(Event.State.PAST);
-            ongoingEvent.setEndTime(timestamp);
-            eventRepository.save(ongoingEvent);
+            synchronized (eventRepository) {
+                ongoingEvent.setState(Event.State.PAST);
+                ongoingEvent.setEndTime(timestamp);
+            }
+            eventRepository.update(ongoingEvent, emptyMap());
         }
     }
 
@@ -132,6 +138,9 @@ public abstract class Analysis {
      * Raise a new event of type eventClass for the given primaryTrack. If such an event has already been raised then
      * maintain it and add the tracks newest behaviour to it.
      *
+     * Ongoing events may be written to persistent storage by another thread (see WriteBehindEventRepository),
+     * so they are only modified while synchronized on the repository.
+     *
      * @param eventClass
      * @param primaryTrack
      * @param otherTracks
@@ -156,19 +165,23 @@ public abstract class Analysis {
                 }
             }
 
-            addTrackingPoint(event, mmsi, positionTimestamp, position, cog, sog, hdg, interpolated, certainty);
+            TrackingPoint trackingPoint;
+            synchronized (eventRepository) {
+                trackingPoint = addTrackingPoint(event, mmsi, positionTimestamp, position, cog, sog, hdg, interpolated, certainty);
+            }
+            eventRepository.update(event, singletonMap(event.getBehaviour(mmsi), singletonList(trackingPoint)));
         } else {
             event = buildEvent(primaryTrack, otherTracks);
+            eventRepository.save(event);
         }
-
-        eventRepository.save(event);
     }
 
     /**
      * Add a tracking point to an event and a target.
+     * @return the added tracking point.
      */
-    protected static void addTrackingPoint(Event event, int mmsi, LocalDateTime positionTimestamp, Position position, Float cog, Float sog, Float hdg, Boolean interpolated, TrackingPoint.EventCertainty eventCertainty) {
-        event.getBehaviour(mmsi).addTrackingPoint(
+    protected static TrackingPoint addTrackingPoint(Event event, int mmsi, LocalDateTime positionTimestamp, Position position, Float cog, Float sog, Float hdg, Boolean interpolated, TrackingPoint.EventCertainty eventCertainty) {
+        TrackingPoint trackingPoint =
                 TrackingPointBuilder.TrackingPoint()
                         .timestamp(positionTimestamp)
                         .positionInterpolated(interpolated)
@@ -178,8 +191,9 @@ public abstract class Analysis {
                         .trueHeading(hdg)
                         .latitude(position.getLatitude())
                         .longitude(position.getLongitude())
-                        .getTrackingPoint()
-        );
+                        .getTrackingPoint();
+        event.getBehaviour(mmsi).addTrackingPoint(trackingPoint);
+        return trackingPoint;
     }
 
     /**
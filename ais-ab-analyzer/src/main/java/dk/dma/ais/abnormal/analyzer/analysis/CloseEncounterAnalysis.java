@@ -19,18 +19,21 @@ package dk.dma.ais.abnormal.analyzer.analysis;
 import com.google.inject.Inject;
 import dk.dma.ais.abnormal.analyzer.AppStatisticsService;
 import dk.dma.ais.abnormal.analyzer.services.SafetyZoneService;
+import dk.dma.ais.abnormal.application.statistics.Counter;
 import dk.dma.ais.abnormal.event.db.EventRepository;
 import dk.dma.ais.abnormal.event.db.domain.CloseEncounterEvent;
 import dk.dma.ais.abnormal.event.db.domain.Event;
 import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
 import dk.dma.ais.abnormal.event.db.domain.builders.CloseEncounterEventBuilder;
 import dk.dma.ais.abnormal.util.Categorizer;
+import dk.dma.ais.abnormal.util.MmsiPairMap;
 import dk.dma.ais.tracker.eventEmittingTracker.EventEmittingTracker;
 import dk.dma.ais.tracker.eventEmittingTracker.InterpolatedTrackingReport;
 import dk.dma.ais.tracker.eventEmittingTracker.Track;
 import dk.dma.ais.tracker.eventEmittingTracker.TrackingReport;
 import dk.dma.enav.model.geometry.CoordinateSystem;
 import dk.dma.enav.model.geometry.Ellipse;
+import dk.dma.enav.model.geometry.Position;
 import dk.dma.enav.util.CoordinateConverter;
 import net.jcip.annotations.NotThreadSafe;
 import org.apache.commons.configuration.Configuration;
@@ -41,7 +44,6 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Set;
-import java.util.TreeSet;
 
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_ANALYSIS_CLOSEENCOUNTER_PREDICTIONTIME_MAX;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_ANALYSIS_CLOSEENCOUNTER_RUN_PERIOD;
@@ -56,7 +58,6 @@ import static dk.dma.ais.abnormal.util.TrackPredicates.isSpeedInvalid;
 import static dk.dma.ais.abnormal.util.TrackPredicates.isSupportVessel;
 import static dk.dma.ais.abnormal.util.TrackPredicates.isUndefinedVessel;
 import static java.lang.Math.max;
-import static java.lang.Math.min;
 import static java.util.stream.Collectors.toSet;
 
 /**
@@ -78,7 +79,15 @@ import static java.util.stream.Collectors.toSet;
 public class CloseEncounterAnalysis extends PeriodicAnalysis {
     private static final Logger LOG = LoggerFactory.getLogger(CloseEncounterAnalysis.class);
 
-    private final AppStatisticsService statisticsService;
+    /** Max. deviation of the timestamps of the last position reports of two near-by tracks */
+    private static final int MAX_TIMESTAMP_DEVIATION_MILLIS = 60000;
+
+    /** Max. distance between two near-by tracks - also the cell size of the spatial index of tracks */
+    private static final int MAX_DISTANCE_DEVIATION_METERS = 1852;
+
+    private final Counter analysesPerformed;
+    private final Counter analysisTime;
+    private final Counter eventsRaised;
     private final SafetyZoneService safetyZoneService;
 
     /** Minimum speed over ground to consider close encounter (in knots) */
@@ -87,11 +96,15 @@ public class CloseEncounterAnalysis extends PeriodicAnalysis {
     @Inject
     public CloseEncounterAnalysis(Configuration configuration, AppStatisticsService statisticsService, EventEmittingTracker trackingService, EventRepository eventRepository, SafetyZoneService safetyZoneService) {
         super(eventRepository, trackingService, null);
-        this.statisticsService = statisticsService;
         this.safetyZoneService = safetyZoneService;
         this.sogMin = configuration.getFloat(CONFKEY_ANALYSIS_CLOSEENCOUNTER_SOG_MIN, 5.0f);
         setTrackPredictionTimeMax(configuration.getInteger(CONFKEY_ANALYSIS_CLOSEENCOUNTER_PREDICTIONTIME_MAX, -1));
         setAnalysisPeriodMillis(configuration.getInt(CONFKEY_ANALYSIS_CLOSEENCOUNTER_RUN_PERIOD, 30000) * 1000);
+
+        analysesPerformed = statisticsService.getAnalysisCounter(getAnalysisName(), "Analyses performed");
+        analysisTime = statisticsService.getAnalysisCounter(getAnalysisName(), "Analysis time (usecs)");
+        eventsRaised = statisticsService.getAnalysisCounter(getAnalysisName(), "Events raised");
+
         LOG.info(this.getClass().getSimpleName() + " created (" + this + ").");
     }
 
@@ -107,16 +120,25 @@ public class CloseEncounterAnalysis extends PeriodicAnalysis {
         final long systemTimeMillisBeforeAnalysis = System.currentTimeMillis();
 
         Collection<Track> tracks = getTrackingService().getTracks();
+        PositionGridIndex<Track> trackIndex = indexTracks(tracks);
         tracks.forEach(
-            t -> analyseCloseEncounters(tracks, t)
+            t -> analyseCloseEncounters(trackIndex, t)
         );
 
         final long systemTimeMillisAfterAnalysis = System.currentTimeMillis();
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Analyses performed");
+        analysesPerformed.increment();
+        analysisTime.add((systemTimeMillisAfterAnalysis - systemTimeMillisBeforeAnalysis) * 1000);
         LOG.debug(getAnalysisName() + " of " + tracks.size() + " tracks completed in " + (systemTimeMillisAfterAnalysis - systemTimeMillisBeforeAnalysis) + " msecs.");
     }
 
-    private void analyseCloseEncounters(Collection<Track> allTracks, Track track) {
+    /**
+     * @return a spatial index of the tracks with a position report - by their positions before this run.
+     */
+    static PositionGridIndex<Track> indexTracks(Collection<Track> tracks) {
+        return PositionGridIndex.create(tracks, t -> t.getTimeOfLastPositionReport() > 0L ? t.getPosition() : null, MAX_DISTANCE_DEVIATION_METERS);
+    }
+
+    private void analyseCloseEncounters(PositionGridIndex<Track> trackIndex, Track track) {
         clearTrackPairsAnalyzed();
         if (
             isSupportVessel.negate().test(track)   &&
@@ -124,7 +146,7 @@ public class CloseEncounterAnalysis extends PeriodicAnalysis {
             isSpeedInvalid.negate().test(track)    &&
             (track.getSpeedOverGround() == null || track.getSpeedOverGround() > sogMin)
         ) {
-            findNearByTracks(allTracks, track, 60000, 1852)
+            findNearByTracks(trackIndex, track, MAX_TIMESTAMP_DEVIATION_MILLIS, MAX_DISTANCE_DEVIATION_METERS)
                 .stream()
                 .filter(isSupportVessel.negate())
                 .filter(isEngagedInTowing.negate())
@@ -209,26 +231,23 @@ public class CloseEncounterAnalysis extends PeriodicAnalysis {
         markTrackPairAnalyzed(track1, track2);
     }
 
-    private Set<String> trackPairsAnalyzed;
+    /** Pairs of tracks analysed; the values are not used */
+    private final MmsiPairMap trackPairsAnalyzed = new MmsiPairMap();
 
     void clearTrackPairsAnalyzed() {
-        trackPairsAnalyzed = new TreeSet<>();
+        trackPairsAnalyzed.clear();
     }
 
     void markTrackPairAnalyzed(Track track1, Track track2) {
-        String trackPairKey = calculateTrackPairKey(track1, track2);
-        trackPairsAnalyzed.add(trackPairKey);
+        trackPairsAnalyzed.put(calculateTrackPairKey(track1, track2), 0L);
     }
 
-    static String calculateTrackPairKey(Track track1, Track track2) {
-        int mmsi1 = track1.getMmsi();
-        int mmsi2 = track2.getMmsi();
-        return min(mmsi1, mmsi2) + "-" + max(mmsi1, mmsi2);
+    static long calculateTrackPairKey(Track track1, Track track2) {
+        return MmsiPairMap.unorderedKey(track1.getMmsi(), track2.getMmsi());
     }
 
     boolean isTrackPairAnalyzed(Track track1, Track track2) {
-        String trackPairKey = calculateTrackPairKey(track1, track2);
-        return trackPairsAnalyzed.contains(trackPairKey);
+        return trackPairsAnalyzed.containsKey(calculateTrackPairKey(track1, track2));
     }
 
     /**
@@ -243,19 +262,31 @@ public class CloseEncounterAnalysis extends PeriodicAnalysis {
      * @return the set of nearby candidateTracks
      */
     Set<Track> findNearByTracks(Collection<Track> candidateTracks, Track nearToTrack, int maxTimestampDeviationMillis, int maxDistanceDeviationMeters) {
+        return findNearByTracks(indexTracks(candidateTracks), nearToTrack, maxTimestampDeviationMillis, maxDistanceDeviationMeters);
+    }
+
+    /**
+     * As findNearByTracks(Collection, ...) - but searching only the candidate tracks in the cells of the spatial
+     * index around the nearToTrack. The distance is measured between the positions of the tracks when they were
+     * indexed - i.e. before any of them were predicted by this run of the analysis - so that it matches the cells
+     * searched.
+     */
+    Set<Track> findNearByTracks(PositionGridIndex<Track> trackIndex, Track nearToTrack, int maxTimestampDeviationMillis, int maxDistanceDeviationMeters) {
         Set<Track> nearbyTracks = Collections.EMPTY_SET;
 
         TrackingReport positionReport = nearToTrack.getNewestTrackingReport();
 
         if (positionReport != null) {
             final long timestamp = positionReport.getTimestamp();
+            final Position indexedPosition = trackIndex.positionOf(nearToTrack);
+            final Position position = indexedPosition != null ? indexedPosition : nearToTrack.getPosition();
 
-            nearbyTracks = candidateTracks.parallelStream().filter(candidateTrack ->
+            nearbyTracks = trackIndex.findCandidates(position, maxDistanceDeviationMeters).stream().filter(candidateTrack ->
                     candidateTrack.getMmsi() != nearToTrack.getMmsi() &&
                     candidateTrack.getTimeOfLastPositionReport() > 0L &&
                     candidateTrack.getTimeOfLastPositionReport() > timestamp - maxTimestampDeviationMillis &&
                     candidateTrack.getTimeOfLastPositionReport() < timestamp + maxTimestampDeviationMillis &&
-                    candidateTrack.getPosition().distanceTo(nearToTrack.getPosition(), CoordinateSystem.CARTESIAN) < maxDistanceDeviationMeters
+                    trackIndex.positionOf(candidateTrack).distanceTo(position, CoordinateSystem.CARTESIAN) < maxDistanceDeviationMeters
             ).collect(toSet());
         }
 
@@ -312,7 +343,7 @@ public class CloseEncounterAnalysis extends PeriodicAnalysis {
         double secondaryTrackLatitude = CoordinateConverter.y2Lat(secondaryTrackExtent.getX(), secondaryTrackExtent.getY());
         double secondaryTrackLongitude = CoordinateConverter.x2Lon(secondaryTrackExtent.getX(), secondaryTrackExtent.getY());
 
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Events raised");
+        eventsRaised.increment();
 
         LOG.info(description.toString());
 
@@ -25,6 +25,7 @@ import dk.dma.ais.abnormal.analyzer.behaviour.EventCertainty;
 import dk.dma.ais.abnormal.analyzer.behaviour.events.AbnormalEventLower;
 import dk.dma.ais.abnormal.analyzer.behaviour.events.AbnormalEventMaintain;
 import dk.dma.ais.abnormal.analyzer.behaviour.events.AbnormalEventRaise;
+import dk.dma.ais.abnormal.application.statistics.Counter;
 import dk.dma.ais.abnormal.event.db.EventRepository;
 import dk.dma.ais.abnormal.event.db.domain.CourseOverGroundEvent;
 import dk.dma.ais.abnormal.event.db.domain.Event;
@@ -70,7 +71,15 @@ import static dk.dma.ais.abnormal.util.TrackPredicates.isUnknownTypeOrSize;
 public class CourseOverGroundAnalysis extends StatisticBasedAnalysis {
     private static final Logger LOG = LoggerFactory.getLogger(CourseOverGroundAnalysis.class);
 
-    private final AppStatisticsService statisticsService;
+    private final Counter eventsReceived;
+    private final Counter unknownCellId;
+    private final Counter unknownShipType;
+    private final Counter unknownShipLength;
+    private final Counter unknownCourseOverGround;
+    private final Counter shipLengthBelowMin;
+    private final Counter analysesPerformed;
+    private final Counter analysisTime;
+    private final Counter eventsRaised;
 
     private final int TOTAL_SHIP_COUNT_THRESHOLD;
     private final float PD;
@@ -80,7 +89,6 @@ public class CourseOverGroundAnalysis extends StatisticBasedAnalysis {
     @Inject
     public CourseOverGroundAnalysis(Configuration configuration, AppStatisticsService statisticsService, StatisticDataRepository statisticsRepository, EventEmittingTracker trackingService, EventRepository eventRepository, BehaviourManager behaviourManager) {
         super(eventRepository, statisticsRepository, trackingService, behaviourManager);
-        this.statisticsService = statisticsService;
         setTrackPredictionTimeMax(configuration.getInteger(CONFKEY_ANALYSIS_COG_PREDICTIONTIME_MAX, -1));
 
         TOTAL_SHIP_COUNT_THRESHOLD = configuration.getInt(CONFKEY_ANALYSIS_COG_CELL_SHIPCOUNT_MIN, 1000);
@@ -88,6 +96,16 @@ public class CourseOverGroundAnalysis extends StatisticBasedAnalysis {
         SHIP_LENGTH_MIN = configuration.getInt(CONFKEY_ANALYSIS_COG_SHIPLENGTH_MIN, 50);
         USE_AGGREGATED_STATS = configuration.getBoolean(CONFKEY_ANALYSIS_COG_USE_AGGREGATED_STATS, false);
 
+        eventsReceived = statisticsService.getAnalysisCounter(getAnalysisName(), "Events received");
+        unknownCellId = statisticsService.getAnalysisCounter(getAnalysisName(), "Unknown cell id");
+        unknownShipType = statisticsService.getAnalysisCounter(getAnalysisName(), "Unknown ship type");
+        unknownShipLength = statisticsService.getAnalysisCounter(getAnalysisName(), "Unknown ship length");
+        unknownCourseOverGround = statisticsService.getAnalysisCounter(getAnalysisName(), "Unknown course over ground");
+        shipLengthBelowMin = statisticsService.getAnalysisCounter(getAnalysisName(), "LOA < " + SHIP_LENGTH_MIN);
+        analysesPerformed = statisticsService.getAnalysisCounter(getAnalysisName(), "Analyses performed");
+        analysisTime = statisticsService.getAnalysisCounter(getAnalysisName(), "Analysis time (usecs)");
+        eventsRaised = statisticsService.getAnalysisCounter(getAnalysisName(), "Events raised");
+
         LOG.info(getAnalysisName() + " created (" + this + ").");
     }
 
@@ -104,7 +122,7 @@ public class CourseOverGroundAnalysis extends StatisticBasedAnalysis {
     @AllowConcurrentEvents
     @Subscribe
     public void onCellIdChanged(CellChangedEvent trackEvent) {
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Events received");
+        eventsReceived.increment();
 
         Track track = trackEvent.getTrack();
 
@@ -124,27 +142,27 @@ public class CourseOverGroundAnalysis extends StatisticBasedAnalysis {
         Float courseOverGround = track.getCourseOverGround();
 
         if (cellId == null) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "Unknown cell id");
+            unknownCellId.increment();
             return;
         }
 
         if (shipType == null) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "Unknown ship type");
+            unknownShipType.increment();
             return;
         }
 
         if (shipLength == null) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "Unknown ship length");
+            unknownShipLength.increment();
             return;
         }
 
         if (courseOverGround == null) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "Unknown course over ground");
+            unknownCourseOverGround.increment();
             return;
         }
 
         if (shipLength < SHIP_LENGTH_MIN) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "LOA < " + SHIP_LENGTH_MIN);
+            shipLengthBelowMin.increment();
             return;
         }
 
@@ -200,6 +218,7 @@ public class CourseOverGroundAnalysis extends StatisticBasedAnalysis {
      * @return true if the presence of size/type with this cog in this cell is abnormal. False otherwise.
      */
     boolean isAbnormalCourseOverGround(Long cellId, int shipTypeKey, int shipSizeKey, int courseOverGroundKey) {
+        final long systemTimeNanosBeforeAnalysis = System.nanoTime();
         float pd = 1.0f;
 
         StatisticData courseOverGroundStatisticData = getStatisticDataRepository().getStatisticData("CourseOverGroundStatistic", cellId);
@@ -224,7 +243,8 @@ public class CourseOverGroundAnalysis extends StatisticBasedAnalysis {
             LOG.debug("Normal or inconclusive event detected.");
         }
 
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Analyses performed");
+        analysesPerformed.increment();
+        analysisTime.add((System.nanoTime() - systemTimeNanosBeforeAnalysis) / 1000);
 
         return isAbnormalCourseOverGround;
     }
@@ -315,7 +335,7 @@ public class CourseOverGroundAnalysis extends StatisticBasedAnalysis {
 
         addPreviousTrackingPoints(event, track);
 
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Events raised");
+        eventsRaised.increment();
 
         return event;
     }
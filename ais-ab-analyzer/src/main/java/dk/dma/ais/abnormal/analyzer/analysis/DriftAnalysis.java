@@ -20,6 +20,8 @@ import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 import com.google.inject.Inject;
 import dk.dma.ais.abnormal.analyzer.AppStatisticsService;
+import dk.dma.ais.abnormal.application.statistics.Counter;
+import dk.dma.ais.abnormal.application.statistics.Gauge;
 import dk.dma.ais.abnormal.event.db.EventRepository;
 import dk.dma.ais.abnormal.event.db.domain.DriftEvent;
 import dk.dma.ais.abnormal.event.db.domain.Event;
@@ -76,7 +78,11 @@ import static dk.dma.enav.util.compass.CompassUtils.absoluteDirectionalDifferenc
 public class DriftAnalysis extends Analysis {
     private static final Logger LOG = LoggerFactory.getLogger(DriftAnalysis.class);
 
-    private final AppStatisticsService statisticsService;
+    private final Counter shipLengthBelowMin;
+    private final Counter analysesPerformed;
+    private final Counter analysisTime;
+    private final Gauge observationListSize;
+    private final Counter eventsRaised;
 
     /** Track must have sustained sog below this mark to a cause drift event */
     final float SPEED_HIGH_MARK;
@@ -103,7 +109,6 @@ public class DriftAnalysis extends Analysis {
     @Inject
     public DriftAnalysis(Configuration configuration, AppStatisticsService statisticsService, EventEmittingTracker trackingService, EventRepository eventRepository) {
         super(eventRepository, trackingService, null);
-        this.statisticsService = statisticsService;
 
         setTrackPredictionTimeMax(configuration.getInteger(CONFKEY_ANALYSIS_DRIFT_PREDICTIONTIME_MAX, -1));
 
@@ -114,6 +119,12 @@ public class DriftAnalysis extends Analysis {
         OBSERVATION_DISTANCE_METERS = configuration.getFloat(CONFKEY_ANALYSIS_DRIFT_DISTANCE, 500f);
         SHIP_LENGTH_MIN = configuration.getInt(CONFKEY_ANALYSIS_DRIFT_SHIPLENGTH_MIN, 50);
 
+        shipLengthBelowMin = statisticsService.getAnalysisCounter(getAnalysisName(), "LOA < " + SHIP_LENGTH_MIN);
+        analysesPerformed = statisticsService.getAnalysisCounter(getAnalysisName(), "Analyses performed");
+        analysisTime = statisticsService.getAnalysisCounter(getAnalysisName(), "Analysis time (usecs)");
+        observationListSize = statisticsService.getAnalysisGauge(getAnalysisName(), "# observation list");
+        eventsRaised = statisticsService.getAnalysisCounter(getAnalysisName(), "Events raised");
+
         LOG.info(this.getClass().getSimpleName() + " created (" + this + ").");
     }
 
@@ -136,7 +147,7 @@ public class DriftAnalysis extends Analysis {
 
         Integer vesselLength = track.getVesselLength();
         if (vesselLength != null && vesselLength < SHIP_LENGTH_MIN) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "LOA < " + SHIP_LENGTH_MIN);
+            shipLengthBelowMin.increment();
             return;
         }
 
@@ -163,15 +174,17 @@ public class DriftAnalysis extends Analysis {
 
         /* Perform analysis only for very long vessels and some other vessels: */
         if (isVeryLongVessel.test(track) || (isCargoVessel.test(track) || isTankerVessel.test(track) || isPassengerVessel.test(track))) {
+            final long systemTimeNanosBeforeAnalysis = System.nanoTime();
             performAnalysis(track);
+            analysisTime.add((System.nanoTime() - systemTimeNanosBeforeAnalysis) / 1000);
             updateApplicationStatistics();
         }
     }
 
     private void updateApplicationStatistics() {
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Analyses performed");
+        analysesPerformed.increment();
         if (statCount++ % 10000 == 0) {
-            statisticsService.setAnalysisStatistics(getAnalysisName(), "# observation list", tracksPossiblyDrifting.size());
+            observationListSize.set(tracksPossiblyDrifting.size());
         }
     }
 
@@ -327,7 +340,7 @@ public class DriftAnalysis extends Analysis {
 
         addPreviousTrackingPoints(event, track);
 
-        statisticsService.incAnalysisStatistics(this.getClass().getSimpleName(), "Events raised");
+        eventsRaised.increment();
 
         return event;
     }
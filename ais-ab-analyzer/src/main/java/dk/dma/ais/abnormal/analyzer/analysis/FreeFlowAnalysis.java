@@ -20,8 +20,10 @@ import com.google.common.collect.Lists;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import dk.dma.ais.abnormal.analyzer.AppStatisticsService;
+import dk.dma.ais.abnormal.application.statistics.Counter;
 import dk.dma.ais.abnormal.event.db.EventRepository;
 import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.util.MmsiPairMap;
 import dk.dma.ais.tracker.eventEmittingTracker.EventEmittingTracker;
 import dk.dma.ais.tracker.eventEmittingTracker.Track;
 import dk.dma.enav.model.geometry.BoundingBox;
@@ -32,37 +34,22 @@ import dk.dma.enav.util.CoordinateConverter;
 import dk.dma.enav.util.geometry.Point;
 import net.jcip.annotations.NotThreadSafe;
 import org.apache.commons.configuration.Configuration;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVPrinter;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.annotation.concurrent.GuardedBy;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_ANALYSIS_FREEFLOW_BBOX;
-import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_ANALYSIS_FREEFLOW_CSVFILE;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_ANALYSIS_FREEFLOW_DCOG;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_ANALYSIS_FREEFLOW_MIN_REPORTING_PERIOD_MINUTES;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_ANALYSIS_FREEFLOW_PREDICTIONTIME_MAX;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_ANALYSIS_FREEFLOW_RUN_PERIOD;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_ANALYSIS_FREEFLOW_XB;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_ANALYSIS_FREEFLOW_XL;
-import static dk.dma.ais.abnormal.util.AisDataHelper.trimAisString;
 import static dk.dma.ais.abnormal.util.TrackPredicates.isCargoVessel;
 import static dk.dma.ais.abnormal.util.TrackPredicates.isTankerVessel;
 import static dk.dma.ais.abnormal.util.TrackPredicates.isVeryLongVessel;
@@ -70,7 +57,6 @@ import static dk.dma.enav.safety.SafetyZones.createEllipse;
 import static dk.dma.enav.util.compass.CompassUtils.absoluteDirectionalDifference;
 import static dk.dma.enav.util.compass.CompassUtils.compass2cartesian;
 import static java.lang.System.nanoTime;
-import static org.apache.commons.lang.StringUtils.isBlank;
 
 /**
  * This analysis analyses "free flow" of vessels in given areas.
@@ -85,7 +71,8 @@ import static org.apache.commons.lang.StringUtils.isBlank;
 public class FreeFlowAnalysis extends PeriodicAnalysis {
     private static final Logger LOG = LoggerFactory.getLogger(FreeFlowAnalysis.class);
 
-    private final AppStatisticsService statisticsService;
+    private final Counter analysesPerformed;
+    private final Counter analysisTime;
     private BoundingBox areaToBeAnalysed = null;
 
     /** Major axis of ellipse is xL times vessel's length-over-all */
@@ -100,26 +87,25 @@ public class FreeFlowAnalysis extends PeriodicAnalysis {
     /** A vessel pair can only be reported this often */
     private final int minReportingIntervalMillis;
 
-    /** Name of the CSV file to which freeflow events will be appended */
-    private final String csvFileName;
+    /** Asynchronous writer of the CSV file to which freeflow events are appended - or null if disabled */
+    private final FreeFlowCsvWriter csvWriter;
 
+    /**
+     * @param csvWriter writer of the CSV file to which freeflow events are appended - if enabled. The writer is
+     *                  owned (and closed) by the application.
+     */
     @Inject
-    public FreeFlowAnalysis(Configuration configuration, AppStatisticsService statisticsService, EventEmittingTracker trackingService, EventRepository eventRepository) {
+    public FreeFlowAnalysis(Configuration configuration, AppStatisticsService statisticsService, EventEmittingTracker trackingService, EventRepository eventRepository, Optional<FreeFlowCsvWriter> csvWriter) {
         super(eventRepository, trackingService, null);
-        this.statisticsService = statisticsService;
 
         this.xL = configuration.getInt(CONFKEY_ANALYSIS_FREEFLOW_XL, 8);
         this.xB = configuration.getInt(CONFKEY_ANALYSIS_FREEFLOW_XB, 8);
         this.dCog = configuration.getFloat(CONFKEY_ANALYSIS_FREEFLOW_DCOG, 15f);
         this.minReportingIntervalMillis = configuration.getInt(CONFKEY_ANALYSIS_FREEFLOW_MIN_REPORTING_PERIOD_MINUTES, 60) * 60 * 1000;
 
-        String csvFileNameTmp = configuration.getString(CONFKEY_ANALYSIS_FREEFLOW_CSVFILE, null);
-        if (csvFileNameTmp == null || isBlank(csvFileNameTmp)) {
-            this.csvFileName = null;
+        this.csvWriter = csvWriter.orElse(null);
+        if (this.csvWriter == null) {
             LOG.warn("Writing of free flow events to CSV file is disabled");
-        } else {
-            this.csvFileName = csvFileNameTmp.trim();
-            LOG.info("Free flow events are appended to CSV file: " + this.csvFileName);
         }
 
         List<Object> bboxConfig = configuration.getList(CONFKEY_ANALYSIS_FREEFLOW_BBOX);
@@ -134,6 +120,9 @@ public class FreeFlowAnalysis extends PeriodicAnalysis {
         setTrackPredictionTimeMax(configuration.getInteger(CONFKEY_ANALYSIS_FREEFLOW_PREDICTIONTIME_MAX, -1));
         setAnalysisPeriodMillis(configuration.getInt(CONFKEY_ANALYSIS_FREEFLOW_RUN_PERIOD, 30000) * 1000);
 
+        analysesPerformed = statisticsService.getAnalysisCounter(getAnalysisName(), "Analyses performed");
+        analysisTime = statisticsService.getAnalysisCounter(getAnalysisName(), "Analysis time (usecs)");
+
         LOG.info(this.getClass().getSimpleName() + " created (" + this + ").");
     }
 
@@ -164,9 +153,11 @@ public class FreeFlowAnalysis extends PeriodicAnalysis {
                 .collect(Collectors.toList());
 
         analyseFreeFlow(allRelevantTracksPredictedToNow);
+        expireReported();
 
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Analyses performed");
+        analysesPerformed.increment();
         final long systemTimeNanosAfterAnalysis = nanoTime();
+        analysisTime.add((systemTimeNanosAfterAnalysis - systemTimeNanosBeforeAnalysis) / 1000);
         LOG.debug(getAnalysisName() + " of " + allTracks.size() + " tracks completed in " + (systemTimeNanosAfterAnalysis - systemTimeNanosBeforeAnalysis) + " nsecs.");
     }
 
@@ -174,87 +165,135 @@ public class FreeFlowAnalysis extends PeriodicAnalysis {
         LOG.debug("Performing analysis of " + tracks.size() + " tracks");
         final long t0 = nanoTime();
 
-        tracks
+        // Compute centre and ellipse of each vessel once, and index the vessels by their centres
+        final List<VesselCentre> vessels = tracks
             .stream()
-            .forEach(t -> analyseFreeFlow(tracks, t));
+            .map(this::vesselCentreOf)
+            .collect(Collectors.toList());
+
+        if (vessels.size() > 0) {
+            final double maxBoundingRadius = vessels.stream().mapToDouble(v -> v.boundingRadius).max().getAsDouble();
+            final PositionGridIndex<VesselCentre> index = PositionGridIndex.create(vessels, v -> v.centre, Math.max(maxBoundingRadius, 1.0));
+
+            // Search in parallel; report sequentially in the order of the tracks
+            final List<List<VesselCentre>> vesselsInsideEllipses = vessels
+                .parallelStream()
+                .map(v0 -> findVesselsInsideEllipse(index, v0))
+                .collect(Collectors.toList());
+
+            for (int i = 0; i < vessels.size(); i++) {
+                reportFreeFlow(vessels.get(i), vesselsInsideEllipses.get(i));
+            }
+        }
 
         final long t1 = nanoTime();
         LOG.debug("Analysis performed in " + (t1-t0)/1000 + " msecs");
     }
 
-    private void analyseFreeFlow(Collection<Track> allTracks, Track t0) {
-        LOG.debug("Performing free flow analysis of " + t0.getMmsi());
+    private VesselCentre vesselCentreOf(Track t) {
+        final float cog = t.getCourseOverGround();
+        final Position pc = centerOfVessel(t.getPosition(), t.getTrueHeading(), t.getShipDimensionStern(), t.getShipDimensionBow(), t.getShipDimensionPort(), t.getShipDimensionStarboard());
+        final Ellipse ellipse = createEllipse(
+            pc,
+            pc,
+            cog,
+            t.getVesselLength(),
+            t.getVesselBeam(),
+            t.getShipDimensionStern(),
+            t.getShipDimensionStarboard(),
+            xL,
+            xB,
+            1
+        );
+        return new VesselCentre(t, pc, ellipse);
+    }
 
+    /**
+     * Find the vessels sailing in approx. the same direction as v0 with their centres inside v0's ellipse. Only the
+     * vessels in the index cells within the bounding radius of the ellipse are examined.
+     */
+    List<VesselCentre> findVesselsInsideEllipse(PositionGridIndex<VesselCentre> index, VesselCentre v0) {
+        final Track t0 = v0.track;
         final float cog0 = t0.getCourseOverGround();
-        final Position pc0 = centerOfVessel(t0.getPosition(), t0.getTrueHeading(), t0.getShipDimensionStern(), t0.getShipDimensionBow(), t0.getShipDimensionPort(), t0.getShipDimensionStarboard());
 
-        Set<Track> tracksSailingSameDirection = allTracks
+        return index.findCandidates(v0.centre, v0.boundingRadius)
             .stream()
-            .filter(t -> t.getMmsi() != t0.getMmsi())
-            .filter(t -> !isLastAisTrackingReportTooOld(t, t.getTimeOfLastPositionReport()))
-            .filter(t -> absoluteDirectionalDifference(cog0, t.getCourseOverGround()) < dCog)
-            .collect(Collectors.toSet());
-
-        if (tracksSailingSameDirection.size() > 0) {
-            Ellipse ellipse = createEllipse(
-                pc0,
-                pc0,
-                cog0,
-                t0.getVesselLength(),
-                t0.getVesselBeam(),
-                t0.getShipDimensionStern(),
-                t0.getShipDimensionStarboard(),
-                xL,
-                xB,
-                1
-            );
-
-            LOG.debug("ellipse: " + ellipse);
-
-            List<Track> tracksSailingSameDirectionAndContainedInEllipse = tracksSailingSameDirection
-                .stream()
-                .filter(t -> ellipse.contains(centerOfVessel(t.getPosition(), t.getTrueHeading(), t.getShipDimensionStern(), t.getShipDimensionBow(), t.getShipDimensionPort(), t.getShipDimensionStarboard())))
-                .collect(Collectors.toList());
+            .filter(v -> v.track.getMmsi() != t0.getMmsi())
+            .filter(v -> !isLastAisTrackingReportTooOld(v.track, v.track.getTimeOfLastPositionReport()))
+            .filter(v -> absoluteDirectionalDifference(cog0, v.track.getCourseOverGround()) < dCog)
+            .filter(v -> v0.ellipse.contains(v.centre))
+            .collect(Collectors.toList());
+    }
 
-            if (tracksSailingSameDirectionAndContainedInEllipse.size() > 0) {
-                LOG.debug("There are " + tracksSailingSameDirectionAndContainedInEllipse.size() + " tracks inside ellipse of " + t0.getMmsi() + " " + t0.getShipName());
-                LOG.debug(new DateTime(t0.getTimeOfLastPositionReport()) + " " + "MMSI " + t0.getMmsi() + " " + t0.getShipName() + " " + t0.getShipType());
-                List<FreeFlowData.TrackInsideEllipse> tracksInsideEllipse = Lists.newArrayList();
-                for (Track t1 : tracksSailingSameDirectionAndContainedInEllipse) {
-                    if (! reportedRecently(t0, t1, t0.getTimeOfLastPositionReport())) {
-                        final Position pc1 = centerOfVessel(t1.getPosition(), t1.getTrueHeading(), t1.getShipDimensionStern(), t1.getShipDimensionBow(), t1.getShipDimensionPort(), t1.getShipDimensionStarboard());
-                        try {
-                            tracksInsideEllipse.add(new FreeFlowData.TrackInsideEllipse(t1.clone(), pc1));
-                            markReported(t0, t1, t0.getTimeOfLastPositionReport());
-                        } catch (CloneNotSupportedException e) {
-                            LOG.error(e.getMessage(), e);
-                        }
-                    }
-                }
-                if (tracksInsideEllipse.size() > 0) {
+    private void reportFreeFlow(VesselCentre v0, List<VesselCentre> vesselsInsideEllipse) {
+        final Track t0 = v0.track;
+        LOG.debug("Performing free flow analysis of " + t0.getMmsi());
+        LOG.debug("ellipse: " + v0.ellipse);
+
+        if (vesselsInsideEllipse.size() > 0) {
+            LOG.debug("There are " + vesselsInsideEllipse.size() + " tracks inside ellipse of " + t0.getMmsi() + " " + t0.getShipName());
+            LOG.debug(new DateTime(t0.getTimeOfLastPositionReport()) + " " + "MMSI " + t0.getMmsi() + " " + t0.getShipName() + " " + t0.getShipType());
+            List<FreeFlowData.TrackInsideEllipse> tracksInsideEllipse = Lists.newArrayList();
+            for (VesselCentre v1 : vesselsInsideEllipse) {
+                final Track t1 = v1.track;
+                if (! reportedRecently(t0, t1, t0.getTimeOfLastPositionReport())) {
                     try {
-                        writeToCSVFile(new FreeFlowData(t0.clone(), pc0, tracksInsideEllipse));
+                        tracksInsideEllipse.add(new FreeFlowData.TrackInsideEllipse(t1.clone(), v1.centre));
+                        markReported(t0, t1, t0.getTimeOfLastPositionReport());
                     } catch (CloneNotSupportedException e) {
                         LOG.error(e.getMessage(), e);
                     }
-                } else {
-                    LOG.debug("Nothing new to report.");
                 }
             }
+            if (tracksInsideEllipse.size() > 0) {
+                try {
+                    writeToCSVFile(new FreeFlowData(t0.clone(), v0.centre, tracksInsideEllipse));
+                } catch (CloneNotSupportedException e) {
+                    LOG.error(e.getMessage(), e);
+                }
+            } else {
+                LOG.debug("Nothing new to report.");
+            }
         }
     }
 
-    private Map<String, Long> reported = new HashMap<>();
+    /**
+     * A track together with its vessel's centre and free flow ellipse - computed once per analysis run.
+     */
+    static final class VesselCentre {
+        final Track track;
+        final Position centre;
+        final Ellipse ellipse;
+
+        /** Distance from the centre to the most distant point of the ellipse (in meters) */
+        final double boundingRadius;
+
+        VesselCentre(Track track, Position centre, Ellipse ellipse) {
+            this.track = track;
+            this.centre = centre;
+            this.ellipse = ellipse;
+            this.boundingRadius = Math.hypot(ellipse.getX(), ellipse.getY()) + Math.max(ellipse.getAlpha(), ellipse.getBeta());
+        }
+    }
+
+    /** Time of last report of each (t0, t1) pair of tracks */
+    private final MmsiPairMap reported = new MmsiPairMap();
 
     private void markReported(Track t0, Track t1, long timestamp) {
-        String key = String.valueOf(t0.getMmsi()) + "/" + String.valueOf(t1.getMmsi());
-        reported.put(key, timestamp);
+        reported.put(MmsiPairMap.orderedKey(t0.getMmsi(), t1.getMmsi()), timestamp);
     }
 
     private boolean reportedRecently(Track t0, Track t1, long timestamp) {
-        String key = String.valueOf(t0.getMmsi()) + "/" + String.valueOf(t1.getMmsi());
-        Long lastReport = reported.get(key);
-        return lastReport != null && timestamp-lastReport < minReportingIntervalMillis;
+        long key = MmsiPairMap.orderedKey(t0.getMmsi(), t1.getMmsi());
+        return reported.containsKey(key) && timestamp - reported.get(key, 0L) < minReportingIntervalMillis;
+    }
+
+    /**
+     * Forget the pairs which were last reported so long ago that they may be reported again.
+     */
+    private void expireReported() {
+        int n = reported.removeValuesOlderThan(getCurrentRunTime() - minReportingIntervalMillis + 1);
+        LOG.debug("Expired " + n + " reported pairs; " + reported.size() + " remaining.");
     }
 
     private boolean isVesselTypeToBeAnalysed(Track track) {
@@ -329,110 +368,9 @@ public class FreeFlowAnalysis extends PeriodicAnalysis {
       return null;
     }
 
-    private ReentrantLock lock = new ReentrantLock();
-    @GuardedBy("lock")
-    private FileWriter fileWriter = null;
-    @GuardedBy("lock")
-    private CSVPrinter csvFilePrinter = null;
-    DateTimeFormatter fmt = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
-
     private void writeToCSVFile(FreeFlowData freeFlowData) {
-        if (csvFileName == null)
-            return;
-
-        final File csvFile = new File(csvFileName);
-        final boolean fileExists = csvFile.exists() == true || csvFile.length() > 0;
-
-        lock.lock();
-
-        if (!fileExists) {
-            try {
-                if (csvFilePrinter != null) csvFilePrinter.close();
-                if (fileWriter != null) fileWriter.close();
-            } catch (IOException e) {
-                LOG.warn(e.getMessage(), e);
-            }
-            csvFilePrinter = null;
-            fileWriter = null;
-        }
-
-        try {
-            if (fileWriter == null) {
-                try {
-                    fileWriter = new FileWriter(csvFile, true);
-                    if (csvFilePrinter == null) {
-                        try {
-                            csvFilePrinter = new CSVPrinter(fileWriter, CSVFormat.RFC4180.withCommentMarker('#'));
-                        } catch (IOException e) {
-                            csvFilePrinter = null;
-                            LOG.error(e.getMessage(), e);
-                            LOG.error("Failed to write line to CSV file: " + freeFlowData);
-                            return;
-                        }
-                    }
-                } catch (IOException e) {
-                    fileWriter = null;
-                    LOG.error(e.getMessage(), e);
-                    LOG.error("Failed to write line to CSV file: " + freeFlowData);
-                    return;
-                }
-            }
-
-            if (!fileExists) {
-                LOG.info("Created new CSV file: " + csvFile.getAbsolutePath());
-                csvFilePrinter.printComment("Generated by AIS Abnormal Behaviour Analyzer");
-                csvFilePrinter.printComment("File created: " + LocalDateTime.now().format(fmt));
-                csvFilePrinter.printRecord("TIMESTAMP (GMT)", "MMSI1", "NAME1", "TP1", "LOA1", "BM1", "COG1", "HDG1", "SOG1", "LAT1", "LON1", "MMSI2", "NAME2", "TP2", "LOA2", "BM2", "COG2", "HDG2", "SOG2", "LAT2", "LON2", "BRG", "DST");
-            }
-
-            final Track t0 = freeFlowData.getTrackSnapshot();
-            final Position p0 = freeFlowData.getTrackCenterPosition();
-
-            List<FreeFlowData.TrackInsideEllipse> tracks = freeFlowData.getTracksInsideEllipse();
-            for (FreeFlowData.TrackInsideEllipse track : tracks) {
-                final Track t1 = track.getTrackSnapshot();
-                final Position p1 = track.getTrackCenterPosition();
-                final int d = (int) p0.distanceTo(p1, CoordinateSystem.CARTESIAN);
-                final int b = (int) p0.rhumbLineBearingTo(p1);
-
-                List csvRecord = new ArrayList<>();
-                csvRecord.add(String.format(Locale.ENGLISH, "%s", t0.getTimeOfLastPositionReportTyped().format(fmt)));
-                csvRecord.add(String.format(Locale.ENGLISH, "%d", t0.getMmsi()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%s", trimAisString(t0.getShipName()).replace(',', ' ')));
-                csvRecord.add(String.format(Locale.ENGLISH, "%d", t0.getShipType()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%d", t0.getVesselLength()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%d", t0.getVesselBeam()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%.0f", t0.getCourseOverGround()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%.0f", t0.getTrueHeading()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%.0f", t0.getSpeedOverGround()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%.4f", p0.getLatitude()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%.4f", p0.getLongitude()));
-
-                csvRecord.add(String.format(Locale.ENGLISH, "%d", t1.getMmsi()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%s", trimAisString(t1.getShipName()).replace(',', ' ')));
-                csvRecord.add(String.format(Locale.ENGLISH, "%d", t1.getShipType()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%d", t1.getVesselLength()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%d", t1.getVesselBeam()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%.0f", t1.getCourseOverGround()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%.0f", t1.getTrueHeading()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%.0f", t1.getSpeedOverGround()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%.4f", p1.getLatitude()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%.4f", p1.getLongitude()));
-                csvRecord.add(String.format(Locale.ENGLISH, "%d", b));
-                csvRecord.add(String.format(Locale.ENGLISH, "%d", d));
-
-                try {
-                    csvFilePrinter.printRecord(csvRecord);
-                } catch (IOException e) {
-                    LOG.error(e.getMessage(), e);
-                    LOG.error("Failed to write line to CSV file: " + freeFlowData);
-                }
-            }
-            csvFilePrinter.flush();
-        } catch (IOException e) {
-            LOG.error(e.getMessage(), e);
-        } finally {
-            lock.unlock();
+        if (csvWriter != null) {
+            csvWriter.write(freeFlowData);
         }
     }
 
@@ -446,7 +384,7 @@ public class FreeFlowAnalysis extends PeriodicAnalysis {
             private final Track trackSnapshot;
             private final Position trackCenterPosition;
 
-            private TrackInsideEllipse(Track trackSnapshot, Position trackCenterPosition) {
+            TrackInsideEllipse(Track trackSnapshot, Position trackCenterPosition) {
                 this.trackSnapshot = trackSnapshot;
                 this.trackCenterPosition = trackCenterPosition;
             }
@@ -468,7 +406,7 @@ public class FreeFlowAnalysis extends PeriodicAnalysis {
             }
         }
 
-        private FreeFlowData(Track trackSnapshot, Position trackCenterPosition, List<TrackInsideEllipse> tracksInsideEllipse) {
+        FreeFlowData(Track trackSnapshot, Position trackCenterPosition, List<TrackInsideEllipse> tracksInsideEllipse) {
             this.trackSnapshot = trackSnapshot;
             this.trackCenterPosition = trackCenterPosition;
             this.tracksInsideEllipse = tracksInsideEllipse;
@@ -0,0 +1,246 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.analyzer.analysis;
+
+import dk.dma.ais.abnormal.application.statistics.Counter;
+import dk.dma.ais.abnormal.util.BackgroundBatchWriter;
+import dk.dma.ais.tracker.eventEmittingTracker.Track;
+import dk.dma.enav.model.geometry.CoordinateSystem;
+import dk.dma.enav.model.geometry.Position;
+import net.jcip.annotations.ThreadSafe;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static dk.dma.ais.abnormal.util.AisDataHelper.trimAisString;
+
+/**
+ * Writes free flow data to a CSV file through a BackgroundBatchWriter, so that the analysis thread never waits for
+ * the disk; if its queue is full the data are dropped and counted. The file is rotated - i.e. renamed with a timestamp
+ * suffix and replaced by a new file - when it exceeds maxFileSize or was opened on an earlier day.
+ */
+@ThreadSafe
+public final class FreeFlowCsvWriter implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FreeFlowCsvWriter.class);
+
+    static final int QUEUE_CAPACITY = 10000;
+    static final int MAX_BATCH_SIZE = 1000;
+    static final long FLUSH_INTERVAL_MILLIS = 1000;
+    static final long MAX_FILE_SIZE = 100L * 1024 * 1024;
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("dd-MM-yyyy HH:mm:ss");
+    private static final DateTimeFormatter ROTATION_SUFFIX_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final File csvFile;
+    private final long maxFileSize;
+    private final BackgroundBatchWriter<FreeFlowAnalysis.FreeFlowData> writer;
+
+    /* Accessed by the writer thread only */
+    private CSVPrinter csvPrinter;
+    private LocalDate fileOpenedOn;
+
+    public FreeFlowCsvWriter(String csvFileName, Counter recordsDropped) {
+        this(csvFileName, recordsDropped, QUEUE_CAPACITY, MAX_FILE_SIZE);
+    }
+
+    FreeFlowCsvWriter(String csvFileName, Counter recordsDropped, int queueCapacity, long maxFileSize) {
+        this.csvFile = new File(csvFileName);
+        this.maxFileSize = maxFileSize;
+        this.writer = new BackgroundBatchWriter<>(getClass().getSimpleName(), new CsvFileOutput(), queueCapacity, MAX_BATCH_SIZE, FLUSH_INTERVAL_MILLIS, recordsDropped, null);
+    }
+
+    /**
+     * Queue the data for writing.
+     *
+     * @return false if the data were dropped because the queue is full or the writer is closed.
+     */
+    boolean write(FreeFlowAnalysis.FreeFlowData freeFlowData) {
+        return writer.write(freeFlowData);
+    }
+
+    /**
+     * Wait until all data queued before this call have been written and flushed.
+     */
+    void flush() throws InterruptedException {
+        writer.flush();
+    }
+
+    /**
+     * Write all queued data and close the file.
+     */
+    @Override
+    public void close() {
+        writer.close();
+    }
+
+    /**
+     * Writes the data to csvFile; rotating it by size and day.
+     */
+    private final class CsvFileOutput implements BackgroundBatchWriter.Output<FreeFlowAnalysis.FreeFlowData> {
+
+        @Override
+        public void write(List<FreeFlowAnalysis.FreeFlowData> batch) throws IOException {
+            prepareFile();
+            for (FreeFlowAnalysis.FreeFlowData freeFlowData : batch) {
+                writeRecords(freeFlowData);
+            }
+        }
+
+        /**
+         * Rotate the file if it is too large or old, re-open it if it has been removed, and open it if it is not open.
+         */
+        private void prepareFile() throws IOException {
+            if (csvPrinter != null) {
+                if (!csvFile.exists()) {
+                    LOG.info("CSV file " + csvFile.getAbsolutePath() + " has been removed.");
+                    close();
+                } else if (csvFile.length() >= maxFileSize || !LocalDate.now().equals(fileOpenedOn)) {
+                    rotate();
+                }
+            }
+            if (csvPrinter == null) {
+                openFile();
+            }
+        }
+
+        private void openFile() throws IOException {
+            final boolean fileExists = csvFile.exists() && csvFile.length() > 0;
+            csvPrinter = new CSVPrinter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csvFile, true), StandardCharsets.UTF_8), 1 << 16), CSVFormat.RFC4180.withCommentMarker('#'));
+            fileOpenedOn = LocalDate.now();
+
+            if (!fileExists) {
+                LOG.info("Created new CSV file: " + csvFile.getAbsolutePath());
+                csvPrinter.printComment("Generated by AIS Abnormal Behaviour Analyzer");
+                csvPrinter.printComment("File created: " + LocalDateTime.now().format(TIMESTAMP_FORMAT));
+                csvPrinter.printRecord("TIMESTAMP (GMT)", "MMSI1", "NAME1", "TP1", "LOA1", "BM1", "COG1", "HDG1", "SOG1", "LAT1", "LON1", "MMSI2", "NAME2", "TP2", "LOA2", "BM2", "COG2", "HDG2", "SOG2", "LAT2", "LON2", "BRG", "DST");
+            }
+        }
+
+        private void rotate() throws IOException {
+            flush();
+            close();
+
+            final String name = csvFile.getName();
+            final int dot = name.lastIndexOf('.');
+            final String base = dot > 0 ? name.substring(0, dot) : name;
+            final String extension = dot > 0 ? name.substring(dot) : "";
+            final String suffix = LocalDateTime.now().format(ROTATION_SUFFIX_FORMAT);
+
+            File rotatedFile = new File(csvFile.getParentFile(), base + "-" + suffix + extension);
+            for (int i = 1; rotatedFile.exists(); i++) {
+                rotatedFile = new File(csvFile.getParentFile(), base + "-" + suffix + "-" + i + extension);
+            }
+            if (csvFile.renameTo(rotatedFile)) {
+                LOG.info("Rotated CSV file to " + rotatedFile.getAbsolutePath());
+            } else {
+                LOG.warn("Could not rotate CSV file " + csvFile.getAbsolutePath() + "; continuing writing to it.");
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (csvPrinter != null) {
+                csvPrinter.flush();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (csvPrinter != null) {
+                try {
+                    csvPrinter.close();
+                } catch (IOException e) {
+                    LOG.warn(e.getMessage(), e);
+                }
+                csvPrinter = null;
+            }
+        }
+    }
+
+    private void writeRecords(FreeFlowAnalysis.FreeFlowData freeFlowData) throws IOException {
+        final Track t0 = freeFlowData.getTrackSnapshot();
+        final Position p0 = freeFlowData.getTrackCenterPosition();
+        final String timestamp = t0.getTimeOfLastPositionReportTyped().format(TIMESTAMP_FORMAT);
+
+        for (FreeFlowAnalysis.FreeFlowData.TrackInsideEllipse track : freeFlowData.getTracksInsideEllipse()) {
+            final Track t1 = track.getTrackSnapshot();
+            final Position p1 = track.getTrackCenterPosition();
+
+            List<String> csvRecord = new ArrayList<>(23);
+            csvRecord.add(timestamp);
+            addVessel(csvRecord, t0, p0);
+            addVessel(csvRecord, t1, p1);
+            csvRecord.add(Integer.toString((int) p0.rhumbLineBearingTo(p1)));
+            csvRecord.add(Integer.toString((int) p0.distanceTo(p1, CoordinateSystem.CARTESIAN)));
+
+            csvPrinter.printRecord(csvRecord);
+        }
+    }
+
+    private static void addVessel(List<String> csvRecord, Track t, Position p) {
+        csvRecord.add(String.valueOf(t.getMmsi()));
+        csvRecord.add(trimAisString(t.getShipName()).replace(',', ' '));
+        csvRecord.add(String.valueOf(t.getShipType()));
+        csvRecord.add(String.valueOf(t.getVesselLength()));
+        csvRecord.add(String.valueOf(t.getVesselBeam()));
+        csvRecord.add(formatRounded(t.getCourseOverGround()));
+        csvRecord.add(formatRounded(t.getTrueHeading()));
+        csvRecord.add(formatRounded(t.getSpeedOverGround()));
+        csvRecord.add(formatFixed4(p.getLatitude()));
+        csvRecord.add(formatFixed4(p.getLongitude()));
+    }
+
+    /** @return the value rounded to an integer - as String.format("%.0f", value). */
+    static String formatRounded(Float value) {
+        return value == null ? "null" : Long.toString(Math.round((double) value));
+    }
+
+    /** @return the value with 4 decimals - as String.format("%.4f", value). */
+    static String formatFixed4(double value) {
+        final long scaled = Math.round(Math.abs(value) * 10000.0);
+        final long fraction = scaled % 10000;
+        final StringBuilder sb = new StringBuilder(12);
+        if (value < 0) {
+            sb.append('-');
+        }
+        sb.append(scaled / 10000).append('.');
+        if (fraction < 1000) {
+            sb.append('0');
+        }
+        if (fraction < 100) {
+            sb.append('0');
+        }
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction).toString();
+    }
+
+}
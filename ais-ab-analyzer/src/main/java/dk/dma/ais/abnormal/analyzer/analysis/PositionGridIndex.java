@@ -0,0 +1,153 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.analyzer.analysis;
+
+import dk.dma.enav.model.geometry.Position;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.cos;
+import static java.lang.Math.floor;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.toRadians;
+
+/**
+ * A uniform grid of latitude/longitude cells holding items by position - used by periodic analyses to find the items
+ * near a given position without comparing with all items.
+ *
+ * Cells are approx. cellSizeMeters high and at least cellSizeMeters wide at the highest latitude of the indexed
+ * items. A query returns the items of all cells which may hold items within the given radius; it is up to the caller
+ * to compute exact distances of these candidates. Positions across the 180th meridian are not supported.
+ *
+ * The index is built once and not updated, so it reflects the positions of the items when it was built. These
+ * positions are available from positionOf.
+ *
+ * @param <T> the type of indexed items.
+ */
+@NotThreadSafe
+final class PositionGridIndex<T> {
+
+    /**
+     * Approx. meters per degree of latitude. A bit less than the real value, so that the cells queried always
+     * cover the given radius.
+     */
+    private static final double METERS_PER_DEGREE = 110000.0;
+
+    private final double cellSizeLatitude;
+    private final double cellSizeLongitude;
+    private final Map<Long, List<T>> cells = new HashMap<>();
+    private final Map<T, Position> positions = new IdentityHashMap<>();
+    private int size;
+
+    private PositionGridIndex(double cellSizeMeters, double maxAbsLatitude) {
+        this.cellSizeLatitude = cellSizeMeters / METERS_PER_DEGREE;
+        this.cellSizeLongitude = cellSizeMeters / (METERS_PER_DEGREE * cos(toRadians(min(maxAbsLatitude, 89.0))));
+    }
+
+    /**
+     * Build an index of the given items. Items with no position are not indexed.
+     *
+     * @param items the items to index.
+     * @param positionOf function returning the position of an item, or null.
+     * @param cellSizeMeters the approx. size of each grid cell; typically the radius of the queries to come.
+     */
+    static <T> PositionGridIndex<T> create(Collection<T> items, Function<T, Position> positionOf, double cellSizeMeters) {
+        final List<T> indexedItems = new ArrayList<>(items.size());
+        final List<Position> positions = new ArrayList<>(items.size());
+        double maxAbsLatitude = 0.0;
+        for (T item : items) {
+            Position position = positionOf.apply(item);
+            if (position != null) {
+                indexedItems.add(item);
+                positions.add(position);
+                maxAbsLatitude = max(maxAbsLatitude, abs(position.getLatitude()));
+            }
+        }
+
+        PositionGridIndex<T> index = new PositionGridIndex<>(cellSizeMeters, maxAbsLatitude);
+        for (int i = 0; i < indexedItems.size(); i++) {
+            index.add(positions.get(i), indexedItems.get(i));
+        }
+        return index;
+    }
+
+    private void add(Position position, T item) {
+        cells.computeIfAbsent(cellKey(latitudeIndex(position.getLatitude()), longitudeIndex(position.getLongitude())), k -> new ArrayList<>(4)).add(item);
+        positions.put(item, position);
+        size++;
+    }
+
+    /**
+     * @return the position of the item when it was indexed; or null if the item is not indexed.
+     */
+    Position positionOf(T item) {
+        return positions.get(item);
+    }
+
+    /**
+     * @return the items in the cells which cover all positions within radiusMeters from the given position. The
+     * result may contain items further away.
+     */
+    List<T> findCandidates(Position position, double radiusMeters) {
+        final double latitude = position.getLatitude();
+        final double longitude = position.getLongitude();
+        final double deltaLatitude = radiusMeters / METERS_PER_DEGREE;
+        final double deltaLongitude = radiusMeters / (METERS_PER_DEGREE * cos(toRadians(min(abs(latitude) + deltaLatitude, 89.0))));
+
+        final int minLatitudeIndex = latitudeIndex(latitude - deltaLatitude);
+        final int maxLatitudeIndex = latitudeIndex(latitude + deltaLatitude);
+        final int minLongitudeIndex = longitudeIndex(longitude - deltaLongitude);
+        final int maxLongitudeIndex = longitudeIndex(longitude + deltaLongitude);
+
+        final List<T> candidates = new ArrayList<>();
+        for (int i = minLatitudeIndex; i <= maxLatitudeIndex; i++) {
+            for (int j = minLongitudeIndex; j <= maxLongitudeIndex; j++) {
+                List<T> cell = cells.get(cellKey(i, j));
+                if (cell != null) {
+                    candidates.addAll(cell);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /** @return the no. of indexed items. */
+    int size() {
+        return size;
+    }
+
+    private int latitudeIndex(double latitude) {
+        return (int) floor(latitude / cellSizeLatitude);
+    }
+
+    private int longitudeIndex(double longitude) {
+        return (int) floor(longitude / cellSizeLongitude);
+    }
+
+    private static long cellKey(int latitudeIndex, int longitudeIndex) {
+        return ((long) latitudeIndex << 32) | (longitudeIndex & 0xffffffffL);
+    }
+
+}
@@ -25,6 +25,7 @@ import dk.dma.ais.abnormal.analyzer.behaviour.EventCertainty;
 import dk.dma.ais.abnormal.analyzer.behaviour.events.AbnormalEventLower;
 import dk.dma.ais.abnormal.analyzer.behaviour.events.AbnormalEventMaintain;
 import dk.dma.ais.abnormal.analyzer.behaviour.events.AbnormalEventRaise;
+import dk.dma.ais.abnormal.application.statistics.Counter;
 import dk.dma.ais.abnormal.event.db.EventRepository;
 import dk.dma.ais.abnormal.event.db.domain.Event;
 import dk.dma.ais.abnormal.event.db.domain.ShipSizeOrTypeEvent;
@@ -69,7 +70,14 @@ import static dk.dma.ais.abnormal.util.TrackPredicates.isUnknownTypeOrSize;
 public class ShipTypeAndSizeAnalysis extends StatisticBasedAnalysis {
     private static final Logger LOG = LoggerFactory.getLogger(ShipTypeAndSizeAnalysis.class);
 
-    private final AppStatisticsService statisticsService;
+    private final Counter eventsReceived;
+    private final Counter unknownMmsi;
+    private final Counter unknownShipType;
+    private final Counter unknownShipLength;
+    private final Counter shipLengthBelowMin;
+    private final Counter analysesPerformed;
+    private final Counter analysisTime;
+    private final Counter eventsRaised;
 
     private final int TOTAL_SHIP_COUNT_THRESHOLD;
     private final float PD;
@@ -78,13 +86,22 @@ public class ShipTypeAndSizeAnalysis extends StatisticBasedAnalysis {
     @Inject
     public ShipTypeAndSizeAnalysis(Configuration configuration, AppStatisticsService statisticsService, StatisticDataRepository statisticsRepository, EventEmittingTracker trackingService, EventRepository eventRepository, BehaviourManager behaviourManager) {
         super(eventRepository, statisticsRepository, trackingService, behaviourManager);
-        this.statisticsService = statisticsService;
 
         setTrackPredictionTimeMax(configuration.getInteger(CONFKEY_ANALYSIS_TYPESIZE_PREDICTIONTIME_MAX, -1));
 
         TOTAL_SHIP_COUNT_THRESHOLD = configuration.getInt(CONFKEY_ANALYSIS_TYPESIZE_CELL_SHIPCOUNT_MIN, 1000);
         PD = configuration.getFloat(CONFKEY_ANALYSIS_TYPESIZE_PD, 0.001f);
         SHIP_LENGTH_MIN = configuration.getInt(CONFKEY_ANALYSIS_TYPESIZE_SHIPLENGTH_MIN, 50);
+
+        eventsReceived = statisticsService.getAnalysisCounter(getAnalysisName(), "Events received");
+        unknownMmsi = statisticsService.getAnalysisCounter(getAnalysisName(), "Unknown mmsi");
+        unknownShipType = statisticsService.getAnalysisCounter(getAnalysisName(), "Unknown ship type");
+        unknownShipLength = statisticsService.getAnalysisCounter(getAnalysisName(), "Unknown ship length");
+        shipLengthBelowMin = statisticsService.getAnalysisCounter(getAnalysisName(), "LOA < " + SHIP_LENGTH_MIN);
+        analysesPerformed = statisticsService.getAnalysisCounter(getAnalysisName(), "Analyses performed");
+        analysisTime = statisticsService.getAnalysisCounter(getAnalysisName(), "Analysis time (usecs)");
+        eventsRaised = statisticsService.getAnalysisCounter(getAnalysisName(), "Events raised");
+
         LOG.info(getAnalysisName() + " created (" + this + ").");
     }
 
@@ -100,7 +117,7 @@ public class ShipTypeAndSizeAnalysis extends StatisticBasedAnalysis {
     @AllowConcurrentEvents
     @Subscribe
     public void onCellIdChanged(CellChangedEvent trackEvent) {
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Events received");
+        eventsReceived.increment();
 
         Track track = trackEvent.getTrack();
 
@@ -119,22 +136,22 @@ public class ShipTypeAndSizeAnalysis extends StatisticBasedAnalysis {
         Integer shipLength = track.getVesselLength();
 
         if (cellId == null) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "Unknown mmsi");
+            unknownMmsi.increment();
             return;
         }
 
         if (shipType == null) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "Unknown ship type");
+            unknownShipType.increment();
             return;
         }
 
         if (shipLength == null) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "Unknown ship length");
+            unknownShipLength.increment();
             return;
         }
 
         if (shipLength < SHIP_LENGTH_MIN) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "LOA < " + SHIP_LENGTH_MIN);
+            shipLengthBelowMin.increment();
             return;
         }
 
@@ -188,6 +205,7 @@ public class ShipTypeAndSizeAnalysis extends StatisticBasedAnalysis {
      * @return true if the presence of size/type in this cell is abnormal. False otherwise.
      */
     boolean isAbnormalCellForShipTypeAndSize(Long cellId, int shipTypeKey, int shipSizeKey) {
+        final long systemTimeNanosBeforeAnalysis = System.nanoTime();
         float pd = 1.0f;
 
         StatisticData shipSizeAndTypeData = getStatisticDataRepository().getStatisticData("ShipTypeAndSizeStatistic", cellId);
@@ -215,7 +233,8 @@ public class ShipTypeAndSizeAnalysis extends StatisticBasedAnalysis {
             LOG.debug("Normal or inconclusive event detected.");
         }
 
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Analyses performed");
+        analysesPerformed.increment();
+        analysisTime.add((System.nanoTime() - systemTimeNanosBeforeAnalysis) / 1000);
 
         return isAbnormalCellForShipTypeAndSize;
     }
@@ -292,7 +311,7 @@ public class ShipTypeAndSizeAnalysis extends StatisticBasedAnalysis {
 
         addPreviousTrackingPoints(event, track);
 
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Events raised");
+        eventsRaised.increment();
 
         return event;
     }
@@ -25,6 +25,7 @@ import dk.dma.ais.abnormal.analyzer.behaviour.EventCertainty;
 import dk.dma.ais.abnormal.analyzer.behaviour.events.AbnormalEventLower;
 import dk.dma.ais.abnormal.analyzer.behaviour.events.AbnormalEventMaintain;
 import dk.dma.ais.abnormal.analyzer.behaviour.events.AbnormalEventRaise;
+import dk.dma.ais.abnormal.application.statistics.Counter;
 import dk.dma.ais.abnormal.event.db.EventRepository;
 import dk.dma.ais.abnormal.event.db.domain.Event;
 import dk.dma.ais.abnormal.event.db.domain.SpeedOverGroundEvent;
@@ -69,7 +70,15 @@ import static dk.dma.ais.abnormal.util.TrackPredicates.isUnknownTypeOrSize;
 public class SpeedOverGroundAnalysis extends StatisticBasedAnalysis {
     private static final Logger LOG = LoggerFactory.getLogger(SpeedOverGroundAnalysis.class);
 
-    private final AppStatisticsService statisticsService;
+    private final Counter eventsReceived;
+    private final Counter unknownMmsi;
+    private final Counter unknownShipType;
+    private final Counter unknownShipLength;
+    private final Counter unknownSpeedOverGround;
+    private final Counter shipLengthBelowMin;
+    private final Counter analysesPerformed;
+    private final Counter analysisTime;
+    private final Counter eventsRaised;
 
     private final int TOTAL_SHIP_COUNT_THRESHOLD;
     private final float PD;
@@ -79,7 +88,6 @@ public class SpeedOverGroundAnalysis extends StatisticBasedAnalysis {
     @Inject
     public SpeedOverGroundAnalysis(Configuration configuration, AppStatisticsService statisticsService, StatisticDataRepository statisticsRepository, EventEmittingTracker trackingService, EventRepository eventRepository, BehaviourManager behaviourManager) {
         super(eventRepository, statisticsRepository, trackingService, behaviourManager);
-        this.statisticsService = statisticsService;
 
         setTrackPredictionTimeMax(configuration.getInteger(CONFKEY_ANALYSIS_SOG_PREDICTIONTIME_MAX, -1));
 
@@ -88,6 +96,16 @@ public class SpeedOverGroundAnalysis extends StatisticBasedAnalysis {
         SHIP_LENGTH_MIN = configuration.getInt(CONFKEY_ANALYSIS_SOG_SHIPLENGTH_MIN, 50);
         USE_AGGREGATED_STATS = configuration.getBoolean(CONFKEY_ANALYSIS_SOG_USE_AGGREGATED_STATS, false);
 
+        eventsReceived = statisticsService.getAnalysisCounter(getAnalysisName(), "Events received");
+        unknownMmsi = statisticsService.getAnalysisCounter(getAnalysisName(), "Unknown mmsi");
+        unknownShipType = statisticsService.getAnalysisCounter(getAnalysisName(), "Unknown ship type");
+        unknownShipLength = statisticsService.getAnalysisCounter(getAnalysisName(), "Unknown ship length");
+        unknownSpeedOverGround = statisticsService.getAnalysisCounter(getAnalysisName(), "Unknown course over ground");
+        shipLengthBelowMin = statisticsService.getAnalysisCounter(getAnalysisName(), "LOA < " + SHIP_LENGTH_MIN);
+        analysesPerformed = statisticsService.getAnalysisCounter(getAnalysisName(), "Analyses performed");
+        analysisTime = statisticsService.getAnalysisCounter(getAnalysisName(), "Analysis time (usecs)");
+        eventsRaised = statisticsService.getAnalysisCounter(getAnalysisName(), "Events raised");
+
         LOG.info(getAnalysisName() + " created (" + this + ").");
     }
 
@@ -104,7 +122,7 @@ public class SpeedOverGroundAnalysis extends StatisticBasedAnalysis {
     @AllowConcurrentEvents
     @Subscribe
     public void onCellIdChanged(CellChangedEvent trackEvent) {
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Events received");
+        eventsReceived.increment();
 
         Track track = trackEvent.getTrack();
 
@@ -124,27 +142,27 @@ public class SpeedOverGroundAnalysis extends StatisticBasedAnalysis {
         Float speedOverGround = track.getSpeedOverGround();
 
         if (cellId == null) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "Unknown mmsi");
+            unknownMmsi.increment();
             return;
         }
 
         if (shipType == null) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "Unknown ship type");
+            unknownShipType.increment();
             return;
         }
 
         if (shipLength == null) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "Unknown ship length");
+            unknownShipLength.increment();
             return;
         }
 
         if (speedOverGround == null) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "Unknown course over ground");
+            unknownSpeedOverGround.increment();
             return;
         }
 
         if (shipLength < SHIP_LENGTH_MIN) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "LOA < " + SHIP_LENGTH_MIN);
+            shipLengthBelowMin.increment();
             return;
         }
 
@@ -199,6 +217,7 @@ public class SpeedOverGroundAnalysis extends StatisticBasedAnalysis {
      * @return true if the presence of size/type with this sog in this cell is abnormal. False otherwise.
      */
     boolean isAbnormalSpeedOverGround(Long cellId, int shipTypeKey, int shipSizeKey, int speedOverGroundKey) {
+        final long systemTimeNanosBeforeAnalysis = System.nanoTime();
         float pd = 1.0f;
 
         StatisticData speedOverGroundStatisticData = getStatisticDataRepository().getStatisticData("SpeedOverGroundStatistic", cellId);
@@ -223,7 +242,8 @@ public class SpeedOverGroundAnalysis extends StatisticBasedAnalysis {
             LOG.debug("Normal or inconclusive event detected.");
         }
 
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Analyses performed");
+        analysesPerformed.increment();
+        analysisTime.add((System.nanoTime() - systemTimeNanosBeforeAnalysis) / 1000);
 
         return isAbnormalSpeedOverGround;
     }
@@ -312,7 +332,7 @@ public class SpeedOverGroundAnalysis extends StatisticBasedAnalysis {
 
         addPreviousTrackingPoints(event, track);
 
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Events raised");
+        eventsRaised.increment();
 
         return event;
     }
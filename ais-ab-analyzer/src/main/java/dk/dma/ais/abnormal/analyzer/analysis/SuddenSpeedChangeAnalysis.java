@@ -20,6 +20,8 @@ import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 import com.google.inject.Inject;
 import dk.dma.ais.abnormal.analyzer.AppStatisticsService;
+import dk.dma.ais.abnormal.application.statistics.Counter;
+import dk.dma.ais.abnormal.application.statistics.Gauge;
 import dk.dma.ais.abnormal.event.db.EventRepository;
 import dk.dma.ais.abnormal.event.db.domain.Event;
 import dk.dma.ais.abnormal.event.db.domain.SuddenSpeedChangeEvent;
@@ -81,7 +83,11 @@ import static dk.dma.commons.util.DateTimeUtil.MILLIS_TO_LOCALDATETIME_UTC;
 public class SuddenSpeedChangeAnalysis extends Analysis {
     private static final Logger LOG = LoggerFactory.getLogger(SuddenSpeedChangeAnalysis.class);
 
-    private final AppStatisticsService statisticsService;
+    private final Counter shipLengthBelowMin;
+    private final Counter analysesPerformed;
+    private final Counter analysisTime;
+    private final Gauge observationListSize;
+    private final Counter eventsRaised;
 
     /** Track must come from SOG above this value to cause sudden speed change event */
     final float SPEED_HIGH_MARK;
@@ -107,7 +113,6 @@ public class SuddenSpeedChangeAnalysis extends Analysis {
     @Inject
     public SuddenSpeedChangeAnalysis(Configuration configuration, AppStatisticsService statisticsService, EventEmittingTracker trackingService, EventRepository eventRepository) {
         super(eventRepository, trackingService, null);
-        this.statisticsService = statisticsService;
 
         setTrackPredictionTimeMax(configuration.getInteger(CONFKEY_ANALYSIS_SUDDENSPEEDCHANGE_PREDICTIONTIME_MAX, -1));
 
@@ -117,6 +122,12 @@ public class SuddenSpeedChangeAnalysis extends Analysis {
         SPEED_SUSTAIN_SECS = configuration.getInt(CONFKEY_ANALYSIS_SUDDENSPEEDCHANGE_DROP_SUSTAIN, 60);
         SHIP_LENGTH_MIN = configuration.getInt(CONFKEY_ANALYSIS_SUDDENSPEEDCHANGE_SHIPLENGTH_MIN, 50);
 
+        shipLengthBelowMin = statisticsService.getAnalysisCounter(getAnalysisName(), "LOA < " + SHIP_LENGTH_MIN);
+        analysesPerformed = statisticsService.getAnalysisCounter(getAnalysisName(), "Analyses performed");
+        analysisTime = statisticsService.getAnalysisCounter(getAnalysisName(), "Analysis time (usecs)");
+        observationListSize = statisticsService.getAnalysisGauge(getAnalysisName(), "# observation list");
+        eventsRaised = statisticsService.getAnalysisCounter(getAnalysisName(), "Events raised");
+
         LOG.info(getAnalysisName() + " created (" + this + ").");
     }
 
@@ -138,7 +149,7 @@ public class SuddenSpeedChangeAnalysis extends Analysis {
 
         Integer vesselLength = track.getVesselLength();
         if (vesselLength != null && vesselLength < SHIP_LENGTH_MIN) {
-            statisticsService.incAnalysisStatistics(getAnalysisName(), "LOA < " + SHIP_LENGTH_MIN);
+            shipLengthBelowMin.increment();
             return;
         }
 
@@ -166,15 +177,17 @@ public class SuddenSpeedChangeAnalysis extends Analysis {
 
         /* Perform analysis only for very long vessels and some other vessels: */
         if (isVeryLongVessel.test(track) || (isCargoVessel.test(track) || isTankerVessel.test(track) || isPassengerVessel.test(track))) {
+            final long systemTimeNanosBeforeAnalysis = System.nanoTime();
             performAnalysis(track);
+            analysisTime.add((System.nanoTime() - systemTimeNanosBeforeAnalysis) / 1000);
             updateApplicationStatistics();
         }
     }
 
     private void updateApplicationStatistics() {
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Analyses performed");
+        analysesPerformed.increment();
         if (statCount++ % 10000 == 0) {
-            statisticsService.setAnalysisStatistics(getAnalysisName(), "# observation list", tracksWithSuddenSpeedDecrease.size());
+            observationListSize.set(tracksWithSuddenSpeedDecrease.size());
         }
     }
 
@@ -418,7 +431,7 @@ public class SuddenSpeedChangeAnalysis extends Analysis {
 
         addPreviousTrackingPoints(event, track);
 
-        statisticsService.incAnalysisStatistics(getAnalysisName(), "Events raised");
+        eventsRaised.increment();
 
         return event;
     }
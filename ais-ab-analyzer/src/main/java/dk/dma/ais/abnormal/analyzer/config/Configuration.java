@@ -84,6 +84,9 @@ public final class Configuration {
     public static final String CONFKEY_EVENTS_PGSQL_PASSWORD = "events.pgsql.password";
     public static final String CONFKEY_EVENTS_H2_FILE = "events.h2.file";
     public static final String CONFKEY_EVENTS_CSV_FILE = "events.csv.file";
+    public static final String CONFKEY_EVENTS_CSV_MAX_FILE_SIZE = "events.csv.maxfilesize";
+    public static final String CONFKEY_EVENTS_CSV_MAX_FILE_AGE = "events.csv.maxfileage";
+    public static final String CONFKEY_EVENTS_LOG_DIR = "events.log.dir";
     public static final String CONFKEY_AIS_DATASOURCE_URL = "ais.datasource.url";
     public static final String CONFKEY_AIS_DATASOURCE_DOWNSAMPLING = "ais.datasource.downsampling";
     public static final String CONFKEY_REPORTS_ENABLED = "reports.enabled";
@@ -157,8 +160,8 @@ public final class Configuration {
             return false;
         } else {
             String t = eventsRepositoryType.toLowerCase().trim();
-            if (! ("h2".equals(t) || "pgsql".equals(t) || "csv".equals(t))) {
-                LOG.error("Illegal value: '" + t + "'. Only 'pgsql', 'h2' or 'csv' allowed for configuration key: " + CONFKEY_EVENTS_REPOSITORY_TYPE);
+            if (! ("h2".equals(t) || "pgsql".equals(t) || "csv".equals(t) || "log".equals(t))) {
+                LOG.error("Illegal value: '" + t + "'. Only 'pgsql', 'h2', 'csv' or 'log' allowed for configuration key: " + CONFKEY_EVENTS_REPOSITORY_TYPE);
                 return false;
             }
         }
@@ -180,6 +183,15 @@ public final class Configuration {
             }
         }
 
+        // Validate log
+        if ("log".equals(eventsRepositoryType.toLowerCase().trim())) {
+            String eventsLogDir = configuration.getString(CONFKEY_EVENTS_LOG_DIR);
+            if (eventsLogDir == null || isBlank(eventsLogDir)) {
+                LOG.error("Missing value for: " + CONFKEY_EVENTS_LOG_DIR);
+                return false;
+            }
+        }
+
         // Validate PGSQL
         if ("pgsql".equals(eventsRepositoryType.toLowerCase().trim())) {
             String eventsPgsqlHost = configuration.getString(CONFKEY_EVENTS_PGSQL_HOST);
@@ -15,12 +15,11 @@
  */
 package dk.dma.ais.abnormal.analyzer.reports;
 
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.Multimap;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import dk.dma.ais.abnormal.event.db.EventRepository;
 import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.EventCount;
 import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
 import dk.dma.ais.abnormal.event.db.domain.Vessel;
 import dk.dma.ais.abnormal.util.Categorizer;
@@ -34,8 +33,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 /**
  * This class is a Job which is executed to generate a "recent events" report.
@@ -43,6 +49,9 @@ import java.util.List;
  * A recent event report is a list of events raised since the previous run of this job.
  * At the first invocation, the report contains events from the previous 24 hours.
  *
+ * The number of events raised per hour is taken from the event counts of the repository; it is followed by the
+ * events which started or ended in the period, grouped by type.
+ *
  * @author Thomas Borg Salling <tbsalling@tbsalling.dk>
  */
 @NotThreadSafe
@@ -68,6 +77,7 @@ public class RecentEventsReportJob implements Job {
 
     private static final String DATE_FORMAT_STRING = "dd/MM/yyyy HH:mm";
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat(DATE_FORMAT_STRING);
+    private static final DateTimeFormatter HOUR_FORMAT = DateTimeFormatter.ofPattern(DATE_FORMAT_STRING);
 
     public RecentEventsReportJob() {
     }
@@ -86,21 +96,16 @@ public class RecentEventsReportJob implements Job {
         DateTime t1 = lastRun >= 0 ? new DateTime(lastRun) : t2.minusHours(24);
         lastRun = t2.getMillis();
 
-        Multimap<Class<? extends Event>, Event> eventsByType = getEventsByType(t1.toDate(), t2.toDate());
-        String reportBody = generateReportBody(t1.toDate(), t2.toDate(), eventsByType);
+        String reportBody = generateReportBody(t1.toDate(), t2.toDate());
         reportMailer.send("Abnormal events", reportBody);
 
         LOG.debug("RecentEventsReportJob finished");
     }
 
-    private Multimap<Class<? extends Event>, Event> getEventsByType(Date from, Date to) {
-        List<Event> events = eventRepository.findEventsByFromAndTo(from, to);
-        ArrayListMultimap<Class<? extends Event>, Event> eventsByType = ArrayListMultimap.create();
-        events.stream().forEach(event -> eventsByType.put(event.getClass(), event));
-        return eventsByType;
-    }
+    private String generateReportBody(Date date0, Date date1) {
+        List<EventCount> eventCounts = eventRepository.getEventCounts(date0, date1, EventCount.Resolution.HOUR, false);
+        SortedSet<String> eventTypes = eventCounts.stream().map(EventCount::getEventType).collect(Collectors.toCollection(TreeSet::new));
 
-    private String generateReportBody(Date date0, Date date1, Multimap<Class<? extends Event>, Event> eventsByType) {
         StringBuffer email = new StringBuffer();
 
         email.append("<html>");
@@ -109,12 +114,47 @@ public class RecentEventsReportJob implements Job {
         email.append("<br/>");
 
         email.append("<pre>");
-        eventsByType.keySet().forEach(eventType -> {
-            email.append(eventType.getSimpleName() + " (" + eventsByType.get(eventType).size() + ")\n\n");
+        appendEventCountsPerHour(email, eventCounts, eventTypes);
+        appendEvents(email, date0, date1);
+        email.append("\n");
+        email.append("</pre>");
+        email.append("</html>");
+
+        return email.toString();
+    }
+
+    /**
+     * Append a table of the number of events of each type raised per hour.
+     */
+    private static void appendEventCountsPerHour(StringBuffer email, List<EventCount> eventCounts, SortedSet<String> eventTypes) {
+        Map<LocalDateTime, Map<String, Long>> eventCountsPerHour = new TreeMap<>();
+        eventCounts.forEach(eventCount -> eventCountsPerHour.computeIfAbsent(eventCount.getPeriodStart(), hour -> new TreeMap<>()).put(eventCount.getEventType(), eventCount.getNumberOfEvents()));
+
+        email.append(String.format("%-16s", "HOUR"));
+        eventTypes.forEach(eventType -> email.append(String.format(" %24s", eventType)));
+        email.append('\n');
+        eventCountsPerHour.forEach((hour, eventCountsOfHour) -> {
+            email.append(String.format("%-16s", HOUR_FORMAT.format(hour)));
+            eventTypes.forEach(eventType -> email.append(String.format(" %24d", eventCountsOfHour.getOrDefault(eventType, 0L))));
+            email.append('\n');
+        });
+        email.append("======================================================================================================================\n");
+        email.append("\n");
+    }
+
+    /**
+     * Append the events which started or ended between date0 and date1, grouped by type.
+     */
+    private void appendEvents(StringBuffer email, Date date0, Date date1) {
+        Map<String, List<Event>> eventsByType = eventRepository.findEventsByFromAndTo(date0, date1).stream()
+            .collect(Collectors.groupingBy(event -> event.getClass().getSimpleName(), TreeMap::new, Collectors.toList()));
+
+        eventsByType.forEach((eventType, events) -> {
+            email.append(eventType + " (" + events.size() + ")\n\n");
             email.append(String.format("%-8s %-16s %-16s %-9s %-20s %-3s %-9s %-7s %-7s %-4s %-5s %-3s%n",
                 "#", "BEGIN", "END", "MMSI", "NAME", "LOA", "TYPE", "LAT", "LON", "SOG", "COG", "HDG"));
             email.append("----------------------------------------------------------------------------------------------------------------------\n");
-            eventsByType.get(eventType).forEach(event -> {
+            events.forEach(event -> {
                 Vessel vessel = event.getBehaviours().iterator().next().getVessel();
                 TrackingPoint tp = event.getBehaviours().iterator().next().getTrackingPoints().last();
                 email.append(String.format("%8d ", event.getId()));
@@ -134,11 +174,6 @@ public class RecentEventsReportJob implements Job {
             email.append("======================================================================================================================\n");
             email.append("\n");
         });
-        email.append("\n");
-        email.append("</pre>");
-        email.append("</html>");
-
-        return email.toString();
     }
 
 }
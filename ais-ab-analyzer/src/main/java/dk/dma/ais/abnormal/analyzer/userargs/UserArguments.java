@@ -38,6 +38,9 @@ public class UserArguments {
     @Parameter(names = "-config", description = "Name of configuration file to use.", required = true)
     private File configFile;
 
+    @Parameter(names = "-metricsport", description = "Serve metrics in Prometheus format on http://<host>:<port>/metrics (0 = disabled).")
+    private Integer metricsPort = 0;
+
     // --
 
     public void setHelp(boolean help) {
@@ -52,4 +55,8 @@ public class UserArguments {
         return configFile.toPath();
     }
 
+    public Integer getMetricsPort() {
+        return metricsPort;
+    }
+
 }
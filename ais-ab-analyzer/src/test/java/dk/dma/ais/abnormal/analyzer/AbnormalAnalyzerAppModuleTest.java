@@ -16,7 +16,9 @@
 
 package dk.dma.ais.abnormal.analyzer;
 
+import dk.dma.ais.abnormal.event.db.WriteBehindEventRepository;
 import dk.dma.ais.abnormal.event.db.csv.CsvEventRepository;
+import dk.dma.ais.abnormal.event.db.log.LogEventRepository;
 import dk.dma.ais.abnormal.event.db.jpa.JpaEventRepository;
 import dk.dma.ais.filter.GeoMaskFilter;
 import dk.dma.enav.model.geometry.BoundingBox;
@@ -30,11 +32,13 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_APPL_GRID_RESOLUTION_DEFAULT;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_EVENTS_CSV_FILE;
+import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_EVENTS_LOG_DIR;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_EVENTS_H2_FILE;
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_EVENTS_REPOSITORY_TYPE;
 import static org.junit.Assert.assertEquals;
@@ -67,14 +71,23 @@ public class AbnormalAnalyzerAppModuleTest {
         Files.deleteIfExists(Paths.get("events.csv"));
         configuration.addProperty(CONFKEY_EVENTS_REPOSITORY_TYPE, "csv");
         configuration.addProperty(CONFKEY_EVENTS_CSV_FILE, "events.csv");
-        assertEquals(CsvEventRepository.class, sut.provideEventRepository().getClass());
+        assertEquals(CsvEventRepository.class, ((WriteBehindEventRepository) sut.provideEventRepository()).getDelegate().getClass());
+    }
+
+    @Test
+    public void canProvideLogEventRepository() throws IOException {
+        Path logDir = Files.createTempDirectory("events-");
+        logDir.toFile().deleteOnExit();
+        configuration.addProperty(CONFKEY_EVENTS_REPOSITORY_TYPE, "log");
+        configuration.addProperty(CONFKEY_EVENTS_LOG_DIR, logDir.toString());
+        assertEquals(LogEventRepository.class, ((WriteBehindEventRepository) sut.provideEventRepository()).getDelegate().getClass());
     }
 
     @Test
     public void canProvideJpaEventRepositoryH2() throws IOException {
         configuration.addProperty(CONFKEY_EVENTS_REPOSITORY_TYPE, "h2");
         configuration.addProperty(CONFKEY_EVENTS_H2_FILE, "h2file");
-        assertEquals(JpaEventRepository.class, sut.provideEventRepository().getClass());
+        assertEquals(JpaEventRepository.class, ((WriteBehindEventRepository) sut.provideEventRepository()).getDelegate().getClass());
     }
 
     @Test(expected = NullPointerException.class) /* Tests that 'pgsql' is accepted as config value */
@@ -86,7 +99,7 @@ public class AbnormalAnalyzerAppModuleTest {
         configuration.addProperty(CONFKEY_EVENTS_PGSQL_USERNAME, "pgsql");
         configuration.addProperty(CONFKEY_EVENTS_PGSQL_PASSWORD, "pgsql");
         */
-        assertEquals(JpaEventRepository.class, sut.provideEventRepository().getClass());
+        assertEquals(JpaEventRepository.class, ((WriteBehindEventRepository) sut.provideEventRepository()).getDelegate().getClass());
     }
 
     @Test
@@ -16,6 +16,7 @@ import org.jmock.Expectations;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.junit.Test;
 
+import java.util.Optional;
 import java.util.Set;
 
 import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_ANALYSIS_CLOSEENCOUNTER_ENABLED;
@@ -76,16 +77,17 @@ public class PacketHandlerImplTest {
         EventEmittingTracker trackingServiceMock = context.mock(EventEmittingTracker.class);
 
         SafetyZoneService safetyZoneService = new SafetyZoneService(configuration);
+        AppStatisticsService statisticsService = new AppStatisticsServiceImpl();
 
         context.checking(new Expectations() {{
             ignoring(trackingServiceMock);
-            oneOf(injectorMock).getInstance(with(CourseOverGroundAnalysis.class)); will(returnValue(new CourseOverGroundAnalysis(configuration, null, null, trackingServiceMock, null, null)));
-            oneOf(injectorMock).getInstance(with(SpeedOverGroundAnalysis.class)); will(returnValue(new SpeedOverGroundAnalysis(configuration, null, null, trackingServiceMock, null, null)));
-            oneOf(injectorMock).getInstance(with(ShipTypeAndSizeAnalysis.class)); will(returnValue(new ShipTypeAndSizeAnalysis(configuration, null, null, trackingServiceMock, null, null)));
-            oneOf(injectorMock).getInstance(with(DriftAnalysis.class)); will(returnValue(new DriftAnalysis(configuration, null, trackingServiceMock, null)));
-            oneOf(injectorMock).getInstance(with(SuddenSpeedChangeAnalysis.class)); will(returnValue(new SuddenSpeedChangeAnalysis(configuration, null, trackingServiceMock, null)));
-            oneOf(injectorMock).getInstance(with(CloseEncounterAnalysis.class)); will(returnValue(new CloseEncounterAnalysis(configuration, null, trackingServiceMock, null, safetyZoneService)));
-            oneOf(injectorMock).getInstance(with(FreeFlowAnalysis.class)); will(returnValue(new FreeFlowAnalysis(configuration, null, trackingServiceMock, null)));
+            oneOf(injectorMock).getInstance(with(CourseOverGroundAnalysis.class)); will(returnValue(new CourseOverGroundAnalysis(configuration, statisticsService, null, trackingServiceMock, null, null)));
+            oneOf(injectorMock).getInstance(with(SpeedOverGroundAnalysis.class)); will(returnValue(new SpeedOverGroundAnalysis(configuration, statisticsService, null, trackingServiceMock, null, null)));
+            oneOf(injectorMock).getInstance(with(ShipTypeAndSizeAnalysis.class)); will(returnValue(new ShipTypeAndSizeAnalysis(configuration, statisticsService, null, trackingServiceMock, null, null)));
+            oneOf(injectorMock).getInstance(with(DriftAnalysis.class)); will(returnValue(new DriftAnalysis(configuration, statisticsService, trackingServiceMock, null)));
+            oneOf(injectorMock).getInstance(with(SuddenSpeedChangeAnalysis.class)); will(returnValue(new SuddenSpeedChangeAnalysis(configuration, statisticsService, trackingServiceMock, null)));
+            oneOf(injectorMock).getInstance(with(CloseEncounterAnalysis.class)); will(returnValue(new CloseEncounterAnalysis(configuration, statisticsService, trackingServiceMock, null, safetyZoneService)));
+            oneOf(injectorMock).getInstance(with(FreeFlowAnalysis.class)); will(returnValue(new FreeFlowAnalysis(configuration, statisticsService, trackingServiceMock, null, Optional.empty())));
         }});
 
         PacketHandlerImpl sut = new PacketHandlerImpl(configuration, injectorMock, null, null, null, null);
@@ -120,11 +122,12 @@ public class PacketHandlerImplTest {
         EventEmittingTracker trackingServiceMock = context.mock(EventEmittingTracker.class);
 
         SafetyZoneService safetyZoneService = new SafetyZoneService(configuration);
+        AppStatisticsService statisticsService = new AppStatisticsServiceImpl();
 
         context.checking(new Expectations() {{
             ignoring(trackingServiceMock);
-            oneOf(injectorMock).getInstance(with(SuddenSpeedChangeAnalysis.class)); will(returnValue(new SuddenSpeedChangeAnalysis(configuration, null, trackingServiceMock, null)));
-            oneOf(injectorMock).getInstance(with(CloseEncounterAnalysis.class)); will(returnValue(new CloseEncounterAnalysis(configuration, null, trackingServiceMock, null, safetyZoneService)));
+            oneOf(injectorMock).getInstance(with(SuddenSpeedChangeAnalysis.class)); will(returnValue(new SuddenSpeedChangeAnalysis(configuration, statisticsService, trackingServiceMock, null)));
+            oneOf(injectorMock).getInstance(with(CloseEncounterAnalysis.class)); will(returnValue(new CloseEncounterAnalysis(configuration, statisticsService, trackingServiceMock, null, safetyZoneService)));
         }});
 
         PacketHandlerImpl sut = new PacketHandlerImpl(configuration, injectorMock, null, null, null, null);
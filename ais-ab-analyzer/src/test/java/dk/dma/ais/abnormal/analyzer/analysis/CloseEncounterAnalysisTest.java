@@ -18,6 +18,7 @@ package dk.dma.ais.abnormal.analyzer.analysis;
 import dk.dma.ais.abnormal.analyzer.AppStatisticsService;
 import dk.dma.ais.abnormal.analyzer.behaviour.EventCertainty;
 import dk.dma.ais.abnormal.analyzer.services.SafetyZoneService;
+import dk.dma.ais.abnormal.application.statistics.Counter;
 import dk.dma.ais.abnormal.event.db.EventRepository;
 import dk.dma.ais.abnormal.event.db.domain.Behaviour;
 import dk.dma.ais.abnormal.event.db.domain.CloseEncounterEvent;
@@ -83,6 +84,9 @@ public class CloseEncounterAnalysisTest {
         context = new JUnit4Mockery();
         trackingService = context.mock(EventEmittingTracker.class);
         statisticsService = context.mock(AppStatisticsService.class);
+        context.checking(new Expectations() {{
+            allowing(statisticsService).getAnalysisCounter(with(any(String.class)), with(any(String.class))); will(returnValue(new Counter()));
+        }});
         eventRepository = context.mock(EventRepository.class);
         safetyZoneService = new SafetyZoneService(configuration);
         analysis = new CloseEncounterAnalysis(new PropertiesConfiguration(), statisticsService, trackingService, eventRepository, safetyZoneService);
@@ -156,6 +160,20 @@ public class CloseEncounterAnalysisTest {
         assertTrue(nearByTracks.contains(distantNearbyTrack));
     }
 
+    @Test
+    public void testFindNearByTracksMeasuresDistanceBetweenIndexedPositions() throws Exception {
+        PositionGridIndex<Track> trackIndex = CloseEncounterAnalysis.indexTracks(tracks);
+
+        // Predicted 60 secs ahead at 10 knots east; now beyond maxDistanceDeviationMeters from track
+        distantNearbyTrack.predict(distantNearbyTrack.getTimeOfLastPositionReport() + 60000);
+        assertTrue(track.getPosition().distanceTo(distantNearbyTrack.getPosition(), CoordinateSystem.CARTESIAN) > maxDistanceDeviationMeters);
+
+        Set<Track> nearByTracks = analysis.findNearByTracks(trackIndex, track, maxTimestampDeviationMillis, maxDistanceDeviationMeters);
+
+        assertEquals(3, nearByTracks.size());
+        assertTrue(nearByTracks.contains(distantNearbyTrack));
+    }
+
     @Test
     public void testIsTrackPairAnalyzed() throws Exception {
         analysis.clearTrackPairsAnalyzed();
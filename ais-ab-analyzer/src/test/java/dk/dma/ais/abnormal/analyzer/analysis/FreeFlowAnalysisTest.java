@@ -15,10 +15,31 @@
  */
 package dk.dma.ais.abnormal.analyzer.analysis;
 
+import dk.dma.ais.abnormal.analyzer.AppStatisticsService;
+import dk.dma.ais.abnormal.application.statistics.Counter;
+import dk.dma.ais.abnormal.event.db.EventRepository;
+import dk.dma.ais.tracker.eventEmittingTracker.EventEmittingTracker;
+import dk.dma.ais.tracker.eventEmittingTracker.Track;
 import dk.dma.enav.model.geometry.Position;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnit4Mockery;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_ANALYSIS_FREEFLOW_BBOX;
+import static dk.dma.enav.safety.SafetyZones.createEllipse;
+import static dk.dma.enav.util.compass.CompassUtils.absoluteDirectionalDifference;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class FreeFlowAnalysisTest {
 
@@ -58,4 +79,46 @@ public class FreeFlowAnalysisTest {
         assertEquals(56.000000f, p.getLatitude(), 1e-6);
         assertEquals(11.999919f, p.getLongitude(), 1e-6);
     }
+
+    @Test
+    public void testFindVesselsInsideEllipseFindsSameVesselsAsFullSearch() {
+        JUnit4Mockery context = new JUnit4Mockery();
+        final AppStatisticsService statisticsService = context.mock(AppStatisticsService.class);
+        context.checking(new Expectations() {{
+            allowing(statisticsService).getAnalysisCounter(with(any(String.class)), with(any(String.class))); will(returnValue(new Counter()));
+        }});
+        PropertiesConfiguration configuration = new PropertiesConfiguration();
+        configuration.setProperty(CONFKEY_ANALYSIS_FREEFLOW_BBOX, Arrays.asList(56.0, 11.5, 54.5, 10.5));
+        FreeFlowAnalysis analysis = new FreeFlowAnalysis(configuration, statisticsService, context.mock(EventEmittingTracker.class), context.mock(EventRepository.class), Optional.empty());
+
+        Random random = new Random(42);
+        long timestamp = System.currentTimeMillis();
+        List<FreeFlowAnalysis.VesselCentre> vessels = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            float cog = random.nextBoolean() ? random.nextInt(20) : 180 + random.nextInt(20);
+            int loa = 150 + random.nextInt(150);
+            Position position = Position.create(55.0 + random.nextDouble() * 0.2, 10.8 + random.nextDouble() * 0.2);
+            Track track = new Track(219000000 + i);
+            track.update(timestamp, position, cog, 12.0f, cog);
+            vessels.add(new FreeFlowAnalysis.VesselCentre(track, position, createEllipse(position, position, cog, loa, loa / 6, loa / 2, loa / 12, 8, 8, 1)));
+        }
+
+        PositionGridIndex<FreeFlowAnalysis.VesselCentre> index = PositionGridIndex.create(vessels, v -> v.centre, 2000);
+
+        int pairs = 0;
+        for (FreeFlowAnalysis.VesselCentre v0 : vessels) {
+            Set<FreeFlowAnalysis.VesselCentre> expected = vessels.stream()
+                .filter(v -> v.track.getMmsi() != v0.track.getMmsi())
+                .filter(v -> absoluteDirectionalDifference(v0.track.getCourseOverGround(), v.track.getCourseOverGround()) < 15f)
+                .filter(v -> v0.ellipse.contains(v.centre))
+                .collect(Collectors.toSet());
+
+            List<FreeFlowAnalysis.VesselCentre> actual = analysis.findVesselsInsideEllipse(index, v0);
+
+            assertEquals(expected, new HashSet<>(actual));
+            pairs += actual.size();
+        }
+        assertTrue(pairs > 0);
+    }
+
 }
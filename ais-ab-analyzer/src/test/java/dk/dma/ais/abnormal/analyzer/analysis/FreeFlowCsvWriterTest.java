@@ -0,0 +1,114 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.analyzer.analysis;
+
+import dk.dma.ais.abnormal.application.statistics.Counter;
+import dk.dma.ais.tracker.eventEmittingTracker.Track;
+import dk.dma.enav.model.geometry.Position;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FreeFlowCsvWriterTest {
+
+    @Test
+    public void testFormattingIsSameAsStringFormat() {
+        for (double value : new double[] {0.0, 55.12345, 55.12344999, 11.00005, -3.14159, -0.00004, 12.99996, 179.9999}) {
+            assertEquals(String.format(Locale.ENGLISH, "%.4f", value), FreeFlowCsvWriter.formatFixed4(value));
+        }
+        for (Float value : new Float[] {0.0f, 0.4f, 0.5f, 12.6f, 359.5f}) {
+            assertEquals(String.format(Locale.ENGLISH, "%.0f", value), FreeFlowCsvWriter.formatRounded(value));
+        }
+        assertEquals("null", FreeFlowCsvWriter.formatRounded(null));
+    }
+
+    @Test
+    public void testAllRecordsAreWrittenWhenClosed() throws Exception {
+        File csvFile = newCsvFile();
+        Counter dropped = new Counter();
+
+        FreeFlowCsvWriter writer = new FreeFlowCsvWriter(csvFile.getAbsolutePath(), dropped);
+        for (int i = 0; i < 500; i++) {
+            assertTrue(writer.write(freeFlowData(219000000 + i, 2)));
+        }
+        writer.close();
+
+        List<String> lines = Files.readAllLines(csvFile.toPath());
+        assertEquals(2 + 1 + 500 * 2, lines.size());
+        assertTrue(lines.get(0).startsWith("# Generated by"));
+        assertTrue(lines.get(2).startsWith("TIMESTAMP (GMT),MMSI1,NAME1"));
+        assertEquals(23, lines.get(3).split(",").length);
+        assertTrue(lines.get(3).contains(",219000000,"));
+        assertEquals(0, dropped.getValue());
+        assertTrue(!writer.write(freeFlowData(1, 1)));
+        assertEquals(1, dropped.getValue());
+    }
+
+    @Test
+    public void testFileIsRotatedWhenItExceedsMaxSize() throws Exception {
+        File csvFile = newCsvFile();
+        FreeFlowCsvWriter writer = new FreeFlowCsvWriter(csvFile.getAbsolutePath(), new Counter(), 100, 1000);
+        for (int i = 0; i < 50; i++) {
+            writer.write(freeFlowData(219000000 + i, 1));
+            writer.flush();
+        }
+        writer.close();
+
+        String base = csvFile.getName().substring(0, csvFile.getName().length() - ".csv".length());
+        File[] files = csvFile.getParentFile().listFiles((dir, name) -> name.startsWith(base));
+        assertTrue(files.length > 1);
+
+        int records = 0;
+        for (File file : files) {
+            List<String> lines = Files.readAllLines(file.toPath());
+            assertTrue(lines.get(2).startsWith("TIMESTAMP (GMT)"));
+            records += lines.size() - 3;
+            file.delete();
+        }
+        assertEquals(50, records);
+    }
+
+    private static File newCsvFile() throws Exception {
+        File csvFile = File.createTempFile("freeflow-", ".csv");
+        csvFile.delete();
+        csvFile.deleteOnExit();
+        return csvFile;
+    }
+
+    private static FreeFlowAnalysis.FreeFlowData freeFlowData(int mmsi, int tracksInsideEllipse) {
+        long timestamp = System.currentTimeMillis();
+        Position position = Position.create(55.3, 11.0);
+        Track track = new Track(mmsi);
+        track.update(timestamp, position, 10.0f, 12.0f, 10.0f);
+
+        List<FreeFlowAnalysis.FreeFlowData.TrackInsideEllipse> tracks = new ArrayList<>();
+        for (int i = 0; i < tracksInsideEllipse; i++) {
+            Track other = new Track(mmsi + 100000 + i);
+            Position otherPosition = Position.create(55.301 + i * 0.001, 11.0);
+            other.update(timestamp, otherPosition, 12.0f, 11.0f, 12.0f);
+            tracks.add(new FreeFlowAnalysis.FreeFlowData.TrackInsideEllipse(other, otherPosition));
+        }
+        return new FreeFlowAnalysis.FreeFlowData(track, position, tracks);
+    }
+
+}
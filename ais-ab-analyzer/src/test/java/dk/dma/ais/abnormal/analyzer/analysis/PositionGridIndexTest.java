@@ -0,0 +1,75 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.analyzer.analysis;
+
+import dk.dma.enav.model.geometry.CoordinateSystem;
+import dk.dma.enav.model.geometry.Position;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PositionGridIndexTest {
+
+    @Test
+    public void testCandidatesIncludeAllPositionsWithinRadius() {
+        Random random = new Random(42);
+        List<Position> positions = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            positions.add(Position.create(54.5 + random.nextDouble() * 3.0, 8.0 + random.nextDouble() * 7.0));
+        }
+        PositionGridIndex<Position> index = PositionGridIndex.create(positions, Function.identity(), 1852);
+        assertEquals(5000, index.size());
+
+        for (int i = 0; i < 500; i++) {
+            Position position = Position.create(54.5 + random.nextDouble() * 3.0, 8.0 + random.nextDouble() * 7.0);
+            Set<Position> candidates = new HashSet<>(index.findCandidates(position, 10000));
+
+            long within = 0;
+            for (Position other : positions) {
+                if (position.distanceTo(other, CoordinateSystem.CARTESIAN) < 10000) {
+                    assertTrue(candidates.contains(other));
+                    within++;
+                }
+            }
+            assertTrue(candidates.size() >= within);
+            assertTrue(candidates.size() < positions.size() / 10);
+        }
+    }
+
+    @Test
+    public void testItemsWithoutPositionAreNotIndexed() {
+        List<String> items = new ArrayList<>();
+        items.add("a");
+        items.add("b");
+        PositionGridIndex<String> index = PositionGridIndex.create(items, s -> "a".equals(s) ? Position.create(56.0, 12.0) : null, 1852);
+
+        assertEquals(1, index.size());
+        assertEquals(Position.create(56.0, 12.0), index.positionOf("a"));
+        assertNull(index.positionOf("b"));
+        assertEquals(1, index.findCandidates(Position.create(56.01, 12.0), 1852).size());
+        assertTrue(index.findCandidates(Position.create(56.1, 12.0), 1852).isEmpty());
+    }
+
+}
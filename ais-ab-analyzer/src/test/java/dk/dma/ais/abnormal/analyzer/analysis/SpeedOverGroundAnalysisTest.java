@@ -18,6 +18,7 @@ package dk.dma.ais.abnormal.analyzer.analysis;
 
 import dk.dma.ais.abnormal.analyzer.AppStatisticsService;
 import dk.dma.ais.abnormal.analyzer.behaviour.BehaviourManager;
+import dk.dma.ais.abnormal.application.statistics.Counter;
 import dk.dma.ais.abnormal.event.db.EventRepository;
 import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
 import dk.dma.ais.abnormal.stat.db.data.SpeedOverGroundStatisticData;
@@ -56,6 +57,9 @@ public class SpeedOverGroundAnalysisTest {
         // Mock dependencies
         trackingService = context.mock(EventEmittingTracker.class);
         statisticsService = context.mock(AppStatisticsService.class);
+        context.checking(new Expectations() {{
+            allowing(statisticsService).getAnalysisCounter(with(any(String.class)), with(any(String.class))); will(returnValue(new Counter()));
+        }});
         statisticsRepository = context.mock(StatisticDataRepository.class);
         eventRepository = context.mock(EventRepository.class);
         behaviourManager = context.mock(BehaviourManager.class);
@@ -0,0 +1,118 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.analyzer.replay;
+
+import dk.dma.ais.abnormal.event.db.EventRepository;
+import dk.dma.ais.abnormal.event.db.domain.Event;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An EventRepository which keeps ongoing events in memory and counts the events saved, so that the analyzer
+ * pipeline can be run without any database.
+ */
+@ThreadSafe
+public class InMemoryEventRepository implements EventRepository {
+
+    private final Object lock = new Object();
+
+    @GuardedBy("lock")
+    private final Map<Integer, Map<Class<? extends Event>, Event>> ongoingEvents = new HashMap<>();
+
+    @GuardedBy("lock")
+    private final Set<Event> events = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    @GuardedBy("lock")
+    private long numberOfSaves;
+
+    @Override
+    public void save(Event event) {
+        synchronized (lock) {
+            numberOfSaves++;
+            events.add(event);
+            event.involvedMmsis().forEach(mmsi -> {
+                if (event.getState() == Event.State.ONGOING) {
+                    ongoingEvents.computeIfAbsent(mmsi, m -> new HashMap<>()).put(event.getClass(), event);
+                } else {
+                    Map<Class<? extends Event>, Event> eventMap = ongoingEvents.get(mmsi);
+                    if (eventMap != null) {
+                        eventMap.remove(event.getClass());
+                    }
+                }
+            });
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T extends Event> T findOngoingEventByVessel(int mmsi, Class<T> eventClass) {
+        synchronized (lock) {
+            Map<Class<? extends Event>, Event> eventMap = ongoingEvents.get(mmsi);
+            return eventMap == null ? null : (T) eventMap.get(eventClass);
+        }
+    }
+
+    /** @return the no. of calls to save(). */
+    public long getNumberOfSaves() {
+        synchronized (lock) {
+            return numberOfSaves;
+        }
+    }
+
+    /** @return the no. of distinct events saved per event type. */
+    public Map<String, Integer> getNumberOfEventsByType() {
+        Map<String, Integer> numberOfEventsByType = new TreeMap<>();
+        synchronized (lock) {
+            events.forEach(event -> numberOfEventsByType.merge(event.getClass().getSimpleName(), 1, Integer::sum));
+        }
+        return numberOfEventsByType;
+    }
+
+    @Override
+    public List<String> getEventTypes() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Event getEvent(long eventId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Event> findEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Event> findEventsByFromAndTo(Date from, Date to) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Event> findRecentEvents(int numberOfEvents) {
+        throw new UnsupportedOperationException();
+    }
+
+}
@@ -0,0 +1,142 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.analyzer.replay;
+
+import com.google.inject.AbstractModule;
+import com.google.inject.Provides;
+import com.google.inject.Scopes;
+import com.google.inject.Singleton;
+import com.google.inject.name.Named;
+import dk.dma.ais.abnormal.analyzer.AppStatisticsService;
+import dk.dma.ais.abnormal.analyzer.AppStatisticsServiceImpl;
+import dk.dma.ais.abnormal.analyzer.PacketHandler;
+import dk.dma.ais.abnormal.analyzer.PacketHandlerImpl;
+import dk.dma.ais.abnormal.analyzer.analysis.FreeFlowCsvWriter;
+import dk.dma.ais.abnormal.analyzer.behaviour.BehaviourManager;
+import dk.dma.ais.abnormal.analyzer.behaviour.BehaviourManagerImpl;
+import dk.dma.ais.abnormal.analyzer.services.SafetyZoneService;
+import dk.dma.ais.abnormal.event.db.EventRepository;
+import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
+import dk.dma.ais.abnormal.stat.db.mapdb.StatisticDataRepositoryMapDB;
+import dk.dma.ais.filter.IPacketFilter;
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.tracker.eventEmittingTracker.EventEmittingTracker;
+import dk.dma.ais.tracker.eventEmittingTracker.EventEmittingTrackerImpl;
+import dk.dma.enav.model.geometry.grid.Grid;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.PropertiesConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_APPL_GRID_RESOLUTION_DEFAULT;
+import static dk.dma.ais.abnormal.analyzer.config.Configuration.CONFKEY_STATISTICS_FILE;
+
+/**
+ * Guice module wiring the analyzer pipeline for replay: The real tracker, PacketHandlerImpl and analyses
+ * configured by the analyzer.properties template shipped with the analyzer (all analyses enabled), a
+ * statistics file opened for read, and an in-memory event repository. No packet filters are applied, so
+ * that every replayed packet reaches the tracker.
+ */
+public final class ReplayModule extends AbstractModule {
+    private static final Logger LOG = LoggerFactory.getLogger(ReplayModule.class);
+
+    private final String statisticsFile;
+    private final AppStatisticsService statisticsService = new AppStatisticsServiceImpl();
+
+    /**
+     * @param statisticsFile the statistics file to use for the statistic based analyses.
+     */
+    public ReplayModule(String statisticsFile) {
+        this.statisticsFile = statisticsFile;
+    }
+
+    @Override
+    public void configure() {
+        bind(PacketHandler.class).to(PacketHandlerImpl.class).in(Singleton.class);
+        bind(BehaviourManager.class).to(BehaviourManagerImpl.class).in(Singleton.class);
+        bind(SafetyZoneService.class).in(Scopes.SINGLETON);
+        bind(InMemoryEventRepository.class).in(Scopes.SINGLETON);
+        bind(EventRepository.class).to(InMemoryEventRepository.class);
+    }
+
+    @Provides
+    @Singleton
+    Configuration provideConfiguration() throws ConfigurationException {
+        PropertiesConfiguration configuration = new PropertiesConfiguration(getClass().getClassLoader().getResource("analyzer.properties"));
+        configuration.setProperty(CONFKEY_STATISTICS_FILE, statisticsFile);
+        return configuration;
+    }
+
+    @Provides
+    @Singleton
+    AppStatisticsService provideAppStatisticsService() {
+        return statisticsService;
+    }
+
+    @Provides
+    @Singleton
+    dk.dma.ais.abnormal.application.statistics.AppStatisticsService provideAppStatisticsService2() {
+        return statisticsService;
+    }
+
+    @Provides
+    @Singleton
+    StatisticDataRepository provideStatisticDataRepository() throws Exception {
+        StatisticDataRepository statisticsRepository = new StatisticDataRepositoryMapDB(statisticsFile);
+        statisticsRepository.openForRead();
+        LOG.info("Opened statistics file " + statisticsFile + " for read.");
+        return statisticsRepository;
+    }
+
+    @Provides
+    @Singleton
+    Grid provideGrid(Configuration configuration, StatisticDataRepository statisticsRepository) {
+        if (statisticsRepository.getMetaData() != null) {
+            return Grid.create(statisticsRepository.getMetaData().getGridResolution());
+        }
+        return Grid.create(configuration.getInt(CONFKEY_APPL_GRID_RESOLUTION_DEFAULT, 200));
+    }
+
+    @Provides
+    @Singleton
+    EventEmittingTracker provideEventEmittingTracker(Grid grid) {
+        return new EventEmittingTrackerImpl(grid);
+    }
+
+    @Provides
+    @Singleton
+    Optional<FreeFlowCsvWriter> provideFreeFlowCsvWriter() {
+        return Optional.empty();
+    }
+
+    @Provides
+    Set<IPacketFilter> provideFilters() {
+        return Collections.emptySet();
+    }
+
+    @Provides
+    @Named("shipNameFilter")
+    Predicate<AisPacket> provideShipNameFilter() {
+        return packet -> false;
+    }
+
+}
@@ -0,0 +1,233 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.analyzer.replay;
+
+import com.beust.jcommander.JCommander;
+import com.google.common.io.ByteStreams;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import dk.dma.ais.abnormal.analyzer.PacketHandler;
+import dk.dma.ais.abnormal.application.statistics.AppStatisticsService;
+import dk.dma.ais.abnormal.application.statistics.StatisticsRegistry;
+import dk.dma.ais.abnormal.generator.TrafficGenerator;
+import dk.dma.ais.abnormal.generator.UserArguments;
+import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
+import dk.dma.ais.reader.AisReader;
+import dk.dma.ais.reader.AisReaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Replays recorded AIS data through the analyzer pipeline - PacketHandlerImpl with the real tracker and all
+ * analyses enabled - as fast as possible and reports packets/sec, allocation rate, the share of time spent in
+ * each analysis and the no. of events raised.
+ *
+ * The AIS data are read into memory before the replay, so disk I/O is not measured; parsing is. Each iteration
+ * replays all inputs through a new pipeline; the first 'replay.warmups' iterations are not reported.
+ *
+ * Usage (see the replay-benchmark profile of the ais-ab-analyzer pom):
+ *
+ *   mvn -pl ais-ab-analyzer -am -Preplay-benchmark test
+ *
+ * System properties:
+ *   replay.statistics  statistics file for the statistic based analyses (required).
+ *   replay.input       comma-separated list of AIS files; default is the AIS samples of the test resources.
+ *   replay.generator   arguments for the synthetic traffic generator (e.g. "-vessels 100000 -duration 30
+ *                      -closeencounters 50"). If given, the generated traffic is fed directly to the packet handler
+ *                      instead of replaying replay.input. Note that the time spent generating and parsing the
+ *                      packets is then included in the measurements.
+ *   replay.warmups     no. of warm-up iterations (default 3).
+ *   replay.iterations  no. of measured iterations (default 5).
+ */
+public class ReplayThroughputBenchmark {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReplayThroughputBenchmark.class);
+
+    /** AIS samples of the test resources in chronological order */
+    static final String[] SAMPLES = {"ais/538004030_drift_1.ais", "ais/212123000_drift_1.ais", "ais/219165000_ssc_1.ais"};
+
+    private static final String ANALYSIS_TIME = "Analysis time (usecs)";
+    private static final String EVENTS_RAISED = "Events raised";
+
+    private final String statisticsFile;
+    private final List<byte[]> inputs;
+    private final String[] generatorArguments;
+
+    ReplayThroughputBenchmark(String statisticsFile, List<byte[]> inputs) {
+        this.statisticsFile = statisticsFile;
+        this.inputs = inputs;
+        this.generatorArguments = null;
+    }
+
+    ReplayThroughputBenchmark(String statisticsFile, String... generatorArguments) {
+        this.statisticsFile = statisticsFile;
+        this.inputs = null;
+        this.generatorArguments = generatorArguments;
+    }
+
+    /** Result of one replay iteration */
+    static final class Result {
+        long packets;
+        long nanos;
+        long allocatedBytes;
+        long numberOfSaves;
+        final Map<String, Long> analysisMicros = new TreeMap<>();
+        final Map<String, Long> eventsRaised = new TreeMap<>();
+        Map<String, Integer> eventsByType;
+
+        double packetsPerSecond() {
+            return packets / (nanos / 1e9);
+        }
+
+        double allocatedMegabytesPerSecond() {
+            return allocatedBytes / 1024.0 / 1024.0 / (nanos / 1e9);
+        }
+    }
+
+    Result replay() throws Exception {
+        Injector injector = Guice.createInjector(new ReplayModule(statisticsFile));
+        PacketHandler packetHandler = injector.getInstance(PacketHandler.class);
+        AppStatisticsService statisticsService = injector.getInstance(AppStatisticsService.class);
+        InMemoryEventRepository eventRepository = injector.getInstance(InMemoryEventRepository.class);
+
+        Result result = new Result();
+        try {
+            final long allocatedBytesBefore = allocatedBytes();
+            final long nanosBefore = System.nanoTime();
+            if (generatorArguments != null) {
+                UserArguments userArguments = new UserArguments();
+                new JCommander(userArguments, generatorArguments);
+                new TrafficGenerator(userArguments).generatePackets(packetHandler);
+            } else {
+                for (byte[] input : inputs) {
+                    AisReader aisReader = AisReaders.createReaderFromInputStream(new ByteArrayInputStream(input));
+                    aisReader.registerPacketHandler(packetHandler);
+                    aisReader.run();
+                }
+            }
+            result.nanos = System.nanoTime() - nanosBefore;
+            result.allocatedBytes = allocatedBytes() - allocatedBytesBefore;
+        } finally {
+            injector.getInstance(StatisticDataRepository.class).close();
+        }
+
+        result.packets = statisticsService.getFilteredPacketCount();
+        result.numberOfSaves = eventRepository.getNumberOfSaves();
+        result.eventsByType = eventRepository.getNumberOfEventsByType();
+        StatisticsRegistry registry = statisticsService.getStatisticsRegistry();
+        for (String analysisName : registry.getGroupNames()) {
+            Long micros = registry.getValue(analysisName, ANALYSIS_TIME);
+            if (micros != null) {
+                result.analysisMicros.put(analysisName, micros);
+                Long eventsRaised = registry.getValue(analysisName, EVENTS_RAISED);
+                result.eventsRaised.put(analysisName, eventsRaised == null ? 0L : eventsRaised);
+            }
+        }
+        return result;
+    }
+
+    /** @return the no. of bytes allocated by the current thread, which is also the thread running the replay. */
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static void report(List<Result> results) {
+        double[] packetsPerSecond = results.stream().mapToDouble(Result::packetsPerSecond).sorted().toArray();
+        double[] megabytesPerSecond = results.stream().mapToDouble(Result::allocatedMegabytesPerSecond).sorted().toArray();
+        Result last = results.get(results.size() - 1);
+
+        LOG.info("==== Analyzer replay throughput ====");
+        LOG.info(String.format(Locale.ENGLISH, "%-30s %12d", "Packets per iteration", last.packets));
+        LOG.info(String.format(Locale.ENGLISH, "%-30s %12d", "Measured iterations", results.size()));
+        LOG.info(String.format(Locale.ENGLISH, "%-30s %12.0f pkts/sec (min %.0f, max %.0f)", "Throughput (median)", median(packetsPerSecond), packetsPerSecond[0], packetsPerSecond[packetsPerSecond.length - 1]));
+        LOG.info(String.format(Locale.ENGLISH, "%-30s %12.1f MB/sec (%.0f bytes/pkt)", "Allocation rate (median)", median(megabytesPerSecond), (double) last.allocatedBytes / last.packets));
+
+        long totalNanos = results.stream().mapToLong(r -> r.nanos).sum();
+        LOG.info("---- Time share per analysis ----");
+        for (String analysisName : last.analysisMicros.keySet()) {
+            long micros = results.stream().mapToLong(r -> r.analysisMicros.getOrDefault(analysisName, 0L)).sum();
+            LOG.info(String.format(Locale.ENGLISH, "%-30s %11.1f%% %9d events raised", analysisName, 100.0 * micros * 1000.0 / totalNanos, last.eventsRaised.getOrDefault(analysisName, 0L)));
+        }
+
+        LOG.info("---- Events in repository (last iteration) ----");
+        last.eventsByType.forEach((eventType, n) -> LOG.info(String.format(Locale.ENGLISH, "%-30s %12d", eventType, n)));
+        LOG.info(String.format(Locale.ENGLISH, "%-30s %12d", "Event saves", last.numberOfSaves));
+        LOG.info("==== Analyzer replay throughput ====");
+    }
+
+    private static double median(double[] sorted) {
+        int n = sorted.length;
+        return n % 2 == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2.0;
+    }
+
+    static List<byte[]> readInputs(String input) throws IOException {
+        List<byte[]> inputs = new ArrayList<>();
+        if (input == null || input.trim().isEmpty()) {
+            for (String sample : SAMPLES) {
+                try (InputStream in = ReplayThroughputBenchmark.class.getClassLoader().getResourceAsStream(sample)) {
+                    inputs.add(ByteStreams.toByteArray(in));
+                }
+            }
+        } else {
+            for (String file : Arrays.asList(input.split(","))) {
+                inputs.add(Files.readAllBytes(Paths.get(file.trim())));
+            }
+        }
+        return inputs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String statisticsFile = System.getProperty("replay.statistics");
+        if (statisticsFile == null || !Files.isRegularFile(Paths.get(statisticsFile))) {
+            throw new IllegalArgumentException("Statistics file not found: replay.statistics=" + statisticsFile);
+        }
+        int warmups = Integer.getInteger("replay.warmups", 3);
+        int iterations = Integer.getInteger("replay.iterations", 5);
+
+        String generatorArguments = System.getProperty("replay.generator");
+        ReplayThroughputBenchmark benchmark = generatorArguments == null || generatorArguments.trim().isEmpty()
+            ? new ReplayThroughputBenchmark(statisticsFile, readInputs(System.getProperty("replay.input")))
+            : new ReplayThroughputBenchmark(statisticsFile, generatorArguments.trim().split("\\s+"));
+
+        for (int i = 0; i < warmups; i++) {
+            Result result = benchmark.replay();
+            LOG.info(String.format(Locale.ENGLISH, "Warm-up %d: %.0f pkts/sec", i + 1, result.packetsPerSecond()));
+        }
+        List<Result> results = new ArrayList<>(iterations);
+        for (int i = 0; i < iterations; i++) {
+            Result result = benchmark.replay();
+            LOG.info(String.format(Locale.ENGLISH, "Iteration %d: %.0f pkts/sec", i + 1, result.packetsPerSecond()));
+            results.add(result);
+        }
+
+        report(results);
+        System.exit(0);
+    }
+
+}
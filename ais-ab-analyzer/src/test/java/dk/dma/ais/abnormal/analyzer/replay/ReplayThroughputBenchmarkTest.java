@@ -0,0 +1,54 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.analyzer.replay;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays the full sample and is therefore only run with the replay-benchmark profile:
+ * mvn -pl ais-ab-analyzer -am -Preplay-benchmark test
+ */
+public class ReplayThroughputBenchmarkTest {
+
+    static final String STATISTICS_FILE = "../ais-ab-web/src/test/resources/statistics/aisdump_dk-grid200-down10.statistics";
+
+    @Test
+    public void replaysSamplesThroughAllAnalyses() throws Exception {
+        ReplayThroughputBenchmark benchmark = new ReplayThroughputBenchmark(STATISTICS_FILE, ReplayThroughputBenchmark.readInputs(null));
+
+        ReplayThroughputBenchmark.Result result = benchmark.replay();
+
+        assertTrue(result.packets > 20000);
+        assertTrue(result.nanos > 0);
+        assertEquals(7, result.analysisMicros.size());
+        assertTrue(result.eventsByType.getOrDefault("DriftEvent", 0) >= 1);
+        assertTrue(result.eventsRaised.getOrDefault("DriftAnalysis", 0L) >= 1);
+    }
+
+    @Test
+    public void feedsGeneratedTrafficThroughAllAnalyses() throws Exception {
+        ReplayThroughputBenchmark benchmark = new ReplayThroughputBenchmark(STATISTICS_FILE, "-vessels", "200", "-duration", "5", "-closeencounters", "2");
+
+        ReplayThroughputBenchmark.Result result = benchmark.replay();
+
+        assertTrue(result.packets >= 204 * 31);
+        assertEquals(7, result.analysisMicros.size());
+    }
+
+}
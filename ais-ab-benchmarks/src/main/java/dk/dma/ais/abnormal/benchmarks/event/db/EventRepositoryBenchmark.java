@@ -0,0 +1,164 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.benchmarks.event.db;
+
+import dk.dma.ais.abnormal.event.db.EventRepository;
+import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
+import dk.dma.ais.abnormal.event.db.domain.builders.TrackingPointBuilder;
+import dk.dma.ais.abnormal.event.db.jpa.JpaEventRepository;
+import dk.dma.ais.abnormal.event.db.jpa.JpaSessionFactoryFactory;
+import org.hibernate.SessionFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static dk.dma.ais.abnormal.event.db.domain.builders.SpeedOverGroundEventBuilder.SpeedOverGroundEvent;
+
+/**
+ * Benchmarks of the insert throughput (events per second) of JpaEventRepository when saving events one by one -
+ * each in its own session and transaction - and when saving them with saveAll in one session and transaction
+ * with JDBC batching. The database is a file based H2 database in either H2's own mode or in PostgreSQL
+ * compatibility mode as an embedded stand-in for PostgreSQL.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventRepositoryBenchmark {
+
+    private static final int EVENTS_PER_INVOCATION = 100;
+
+    @Param({"H2", "PostgreSQL"})
+    public String mode;
+
+    @Param({"10"})
+    public int trackingPointsPerEvent;
+
+    private File dbDirectory;
+    private SessionFactory sessionFactory;
+    private EventRepository repository;
+    private int nextMmsi = 200000000;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dbDirectory = Files.createTempDirectory("ais-ab-benchmarks-events").toFile();
+        File dbFile = new File(dbDirectory, "events");
+        sessionFactory = JpaSessionFactoryFactory.newH2SessionFactory(dbFile, "H2".equals(mode) ? null : mode);
+        JpaSessionFactoryFactory.migrate(sessionFactory);
+        repository = new JpaEventRepository(sessionFactory, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        sessionFactory.close();
+        File[] files = dbDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dbDirectory.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_INVOCATION)
+    public void save() {
+        for (Event event : newEvents()) {
+            repository.save(event);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS_PER_INVOCATION)
+    public void saveAll() {
+        repository.saveAll(newEvents());
+    }
+
+    private List<Event> newEvents() {
+        List<Event> events = new ArrayList<>(EVENTS_PER_INVOCATION);
+        for (int i = 0; i < EVENTS_PER_INVOCATION; i++) {
+            events.add(newEvent(nextMmsi++));
+        }
+        return events;
+    }
+
+    private Event newEvent(int mmsi) {
+        LocalDateTime startTime = LocalDateTime.of(2014, 4, 27, 12, 0, 0);
+        Event event = SpeedOverGroundEvent()
+            .shipType(3)
+            .shipLength(2)
+            .speedOverGround(4)
+            .title("Abnormal speed over ground")
+            .description("Benchmark event")
+            .startTime(startTime)
+            .behaviour()
+                .isPrimary(true)
+                .vessel()
+                    .mmsi(mmsi)
+                    .name("BENCHMARK " + mmsi)
+                .trackingPoint()
+                    .timestamp(startTime)
+                    .positionInterpolated(false)
+                    .eventCertainty(TrackingPoint.EventCertainty.RAISED)
+                    .speedOverGround(12.0f)
+                    .courseOverGround(90.0f)
+                    .trueHeading(90.0f)
+                    .latitude(56.0)
+                    .longitude(12.0)
+            .getEvent();
+
+        for (int i = 1; i < trackingPointsPerEvent; i++) {
+            event.getBehaviour(mmsi).addTrackingPoint(
+                TrackingPointBuilder.TrackingPoint()
+                    .timestamp(startTime.minusSeconds(10 * i))
+                    .positionInterpolated(false)
+                    .eventCertainty(TrackingPoint.EventCertainty.UNCERTAIN)
+                    .speedOverGround(12.0f)
+                    .courseOverGround(90.0f)
+                    .trueHeading(90.0f)
+                    .latitude(56.0)
+                    .longitude(12.0 - 0.001 * i)
+                    .getTrackingPoint()
+            );
+        }
+
+        return event;
+    }
+
+}
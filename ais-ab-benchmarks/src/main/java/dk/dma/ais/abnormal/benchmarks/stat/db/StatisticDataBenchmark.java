@@ -0,0 +1,179 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.benchmarks.stat.db;
+
+import dk.dma.ais.abnormal.stat.db.data.ShipTypeAndSizeStatisticData;
+import dk.dma.ais.abnormal.stat.db.data.SpeedOverGroundStatisticData;
+import dk.dma.ais.abnormal.stat.db.data.StatisticData;
+import dk.dma.ais.abnormal.util.Categorizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static dk.dma.ais.abnormal.stat.db.data.ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT;
+
+/**
+ * Benchmarks of the per-cell statistic data structures: FourKeyStatisticData (represented by
+ * SpeedOverGroundStatisticData) and ShipTypeAndSizeStatisticData.
+ *
+ * The data of each benchmark is a "typical" cell populated with the number of increments given by the
+ * 'populatedBy' parameter spread over random keys.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatisticDataBenchmark {
+
+    private static final int MAX_TYPE = Categorizer.NUM_SHIP_TYPE_CATEGORIES - 1;
+    private static final int MAX_SIZE = Categorizer.NUM_SHIP_SIZE_CATEGORIES - 1;
+    private static final int MAX_SOG = Categorizer.NUM_SPEED_OVER_GROUND_CATEGORIES - 1;
+
+    @Param({"10", "1000"})
+    public int populatedBy;
+
+    private SpeedOverGroundStatisticData speedOverGround;
+    private ShipTypeAndSizeStatisticData shipTypeAndSize;
+    private ShipTypeAndSizeStatisticData otherShipTypeAndSize;
+
+    private byte[] serializedSpeedOverGround;
+    private byte[] serializedShipTypeAndSize;
+
+    private Random random;
+    private int key1, key2, key3;
+
+    @Setup(Level.Trial)
+    public void setUpData() throws IOException {
+        random = new Random(42);
+        speedOverGround = SpeedOverGroundStatisticData.create();
+        shipTypeAndSize = ShipTypeAndSizeStatisticData.create();
+        otherShipTypeAndSize = ShipTypeAndSizeStatisticData.create();
+        for (int i = 0; i < populatedBy; i++) {
+            speedOverGround.incrementValue(random.nextInt(MAX_TYPE + 1), random.nextInt(MAX_SIZE + 1), random.nextInt(MAX_SOG + 1), STAT_SHIP_COUNT);
+            shipTypeAndSize.incrementValue(random.nextInt(MAX_TYPE + 1), random.nextInt(MAX_SIZE + 1), STAT_SHIP_COUNT);
+            otherShipTypeAndSize.incrementValue(random.nextInt(MAX_TYPE + 1), random.nextInt(MAX_SIZE + 1), STAT_SHIP_COUNT);
+        }
+        serializedSpeedOverGround = serialize(speedOverGround);
+        serializedShipTypeAndSize = serialize(shipTypeAndSize);
+    }
+
+    @Setup(Level.Iteration)
+    public void setUpKeys() {
+        key1 = random.nextInt(MAX_TYPE + 1);
+        key2 = random.nextInt(MAX_SIZE + 1);
+        key3 = random.nextInt(MAX_SOG + 1);
+    }
+
+    @Benchmark
+    public SpeedOverGroundStatisticData fourKeyIncrementValue() {
+        speedOverGround.incrementValue(key1, key2, key3, STAT_SHIP_COUNT);
+        return speedOverGround;
+    }
+
+    @Benchmark
+    public Integer fourKeyGetValue() {
+        return speedOverGround.getValue(key1, key2, key3, STAT_SHIP_COUNT);
+    }
+
+    @Benchmark
+    public int fourKeyGetSumFor() {
+        return speedOverGround.getSumFor(STAT_SHIP_COUNT);
+    }
+
+    @Benchmark
+    public int fourKeyAggregateSumOverKey1() {
+        return speedOverGround.aggregateSumOverKey1(key2, key3, STAT_SHIP_COUNT);
+    }
+
+    @Benchmark
+    public ShipTypeAndSizeStatisticData shipTypeAndSizeIncrementValue() {
+        shipTypeAndSize.incrementValue(key1, key2, STAT_SHIP_COUNT);
+        return shipTypeAndSize;
+    }
+
+    @Benchmark
+    public Integer shipTypeAndSizeGetValue() {
+        return shipTypeAndSize.getValue(key1, key2, STAT_SHIP_COUNT);
+    }
+
+    @Benchmark
+    public int shipTypeAndSizeGetSumFor() {
+        return shipTypeAndSize.getSumFor(STAT_SHIP_COUNT);
+    }
+
+    @Benchmark
+    public ShipTypeAndSizeStatisticData shipTypeAndSizeMerge() {
+        ShipTypeAndSizeStatisticData merged = ShipTypeAndSizeStatisticData.create();
+        merged.merge(shipTypeAndSize);
+        merged.merge(otherShipTypeAndSize);
+        return merged;
+    }
+
+    @Benchmark
+    public byte[] fourKeySerialize() throws IOException {
+        return serialize(speedOverGround);
+    }
+
+    @Benchmark
+    public StatisticData fourKeyDeserialize() throws IOException, ClassNotFoundException {
+        return deserialize(serializedSpeedOverGround);
+    }
+
+    @Benchmark
+    public byte[] shipTypeAndSizeSerialize() throws IOException {
+        return serialize(shipTypeAndSize);
+    }
+
+    @Benchmark
+    public StatisticData shipTypeAndSizeDeserialize() throws IOException, ClassNotFoundException {
+        return deserialize(serializedShipTypeAndSize);
+    }
+
+    /** Standard Java serialization of the Serializable statistic data. MapDB's own serialization is measured by the file mode of StatisticDataRepositoryBenchmark. */
+    static byte[] serialize(StatisticData statisticData) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(statisticData);
+        }
+        return bytes.toByteArray();
+    }
+
+    static StatisticData deserialize(byte[] serialized) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return (StatisticData) in.readObject();
+        }
+    }
+
+}
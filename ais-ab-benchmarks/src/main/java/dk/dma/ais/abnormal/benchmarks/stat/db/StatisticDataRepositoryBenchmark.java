@@ -0,0 +1,139 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.benchmarks.stat.db;
+
+import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
+import dk.dma.ais.abnormal.stat.db.data.ShipTypeAndSizeStatisticData;
+import dk.dma.ais.abnormal.stat.db.data.StatisticData;
+import dk.dma.ais.abnormal.stat.db.mapdb.StatisticDataRepositoryMapDB;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static dk.dma.ais.abnormal.benchmarks.stat.db.StatisticsFiles.SHIP_TYPE_AND_SIZE;
+
+/**
+ * Benchmarks of single and concurrent get/put of StatisticDataRepositoryMapDB opened for write in either
+ * heap mode (as used by the stat builder) or file mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatisticDataRepositoryBenchmark {
+
+    @Param({"heap", "file"})
+    public String mode;
+
+    @Param({"100000"})
+    public int numberOfCells;
+
+    private File dbFile;
+    private StatisticDataRepository repository;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random random = new Random();
+
+        long nextCellId(int numberOfCells) {
+            return random.nextInt(numberOfCells);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dbFile = StatisticsFiles.createTempFile();
+        repository = new StatisticDataRepositoryMapDB(dbFile.getAbsolutePath());
+        repository.openForWrite("heap".equals(mode));
+        StatisticsFiles.populate(repository, numberOfCells);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.close();
+        StatisticsFiles.delete(dbFile);
+    }
+
+    @Benchmark
+    public StatisticData get(ThreadState threadState) {
+        return repository.getStatisticData(SHIP_TYPE_AND_SIZE, threadState.nextCellId(numberOfCells));
+    }
+
+    @Benchmark
+    public void put(ThreadState threadState) {
+        repository.putStatisticData(SHIP_TYPE_AND_SIZE, threadState.nextCellId(numberOfCells), StatisticsFiles.shipTypeAndSize(threadState.random, 1));
+    }
+
+    /** Get, increment and put back - as done by the statistics of the stat builder */
+    @Benchmark
+    public void update(ThreadState threadState) {
+        updateCell(threadState.nextCellId(numberOfCells));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public StatisticData concurrentGet(ThreadState threadState) {
+        return get(threadState);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void concurrentPut(ThreadState threadState) {
+        put(threadState);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public StatisticData readWriteGet(ThreadState threadState) {
+        return get(threadState);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void readWriteUpdate(ThreadState threadState) {
+        update(threadState);
+    }
+
+    private void updateCell(long cellId) {
+        StatisticData statisticData = repository.getStatisticData(SHIP_TYPE_AND_SIZE, cellId);
+        if (statisticData instanceof ShipTypeAndSizeStatisticData) {
+            ((ShipTypeAndSizeStatisticData) statisticData).incrementValue(1, 1, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT);
+            repository.putStatisticData(SHIP_TYPE_AND_SIZE, cellId, statisticData);
+        }
+    }
+
+}
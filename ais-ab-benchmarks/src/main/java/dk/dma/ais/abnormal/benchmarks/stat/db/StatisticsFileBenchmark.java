@@ -0,0 +1,152 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.benchmarks.stat.db;
+
+import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
+import dk.dma.ais.abnormal.stat.db.data.StatisticData;
+import dk.dma.ais.abnormal.stat.db.mapdb.StatisticDataRepositoryMapDB;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of statistics files on disk: Random cell lookups in a statistics file opened for read (as done by
+ * the analyzer and the web app), and the dump of a heap repository to disk on close (copyToDatabase) as done
+ * at the end of every stat builder run.
+ */
+@Fork(1)
+public class StatisticsFileBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Fixture {
+        StatisticDataRepository repository;
+        String[] statisticNames;
+        long[][] cellIds;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            repository = new StatisticDataRepositoryMapDB(StatisticsFiles.fixture().getAbsolutePath());
+            repository.openForRead();
+
+            List<String> names = new ArrayList<>(repository.getStatisticNames());
+            statisticNames = names.toArray(new String[names.size()]);
+            cellIds = new long[statisticNames.length][];
+            for (int i = 0; i < statisticNames.length; i++) {
+                cellIds[i] = repository.getCellsWithData(statisticNames[i]).stream().mapToLong(Long::longValue).toArray();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            repository.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final Random random = new Random();
+    }
+
+    @State(Scope.Benchmark)
+    public static class HeapRepository {
+        @Param({"fixture", "100000", "500000"})
+        public String numberOfCells;
+
+        File dbFile;
+        StatisticDataRepository repository;
+
+        @Setup(Level.Invocation)
+        public void setUp() throws Exception {
+            dbFile = StatisticsFiles.createTempFile();
+            repository = new StatisticDataRepositoryMapDB(dbFile.getAbsolutePath());
+            repository.openForWrite(true);
+            if ("fixture".equals(numberOfCells)) {
+                copyFixture(repository);
+            } else {
+                StatisticsFiles.populate(repository, Integer.parseInt(numberOfCells));
+            }
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            StatisticsFiles.delete(dbFile);
+        }
+
+        private static void copyFixture(StatisticDataRepository repository) throws Exception {
+            StatisticDataRepository fixture = new StatisticDataRepositoryMapDB(StatisticsFiles.fixture().getAbsolutePath());
+            fixture.openForRead();
+            try {
+                repository.putMetaData(fixture.getMetaData());
+                for (String statisticName : fixture.getStatisticNames()) {
+                    for (Long cellId : fixture.getCellsWithData(statisticName)) {
+                        repository.putStatisticData(statisticName, cellId, fixture.getStatisticData(statisticName, cellId));
+                    }
+                }
+            } finally {
+                fixture.close();
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public StatisticData getFromFile(Fixture fixture, ThreadState threadState) {
+        int statistic = threadState.random.nextInt(fixture.statisticNames.length);
+        long[] cellIds = fixture.cellIds[statistic];
+        return fixture.repository.getStatisticData(fixture.statisticNames[statistic], cellIds[threadState.random.nextInt(cellIds.length)]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 5, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Threads(4)
+    public StatisticData concurrentGetFromFile(Fixture fixture, ThreadState threadState) {
+        return getFromFile(fixture, threadState);
+    }
+
+    /** Close of a heap repository, which is dominated by copyToDatabase from heap to a new file */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public void dumpHeapToFile(HeapRepository heapRepository) {
+        heapRepository.repository.close();
+    }
+
+}
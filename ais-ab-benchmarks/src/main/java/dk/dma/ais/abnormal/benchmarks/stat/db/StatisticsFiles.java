@@ -0,0 +1,101 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.benchmarks.stat.db;
+
+import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
+import dk.dma.ais.abnormal.stat.db.data.DatasetMetaData;
+import dk.dma.ais.abnormal.stat.db.data.ShipTypeAndSizeStatisticData;
+import dk.dma.ais.abnormal.stat.db.data.SpeedOverGroundStatisticData;
+import dk.dma.ais.abnormal.util.Categorizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Helpers to locate, create, populate and delete statistics files for the benchmarks.
+ */
+final class StatisticsFiles {
+
+    /** System property which can be used to point to another statistics file than the test fixture */
+    static final String PROPERTY_FIXTURE = "ais.ab.benchmarks.statistics";
+
+    private static final String FIXTURE = "ais-ab-web/src/test/resources/statistics/aisdump_dk-grid200-down10.statistics";
+
+    static final String SHIP_TYPE_AND_SIZE = "ShipTypeAndSizeStatistic";
+    static final String SPEED_OVER_GROUND = "SpeedOverGroundStatistic";
+
+    private StatisticsFiles() {
+    }
+
+    /**
+     * @return the statistics file given by system property PROPERTY_FIXTURE - or the test fixture of ais-ab-web
+     * when run from the project directory or one of its modules.
+     */
+    static File fixture() {
+        String fixture = System.getProperty(PROPERTY_FIXTURE);
+        File[] candidates = fixture != null ? new File[] {new File(fixture)} : new File[] {new File(FIXTURE), new File("..", FIXTURE)};
+        for (File candidate : candidates) {
+            if (candidate.isFile()) {
+                return candidate;
+            }
+        }
+        throw new IllegalStateException("Statistics file not found; run from the project directory or set -D" + PROPERTY_FIXTURE + "=<file>.");
+    }
+
+    static File createTempFile() throws IOException {
+        File file = File.createTempFile("ais-ab-benchmarks-", ".statistics");
+        delete(file);
+        return file;
+    }
+
+    /** Delete the given statistics file and the files MapDB keeps next to it. */
+    static void delete(File file) {
+        for (String suffix : new String[] {"", ".p", ".t"}) {
+            new File(file.getPath() + suffix).delete();
+        }
+    }
+
+    /**
+     * Populate the given repository with statistic data for the cells 0..numberOfCells-1 with roughly the
+     * fill of a cell in a real statistics file.
+     */
+    static void populate(StatisticDataRepository repository, int numberOfCells) {
+        Random random = new Random(42);
+        repository.putMetaData(new DatasetMetaData(0.002, 10));
+        for (long cellId = 0; cellId < numberOfCells; cellId++) {
+            repository.putStatisticData(SHIP_TYPE_AND_SIZE, cellId, shipTypeAndSize(random, 20));
+            repository.putStatisticData(SPEED_OVER_GROUND, cellId, speedOverGround(random, 20));
+        }
+    }
+
+    static ShipTypeAndSizeStatisticData shipTypeAndSize(Random random, int increments) {
+        ShipTypeAndSizeStatisticData data = ShipTypeAndSizeStatisticData.create();
+        for (int i = 0; i < increments; i++) {
+            data.incrementValue(random.nextInt(Categorizer.NUM_SHIP_TYPE_CATEGORIES), random.nextInt(Categorizer.NUM_SHIP_SIZE_CATEGORIES), ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT);
+        }
+        return data;
+    }
+
+    static SpeedOverGroundStatisticData speedOverGround(Random random, int increments) {
+        SpeedOverGroundStatisticData data = SpeedOverGroundStatisticData.create();
+        for (int i = 0; i < increments; i++) {
+            data.incrementValue(random.nextInt(Categorizer.NUM_SHIP_TYPE_CATEGORIES), random.nextInt(Categorizer.NUM_SHIP_SIZE_CATEGORIES), random.nextInt(Categorizer.NUM_SPEED_OVER_GROUND_CATEGORIES), SpeedOverGroundStatisticData.STAT_SHIP_COUNT);
+        }
+        return data;
+    }
+
+}
@@ -87,8 +87,20 @@ public interface AppStatisticsService {
 
     void setTrackCount(int trackCount);
 
+    /**
+     * Get the registry holding the counters and gauges of the analyses, statistics, etc. of the application.
+     * @return the statistics registry.
+     */
+    StatisticsRegistry getStatisticsRegistry();
+
     /**
      * Dump the current state of application statistics to the system log service.
      */
     void dumpStatistics();
+
+    /**
+     * Write the current state of application statistics - including all counters and gauges of the
+     * statistics registry - as metrics in Prometheus text format.
+     */
+    void writeMetrics(PrometheusTextWriter writer);
 }
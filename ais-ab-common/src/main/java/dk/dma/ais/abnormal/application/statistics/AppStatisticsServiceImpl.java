@@ -51,6 +51,8 @@ public class AppStatisticsServiceImpl implements AppStatisticsService {
     private final AtomicLong statMsgCount = new AtomicLong(0);
     private final AtomicInteger trackCount = new AtomicInteger(0);
 
+    private final StatisticsRegistry statisticsRegistry = new StatisticsRegistry();
+
     private final ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(1);
 
     public AppStatisticsServiceImpl() {
@@ -135,6 +137,11 @@ public class AppStatisticsServiceImpl implements AppStatisticsService {
         this.trackCount.set(trackCount);
     }
 
+    @Override
+    public final StatisticsRegistry getStatisticsRegistry() {
+        return statisticsRegistry;
+    }
+
     protected double getMessageRate() {
         double secs = (double)(System.currentTimeMillis() - lastDump.get()) / 1000.0;
         long msgs = messageCount.get() - lastMessageCount.get();
@@ -166,4 +173,46 @@ public class AppStatisticsServiceImpl implements AppStatisticsService {
         LOG.info(String.format("%-30s %9.0f msg/sec", "Message rate", getMessageRate()));
         LOG.info("==== Application statistics ====");
     }
+
+    @Override
+    public void writeMetrics(PrometheusTextWriter writer) {
+        writer.family("ais_ab_uptime_seconds", "gauge", "Time since application start.")
+              .sample("ais_ab_uptime_seconds", Duration.between(timeStart, LocalDateTime.now()).getSeconds());
+        writer.family("ais_ab_packets_unfiltered_total", "counter", "No. of packets received prior to any filtering.")
+              .sample("ais_ab_packets_unfiltered_total", unfilteredPacketCount.get());
+        writer.family("ais_ab_packets_filtered_total", "counter", "No. of packets received after pre-filtering.")
+              .sample("ais_ab_packets_filtered_total", filteredPacketCount.get());
+        writer.family("ais_ab_messages_total", "counter", "No. of AIS messages received.")
+              .sample("ais_ab_messages_total", messageCount.get());
+        writer.family("ais_ab_messages_out_of_sequence_total", "counter", "No. of AIS messages received out of sequence.")
+              .sample("ais_ab_messages_out_of_sequence_total", messagesOutOfSequence.get());
+        writer.family("ais_ab_position_messages_total", "counter", "No. of AIS position messages received.")
+              .sample("ais_ab_position_messages_total", posMsgCount.get());
+        writer.family("ais_ab_static_messages_total", "counter", "No. of AIS static and voyage related messages received.")
+              .sample("ais_ab_static_messages_total", statMsgCount.get());
+        writer.family("ais_ab_tracks", "gauge", "No. of tracks currently held by the tracker.")
+              .sample("ais_ab_tracks", trackCount.get());
+
+        writeRegistryMetrics(writer);
+    }
+
+    private void writeRegistryMetrics(PrometheusTextWriter writer) {
+        writer.family("ais_ab_component_count_total", "counter", "Counters of analyses, statistics and other application components.");
+        for (String group : statisticsRegistry.getGroupNames()) {
+            statisticsRegistry.getMetrics(group).forEach((name, metric) -> {
+                if (metric instanceof Counter) {
+                    writer.sample("ais_ab_component_count_total", metric.getValue(), "component", group, "name", name);
+                }
+            });
+        }
+
+        writer.family("ais_ab_component_value", "gauge", "Gauges of analyses, statistics and other application components.");
+        for (String group : statisticsRegistry.getGroupNames()) {
+            statisticsRegistry.getMetrics(group).forEach((name, metric) -> {
+                if (! (metric instanceof Counter)) {
+                    writer.sample("ais_ab_component_value", metric.getValue(), "component", group, "name", name);
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,106 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.application.statistics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An embedded HTTP server which serves the metrics of an AppStatisticsService in Prometheus text format
+ * on the path /metrics.
+ */
+public class MetricsHttpServer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricsHttpServer.class);
+
+    public static final String PATH = "/metrics";
+
+    private final AppStatisticsService statisticsService;
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+
+    /**
+     * Create a metrics server listening on the given port on all interfaces.
+     * @param port the port to listen on. If 0 an ephemeral port is chosen; see getPort().
+     */
+    public MetricsHttpServer(AppStatisticsService statisticsService, int port) throws IOException {
+        this.statisticsService = statisticsService;
+        this.httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpServer.setExecutor(executor);
+        this.httpServer.createContext(PATH, this::handle);
+    }
+
+    public void start() {
+        httpServer.start();
+        LOG.info("Serving metrics on http://" + httpServer.getAddress().getHostString() + ":" + getPort() + PATH);
+    }
+
+    public void stop() {
+        httpServer.stop(0);
+        executor.shutdownNow();
+        LOG.info("Metrics server stopped.");
+    }
+
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            PrometheusTextWriter writer = new PrometheusTextWriter();
+            statisticsService.writeMetrics(writer);
+            byte[] body = writer.toString().getBytes(StandardCharsets.UTF_8);
+
+            exchange.getResponseHeaders().set("Content-Type", PrometheusTextWriter.CONTENT_TYPE);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+            } else {
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Failed to serve metrics: " + e.getMessage(), e);
+            if (exchange.getResponseCode() == -1) {
+                exchange.sendResponseHeaders(500, -1);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+}
@@ -0,0 +1,90 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.application.statistics;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A registry of counters and gauges organised in named groups; e.g. one group per analysis or statistic.
+ *
+ * Registration of a metric is idempotent: The same group and name always yield the same metric, so the
+ * registry can be called by several components - and threads - wanting to update the same metric. Metrics
+ * should be registered once, and the returned handle used for updates, as the lookup is not free.
+ */
+@ThreadSafe
+public final class StatisticsRegistry {
+
+    private final ConcurrentMap<String, ConcurrentMap<String, Metric>> groups = new ConcurrentSkipListMap<>();
+
+    /**
+     * Get the counter with the given name in the given group. The counter is created if it does not exist.
+     * @throws IllegalStateException if the name is already registered as another type of metric.
+     */
+    public Counter counter(String group, String name) {
+        return register(group, name, Counter.class);
+    }
+
+    /**
+     * Get the gauge with the given name in the given group. The gauge is created if it does not exist.
+     * @throws IllegalStateException if the name is already registered as another type of metric.
+     */
+    public Gauge gauge(String group, String name) {
+        return register(group, name, Gauge.class);
+    }
+
+    /**
+     * @return the current value of the given metric, or null if no such metric is registered.
+     */
+    public Long getValue(String group, String name) {
+        Map<String, Metric> metrics = groups.get(group);
+        Metric metric = metrics == null ? null : metrics.get(name);
+        return metric == null ? null : metric.getValue();
+    }
+
+    /**
+     * @return the names of all groups holding metrics - in alphabetical order.
+     */
+    public Set<String> getGroupNames() {
+        return Collections.unmodifiableSet(groups.keySet());
+    }
+
+    /**
+     * @return the metrics of the given group by name - in alphabetical order.
+     */
+    public Map<String, Metric> getMetrics(String group) {
+        Map<String, Metric> metrics = groups.get(group);
+        return metrics == null ? Collections.emptyMap() : Collections.unmodifiableMap(metrics);
+    }
+
+    private <T extends Metric> T register(String group, String name, Class<T> type) {
+        Metric metric = groups
+            .computeIfAbsent(group, g -> new ConcurrentSkipListMap<>())
+            .computeIfAbsent(name, n -> type == Counter.class ? new Counter() : new Gauge());
+
+        if (! type.isInstance(metric)) {
+            throw new IllegalStateException(group + "/" + name + " is already registered as a " + metric.getClass().getSimpleName() + ".");
+        }
+        return type.cast(metric);
+    }
+
+}
@@ -0,0 +1,224 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.util;
+
+import dk.dma.ais.abnormal.application.statistics.Counter;
+import dk.dma.ais.abnormal.application.statistics.Gauge;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes records to an Output from a dedicated writer thread, so that the threads producing the records never wait
+ * for the disk.
+ *
+ * Records are handed over through a bounded queue; if the queue is full the record is dropped and counted. The
+ * writer thread writes whatever is queued in batches and flushes when maxBatchSize records are unflushed, when
+ * flushIntervalMillis has passed since the last flush, or when the queue runs empty. Opening and rotating files is
+ * left to the Output.
+ *
+ * @param <T> the type of records written.
+ */
+@ThreadSafe
+public final class BackgroundBatchWriter<T> implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BackgroundBatchWriter.class);
+
+    /**
+     * The destination of the records. It is only called from the writer thread.
+     */
+    public interface Output<T> {
+        /**
+         * Write the records - opening or rotating the output first if necessary.
+         */
+        void write(List<T> records) throws IOException;
+
+        /**
+         * Flush the records written so far, if the output is open.
+         */
+        void flush() throws IOException;
+
+        /**
+         * Close the output if it is open. The next write is expected to open it again.
+         */
+        void close();
+    }
+
+    /** Queued by flush; counted down by the writer thread when the records queued before it have been flushed */
+    private static final class FlushRequest {
+        private final CountDownLatch done = new CountDownLatch(1);
+    }
+
+    private final String name;
+    private final Output<T> output;
+    private final int maxBatchSize;
+    private final long flushIntervalMillis;
+    private final Counter recordsDropped;
+    private final Gauge queueSize;
+
+    /** Records and flush requests */
+    private final BlockingQueue<Object> queue;
+    private final Thread writerThread;
+
+    private volatile boolean closed;
+
+    /* Accessed by the writer thread only */
+    private int unflushedRecords;
+    private long lastFlushMillis;
+
+    /**
+     * @param name           the name of the writer, used to name the writer thread and in log messages.
+     * @param recordsDropped counts the records dropped because the queue is full, the writer is closed or the output
+     *                       failed.
+     * @param queueSize      is kept updated with the number of queued records; or null.
+     */
+    public BackgroundBatchWriter(String name, Output<T> output, int queueCapacity, int maxBatchSize, long flushIntervalMillis, Counter recordsDropped, Gauge queueSize) {
+        this.name = name;
+        this.output = output;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.recordsDropped = recordsDropped;
+        this.queueSize = queueSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.lastFlushMillis = System.currentTimeMillis();
+        this.writerThread = new Thread(this::run, name + "-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queue the record for writing.
+     *
+     * @return false if the record was dropped because the queue is full or the writer is closed.
+     */
+    public boolean write(T record) {
+        final boolean queued = !closed && queue.offer(record);
+        if (!queued) {
+            recordsDropped.increment();
+            if (recordsDropped.getValue() % 1000 == 1) {
+                LOG.warn(name + ": record dropped; " + recordsDropped.getValue() + " dropped in total.");
+            }
+        }
+        updateQueueSize();
+        return queued;
+    }
+
+    /**
+     * Wait until all records queued before this call have been written and flushed.
+     */
+    public void flush() throws InterruptedException {
+        final FlushRequest request = new FlushRequest();
+        if (closed || !queue.offer(request, flushIntervalMillis, TimeUnit.MILLISECONDS)) {
+            return;
+        }
+        while (!request.done.await(flushIntervalMillis, TimeUnit.MILLISECONDS)) {
+            if (!writerThread.isAlive()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write all queued records and close the output.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        writerThread.interrupt();
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        final List<Object> drained = new ArrayList<>(maxBatchSize);
+        final List<T> batch = new ArrayList<>(maxBatchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                Object first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    drained.add(first);
+                    queue.drainTo(drained, maxBatchSize - 1);
+                    updateQueueSize();
+                    for (Object item : drained) {
+                        if (item instanceof FlushRequest) {
+                            writeBatch(batch);
+                            flushOutput();
+                            ((FlushRequest) item).done.countDown();
+                        } else {
+                            @SuppressWarnings("unchecked") T record = (T) item;
+                            batch.add(record);
+                        }
+                    }
+                    writeBatch(batch);
+                    drained.clear();
+                }
+                if (unflushedRecords > 0 && (first == null || queue.isEmpty() || unflushedRecords >= maxBatchSize || System.currentTimeMillis() - lastFlushMillis >= flushIntervalMillis)) {
+                    flushOutput();
+                }
+            } catch (InterruptedException e) {
+                // Closing; write what remains in the queue
+            } catch (IOException | RuntimeException e) {
+                LOG.error(name + ": failed to write records: " + e.getMessage(), e);
+                recordsDropped.add(batch.size());
+                batch.clear();
+                drained.stream().filter(item -> item instanceof FlushRequest).forEach(item -> ((FlushRequest) item).done.countDown());
+                drained.clear();
+                unflushedRecords = 0;
+                output.close();
+            }
+        }
+        try {
+            flushOutput();
+        } catch (IOException e) {
+            LOG.error(e.getMessage(), e);
+        }
+        output.close();
+    }
+
+    private void writeBatch(List<T> batch) throws IOException {
+        if (!batch.isEmpty()) {
+            output.write(batch);
+            unflushedRecords += batch.size();
+            batch.clear();
+        }
+    }
+
+    private void flushOutput() throws IOException {
+        if (unflushedRecords > 0) {
+            output.flush();
+        }
+        unflushedRecords = 0;
+        lastFlushMillis = System.currentTimeMillis();
+    }
+
+    private void updateQueueSize() {
+        if (queueSize != null) {
+            queueSize.set(queue.size());
+        }
+    }
+
+}
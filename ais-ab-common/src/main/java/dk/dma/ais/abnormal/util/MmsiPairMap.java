@@ -0,0 +1,221 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.util;
+
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.Arrays;
+
+/**
+ * A map from pairs of MMSI no.'s to long values (typically timestamps) - used by the analyses to keep track of vessel
+ * pairs which have been analysed or reported.
+ *
+ * Each pair is packed into a long key, and keys and values are held in primitive arrays with open addressing and
+ * linear probing, so that neither strings nor boxed values are created when pairs are looked up. Entries holding
+ * values older than a given time can be expired with removeValuesOlderThan().
+ */
+@NotThreadSafe
+public final class MmsiPairMap {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final long FREE = 0L;
+
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    /* The key 0 (the pair 0/0) collides with the marker of free slots and is held separately */
+    private boolean hasZeroKey;
+    private long zeroKeyValue;
+
+    public MmsiPairMap() {
+        this(MIN_CAPACITY);
+    }
+
+    public MmsiPairMap(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        keys = new long[capacity];
+        values = new long[capacity];
+    }
+
+    /**
+     * @return the key of the pair (mmsi1, mmsi2) - which is different from the key of the pair (mmsi2, mmsi1).
+     */
+    public static long orderedKey(int mmsi1, int mmsi2) {
+        return ((long) mmsi1 << 32) | (mmsi2 & 0xffffffffL);
+    }
+
+    /**
+     * @return the key of the pair {mmsi1, mmsi2} - which is the same as the key of the pair {mmsi2, mmsi1}.
+     */
+    public static long unorderedKey(int mmsi1, int mmsi2) {
+        return mmsi1 <= mmsi2 ? orderedKey(mmsi1, mmsi2) : orderedKey(mmsi2, mmsi1);
+    }
+
+    public boolean containsKey(long key) {
+        if (key == FREE) {
+            return hasZeroKey;
+        }
+        return keys[indexOf(key)] == key;
+    }
+
+    /**
+     * @return the value of the key, or defaultValue if the map holds no value for the key.
+     */
+    public long get(long key, long defaultValue) {
+        if (key == FREE) {
+            return hasZeroKey ? zeroKeyValue : defaultValue;
+        }
+        int i = indexOf(key);
+        return keys[i] == key ? values[i] : defaultValue;
+    }
+
+    public void put(long key, long value) {
+        if (key == FREE) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroKeyValue = value;
+            return;
+        }
+        int i = indexOf(key);
+        if (keys[i] != key) {
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+        if (size * 2 > keys.length) {
+            resize(keys.length << 1);
+        }
+    }
+
+    public void remove(long key) {
+        if (key == FREE) {
+            if (hasZeroKey) {
+                hasZeroKey = false;
+                size--;
+            }
+            return;
+        }
+        int i = indexOf(key);
+        if (keys[i] == key) {
+            removeAt(i);
+        }
+    }
+
+    /**
+     * Remove all entries with a value less than the given value.
+     *
+     * @return the no. of entries removed.
+     */
+    public int removeValuesOlderThan(long value) {
+        final int sizeBefore = size;
+        if (hasZeroKey && zeroKeyValue < value) {
+            remove(FREE);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            // Re-examine the slot after removal, as another entry may have been shifted into it
+            while (keys[i] != FREE && values[i] < value) {
+                removeAt(i);
+            }
+        }
+        if (size * 8 < keys.length && keys.length > MIN_CAPACITY) {
+            resize(Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, size) * 4)));
+        }
+        return sizeBefore - size;
+    }
+
+    /**
+     * Remove all entries - keeping the allocated capacity.
+     */
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, FREE);
+            hasZeroKey = false;
+            size = 0;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the index of the slot holding the key, or the free slot where it is to be inserted.
+     */
+    private int indexOf(long key) {
+        final int mask = keys.length - 1;
+        int i = hash(key) & mask;
+        while (keys[i] != FREE && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    /**
+     * Remove the entry at slot i and shift following entries of the same probe sequence backwards, so that no
+     * tombstones are needed.
+     */
+    private void removeAt(int i) {
+        final int mask = keys.length - 1;
+        keys[i] = FREE;
+        size--;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            final long key = keys[j];
+            if (key == FREE) {
+                return;
+            }
+            final int home = hash(key) & mask;
+            // Move the entry at j to i unless its home slot is cyclically in (i, j]
+            if (i <= j ? (home <= i || home > j) : (home <= i && home > j)) {
+                keys[i] = key;
+                values[i] = values[j];
+                keys[j] = FREE;
+                i = j;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        final long[] oldKeys = keys;
+        final long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != FREE) {
+                int j = indexOf(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+}
@@ -0,0 +1,81 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.application.statistics;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsHttpServerTest {
+
+    private AppStatisticsService statisticsService;
+    private MetricsHttpServer metricsServer;
+
+    @Before
+    public void setUp() throws Exception {
+        statisticsService = new AppStatisticsServiceImpl();
+        metricsServer = new MetricsHttpServer(statisticsService, 0);
+        metricsServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        metricsServer.stop();
+    }
+
+    @Test
+    public void servesApplicationAndComponentMetrics() throws Exception {
+        statisticsService.incMessageCount();
+        statisticsService.setTrackCount(42);
+        statisticsService.getStatisticsRegistry().counter("DriftAnalysis", "Events raised").add(3);
+        statisticsService.getStatisticsRegistry().gauge("DriftAnalysis", "Observation list size").set(7);
+
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + metricsServer.getPort() + MetricsHttpServer.PATH).openConnection();
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(PrometheusTextWriter.CONTENT_TYPE, connection.getContentType());
+
+        List<String> lines;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            lines = reader.lines().collect(Collectors.toList());
+        }
+
+        assertTrue(lines.contains("# TYPE ais_ab_messages_total counter"));
+        assertTrue(lines.contains("ais_ab_messages_total 1"));
+        assertTrue(lines.contains("ais_ab_tracks 42"));
+        assertTrue(lines.contains("ais_ab_component_count_total{component=\"DriftAnalysis\",name=\"Events raised\"} 3"));
+        assertTrue(lines.contains("ais_ab_component_value{component=\"DriftAnalysis\",name=\"Observation list size\"} 7"));
+    }
+
+    @Test
+    public void rejectsOtherMethodsThanGet() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + metricsServer.getPort() + MetricsHttpServer.PATH).openConnection();
+        connection.setRequestMethod("POST");
+        assertEquals(405, connection.getResponseCode());
+    }
+
+}
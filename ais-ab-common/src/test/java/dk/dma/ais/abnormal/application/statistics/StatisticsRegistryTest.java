@@ -0,0 +1,96 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.application.statistics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class StatisticsRegistryTest {
+
+    @Test
+    public void sameNameYieldsSameCounter() {
+        StatisticsRegistry registry = new StatisticsRegistry();
+        Counter counter = registry.counter("ShipTypeAndSizeAnalysis", "Events raised");
+        assertSame(counter, registry.counter("ShipTypeAndSizeAnalysis", "Events raised"));
+        assertEquals((Long) 0L, registry.getValue("ShipTypeAndSizeAnalysis", "Events raised"));
+
+        counter.increment();
+        counter.add(2);
+        assertEquals((Long) 3L, registry.getValue("ShipTypeAndSizeAnalysis", "Events raised"));
+        assertNull(registry.getValue("ShipTypeAndSizeAnalysis", "Events received"));
+        assertNull(registry.getValue("DriftAnalysis", "Events raised"));
+    }
+
+    @Test
+    public void gaugeHoldsLastValue() {
+        StatisticsRegistry registry = new StatisticsRegistry();
+        Gauge gauge = registry.gauge("DriftAnalysis", "# observation list");
+        gauge.set(42);
+        gauge.set(17);
+        assertEquals((Long) 17L, registry.getValue("DriftAnalysis", "# observation list"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotRegisterCounterAsGauge() {
+        StatisticsRegistry registry = new StatisticsRegistry();
+        registry.counter("DriftAnalysis", "Analyses performed");
+        registry.gauge("DriftAnalysis", "Analyses performed");
+    }
+
+    @Test
+    public void groupsAndMetricsAreListedAlphabetically() {
+        StatisticsRegistry registry = new StatisticsRegistry();
+        registry.counter("SpeedOverGroundAnalysis", "Events received");
+        registry.counter("CourseOverGroundAnalysis", "LOA < 50");
+        registry.counter("CourseOverGroundAnalysis", "Events received");
+
+        assertEquals(Arrays.asList("CourseOverGroundAnalysis", "SpeedOverGroundAnalysis"), new ArrayList<>(registry.getGroupNames()));
+        assertEquals(Arrays.asList("Events received", "LOA < 50"), new ArrayList<>(registry.getMetrics("CourseOverGroundAnalysis").keySet()));
+        assertTrue(registry.getMetrics("DriftAnalysis").isEmpty());
+    }
+
+    @Test
+    public void concurrentIncrementsAreNotLost() throws InterruptedException {
+        final StatisticsRegistry registry = new StatisticsRegistry();
+        final int numberOfThreads = 8, incrementsPerThread = 100000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        for (int i = 0; i < numberOfThreads; i++) {
+            executor.execute(() -> {
+                Counter counter = registry.counter("ShipTypeAndSizeStatistic", "Events processed");
+                for (int j = 0; j < incrementsPerThread; j++) {
+                    counter.increment();
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals((Long) ((long) numberOfThreads * incrementsPerThread), registry.getValue("ShipTypeAndSizeStatistic", "Events processed"));
+    }
+
+}
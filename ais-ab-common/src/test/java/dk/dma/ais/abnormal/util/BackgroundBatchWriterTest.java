@@ -0,0 +1,109 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.util;
+
+import dk.dma.ais.abnormal.application.statistics.Counter;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BackgroundBatchWriterTest {
+
+    @Test
+    public void testFlushWaitsUntilQueuedRecordsAreWrittenAndFlushed() throws Exception {
+        ListOutput output = new ListOutput();
+        BackgroundBatchWriter<Integer> writer = new BackgroundBatchWriter<>("test", output, 100, 10, 60000, new Counter(), null);
+        for (int i = 0; i < 25; i++) {
+            assertTrue(writer.write(i));
+        }
+        writer.flush();
+
+        assertEquals(25, output.flushed);
+        writer.close();
+    }
+
+    @Test
+    public void testAllRecordsAreWrittenWhenClosed() throws Exception {
+        ListOutput output = new ListOutput();
+        Counter dropped = new Counter();
+        BackgroundBatchWriter<Integer> writer = new BackgroundBatchWriter<>("test", output, 1000, 10, 60000, dropped, null);
+        for (int i = 0; i < 500; i++) {
+            assertTrue(writer.write(i));
+        }
+        writer.close();
+
+        assertEquals(500, output.written.size());
+        assertEquals(499, (int) output.written.get(499));
+        assertEquals(500, output.flushed);
+        assertTrue(output.closed);
+
+        assertFalse(writer.write(500));
+        assertEquals(1, dropped.getValue());
+        writer.flush();
+    }
+
+    @Test
+    public void testFailedBatchesAreDroppedAndOutputIsReopened() throws Exception {
+        ListOutput output = new ListOutput();
+        output.failures = 1;
+        Counter dropped = new Counter();
+        BackgroundBatchWriter<Integer> writer = new BackgroundBatchWriter<>("test", output, 100, 10, 60000, dropped, null);
+        writer.write(1);
+        writer.flush();
+        writer.write(2);
+        writer.flush();
+
+        assertEquals(1, dropped.getValue());
+        assertEquals(1, output.written.size());
+        assertEquals(2, (int) output.written.get(0));
+        writer.close();
+    }
+
+    /** Accessed by the writer thread; read by the test after flush or close */
+    private static final class ListOutput implements BackgroundBatchWriter.Output<Integer> {
+        private final List<Integer> written = new ArrayList<>();
+        private volatile int flushed;
+        private volatile boolean closed;
+        private volatile int failures;
+
+        @Override
+        public void write(List<Integer> records) throws IOException {
+            if (failures > 0) {
+                failures--;
+                throw new IOException("Test failure");
+            }
+            closed = false;
+            written.addAll(records);
+        }
+
+        @Override
+        public void flush() {
+            flushed = written.size();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+}
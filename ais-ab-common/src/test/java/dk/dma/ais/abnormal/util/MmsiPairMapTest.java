@@ -0,0 +1,113 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MmsiPairMapTest {
+
+    @Test
+    public void testKeys() {
+        assertEquals(MmsiPairMap.unorderedKey(219000606, 219002827), MmsiPairMap.unorderedKey(219002827, 219000606));
+        assertTrue(MmsiPairMap.orderedKey(219000606, 219002827) != MmsiPairMap.orderedKey(219002827, 219000606));
+        assertTrue(MmsiPairMap.orderedKey(1, 2) != MmsiPairMap.orderedKey(2, 1));
+        assertTrue(MmsiPairMap.orderedKey(-1, 0) != MmsiPairMap.orderedKey(0, -1));
+    }
+
+    @Test
+    public void testBehavesAsHashMap() {
+        Random random = new Random(42);
+        MmsiPairMap map = new MmsiPairMap();
+        Map<Long, Long> expected = new HashMap<>();
+
+        for (int i = 0; i < 200000; i++) {
+            long key = MmsiPairMap.orderedKey(random.nextInt(300), random.nextInt(300));
+            switch (random.nextInt(4)) {
+                case 0:
+                    map.remove(key);
+                    expected.remove(key);
+                    break;
+                default:
+                    map.put(key, i);
+                    expected.put(key, (long) i);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        for (int mmsi1 = 0; mmsi1 < 300; mmsi1++) {
+            for (int mmsi2 = 0; mmsi2 < 300; mmsi2++) {
+                long key = MmsiPairMap.orderedKey(mmsi1, mmsi2);
+                assertEquals(expected.containsKey(key), map.containsKey(key));
+                assertEquals(expected.getOrDefault(key, -1L).longValue(), map.get(key, -1L));
+            }
+        }
+    }
+
+    @Test
+    public void testRemoveValuesOlderThan() {
+        Random random = new Random(7);
+        MmsiPairMap map = new MmsiPairMap();
+        Map<Long, Long> expected = new HashMap<>();
+
+        for (int i = 0; i < 50000; i++) {
+            long key = MmsiPairMap.unorderedKey(219000000 + random.nextInt(1000), 219000000 + random.nextInt(1000));
+            map.put(key, i);
+            expected.put(key, (long) i);
+        }
+        map.put(0L, 10L);
+        expected.put(0L, 10L);
+
+        int removed = map.removeValuesOlderThan(40000);
+
+        int expectedRemoved = 0;
+        for (Iterator<Map.Entry<Long, Long>> it = expected.entrySet().iterator(); it.hasNext(); ) {
+            if (it.next().getValue() < 40000) {
+                it.remove();
+                expectedRemoved++;
+            }
+        }
+        assertEquals(expectedRemoved, removed);
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value.longValue(), map.get(key, -1L)));
+        assertFalse(map.containsKey(0L));
+
+        map.removeValuesOlderThan(Long.MAX_VALUE);
+        assertTrue(map.isEmpty());
+        map.put(42L, 1L);
+        assertTrue(map.containsKey(42L));
+    }
+
+    @Test
+    public void testClear() {
+        MmsiPairMap map = new MmsiPairMap();
+        map.put(0L, 1L);
+        map.put(MmsiPairMap.unorderedKey(1, 2), 2L);
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertFalse(map.containsKey(0L));
+        assertFalse(map.containsKey(MmsiPairMap.unorderedKey(1, 2)));
+    }
+
+}
@@ -0,0 +1,101 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db;
+
+import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.EventCount;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-memory aggregate of event counts, ordered by resolution, period, event type and cell.
+ */
+@ThreadSafe
+public final class EventCounts {
+
+    private final NavigableMap<EventCount, LongAdder> counts = new ConcurrentSkipListMap<>(EventCount.ORDER);
+
+    /**
+     * Count the given event once per resolution.
+     */
+    public void add(Event event) {
+        addAll(EventCount.of(event));
+    }
+
+    /**
+     * Add the given counts to the aggregate.
+     */
+    public void addAll(Collection<EventCount> eventCounts) {
+        eventCounts.forEach(eventCount -> counts.computeIfAbsent(eventCount, k -> new LongAdder()).add(eventCount.getNumberOfEvents()));
+    }
+
+    public boolean isEmpty() {
+        return counts.isEmpty();
+    }
+
+    /**
+     * @return all counts of the aggregate - per cell - in order.
+     */
+    public List<EventCount> getAll() {
+        List<EventCount> eventCounts = new ArrayList<>(counts.size());
+        counts.forEach((key, n) -> eventCounts.add(copyOf(key, n.sum())));
+        return eventCounts;
+    }
+
+    /**
+     * Get the counts of the given resolution for the periods which start from 'from' (truncated to the resolution)
+     * and before 'to' - ordered by period, event type and cell.
+     *
+     * @param byCell if true, a count is returned per cell; otherwise the counts are summed over all cells.
+     */
+    public List<EventCount> get(LocalDateTime from, LocalDateTime to, EventCount.Resolution resolution, boolean byCell) {
+        NavigableMap<EventCount, LongAdder> periods = counts.subMap(
+            new EventCount(resolution, resolution.truncate(from), "", 0), true,
+            new EventCount(resolution, to, "", 0), false
+        );
+
+        List<EventCount> eventCounts = new ArrayList<>();
+        EventCount sum = null;
+        for (Map.Entry<EventCount, LongAdder> entry : periods.entrySet()) {
+            EventCount key = entry.getKey();
+            long n = entry.getValue().sum();
+            if (byCell) {
+                eventCounts.add(copyOf(key, n));
+            } else if (sum != null && sum.getPeriodStart().equals(key.getPeriodStart()) && sum.getEventType().equals(key.getEventType())) {
+                sum = new EventCount(resolution, sum.getPeriodStart(), sum.getEventType(), sum.getNumberOfEvents() + n);
+                eventCounts.set(eventCounts.size() - 1, sum);
+            } else {
+                sum = new EventCount(resolution, key.getPeriodStart(), key.getEventType(), n);
+                eventCounts.add(sum);
+            }
+        }
+        return eventCounts;
+    }
+
+    private static EventCount copyOf(EventCount key, long numberOfEvents) {
+        return new EventCount(key.getResolution(), key.getPeriodStart(), key.getEventType(), key.getCellLatitude(), key.getCellLongitude(), numberOfEvents);
+    }
+
+}
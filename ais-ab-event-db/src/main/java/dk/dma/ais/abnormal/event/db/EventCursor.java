@@ -0,0 +1,115 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db;
+
+import dk.dma.ais.abnormal.event.db.domain.Event;
+
+import javax.annotation.concurrent.Immutable;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Position in a list of events ordered by start time and id - i.e. the start time and id of the last event
+ * of a page of search results. The next page holds the events after the cursor.
+ *
+ * The cursor can be passed to clients as a string (see toString and parse).
+ */
+@Immutable
+public final class EventCursor {
+
+    /** The order of events for paginated search results */
+    public static final Comparator<Event> ORDER = Comparator.comparing(Event::getStartTime).thenComparingLong(Event::getId);
+
+    private static final char SEPARATOR = '_';
+
+    private final LocalDateTime startTime;
+    private final long id;
+
+    public EventCursor(LocalDateTime startTime, long id) {
+        this.startTime = Objects.requireNonNull(startTime);
+        this.id = id;
+    }
+
+    /**
+     * @return a cursor positioned at the given event.
+     */
+    public static EventCursor at(Event event) {
+        return new EventCursor(event.getStartTime(), event.getId());
+    }
+
+    /**
+     * @return a cursor positioned at the event of the given summary.
+     */
+    public static EventCursor at(EventSummary eventSummary) {
+        return new EventCursor(eventSummary.getStartTime(), eventSummary.getId());
+    }
+
+    /**
+     * Parse a cursor from the output of toString.
+     *
+     * @throws IllegalArgumentException if the string is not a valid cursor.
+     */
+    public static EventCursor parse(String cursor) {
+        int separator = cursor.lastIndexOf(SEPARATOR);
+        try {
+            return new EventCursor(LocalDateTime.parse(cursor.substring(0, separator)), Long.parseLong(cursor.substring(separator + 1)));
+        } catch (StringIndexOutOfBoundsException | DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Illegal event cursor: \"" + cursor + "\".");
+        }
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return true if the given event comes after this cursor in the order of paginated search results.
+     */
+    public boolean isBefore(Event event) {
+        int c = event.getStartTime().compareTo(startTime);
+        return c > 0 || (c == 0 && event.getId() > id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        EventCursor that = (EventCursor) o;
+        return id == that.id && startTime.equals(that.startTime);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * startTime.hashCode() + Long.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return startTime.toString() + SEPARATOR + id;
+    }
+
+}
@@ -16,10 +16,20 @@
 
 package dk.dma.ais.abnormal.event.db;
 
+import dk.dma.ais.abnormal.event.db.domain.Behaviour;
 import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.EventCount;
+import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  * Database-agnostic interface for the Event repository.
@@ -38,6 +48,28 @@ public interface EventRepository {
      */
     void save(Event event);
 
+    /**
+     * Update an event which has already been saved with tracking points appended to its behaviours since, and
+     * with its current state and end time. The tracking points must already have been added to the event.
+     *
+     * Unlike save, this need not save the whole event again; so the cost of an update does not grow with the
+     * number of tracking points the event already has. Other changes to the event are not necessarily saved.
+     *
+     * @param event the event to update.
+     * @param appendedTrackingPoints the tracking points appended since the event was last saved, by behaviour.
+     */
+    default void update(Event event, Map<Behaviour, List<TrackingPoint>> appendedTrackingPoints) {
+        save(event);
+    }
+
+    /**
+     * Create or update a number of events in persistent storage - in the given order.
+     * @param events
+     */
+    default void saveAll(Collection<? extends Event> events) {
+        events.forEach(this::save);
+    }
+
     /**
      * Get an event from the database.
      *
@@ -65,6 +97,49 @@ public interface EventRepository {
      */
     List<Event> findEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west);
 
+    /**
+     * Get a page of the events found by findEventsByFromAndToAndTypeAndVesselAndArea: At most limit events ordered by
+     * start time and id (see EventCursor.ORDER), starting after the given cursor.
+     *
+     * The next page is found by passing EventCursor.at(last event of this page) as cursor. The result is complete
+     * when a page holds fewer than limit events.
+     *
+     * @param after the cursor after which the page starts - or null for the first page.
+     * @param limit the maximum number of events in the page.
+     * @return the events of the page.
+     */
+    default List<Event> findEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, EventCursor after, int limit) {
+        return findEventsByFromAndToAndTypeAndVesselAndArea(from, to, type, vessel, north, east, south, west).stream()
+            .filter(event -> after == null || after.isBefore(event))
+            .sorted(EventCursor.ORDER)
+            .limit(limit)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Pass the events found by findEventsByFromAndToAndTypeAndVesselAndArea to the given consumer one by one - without
+     * holding all of them in memory at the same time.
+     */
+    default void streamEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, Consumer<Event> consumer) {
+        findEventsByFromAndToAndTypeAndVesselAndArea(from, to, type, vessel, north, east, south, west).forEach(consumer);
+    }
+
+    /**
+     * Get the summaries of a page of the events found by findEventsByFromAndToAndTypeAndVesselAndArea - in the same
+     * order and with the same pagination as the events themselves. Summaries are for listing events; the full event
+     * is found by getEvent.
+     *
+     * @param after the cursor after which the page starts - or null for the first page.
+     * @param limit the maximum number of summaries in the page.
+     * @return the summaries of the events of the page.
+     */
+    default List<EventSummary> findEventSummariesByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, EventCursor after, int limit) {
+        return findEventsByFromAndToAndTypeAndVesselAndArea(from, to, type, vessel, north, east, south, west, after, limit).stream()
+            .map(EventSummary::of)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
     /**
      * Get all events (past and ongoing) which are active inside the given time period. All event which have a second
      * of its lifespan inside the query time span is included - e.g. events starting before 'from' but ending after
@@ -84,6 +159,41 @@ public interface EventRepository {
      */
     List<Event> findRecentEvents(int numberOfEvents);
 
+    /**
+     * Find the summaries of the most recently raised events.
+     *
+     * @param numberOfEvents
+     * @return
+     */
+    default List<EventSummary> findRecentEventSummaries(int numberOfEvents) {
+        return findRecentEvents(numberOfEvents).stream()
+            .map(EventSummary::of)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the number of events raised per event type in each period of the given resolution which starts from
+     * 'from' (truncated to the resolution) and before 'to' - ordered by period and event type (and cell).
+     *
+     * Repositories which maintain event counts as events are saved (see EventCount) find them without loading any
+     * events; others count the events of the period.
+     *
+     * @param from
+     * @param to
+     * @param resolution the length of the periods - an hour or a day.
+     * @param byCell if true, the events are also counted per area cell.
+     * @return the event counts.
+     */
+    default List<EventCount> getEventCounts(Date from, Date to, EventCount.Resolution resolution, boolean byCell) {
+        LocalDateTime fromTime = resolution.truncate(LocalDateTime.ofInstant(from.toInstant(), ZoneId.systemDefault()));
+        LocalDateTime toTime = LocalDateTime.ofInstant(to.toInstant(), ZoneId.systemDefault());
+
+        EventCounts eventCounts = new EventCounts();
+        findEventsByFromAndTo(Date.from(fromTime.atZone(ZoneId.systemDefault()).toInstant()), to).forEach(eventCounts::add);
+        return eventCounts.get(fromTime, toTime, resolution, byCell);
+    }
+
     <T extends Event> T findOngoingEventByVessel(int mmsi, Class<T> eventClass);
 
 }
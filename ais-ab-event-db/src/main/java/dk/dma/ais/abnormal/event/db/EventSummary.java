@@ -0,0 +1,186 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db;
+
+import dk.dma.ais.abnormal.event.db.domain.Behaviour;
+import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
+import dk.dma.ais.abnormal.event.db.domain.Vessel;
+
+import javax.annotation.concurrent.Immutable;
+import java.time.LocalDateTime;
+
+/**
+ * A summary of an event with what is needed to list it or mark it on a map: Its type, state, time span and title,
+ * the primary vessel, the last position of the primary vessel and the bounding box of the event.
+ *
+ * Summaries are loaded by JpaEventRepository with a constructor expression - i.e. without loading the behaviours
+ * and tracking points of the events. The full event is loaded by EventRepository.getEvent.
+ */
+@Immutable
+public final class EventSummary {
+
+    private final long id;
+    private final String eventType;
+    private final Event.State state;
+    private final LocalDateTime startTime;
+    private final LocalDateTime endTime;
+    private final String title;
+
+    private final int primaryVesselMmsi;
+    private final String primaryVesselName;
+    private final String primaryVesselCallsign;
+    private final Integer primaryVesselType;
+    private final Integer primaryVesselLength;
+
+    /** Last position of the primary vessel */
+    private final Double latitude;
+    private final Double longitude;
+
+    private final Double minLatitude;
+    private final Double maxLatitude;
+    private final Double minLongitude;
+    private final Double maxLongitude;
+
+    /**
+     * Constructor used by the HQL constructor expressions of JpaEventRepository; the order of the parameters must
+     * match the select clause there. The event type is the discriminator value of the event, i.e. the simple name of
+     * its class.
+     */
+    public EventSummary(long id, String eventType, Event.State state, LocalDateTime startTime, LocalDateTime endTime, String title,
+                        int primaryVesselMmsi, String primaryVesselName, String primaryVesselCallsign, Integer primaryVesselType, Integer primaryVesselToBow, Integer primaryVesselToStern,
+                        Double latitude, Double longitude, Double minLatitude, Double maxLatitude, Double minLongitude, Double maxLongitude) {
+        this.id = id;
+        this.eventType = eventType;
+        this.state = state;
+        this.startTime = startTime;
+        this.endTime = endTime;
+        this.title = title;
+        this.primaryVesselMmsi = primaryVesselMmsi;
+        this.primaryVesselName = primaryVesselName;
+        this.primaryVesselCallsign = primaryVesselCallsign;
+        this.primaryVesselType = primaryVesselType;
+        this.primaryVesselLength = primaryVesselToBow == null || primaryVesselToStern == null ? null : primaryVesselToBow + primaryVesselToStern;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.minLatitude = minLatitude;
+        this.maxLatitude = maxLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLongitude = maxLongitude;
+    }
+
+    /**
+     * @return the summary of a fully loaded event - or null if the event has no primary behaviour with tracking points.
+     */
+    public static EventSummary of(Event event) {
+        Behaviour primaryBehaviour = event.primaryBehaviour();
+        if (primaryBehaviour == null || primaryBehaviour.getTrackingPoints().isEmpty()) {
+            return null;
+        }
+        Vessel vessel = primaryBehaviour.getVessel();
+        TrackingPoint lastPosition = primaryBehaviour.mostRecentTrackingPoint();
+        return new EventSummary(
+            event.getId(), event.getClass().getSimpleName(), event.getState(), event.getStartTime(), event.getEndTime(), event.getTitle(),
+            vessel.getMmsi(), vessel.getName(), vessel.getCallsign(), vessel.getType(), vessel.getToBow(), vessel.getToStern(),
+            lastPosition.getLatitude(), lastPosition.getLongitude(),
+            event.getMinLatitude(), event.getMaxLatitude(), event.getMinLongitude(), event.getMaxLongitude()
+        );
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public Event.State getState() {
+        return state;
+    }
+
+    public LocalDateTime getStartTime() {
+        return startTime;
+    }
+
+    public LocalDateTime getEndTime() {
+        return endTime;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getPrimaryVesselMmsi() {
+        return primaryVesselMmsi;
+    }
+
+    public String getPrimaryVesselName() {
+        return primaryVesselName;
+    }
+
+    public String getPrimaryVesselCallsign() {
+        return primaryVesselCallsign;
+    }
+
+    public Integer getPrimaryVesselType() {
+        return primaryVesselType;
+    }
+
+    public Integer getPrimaryVesselLength() {
+        return primaryVesselLength;
+    }
+
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    public Double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public Double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public Double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public Double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuffer sb = new StringBuffer("EventSummary{");
+        sb.append("id=").append(id);
+        sb.append(", eventType='").append(eventType).append('\'');
+        sb.append(", state=").append(state);
+        sb.append(", startTime=").append(startTime);
+        sb.append(", endTime=").append(endTime);
+        sb.append(", primaryVesselMmsi=").append(primaryVesselMmsi);
+        sb.append(", primaryVesselName='").append(primaryVesselName).append('\'');
+        sb.append('}');
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,139 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db;
+
+import dk.dma.ais.abnormal.event.db.domain.Event;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * An in-memory index of events by the MMSI of each involved vessel and the event class; e.g. the ongoing events
+ * of a repository. Lookups are two hash probes and do not lock. The index records when each entry was last put or
+ * looked up, so that entries which are no longer used can be evicted.
+ */
+@ThreadSafe
+public final class OngoingEventIndex {
+
+    private final Map<Class<? extends Event>, Map<Integer, Entry>> events = new ConcurrentHashMap<>();
+
+    /**
+     * Index the given event if it is ongoing and not suppressed; otherwise remove it from the index.
+     */
+    public void update(Event event) {
+        if (event.getState() == Event.State.ONGOING && !event.isSuppressed()) {
+            put(event);
+        } else {
+            remove(event);
+        }
+    }
+
+    /**
+     * Index the given event under all its involved vessels - replacing any event of the same class.
+     */
+    public void put(Event event) {
+        Map<Integer, Entry> eventsOfClass = events.computeIfAbsent(event.getClass(), c -> new ConcurrentHashMap<>());
+        event.involvedMmsis().forEach(mmsi -> eventsOfClass.put(mmsi, new Entry(event)));
+    }
+
+    /**
+     * Remove the given event from the index. Entries which refer to another event of the same class are kept.
+     */
+    public void remove(Event event) {
+        Map<Integer, Entry> eventsOfClass = events.get(event.getClass());
+        if (eventsOfClass != null) {
+            event.involvedMmsis().forEach(mmsi -> eventsOfClass.computeIfPresent(mmsi, (m, indexed) -> isSameEvent(indexed.event, event) ? null : indexed));
+        }
+    }
+
+    /**
+     * Remove the indexed events which match the given predicate.
+     */
+    public void removeIf(Predicate<Event> predicate) {
+        events().stream().filter(predicate).forEach(this::remove);
+    }
+
+    /**
+     * Remove the events of which no entry has been put or looked up since the given time.
+     *
+     * @param time milliseconds since the epoch.
+     * @return the removed events.
+     */
+    public List<Event> removeUnusedSince(long time) {
+        Map<Event, Long> lastUsed = new IdentityHashMap<>();
+        events.values().forEach(eventsOfClass -> eventsOfClass.values().forEach(entry -> lastUsed.merge(entry.event, entry.lastUsed, Math::max)));
+
+        List<Event> unused = lastUsed.entrySet().stream().filter(e -> e.getValue() < time).map(Map.Entry::getKey).collect(Collectors.toList());
+        unused.forEach(this::remove);
+        return unused;
+    }
+
+    /**
+     * @return the indexed event of the given class involving the given vessel; or null if there is none.
+     */
+    public <T extends Event> T get(int mmsi, Class<T> eventClass) {
+        Map<Integer, Entry> eventsOfClass = events.get(eventClass);
+        Entry entry = eventsOfClass == null ? null : eventsOfClass.get(mmsi);
+        if (entry == null) {
+            return null;
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        return eventClass.cast(entry.event);
+    }
+
+    /**
+     * @return the distinct indexed events.
+     */
+    public Set<Event> events() {
+        Set<Event> indexed = Collections.newSetFromMap(new IdentityHashMap<>());
+        events.values().forEach(eventsOfClass -> eventsOfClass.values().forEach(entry -> indexed.add(entry.event)));
+        return indexed;
+    }
+
+    /**
+     * @return the number of (vessel, event class) entries in the index.
+     */
+    public int size() {
+        return events.values().stream().mapToInt(Map::size).sum();
+    }
+
+    public void clear() {
+        events.clear();
+    }
+
+    /** Persisted events may be represented by several instances; e.g. one loaded and one saved */
+    private static boolean isSameEvent(Event e1, Event e2) {
+        return e1 == e2 || (e1.getId() != 0 && e1.getId() == e2.getId());
+    }
+
+    private static final class Entry {
+        private final Event event;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private Entry(Event event) {
+            this.event = event;
+        }
+    }
+
+}
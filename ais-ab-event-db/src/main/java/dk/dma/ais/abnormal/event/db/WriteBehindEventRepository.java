@@ -0,0 +1,578 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db;
+
+import dk.dma.ais.abnormal.application.statistics.Counter;
+import dk.dma.ais.abnormal.application.statistics.Gauge;
+import dk.dma.ais.abnormal.application.statistics.StatisticsRegistry;
+import dk.dma.ais.abnormal.event.db.domain.Behaviour;
+import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.EventCount;
+import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * WriteBehindEventRepository is a decorator of another EventRepository which moves the persistence of events
+ * off the calling thread.
+ *
+ * Saved events are queued and written to the decorated repository in batches by a separate writer thread. An event
+ * which is saved again while still queued is not queued twice; the writer just saves its most recent state. Updates
+ * of a queued event are merged in the same way, so that the writer appends their tracking points in one go. As
+ * there is only one writer, the writes of each event reach the decorated repository in the order they were made.
+ *
+ * Ongoing events saved through this repository are kept in memory, so that findOngoingEventByVessel sees them
+ * before they are written - and returns the very instance which was saved. Callers which modify an event
+ * obtained from this repository must do so while synchronized on this repository, because the writer copies the
+ * events of a batch while holding its monitor. The copies are written without holding the monitor, and the ids
+ * assigned to them are taken over by the saved events afterwards.
+ *
+ * The queue is bounded: If the writer falls behind by more than the capacity, callers of save and update wait
+ * for room for at most maxQueueWaitMillis. If there is still no room, the write is dropped and logged.
+ *
+ * A batch which the decorated repository fails to write is retried with exponential backoff; the events queued
+ * after it wait meanwhile, so the writes of each event still arrive in order. Once a batch has failed maxAttempts
+ * times in a row, flush fails with the cause - and if the repository is closed while the batch still cannot be
+ * written, close gives up and fails with the number of unwritten events.
+ */
+@ThreadSafe
+public class WriteBehindEventRepository implements EventRepository, AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindEventRepository.class);
+
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+    public static final long DEFAULT_MAX_QUEUE_WAIT_MILLIS = 10000;
+
+    static final long INITIAL_RETRY_DELAY_MILLIS = 100;
+    static final long MAX_RETRY_DELAY_MILLIS = 30000;
+
+    static final String STATISTICS_GROUP = "WriteBehindEventRepository";
+
+    private final EventRepository delegate;
+    private final int capacity;
+    private final int maxBatchSize;
+    private final int maxAttempts;
+    private final long initialRetryDelayMillis;
+    private final long maxQueueWaitMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition written = lock.newCondition();
+
+    /** Events waiting to be written - in the order they were first saved */
+    @GuardedBy("lock")
+    private final ArrayDeque<Event> queue = new ArrayDeque<>();
+
+    /** The pending write of each queued event */
+    @GuardedBy("lock")
+    private final Map<Event, PendingWrite> pendingWrites = new IdentityHashMap<>();
+
+    /** Ongoing events saved through this repository */
+    @GuardedBy("lock")
+    private final OngoingEventIndex ongoingEvents = new OngoingEventIndex();
+
+    /** Events saved as no longer ongoing which may not yet be reflected by the decorated repository */
+    @GuardedBy("lock")
+    private final OngoingEventIndex unwrittenPastEvents = new OngoingEventIndex();
+
+    /** True while the writer is writing a batch */
+    @GuardedBy("lock")
+    private boolean writing;
+
+    @GuardedBy("lock")
+    private boolean closed;
+
+    /** The cause of the last failure to write the current batch - once it has failed maxAttempts times in a row */
+    @GuardedBy("lock")
+    private RuntimeException persistentFailure;
+
+    /** No. of events which were not written because the writer gave up when closed */
+    @GuardedBy("lock")
+    private int unwrittenEvents;
+
+    private final Thread writer;
+
+    private final Gauge queueSize;
+    private final Gauge queueLagMillis;
+    private final Counter eventsWritten;
+    private final Counter batchesWritten;
+    private final Counter writeFailures;
+    private final Counter writesDropped;
+
+    public WriteBehindEventRepository(EventRepository delegate, StatisticsRegistry statisticsRegistry) {
+        this(delegate, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE, statisticsRegistry);
+    }
+
+    public WriteBehindEventRepository(EventRepository delegate, int capacity, int maxBatchSize, StatisticsRegistry statisticsRegistry) {
+        this(delegate, capacity, maxBatchSize, DEFAULT_MAX_ATTEMPTS, INITIAL_RETRY_DELAY_MILLIS, DEFAULT_MAX_QUEUE_WAIT_MILLIS, statisticsRegistry);
+    }
+
+    WriteBehindEventRepository(EventRepository delegate, int capacity, int maxBatchSize, int maxAttempts, long initialRetryDelayMillis, long maxQueueWaitMillis, StatisticsRegistry statisticsRegistry) {
+        if (capacity < 1 || maxBatchSize < 1 || maxAttempts < 1) {
+            throw new IllegalArgumentException("capacity: " + capacity + ", maxBatchSize: " + maxBatchSize + ", maxAttempts: " + maxAttempts);
+        }
+
+        this.delegate = delegate;
+        this.capacity = capacity;
+        this.maxBatchSize = maxBatchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialRetryDelayMillis = initialRetryDelayMillis;
+        this.maxQueueWaitMillis = maxQueueWaitMillis;
+
+        this.queueSize = statisticsRegistry.gauge(STATISTICS_GROUP, "# queued events");
+        this.queueLagMillis = statisticsRegistry.gauge(STATISTICS_GROUP, "Queue lag (msecs)");
+        this.eventsWritten = statisticsRegistry.counter(STATISTICS_GROUP, "# events written");
+        this.batchesWritten = statisticsRegistry.counter(STATISTICS_GROUP, "# batches written");
+        this.writeFailures = statisticsRegistry.counter(STATISTICS_GROUP, "# write failures");
+        this.writesDropped = statisticsRegistry.counter(STATISTICS_GROUP, "# writes dropped");
+
+        this.writer = new Thread(this::writeQueuedEvents, getClass().getSimpleName() + "-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+
+        LOG.info(this.getClass().getSimpleName() + " created (" + this + ") in front of " + delegate + ".");
+    }
+
+    @Override
+    public void save(Event event) {
+        lock.lock();
+        try {
+            PendingWrite pendingWrite = enqueue(event);
+            if (pendingWrite != null) {
+                pendingWrite.save = true;
+                pendingWrite.appendedTrackingPoints.clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue an update of the event. If a save of the event is already queued, that save includes the update;
+     * otherwise the appended tracking points are accumulated with those of other queued updates of the event.
+     */
+    @Override
+    public void update(Event event, Map<Behaviour, List<TrackingPoint>> appendedTrackingPoints) {
+        lock.lock();
+        try {
+            PendingWrite pendingWrite = enqueue(event);
+            if (pendingWrite != null && !pendingWrite.save) {
+                appendedTrackingPoints.forEach((behaviour, trackingPoints) ->
+                    pendingWrite.appendedTrackingPoints.computeIfAbsent(behaviour, b -> new ArrayList<>()).addAll(trackingPoints)
+                );
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queue the event for writing unless already queued.
+     * @return the pending write of the event; or null if the queue stayed full for maxQueueWaitMillis.
+     */
+    @GuardedBy("lock")
+    private PendingWrite enqueue(Event event) {
+        if (closed) {
+            throw new IllegalStateException(getClass().getSimpleName() + " is closed.");
+        }
+
+        ongoingEvents.update(event);
+        if (event.getState() != Event.State.ONGOING) {
+            unwrittenPastEvents.put(event);
+        }
+
+        PendingWrite pendingWrite = pendingWrites.get(event);
+        if (pendingWrite == null) {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(maxQueueWaitMillis);
+            try {
+                while (queue.size() >= capacity && !closed && remaining > 0) {
+                    remaining = notFull.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting to queue event.", e);
+            }
+            if (closed) {
+                throw new IllegalStateException(getClass().getSimpleName() + " was closed while waiting to queue event.");
+            }
+            if (queue.size() >= capacity) {
+                writesDropped.increment();
+                LOG.error("Queue full for " + maxQueueWaitMillis + " msecs; write of event dropped: " + event);
+                return null;
+            }
+            pendingWrite = new PendingWrite(System.currentTimeMillis());
+            queue.addLast(event);
+            pendingWrites.put(event, pendingWrite);
+            notEmpty.signal();
+        }
+
+        updateQueueGauges();
+        return pendingWrite;
+    }
+
+    @Override
+    public <T extends Event> T findOngoingEventByVessel(int mmsi, Class<T> eventClass) {
+        lock.lock();
+        try {
+            T event = ongoingEvents.get(mmsi, eventClass);
+            if (event != null) {
+                return event;
+            }
+            if (unwrittenPastEvents.get(mmsi, eventClass) != null) {
+                return null; // The decorated repository may still hold the event as ongoing
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        return delegate.findOngoingEventByVessel(mmsi, eventClass);
+    }
+
+    @Override
+    public List<String> getEventTypes() {
+        return delegate.getEventTypes();
+    }
+
+    @Override
+    public Event getEvent(long eventId) {
+        return delegate.getEvent(eventId);
+    }
+
+    @Override
+    public List<Event> findEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west) {
+        return delegate.findEventsByFromAndToAndTypeAndVesselAndArea(from, to, type, vessel, north, east, south, west);
+    }
+
+    @Override
+    public List<Event> findEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, EventCursor after, int limit) {
+        return delegate.findEventsByFromAndToAndTypeAndVesselAndArea(from, to, type, vessel, north, east, south, west, after, limit);
+    }
+
+    @Override
+    public void streamEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, Consumer<Event> consumer) {
+        delegate.streamEventsByFromAndToAndTypeAndVesselAndArea(from, to, type, vessel, north, east, south, west, consumer);
+    }
+
+    @Override
+    public List<EventSummary> findEventSummariesByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, EventCursor after, int limit) {
+        return delegate.findEventSummariesByFromAndToAndTypeAndVesselAndArea(from, to, type, vessel, north, east, south, west, after, limit);
+    }
+
+    @Override
+    public List<Event> findEventsByFromAndTo(Date from, Date to) {
+        return delegate.findEventsByFromAndTo(from, to);
+    }
+
+    @Override
+    public List<Event> findRecentEvents(int numberOfEvents) {
+        return delegate.findRecentEvents(numberOfEvents);
+    }
+
+    @Override
+    public List<EventSummary> findRecentEventSummaries(int numberOfEvents) {
+        return delegate.findRecentEventSummaries(numberOfEvents);
+    }
+
+    @Override
+    public List<EventCount> getEventCounts(Date from, Date to, EventCount.Resolution resolution, boolean byCell) {
+        return delegate.getEventCounts(from, to, resolution, byCell);
+    }
+
+    /**
+     * @return the repository which events are written to.
+     */
+    public EventRepository getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return the number of events waiting to be written.
+     */
+    public int getQueueSize() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the time in milliseconds that the oldest queued event has waited to be written; 0 if none are queued.
+     */
+    public long getQueueLagMillis() {
+        lock.lock();
+        try {
+            return queueLag(System.currentTimeMillis());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until all queued events have been written or the timeout expires.
+     * @return true if the queue was drained before the timeout.
+     * @throws IllegalStateException if the writer repeatedly fails to write the queued events.
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (!queue.isEmpty() || writing) {
+                if (persistentFailure != null) {
+                    throw new IllegalStateException("Failed to write queued events " + maxAttempts + " times in a row.", persistentFailure);
+                }
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = written.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop accepting events, write all queued events and stop the writer thread.
+     * @throws IllegalStateException if the queued events could not all be written.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn("Interrupted while waiting for queued events to be written.");
+        }
+
+        lock.lock();
+        try {
+            if (unwrittenEvents > 0) {
+                throw new IllegalStateException(getClass().getSimpleName() + " closed; " + unwrittenEvents + " events could not be written.", persistentFailure);
+            }
+        } finally {
+            lock.unlock();
+        }
+        LOG.info(getClass().getSimpleName() + " closed; " + eventsWritten.getValue() + " events written in " + batchesWritten.getValue() + " batches.");
+    }
+
+    private void writeQueuedEvents() {
+        List<Event> batch = new ArrayList<>(maxBatchSize);
+        List<PendingWrite> batchWrites = new ArrayList<>(maxBatchSize);
+        while (true) {
+            lock.lock();
+            try {
+                writing = false;
+                written.signalAll();
+                while (queue.isEmpty() && !closed) {
+                    notEmpty.await();
+                }
+                if (queue.isEmpty()) {
+                    return;
+                }
+                batch.clear();
+                batchWrites.clear();
+                while (batch.size() < maxBatchSize && !queue.isEmpty()) {
+                    Event event = queue.pollFirst();
+                    batch.add(event);
+                    batchWrites.add(pendingWrites.remove(event));
+                }
+                writing = true;
+                notFull.signalAll();
+                updateQueueGauges();
+            } catch (InterruptedException e) {
+                LOG.error("Writer interrupted; " + queue.size() + " queued events are not written.");
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            if (!write(batch, batchWrites)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Write the batch - retrying with exponential backoff until it succeeds, or until it has failed maxAttempts
+     * times and the repository is closed.
+     * @return true if the batch was written; false if the writer gave up.
+     */
+    private boolean write(List<Event> batch, List<PendingWrite> batchWrites) {
+        long retryDelayMillis = initialRetryDelayMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                writeCopies(batch, batchWrites);
+                eventsWritten.add(batch.size());
+                batchesWritten.increment();
+                break;
+            } catch (RuntimeException e) {
+                writeFailures.increment();
+                LOG.error("Failed to write batch of " + batch.size() + " events (attempt " + attempt + "): " + e.getMessage(), e);
+                if (!awaitRetry(e, attempt, retryDelayMillis, batch.size())) {
+                    return false;
+                }
+                retryDelayMillis = Math.min(2 * retryDelayMillis, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+
+        lock.lock();
+        try {
+            persistentFailure = null;
+            batch.stream()
+                .filter(event -> event.getState() != Event.State.ONGOING && !pendingWrites.containsKey(event))
+                .forEach(unwrittenPastEvents::remove);
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Wait before the next attempt to write a failed batch.
+     * @return false if the writer should give up the batch and the events queued after it.
+     */
+    private boolean awaitRetry(RuntimeException failure, int attempt, long retryDelayMillis, int batchSize) {
+        lock.lock();
+        try {
+            if (attempt >= maxAttempts) {
+                persistentFailure = failure;
+                written.signalAll();
+                if (closed) {
+                    unwrittenEvents = batchSize + queue.size();
+                    LOG.error("Giving up; " + unwrittenEvents + " events are not written.");
+                    return false;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            Thread.sleep(retryDelayMillis);
+            return true;
+        } catch (InterruptedException e) {
+            lock.lock();
+            try {
+                unwrittenEvents = batchSize + queue.size();
+                LOG.error("Writer interrupted; " + unwrittenEvents + " events are not written.");
+            } finally {
+                lock.unlock();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Copy the events of the batch while holding the monitor of this repository, so that they are not modified
+     * meanwhile. Then write the copies without holding the monitor, and let the events take over the ids assigned
+     * to their copies.
+     */
+    private void writeCopies(List<Event> batch, List<PendingWrite> batchWrites) {
+        List<Event> copies = new ArrayList<>(batch.size());
+        List<Map<Behaviour, List<TrackingPoint>>> copiedTrackingPoints = new ArrayList<>(batch.size());
+        synchronized (this) {
+            for (int i = 0; i < batch.size(); i++) {
+                Event copy = batch.get(i).copy();
+                copies.add(copy);
+                copiedTrackingPoints.add(batchWrites.get(i).save ? null : appendedTrackingPointsOf(copy, batchWrites.get(i)));
+            }
+        }
+
+        List<Event> saves = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (batchWrites.get(i).save) {
+                saves.add(copies.get(i));
+            }
+        }
+        delegate.saveAll(saves);
+        for (int i = 0; i < batch.size(); i++) {
+            if (!batchWrites.get(i).save) {
+                delegate.update(copies.get(i), copiedTrackingPoints.get(i));
+            }
+        }
+
+        synchronized (this) {
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).adoptWrittenCopy(copies.get(i));
+            }
+        }
+    }
+
+    /** @return the tracking points appended by the pending write - keyed by the behaviours of the copy */
+    private static Map<Behaviour, List<TrackingPoint>> appendedTrackingPointsOf(Event copy, PendingWrite pendingWrite) {
+        Map<Behaviour, List<TrackingPoint>> appendedTrackingPoints = new HashMap<>();
+        pendingWrite.appendedTrackingPoints.forEach((behaviour, trackingPoints) ->
+            appendedTrackingPoints.put(copy.getBehaviour(behaviour.getVessel().getMmsi()), new ArrayList<>(trackingPoints))
+        );
+        return appendedTrackingPoints;
+    }
+
+    @GuardedBy("lock")
+    private long queueLag(long now) {
+        Event oldest = queue.peekFirst();
+        return oldest == null ? 0 : now - pendingWrites.get(oldest).queuedSince;
+    }
+
+    @GuardedBy("lock")
+    private void updateQueueGauges() {
+        queueSize.set(queue.size());
+        queueLagMillis.set(queueLag(System.currentTimeMillis()));
+    }
+
+    /** A queued write of an event: A save, or an update with the tracking points appended since it was last written */
+    private static final class PendingWrite {
+        final long queuedSince;
+        boolean save;
+        final Map<Behaviour, List<TrackingPoint>> appendedTrackingPoints = new HashMap<>();
+
+        PendingWrite(long queuedSince) {
+            this.queuedSince = queuedSince;
+        }
+    }
+
+}
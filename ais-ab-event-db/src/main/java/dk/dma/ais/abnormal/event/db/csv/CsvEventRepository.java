@@ -17,37 +17,53 @@
 package dk.dma.ais.abnormal.event.db.csv;
 
 import com.google.inject.Inject;
+import dk.dma.ais.abnormal.application.statistics.Counter;
+import dk.dma.ais.abnormal.application.statistics.Gauge;
+import dk.dma.ais.abnormal.application.statistics.StatisticsRegistry;
 import dk.dma.ais.abnormal.event.db.EventRepository;
+import dk.dma.ais.abnormal.event.db.OngoingEventIndex;
 import dk.dma.ais.abnormal.event.db.domain.Behaviour;
 import dk.dma.ais.abnormal.event.db.domain.Event;
 import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
+import dk.dma.ais.abnormal.util.BackgroundBatchWriter;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantLock;
 
 import static java.time.temporal.ChronoUnit.MINUTES;
 
 /**
  * CsvEventRepository is an implementation of the EventRepository interface which
- * manages persistent Event objects in a flat CSV file.
+ * manages persistent Event objects in flat CSV files.
+ *
+ * Past events are written by a BackgroundBatchWriter, so that save never waits for the disk; if its queue is full
+ * the event is dropped and counted.
+ *
+ * When writing to files, each file is named after the configured file name with the time it was created appended
+ * - e.g. events-20140427-120000.csv - so that a restart never overwrites or collides with an earlier file. A new
+ * file is started when the current one exceeds maxFileSize or is older than maxFileAge.
  */
 @ThreadSafe
-public class CsvEventRepository implements EventRepository {
+public class CsvEventRepository implements EventRepository, Closeable {
 
     private static final Logger LOG = LoggerFactory.getLogger(CsvEventRepository.class);
 
@@ -55,29 +71,78 @@ public class CsvEventRepository implements EventRepository {
         LOG.info(this.getClass().getSimpleName() + " created (" + this + ").");
     }
 
-    private final ReentrantLock lock = new ReentrantLock();
+    public static final long DEFAULT_MAX_FILE_SIZE = 100L * 1024 * 1024;
+    public static final Duration DEFAULT_MAX_FILE_AGE = Duration.ofDays(1);
+
+    static final int QUEUE_CAPACITY = 10000;
+    static final int MAX_BATCH_SIZE = 1000;
+    static final long FLUSH_INTERVAL_MILLIS = 1000;
+
+    static final String STATISTICS_GROUP = "CsvEventRepository";
 
-    private final CSVPrinter printer;
+    private static final String[] HEADER = {
+        "eventId", "eventType", "startTime", "endTime", "title",
+        "description", "mmsis",
+        "pMmsi", "pName", "pCallsign", "pType", "pLength", "pLat", "pLon", "pSog", "pCog", "pHdg",
+        "sMmsi", "sName", "sCallsign", "sType", "sLength", "sLat", "sLon", "sSog", "sCog", "sHdg",
+        "filterSuggest"
+    };
+
+    private static final DateTimeFormatter FILTER_SUGGESTION_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH:mm");
+    private static final DateTimeFormatter FILE_NAME_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    /** The stream to write to; or null when writing to rotated files */
+    private final OutputStream out;
+
+    /** The configured file name, from which the names of the rotated files are derived; or null */
+    private final Path file;
+    private final long maxFileSize;
+    private final Duration maxFileAge;
 
     private final boolean readonly;
 
-    @GuardedBy("lock")
-    private final Map<Integer, Map<Class<? extends Event>, Event>> ongoingEvents = new HashMap<>();
+    private final OngoingEventIndex ongoingEvents = new OngoingEventIndex();
+
+    private final BackgroundBatchWriter<Event> writer;
 
+    private final Counter recordsWritten;
+
+    /* Accessed by the writer thread only */
+    private CSVPrinter printer;
+    private Path currentFile;
+    private LocalDateTime currentFileCreated;
+
+    /**
+     * Write all events to the given stream - without rotation. The stream is closed when the repository is closed.
+     */
     @Inject
-    public CsvEventRepository(OutputStream out, boolean readonly) throws IOException {
-        Writer writer = new OutputStreamWriter(out);
-
-        printer = CSVFormat.RFC4180
-                .withHeader(
-                        "eventId", "eventType", "startTime", "endTime", "title",
-                        "description", "mmsis",
-                        "pMmsi", "pName", "pCallsign", "pType", "pLength", "pLat", "pLon", "pSog", "pCog", "pHdg",
-                        "sMmsi", "sName", "sCallsign", "sType", "sLength", "sLat", "sLon", "sSog", "sCog", "sHdg",
-                        "filterSuggest"
-                ).print(writer);
+    public CsvEventRepository(OutputStream out, boolean readonly) {
+        this(out, null, DEFAULT_MAX_FILE_SIZE, DEFAULT_MAX_FILE_AGE, new StatisticsRegistry(), readonly);
+    }
+
+    /**
+     * Write events to files named after the given file - rotated by size and age.
+     */
+    public CsvEventRepository(Path file, long maxFileSize, Duration maxFileAge, StatisticsRegistry statisticsRegistry, boolean readonly) {
+        this(null, file, maxFileSize, maxFileAge, statisticsRegistry, readonly);
+    }
 
+    private CsvEventRepository(OutputStream out, Path file, long maxFileSize, Duration maxFileAge, StatisticsRegistry statisticsRegistry, boolean readonly) {
+        this.out = out;
+        this.file = file;
+        this.maxFileSize = maxFileSize;
+        this.maxFileAge = maxFileAge;
         this.readonly = readonly;
+
+        this.recordsWritten = statisticsRegistry.counter(STATISTICS_GROUP, "# records written");
+
+        if (readonly) {
+            this.writer = null;
+        } else {
+            final Gauge queueSize = statisticsRegistry.gauge(STATISTICS_GROUP, "# queued records");
+            final Counter recordsDropped = statisticsRegistry.counter(STATISTICS_GROUP, "# records dropped");
+            this.writer = new BackgroundBatchWriter<>(getClass().getSimpleName(), new CsvOutput(), QUEUE_CAPACITY, MAX_BATCH_SIZE, FLUSH_INTERVAL_MILLIS, recordsDropped, queueSize);
+        }
     }
 
     @Override
@@ -88,60 +153,156 @@ public class CsvEventRepository implements EventRepository {
     @Override
     public void save(Event event) {
         if (readonly == false) {
-            if (event.getState() == Event.State.ONGOING)
-                insertOngoingEvent(event);
-            else
-                removeOngoingEvent(event);
+            ongoingEvents.update(event);
 
             if (event.getState() == Event.State.PAST) {
+                writer.write(event);
+            }
+        }
+    }
+
+    /**
+     * Wait until all events saved before this call have been written and flushed.
+     */
+    public void flush() throws InterruptedException {
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
+    /**
+     * Write all queued events and close the output.
+     */
+    @Override
+    public void close() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the events to the stream, or to files rotated by size and age.
+     */
+    private final class CsvOutput implements BackgroundBatchWriter.Output<Event> {
+
+        @Override
+        public void write(List<Event> events) throws IOException {
+            prepareOutput();
+            for (Event event : events) {
+                printer.printRecord(record(event));
+            }
+            recordsWritten.add(events.size());
+        }
+
+        /**
+         * Start a new file if the current one is too large or old, and open the output if it is not open.
+         */
+        private void prepareOutput() throws IOException {
+            if (printer != null && currentFile != null) {
+                if (Files.size(currentFile) >= maxFileSize || !LocalDateTime.now().isBefore(currentFileCreated.plus(maxFileAge))) {
+                    flush();
+                    close();
+                }
+            }
+            if (printer == null) {
+                printer = CSVFormat.RFC4180.withHeader(HEADER).print(openWriter());
+            }
+        }
+
+        private Writer openWriter() throws IOException {
+            if (file == null) {
+                if (currentFileCreated != null) {
+                    throw new IOException("Output stream has been closed.");
+                }
+                currentFileCreated = LocalDateTime.now();
+                return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            }
+
+            currentFileCreated = LocalDateTime.now();
+            currentFile = nextFile(currentFileCreated);
+            LOG.info("Writing events to new CSV file " + currentFile.toAbsolutePath() + ".");
+            return new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(currentFile, StandardOpenOption.CREATE_NEW), StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        /**
+         * @return a file which does not exist, named after the configured file and the given time of creation.
+         */
+        private Path nextFile(LocalDateTime created) {
+            final String name = file.getFileName().toString();
+            final int dot = name.lastIndexOf('.');
+            final String base = dot > 0 ? name.substring(0, dot) : name;
+            final String extension = dot > 0 ? name.substring(dot) : "";
+            final String suffix = created.format(FILE_NAME_TIME_FORMAT);
+
+            Path next = file.resolveSibling(base + "-" + suffix + extension);
+            for (int i = 1; Files.exists(next); i++) {
+                next = file.resolveSibling(base + "-" + suffix + "-" + i + extension);
+            }
+            return next;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (printer != null) {
+                printer.flush();
+            }
+        }
+
+        @Override
+        public void close() {
+            if (printer != null) {
                 try {
-                    Behaviour primaryBehaviour = event.primaryBehaviour();
-                    Behaviour secondaryBehaviour = event.arbitraryNonPrimaryBehaviour();
-
-                    TrackingPoint primaryLastTrackingPoint = primaryBehaviour.getTrackingPoints().last();
-                    TrackingPoint secondaryLastTrackingPoint = secondaryBehaviour == null ? null : secondaryBehaviour.getTrackingPoints().last();
-
-                    printer.printRecord(
-                            event.getId(),
-                            event.getEventType(),
-                            event.getStartTime(),
-                            event.getEndTime(),
-                            event.getTitle(),
-                            event.getDescription(),
-                            event.involvedMmsis(),
-                            primaryBehaviour.getVessel().getMmsi(),
-                            primaryBehaviour.getVessel().getName(),
-                            primaryBehaviour.getVessel().getCallsign(),
-                            primaryBehaviour.getVessel().getType(),
-                            primaryBehaviour.getVessel().getLength(),
-                            String.format(Locale.ENGLISH, "%.4f", primaryLastTrackingPoint.getLatitude()),
-                            String.format(Locale.ENGLISH, "%.4f", primaryLastTrackingPoint.getLongitude()),
-                            String.format(Locale.ENGLISH, "%.1f", primaryBehaviour.mostRecentTrackingPoint().getSpeedOverGround()),
-                            String.format(Locale.ENGLISH, "%.0f", primaryBehaviour.mostRecentTrackingPoint().getCourseOverGround()),
-                            String.format(Locale.ENGLISH, "%.0f", primaryBehaviour.mostRecentTrackingPoint().getTrueHeading()),
-                            secondaryBehaviour == null ? null : secondaryBehaviour.getVessel().getMmsi(),
-                            secondaryBehaviour == null ? null : secondaryBehaviour.getVessel().getName(),
-                            secondaryBehaviour == null ? null : secondaryBehaviour.getVessel().getCallsign(),
-                            secondaryBehaviour == null ? null : secondaryBehaviour.getVessel().getType(),
-                            secondaryBehaviour == null ? null : secondaryBehaviour.getVessel().getLength(),
-                            secondaryLastTrackingPoint == null ? null : String.format(Locale.ENGLISH, "%.4f", secondaryLastTrackingPoint.getLatitude()),
-                            secondaryLastTrackingPoint == null ? null : String.format(Locale.ENGLISH, "%.4f", secondaryLastTrackingPoint.getLongitude()),
-                            secondaryBehaviour == null ? null : String.format(Locale.ENGLISH, "%.1f", secondaryBehaviour.mostRecentTrackingPoint().getSpeedOverGround()),
-                            secondaryBehaviour == null ? null : String.format(Locale.ENGLISH, "%.0f", secondaryBehaviour.mostRecentTrackingPoint().getCourseOverGround()),
-                            secondaryBehaviour == null ? null : String.format(Locale.ENGLISH, "%.0f", secondaryBehaviour.mostRecentTrackingPoint().getTrueHeading()),
-                            filterSuggestion(event)
-                    );
-
-                    printer.flush();
+                    printer.close();
                 } catch (IOException e) {
-                    LOG.error(e.getMessage(), e);
+                    LOG.warn(e.getMessage(), e);
                 }
+                printer = null;
             }
         }
     }
 
-    private String filterSuggestion(Event event) {
-        DateTimeFormatter fmt = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH:mm");
+    private static Object[] record(Event event) {
+        Behaviour primaryBehaviour = event.primaryBehaviour();
+        Behaviour secondaryBehaviour = event.arbitraryNonPrimaryBehaviour();
+
+        TrackingPoint primaryLastTrackingPoint = primaryBehaviour.getTrackingPoints().last();
+        TrackingPoint secondaryLastTrackingPoint = secondaryBehaviour == null ? null : secondaryBehaviour.getTrackingPoints().last();
+
+        return new Object[] {
+
+            event.getId(),
+            event.getEventType(),
+            event.getStartTime(),
+            event.getEndTime(),
+            event.getTitle(),
+            event.getDescription(),
+            event.involvedMmsis(),
+            primaryBehaviour.getVessel().getMmsi(),
+            primaryBehaviour.getVessel().getName(),
+            primaryBehaviour.getVessel().getCallsign(),
+            primaryBehaviour.getVessel().getType(),
+            primaryBehaviour.getVessel().getLength(),
+            String.format(Locale.ENGLISH, "%.4f", primaryLastTrackingPoint.getLatitude()),
+            String.format(Locale.ENGLISH, "%.4f", primaryLastTrackingPoint.getLongitude()),
+            String.format(Locale.ENGLISH, "%.1f", primaryBehaviour.mostRecentTrackingPoint().getSpeedOverGround()),
+            String.format(Locale.ENGLISH, "%.0f", primaryBehaviour.mostRecentTrackingPoint().getCourseOverGround()),
+            String.format(Locale.ENGLISH, "%.0f", primaryBehaviour.mostRecentTrackingPoint().getTrueHeading()),
+            secondaryBehaviour == null ? null : secondaryBehaviour.getVessel().getMmsi(),
+            secondaryBehaviour == null ? null : secondaryBehaviour.getVessel().getName(),
+            secondaryBehaviour == null ? null : secondaryBehaviour.getVessel().getCallsign(),
+            secondaryBehaviour == null ? null : secondaryBehaviour.getVessel().getType(),
+            secondaryBehaviour == null ? null : secondaryBehaviour.getVessel().getLength(),
+            secondaryLastTrackingPoint == null ? null : String.format(Locale.ENGLISH, "%.4f", secondaryLastTrackingPoint.getLatitude()),
+            secondaryLastTrackingPoint == null ? null : String.format(Locale.ENGLISH, "%.4f", secondaryLastTrackingPoint.getLongitude()),
+            secondaryBehaviour == null ? null : String.format(Locale.ENGLISH, "%.1f", secondaryBehaviour.mostRecentTrackingPoint().getSpeedOverGround()),
+            secondaryBehaviour == null ? null : String.format(Locale.ENGLISH, "%.0f", secondaryBehaviour.mostRecentTrackingPoint().getCourseOverGround()),
+            secondaryBehaviour == null ? null : String.format(Locale.ENGLISH, "%.0f", secondaryBehaviour.mostRecentTrackingPoint().getTrueHeading()),
+            filterSuggestion(event)
+        };
+    }
+
+    private static String filterSuggestion(Event event) {
+        DateTimeFormatter fmt = FILTER_SUGGESTION_TIME_FORMAT;
 
         TrackingPoint tp = event.primaryBehaviour().mostRecentTrackingPoint();
 
@@ -186,52 +347,7 @@ public class CsvEventRepository implements EventRepository {
 
     @Override
     public <T extends Event> T findOngoingEventByVessel(int mmsi, Class<T> eventClass) {
-        Event event = null;
-
-        lock.lock();
-        try {
-            Map<Class<? extends Event>, Event> eventMap = ongoingEvents.get(mmsi);
-            if (eventMap != null)
-                event = eventMap.get(eventClass);
-        } finally {
-            lock.unlock();
-        }
-
-        return event == null ? null : (T) event;
-    }
-
-    private void insertOngoingEvent(Event event) {
-        lock.lock();
-        try {
-            if (event.getState() == Event.State.ONGOING) {
-                event.involvedMmsis().forEach(mmsi -> {
-                    Map<Class<? extends Event>, Event> eventMap = ongoingEvents.get(mmsi);
-
-                    if (eventMap == null) {
-                        eventMap = new HashMap<>();
-                        ongoingEvents.put(mmsi, eventMap);
-                    }
-
-                    eventMap.put(event.getClass(), event);
-                });
-            }
-        } finally {
-            lock.unlock();
-        }
-    }
-
-    private void removeOngoingEvent(Event event) {
-        lock.lock();
-        try {
-            event.involvedMmsis().forEach(mmsi -> {
-                Map<Class<? extends Event>, Event> eventMap = ongoingEvents.get(mmsi);
-                if (eventMap != null) {
-                    eventMap.remove(event.getClass());
-                }
-            });
-        } finally {
-            lock.unlock();
-        }
+        return ongoingEvents.get(mmsi, eventClass);
     }
 
 }
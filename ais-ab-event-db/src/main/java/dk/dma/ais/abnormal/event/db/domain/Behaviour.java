@@ -26,9 +26,12 @@ import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinTable;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.OrderBy;
+import javax.persistence.SequenceGenerator;
 import javax.validation.constraints.NotNull;
 import java.util.LinkedList;
 import java.util.List;
@@ -40,6 +43,11 @@ import static java.util.Collections.sort;
 @Entity
 public class Behaviour {
 
+    /** The join table of trackingPoints - also used by native SQL, so it is named explicitly */
+    public static final String TRACKING_POINTS_TABLE = "Behaviour_TrackingPoint";
+    public static final String TRACKING_POINTS_BEHAVIOUR_COLUMN = "Behaviour_id";
+    public static final String TRACKING_POINTS_TRACKING_POINT_COLUMN = "trackingPoints_id";
+
     public Behaviour() {
         trackingPoints = new LinkedList<>();
     }
@@ -82,8 +90,33 @@ public class Behaviour {
         return trackingPoints.get(trackingPoints.size()-1);
     }
 
+    /** Copy this behaviour with its own list of the same tracking points */
+    Behaviour copy() {
+        Behaviour copy = new Behaviour();
+        copy.id = id;
+        copy.vessel = vessel;
+        copy.trackingPoints.addAll(trackingPoints);
+        copy.isPrimary = isPrimary;
+        return copy;
+    }
+
+    void adoptWrittenCopy(Behaviour copy) {
+        id = copy.id;
+    }
+
+    void collectIdResetsOfUnsavedEntities(List<Runnable> idResets) {
+        if (id == 0) {
+            idResets.add(() -> id = 0);
+        }
+        if (vessel != null) {
+            vessel.collectIdResetsOfUnsavedEntities(idResets);
+        }
+        trackingPoints.stream().filter(trackingPoint -> trackingPoint.getId() == 0).forEach(trackingPoint -> idResets.add(trackingPoint::clearId));
+    }
+
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "behaviourIdGenerator")
+    @SequenceGenerator(name = "behaviourIdGenerator", sequenceName = "hibernate_sequence", allocationSize = 50)
     private long id;
 
     /**
@@ -96,6 +129,11 @@ public class Behaviour {
     // TODO create index on behaviour_trackingpoint (behaviour_id);
     @NotNull
     @OneToMany(cascade = CascadeType.ALL)
+    @JoinTable(
+        name = TRACKING_POINTS_TABLE,
+        joinColumns = @JoinColumn(name = TRACKING_POINTS_BEHAVIOUR_COLUMN),
+        inverseJoinColumns = @JoinColumn(name = TRACKING_POINTS_TRACKING_POINT_COLUMN)
+    )
     @Fetch(FetchMode.JOIN)
     @OrderBy("timestamp")
     private List<TrackingPoint> trackingPoints;
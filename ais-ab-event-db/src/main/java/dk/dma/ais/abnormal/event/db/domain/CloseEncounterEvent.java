@@ -20,6 +20,7 @@ import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.FetchType;
 import javax.persistence.OneToOne;
+import java.util.List;
 
 /**
  * A Close encounter event.
@@ -51,4 +52,15 @@ public class CloseEncounterEvent extends Event {
     public void setExtentOfSecondaryVessel(Zone extentOfSecondaryVessel) {
         this.extentOfSecondaryVessel = extentOfSecondaryVessel;
     }
+
+    @Override
+    protected void collectIdResetsOfUnsavedEntities(List<Runnable> idResets) {
+        super.collectIdResetsOfUnsavedEntities(idResets);
+        if (safetyZoneOfPrimaryVessel != null) {
+            safetyZoneOfPrimaryVessel.collectIdResetsOfUnsavedEntities(idResets);
+        }
+        if (extentOfSecondaryVessel != null) {
+            extentOfSecondaryVessel.collectIdResetsOfUnsavedEntities(idResets);
+        }
+    }
 }
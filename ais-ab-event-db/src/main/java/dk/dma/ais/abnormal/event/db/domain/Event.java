@@ -29,15 +29,22 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Index;
+import javax.persistence.JoinColumn;
+import javax.persistence.JoinTable;
 import javax.persistence.OneToMany;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import static java.util.stream.Collectors.toCollection;
+
 /**
  * This abstract class is the common class of all Events. An event describes some sort of abnormal behaviour
  * detected among moving vessels in the maritime domain.
@@ -49,14 +56,22 @@ import java.util.stream.Collectors;
     indexes = {
         @Index(name="INDEX_EVENT_STARTTIME", columnList = "startTime"),
         @Index(name="INDEX_EVENT_ENDTIME", columnList = "endTime"),
-        @Index(name="INDEX_EVENT_SUPPRESSED", columnList = "suppressed")
+        @Index(name="INDEX_EVENT_SUPPRESSED", columnList = "suppressed"),
+        @Index(name="INDEX_EVENT_BOUNDINGBOX", columnList = "minLatitude, maxLatitude, minLongitude, maxLongitude")
     }
 )
 @Entity
-public abstract class Event {
+public abstract class Event implements Cloneable {
+
+    /** The join table of behaviours - also used by native SQL, so it is named explicitly */
+    public static final String BEHAVIOURS_TABLE = "Event_Behaviour";
+    public static final String BEHAVIOURS_EVENT_COLUMN = "Event_id";
+    public static final String BEHAVIOURS_BEHAVIOUR_COLUMN = "behaviours_id";
 
+    /** Ids of all entities are allocated in blocks from one shared sequence - see JpaSessionFactoryFactory. */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "eventIdGenerator")
+    @SequenceGenerator(name = "eventIdGenerator", sequenceName = "hibernate_sequence", allocationSize = 50)
     private long id;
 
     /** State of the event. */
@@ -74,9 +89,24 @@ public abstract class Event {
     /** True if this event is suppressed by an operator who concludes that this isn't an event */
     private boolean suppressed = false;
 
+    /**
+     * Bounding box of the tracking points of all behaviours of this event - or null if there are none.
+     * Maintained by updateBoundingBox and extendBoundingBox, so that area searches need not join the
+     * tracking points of all events.
+     */
+    private Double minLatitude;
+    private Double maxLatitude;
+    private Double minLongitude;
+    private Double maxLongitude;
+
     // TODO create index on event_behaviour(event_id);
     /** The behaviour observed in connection with this event */
     @OneToMany(cascade = CascadeType.ALL)
+    @JoinTable(
+        name = BEHAVIOURS_TABLE,
+        joinColumns = @JoinColumn(name = BEHAVIOURS_EVENT_COLUMN),
+        inverseJoinColumns = @JoinColumn(name = BEHAVIOURS_BEHAVIOUR_COLUMN)
+    )
     @Fetch(FetchMode.JOIN)
     private Set<Behaviour> behaviours;
 
@@ -148,6 +178,97 @@ public abstract class Event {
         this.behaviours.add(behaviour);
     }
 
+    public Double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public Double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public Double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public Double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    /**
+     * Recompute the bounding box from the tracking points of all behaviours of this event.
+     */
+    public void updateBoundingBox() {
+        minLatitude = maxLatitude = minLongitude = maxLongitude = null;
+        behaviours.forEach(behaviour -> behaviour.getTrackingPoints().forEach(this::extendBoundingBox));
+    }
+
+    /**
+     * Extend the bounding box to include the given tracking point.
+     */
+    public void extendBoundingBox(TrackingPoint trackingPoint) {
+        Double latitude = trackingPoint.getLatitude(), longitude = trackingPoint.getLongitude();
+        if (latitude == null || longitude == null) {
+            return;
+        }
+        if (minLatitude == null) {
+            minLatitude = maxLatitude = latitude;
+            minLongitude = maxLongitude = longitude;
+        } else {
+            minLatitude = Math.min(minLatitude, latitude);
+            maxLatitude = Math.max(maxLatitude, latitude);
+            minLongitude = Math.min(minLongitude, longitude);
+            maxLongitude = Math.max(maxLongitude, longitude);
+        }
+    }
+
+    /**
+     * Copy this event and its behaviours, so that the copy can be written while this event is modified. The copy
+     * shares the vessels and tracking points of this event.
+     */
+    public Event copy() {
+        try {
+            Event copy = (Event) super.clone();
+            copy.behaviours = behaviours.stream().map(Behaviour::copy).collect(toCollection(HashSet::new));
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Note which of this event and its behaviours, vessels, tracking points and other entities are not saved yet.
+     * @return an action which marks them as not saved again - for when the transaction saving them is rolled back.
+     */
+    public Runnable idResetOfUnsavedEntities() {
+        List<Runnable> idResets = new ArrayList<>();
+        collectIdResetsOfUnsavedEntities(idResets);
+        return () -> idResets.forEach(Runnable::run);
+    }
+
+    protected void collectIdResetsOfUnsavedEntities(List<Runnable> idResets) {
+        if (id == 0) {
+            idResets.add(() -> id = 0);
+        }
+        behaviours.forEach(behaviour -> behaviour.collectIdResetsOfUnsavedEntities(idResets));
+    }
+
+    /**
+     * Take over the ids and bounding box assigned to a copy of this event when the copy was written.
+     */
+    public void adoptWrittenCopy(Event copy) {
+        id = copy.id;
+        minLatitude = copy.minLatitude;
+        maxLatitude = copy.maxLatitude;
+        minLongitude = copy.minLongitude;
+        maxLongitude = copy.maxLongitude;
+        behaviours.forEach(behaviour -> {
+            Behaviour writtenBehaviour = copy.getBehaviour(behaviour.getVessel().getMmsi());
+            if (writtenBehaviour != null) {
+                behaviour.adoptWrittenCopy(writtenBehaviour);
+            }
+        });
+    }
+
     public String getTitle() {
         return title;
     }
@@ -0,0 +1,198 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db.domain;
+
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.SortedSet;
+
+import static java.util.Arrays.asList;
+
+/**
+ * The number of events of a type raised in a period (an hour or a day) inside an area cell.
+ *
+ * Event counts are maintained by the event repositories as events are saved, so that the number of events in
+ * a period can be found without loading the events. Each event is counted once per resolution - in the period
+ * of its start time and in the cell of the first position of its primary vessel.
+ *
+ * Counts summed over all cells have no cell (cellLatitude and cellLongitude are null).
+ */
+@Table(
+    uniqueConstraints = {
+        @UniqueConstraint(name="UNIQUE_EVENTCOUNT_KEY", columnNames = {"resolution", "periodStart", "eventType", "cellLatitude", "cellLongitude"})
+    },
+    indexes = {
+        @Index(name="INDEX_EVENTCOUNT_PERIOD", columnList = "resolution, periodStart")
+    }
+)
+@Entity
+public class EventCount {
+
+    /** The size in degrees of latitude and longitude of the area cells */
+    public static final int CELL_SIZE = 1;
+
+    /** The order of event counts by resolution, period, event type and cell - ignoring the number of events */
+    public static final Comparator<EventCount> ORDER = Comparator.comparing(EventCount::getResolution)
+        .thenComparing(EventCount::getPeriodStart)
+        .thenComparing(EventCount::getEventType)
+        .thenComparing(EventCount::getCellLatitude, Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(EventCount::getCellLongitude, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    public enum Resolution {
+        HOUR(ChronoUnit.HOURS),
+        DAY(ChronoUnit.DAYS);
+
+        private final ChronoUnit unit;
+
+        Resolution(ChronoUnit unit) {
+            this.unit = unit;
+        }
+
+        /**
+         * @return the start of the period holding the given time.
+         */
+        public LocalDateTime truncate(LocalDateTime time) {
+            return time.truncatedTo(unit);
+        }
+    }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "eventCountIdGenerator")
+    @SequenceGenerator(name = "eventCountIdGenerator", sequenceName = "hibernate_sequence", allocationSize = 50)
+    private long id;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    private Resolution resolution;
+
+    @NotNull
+    private LocalDateTime periodStart;
+
+    /** The simple class name of the events - see Event.getEventType */
+    @NotNull
+    private String eventType;
+
+    /** The south-western corner of the cell */
+    private Integer cellLatitude;
+    private Integer cellLongitude;
+
+    private long numberOfEvents;
+
+    protected EventCount() {
+    }
+
+    public EventCount(Resolution resolution, LocalDateTime periodStart, String eventType, Integer cellLatitude, Integer cellLongitude, long numberOfEvents) {
+        this.resolution = Objects.requireNonNull(resolution);
+        this.periodStart = Objects.requireNonNull(periodStart);
+        this.eventType = Objects.requireNonNull(eventType);
+        this.cellLatitude = cellLatitude;
+        this.cellLongitude = cellLongitude;
+        this.numberOfEvents = numberOfEvents;
+    }
+
+    /** An event count summed over all cells */
+    public EventCount(Resolution resolution, LocalDateTime periodStart, String eventType, long numberOfEvents) {
+        this(resolution, periodStart, eventType, null, null, numberOfEvents);
+    }
+
+    /**
+     * @return the counts - one per resolution - of the given event alone; or none if it has no position.
+     */
+    public static List<EventCount> of(Event event) {
+        Behaviour primaryBehaviour = event.primaryBehaviour();
+        SortedSet<TrackingPoint> trackingPoints = primaryBehaviour == null ? null : primaryBehaviour.getTrackingPoints();
+        if (event.getStartTime() == null || trackingPoints == null || trackingPoints.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        TrackingPoint firstTrackingPoint = trackingPoints.first();
+        if (firstTrackingPoint.getLatitude() == null || firstTrackingPoint.getLongitude() == null) {
+            return Collections.emptyList();
+        }
+
+        return of(event.getEventType(), event.getStartTime(), firstTrackingPoint.getLatitude(), firstTrackingPoint.getLongitude());
+    }
+
+    /**
+     * @return the counts - one per resolution - of a single event of the given type raised at the given time and position.
+     */
+    public static List<EventCount> of(String eventType, LocalDateTime startTime, double latitude, double longitude) {
+        int cellLatitude = cellOf(latitude), cellLongitude = cellOf(longitude);
+        return asList(
+            new EventCount(Resolution.HOUR, Resolution.HOUR.truncate(startTime), eventType, cellLatitude, cellLongitude, 1),
+            new EventCount(Resolution.DAY, Resolution.DAY.truncate(startTime), eventType, cellLatitude, cellLongitude, 1)
+        );
+    }
+
+    /**
+     * @return the south-western corner of the cell holding the given latitude or longitude.
+     */
+    public static int cellOf(double degrees) {
+        return (int) Math.floor(degrees / CELL_SIZE) * CELL_SIZE;
+    }
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+    public LocalDateTime getPeriodStart() {
+        return periodStart;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public Integer getCellLatitude() {
+        return cellLatitude;
+    }
+
+    public Integer getCellLongitude() {
+        return cellLongitude;
+    }
+
+    public long getNumberOfEvents() {
+        return numberOfEvents;
+    }
+
+    @Override
+    public String toString() {
+        return "EventCount{" +
+            "resolution=" + resolution +
+            ", periodStart=" + periodStart +
+            ", eventType='" + eventType + '\'' +
+            ", cellLatitude=" + cellLatitude +
+            ", cellLongitude=" + cellLongitude +
+            ", numberOfEvents=" + numberOfEvents +
+            '}';
+    }
+}
@@ -24,6 +24,7 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import java.time.LocalDateTime;
@@ -41,7 +42,8 @@ import java.time.LocalDateTime;
 public class TrackingPoint implements Comparable<TrackingPoint> {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "trackingPointIdGenerator")
+    @SequenceGenerator(name = "trackingPointIdGenerator", sequenceName = "hibernate_sequence", allocationSize = 50)
     private long id;
 
     @NotNull
@@ -78,6 +80,11 @@ public class TrackingPoint implements Comparable<TrackingPoint> {
         return id;
     }
 
+    /** Mark this tracking point as not saved - because the transaction which inserted it was rolled back */
+    public void clearId() {
+        id = 0;
+    }
+
     public Double getLatitude() {
         return latitude;
     }
@@ -21,9 +21,11 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.validation.constraints.NotNull;
 import java.io.Serializable;
+import java.util.List;
 
 @Table(
     indexes = {
@@ -37,7 +39,8 @@ import java.io.Serializable;
 public class Vessel implements Serializable {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "vesselIdGenerator")
+    @SequenceGenerator(name = "vesselIdGenerator", sequenceName = "hibernate_sequence", allocationSize = 50)
     private long id;
 
     /** Vessel's MMSI number */
@@ -66,6 +69,12 @@ public class Vessel implements Serializable {
         return id;
     }
 
+    void collectIdResetsOfUnsavedEntities(List<Runnable> idResets) {
+        if (id == 0) {
+            idResets.add(() -> id = 0);
+        }
+    }
+
     public String getName() {
         return name;
     }
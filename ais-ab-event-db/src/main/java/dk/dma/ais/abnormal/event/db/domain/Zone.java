@@ -20,8 +20,10 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.validation.constraints.NotNull;
 import java.util.Date;
+import java.util.List;
 
 /**
  * The defining parameters of an oval.
@@ -30,7 +32,8 @@ import java.util.Date;
 public class Zone  {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "zoneIdGenerator")
+    @SequenceGenerator(name = "zoneIdGenerator", sequenceName = "hibernate_sequence", allocationSize = 50)
     private long id;
 
     @NotNull
@@ -82,6 +85,12 @@ public class Zone  {
         return id;
     }
 
+    void collectIdResetsOfUnsavedEntities(List<Runnable> idResets) {
+        if (id == 0) {
+            idResets.add(() -> id = 0);
+        }
+    }
+
     public Date getTargetTimestamp() {
         return targetTimestamp;
     }
@@ -17,17 +17,41 @@
 package dk.dma.ais.abnormal.event.db.jpa;
 
 import com.google.inject.Inject;
+import dk.dma.ais.abnormal.event.db.EventCounts;
+import dk.dma.ais.abnormal.event.db.EventCursor;
 import dk.dma.ais.abnormal.event.db.EventRepository;
+import dk.dma.ais.abnormal.event.db.EventSummary;
+import dk.dma.ais.abnormal.event.db.OngoingEventIndex;
+import dk.dma.ais.abnormal.event.db.domain.Behaviour;
 import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.EventCount;
+import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
 import org.apache.commons.lang.StringUtils;
 import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.sql.Savepoint;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static java.lang.System.currentTimeMillis;
 
@@ -43,13 +67,83 @@ public class JpaEventRepository implements EventRepository {
         LOG.info(this.getClass().getSimpleName() + " created (" + this + ").");
     }
 
+    /** Number of rows fetched from the database at a time when streaming events */
+    static final int STREAM_FETCH_SIZE = 100;
+
+    /** Select and join of event summaries; must be followed by a WHERE clause including EVENT_SUMMARIES_CONDITION */
+    static final String SELECT_EVENT_SUMMARIES =
+        "SELECT DISTINCT NEW dk.dma.ais.abnormal.event.db.EventSummary(" +
+            "e.id, e.class, e.state, e.startTime, e.endTime, e.title, " +
+            "pv.mmsi, pv.name, pv.callsign, pv.type, pv.toBow, pv.toStern, " +
+            "ptp.latitude, ptp.longitude, e.minLatitude, e.maxLatitude, e.minLongitude, e.maxLongitude" +
+        ") FROM Event e JOIN e.behaviours AS pb JOIN pb.vessel AS pv JOIN pb.trackingPoints AS ptp ";
+
+    /**
+     * Restricts the joins of SELECT_EVENT_SUMMARIES to the primary behaviour and its most recent tracking point.
+     * If several tracking points share the most recent timestamp, the one stored last (highest id) is used.
+     */
+    static final String EVENT_SUMMARIES_CONDITION =
+        "pb.isPrimary=true AND ptp.id = (" +
+            "SELECT MAX(ptp2.id) FROM Behaviour pb2 JOIN pb2.trackingPoints AS ptp2 WHERE pb2 = pb AND ptp2.timestamp = (" +
+                "SELECT MAX(ptp3.timestamp) FROM Behaviour pb3 JOIN pb3.trackingPoints AS ptp3 WHERE pb3 = pb" +
+            ")" +
+        ")";
+
+    /** Adds to an existing event count; if no row is updated, the count must be inserted */
+    static final String INCREMENT_EVENT_COUNT =
+        "UPDATE EventCount c SET c.numberOfEvents = c.numberOfEvents + :numberOfEvents " +
+        "WHERE c.resolution = :resolution AND c.periodStart = :periodStart AND c.eventType = :eventType " +
+        "AND c.cellLatitude = :cellLatitude AND c.cellLongitude = :cellLongitude";
+
+    /** Selects those of the given event ids which are no longer ongoing or have been suppressed */
+    static final String SELECT_ENDED_EVENT_IDS =
+        "SELECT e.id FROM Event e WHERE e.id IN (:ids) AND (e.state <> :state OR e.suppressed=true)";
+
+    /** Default interval between checks of the ongoing event index against the database */
+    static final long DEFAULT_ONGOING_EVENTS_CHECK_INTERVAL_MILLIS = 60 * 1000;
+
+    /** Default time after which ongoing events which have not been looked up or saved are evicted from the index */
+    static final long DEFAULT_ONGOING_EVENTS_MAX_IDLE_MILLIS = 6 * 60 * 60 * 1000;
+
+    /** Max. number of event ids per query when checking the ongoing event index */
+    private static final int MAX_IDS_PER_QUERY = 500;
+
     private final SessionFactory sessionFactory;
     private final boolean readonly;
 
+    /**
+     * Ongoing events of the database, so that findOngoingEventByVessel does not need to query the database.
+     * The index is loaded from the database when the repository is created and maintained by save. Events which
+     * are suppressed or ended by other users of the database - e.g. the web application - are removed when the
+     * index is checked against the database, which is done at most every ongoingEventsCheckIntervalMillis.
+     * Not used by read-only repositories.
+     */
+    private final OngoingEventIndex ongoingEvents;
+
+    /**
+     * Vessels (by event class) of ongoing events which were evicted from the index because they had not been used
+     * for ongoingEventsMaxIdleMillis; these are looked up in the database again.
+     */
+    private final Map<Class<? extends Event>, Set<Integer>> evictedOngoingEvents = new ConcurrentHashMap<>();
+
+    private final long ongoingEventsCheckIntervalMillis;
+    private final long ongoingEventsMaxIdleMillis;
+    private final AtomicLong lastOngoingEventsCheck = new AtomicLong(currentTimeMillis());
+
     @Inject
     public JpaEventRepository(SessionFactory sessionFactory, boolean readonly) {
+        this(sessionFactory, readonly, DEFAULT_ONGOING_EVENTS_CHECK_INTERVAL_MILLIS, DEFAULT_ONGOING_EVENTS_MAX_IDLE_MILLIS);
+    }
+
+    JpaEventRepository(SessionFactory sessionFactory, boolean readonly, long ongoingEventsCheckIntervalMillis, long ongoingEventsMaxIdleMillis) {
         this.readonly = readonly;
         this.sessionFactory = sessionFactory;
+        this.ongoingEventsCheckIntervalMillis = ongoingEventsCheckIntervalMillis;
+        this.ongoingEventsMaxIdleMillis = ongoingEventsMaxIdleMillis;
+        this.ongoingEvents = readonly ? null : new OngoingEventIndex();
+        if (ongoingEvents != null) {
+            loadOngoingEvents();
+        }
     }
 
     private Session getSession() {
@@ -81,15 +175,142 @@ public class JpaEventRepository implements EventRepository {
 
     @Override
     public void save(Event event) {
+        final boolean isNew = event.getId() == 0;
+        final Runnable idReset = event.idResetOfUnsavedEntities();
+
         Session session = getSession();
         try {
             session.beginTransaction();
+            event.updateBoundingBox();
             session.saveOrUpdate(event);
+            if (isNew) {
+                incrementEventCounts(session, EventCount.of(event));
+            }
             session.getTransaction().commit();
+        } catch (RuntimeException e) {
+            idReset.run();
+            throw e;
         } finally {
             session.close();
             LOG.debug("Database session closed: " + session);
         }
+
+        if (ongoingEvents != null) {
+            ongoingEvents.update(event);
+        }
+    }
+
+    /**
+     * Save the events in one session and one transaction. The session is flushed and cleared for every
+     * JDBC_BATCH_SIZE events, so that their inserts and updates are sent to the database in JDBC batches
+     * and the session does not grow with the number of events. The counts of the new events are added to the
+     * event counts once per period and cell. If the transaction fails, the entities which were not saved before
+     * get their ids reset, so that a retry saves them as new again.
+     */
+    @Override
+    public void saveAll(Collection<? extends Event> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+
+        List<Runnable> idResets = new ArrayList<>(events.size());
+        events.forEach(event -> idResets.add(event.idResetOfUnsavedEntities()));
+
+        Session session = getSession();
+        try {
+            Transaction transaction = session.beginTransaction();
+            try {
+                EventCounts newEventCounts = new EventCounts();
+                int n = 0;
+                for (Event event : events) {
+                    if (event.getId() == 0) {
+                        newEventCounts.add(event);
+                    }
+                    event.updateBoundingBox();
+                    session.saveOrUpdate(event);
+                    if (++n % JpaSessionFactoryFactory.JDBC_BATCH_SIZE == 0) {
+                        session.flush();
+                        session.clear();
+                    }
+                }
+                incrementEventCounts(session, newEventCounts.getAll());
+                transaction.commit();
+            } catch (RuntimeException e) {
+                transaction.rollback();
+                idResets.forEach(Runnable::run);
+                throw e;
+            }
+        } finally {
+            session.close();
+            LOG.debug("Database session closed: " + session);
+        }
+
+        if (ongoingEvents != null) {
+            events.forEach(ongoingEvents::update);
+        }
+    }
+
+    /**
+     * Insert the appended tracking points and update the state, end time and bounding box of the event through a
+     * stateless session - i.e. without loading, reattaching or dirty-checking the event and its earlier tracking
+     * points. Tracking points which have already been saved are skipped. Events or behaviours which have not been
+     * saved before are saved in full. If the transaction fails, the inserted tracking points are marked as not
+     * saved again, so that a retry inserts them.
+     */
+    @Override
+    public void update(Event event, Map<Behaviour, List<TrackingPoint>> appendedTrackingPoints) {
+        if (event.getId() == 0 || appendedTrackingPoints.keySet().stream().anyMatch(behaviour -> behaviour.getId() == 0)) {
+            save(event);
+            return;
+        }
+
+        if (event.getMinLatitude() == null) {
+            event.updateBoundingBox();
+        } else {
+            appendedTrackingPoints.values().forEach(trackingPoints -> trackingPoints.forEach(event::extendBoundingBox));
+        }
+
+        List<TrackingPoint> insertedTrackingPoints = new ArrayList<>();
+        StatelessSession session = sessionFactory.openStatelessSession();
+        try {
+            Transaction transaction = session.beginTransaction();
+            try {
+                for (Map.Entry<Behaviour, List<TrackingPoint>> entry : appendedTrackingPoints.entrySet()) {
+                    for (TrackingPoint trackingPoint : entry.getValue()) {
+                        if (trackingPoint.getId() == 0) {
+                            insertedTrackingPoints.add(trackingPoint);
+                            session.insert(trackingPoint);
+                            session.createSQLQuery("INSERT INTO " + Behaviour.TRACKING_POINTS_TABLE + " (" + Behaviour.TRACKING_POINTS_BEHAVIOUR_COLUMN + ", " + Behaviour.TRACKING_POINTS_TRACKING_POINT_COLUMN + ") VALUES (:behaviourId, :trackingPointId)")
+                                .setLong("behaviourId", entry.getKey().getId())
+                                .setLong("trackingPointId", trackingPoint.getId())
+                                .executeUpdate();
+                        }
+                    }
+                }
+
+                session.createQuery("UPDATE Event e SET e.state = :state, e.endTime = :endTime, e.minLatitude = :minLatitude, e.maxLatitude = :maxLatitude, e.minLongitude = :minLongitude, e.maxLongitude = :maxLongitude WHERE e.id = :id")
+                    .setParameter("state", event.getState())
+                    .setParameter("endTime", event.getEndTime())
+                    .setParameter("minLatitude", event.getMinLatitude())
+                    .setParameter("maxLatitude", event.getMaxLatitude())
+                    .setParameter("minLongitude", event.getMinLongitude())
+                    .setParameter("maxLongitude", event.getMaxLongitude())
+                    .setLong("id", event.getId())
+                    .executeUpdate();
+
+                transaction.commit();
+            } catch (RuntimeException e) {
+                transaction.rollback();
+                insertedTrackingPoints.forEach(TrackingPoint::clearId);
+                throw e;
+            }
+        } finally {
+            session.close();
+        }
+
+        if (ongoingEvents != null) {
+            ongoingEvents.update(event);
+        }
     }
 
     @Override
@@ -109,108 +330,235 @@ public class JpaEventRepository implements EventRepository {
     public List<Event> findEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west) {
         Session session = getSession();
 
-        boolean usesFrom = false, usesTo = false, usesType = false, usesVessel = false, usesArea = false;
-
         List events = null;
         try {
-            StringBuilder hql = new StringBuilder();
+            Query query = createSearchQuery(session, from, to, type, vessel, north, east, south, west, null, false, false);
 
-            hql.append("SELECT DISTINCT e FROM Event e ");
+            LOG.debug("Query: " + query.toString());
+            final long t0 = currentTimeMillis();
+            events = query.list();
+            final long t1 = currentTimeMillis();
+            LOG.debug("Found " + events.size() + " matching events in " + (t1-t0) + " msecs.");
+        } finally {
+            session.close();
+            LOG.debug("Database session closed: " + session);
+        }
 
-            if (! StringUtils.isBlank(vessel)) {
-                hql.append("LEFT JOIN e.behaviours AS b ");
-            }
+        return events;
+    }
 
-            if (north != null && east != null && south != null && west != null) {
-                hql.append("LEFT JOIN e.behaviours AS b LEFT JOIN b.trackingPoints AS tp WHERE e.suppressed=false AND latitude<:north AND latitude>:south AND longitude<:east AND longitude>:west AND ");
-                usesArea = true;
-            } else {
-                hql.append("WHERE e.suppressed=false AND ");
-            }
+    /**
+     * The page is found by a keyset condition on (startTime, id) and a database side limit, so the cost of a page
+     * does not depend on the number of pages before it.
+     */
+    @Override
+    public List<Event> findEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, EventCursor after, int limit) {
+        Session session = getSession();
 
-            // from
-            if (from != null) {
-                hql.append("(e.startTime >= :from OR e.endTime >= :from) AND ");
-                usesFrom = true;
-            }
+        List events = null;
+        try {
+            Query query = createSearchQuery(session, from, to, type, vessel, north, east, south, west, after, true, false);
+            query.setMaxResults(limit);
 
-            // to
-            if (to != null) {
-                hql.append("(e.startTime <= :to OR e.endTime <= :to) AND ");
-                usesTo = true;
-            }
+            LOG.debug("Query: " + query.toString());
+            final long t0 = currentTimeMillis();
+            events = query.list();
+            final long t1 = currentTimeMillis();
+            LOG.debug("Found " + events.size() + " matching events after " + after + " in " + (t1-t0) + " msecs.");
+        } finally {
+            session.close();
+            LOG.debug("Database session closed: " + session);
+        }
 
-            // type
-            if (! StringUtils.isBlank(type)) {
-                hql.append("TYPE(e) IN (:classes) AND ");
-                usesType = true;
-            }
+        return events;
+    }
 
-            // vessel
-            if (! StringUtils.isBlank(vessel)) {
-                hql.append("(");
-                hql.append("b.vessel.callsign LIKE :vessel OR ");
-                hql.append("b.vessel.name LIKE :vessel OR ");
+    /**
+     * The events are read through a forward-only cursor in the database and evicted from the session once passed
+     * to the consumer, so that memory use does not grow with the number of events found.
+     */
+    @Override
+    public void streamEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, Consumer<Event> consumer) {
+        Session session = getSession();
+        try {
+            // PostgreSQL only streams results through a cursor inside a transaction
+            Transaction transaction = session.beginTransaction();
+            try {
+                Query query = createSearchQuery(session, from, to, type, vessel, north, east, south, west, null, true, false);
+                query.setFetchSize(STREAM_FETCH_SIZE);
+                query.setReadOnly(true);
+
+                LOG.debug("Query: " + query.toString());
+                int n = 0;
+                ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY);
                 try {
-                    Long vesselAsLong = Long.valueOf(vessel);
-                    hql.append("b.vessel.mmsi = :vessel OR ");
-                    hql.append("b.vessel.imo = :vessel OR ");
-                } catch (NumberFormatException e) {
-                }
-                hql.replace(hql.length()-3, hql.length(), ")"); // "OR " -> ")"
-                if (! vessel.startsWith("%")) {
-                    vessel = "%" + vessel;
-                }
-                if (! vessel.endsWith("%")) {
-                    vessel = vessel + "%";
+                    while (results.next()) {
+                        Event event = (Event) results.get(0);
+                        consumer.accept(event);
+                        session.evict(event);
+                        n++;
+                    }
+                } finally {
+                    results.close();
                 }
-                usesVessel = true;
+                LOG.debug("Streamed " + n + " matching events.");
+            } finally {
+                transaction.rollback();
             }
+        } finally {
+            session.close();
+            LOG.debug("Database session closed: " + session);
+        }
+    }
 
-            //
-            String hqlAsString = hql.toString().trim();
-            if (hqlAsString.endsWith("AND")) {
-                hqlAsString = hqlAsString.substring(0, hqlAsString.lastIndexOf("AND"));
-            }
+    /**
+     * The summaries are loaded with a constructor expression, which joins each event with its primary behaviour,
+     * vessel and most recent tracking point only - instead of loading the full events.
+     */
+    @Override
+    public List<EventSummary> findEventSummariesByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, EventCursor after, int limit) {
+        Session session = getSession();
 
-            //
-            Query query = session.createQuery(hqlAsString);
-            if (usesArea) {
-                query.setParameter("north", north);
-                query.setParameter("east", east);
-                query.setParameter("south", south);
-                query.setParameter("west", west);
-            }
-            if (usesFrom) {
-                query.setParameter("from", from);
-            }
-            if (usesTo) {
-                query.setParameter("to", to);
-            }
-            if (usesType) {
-                String className = "dk.dma.ais.abnormal.event.db.domain." + type;
-                try {
-                    Class clazz = Class.forName(className);
-                    query.setParameter("classes", clazz);
-                } catch (ClassNotFoundException e) {
-                    throw new IllegalArgumentException("Class " + className + " not found.");
-                }
-            }
-            if (usesVessel) {
-                query.setParameter("vessel", vessel);
-            }
+        List eventSummaries = null;
+        try {
+            Query query = createSearchQuery(session, from, to, type, vessel, north, east, south, west, after, true, true);
+            query.setMaxResults(limit);
 
             LOG.debug("Query: " + query.toString());
             final long t0 = currentTimeMillis();
-            events = query.list();
+            eventSummaries = query.list();
             final long t1 = currentTimeMillis();
-            LOG.debug("Found " + events.size() + " matching events in " + (t1-t0) + " msecs.");
+            LOG.debug("Found " + eventSummaries.size() + " matching event summaries after " + after + " in " + (t1-t0) + " msecs.");
         } finally {
             session.close();
             LOG.debug("Database session closed: " + session);
         }
 
-        return events;
+        return eventSummaries;
+    }
+
+    /**
+     * Create the query of the event searches.
+     *
+     * @param after if not null; only find events after this cursor.
+     * @param ordered if true; order the events by start time and id.
+     * @param summaries if true; select EventSummaries instead of Events.
+     */
+    private static Query createSearchQuery(Session session, Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, EventCursor after, boolean ordered, boolean summaries) {
+        boolean usesFrom = false, usesTo = false, usesType = false, usesVessel = false, usesArea = false, usesAfter = false;
+
+        StringBuilder hql = new StringBuilder();
+
+        if (summaries) {
+            hql.append(SELECT_EVENT_SUMMARIES);
+        } else {
+            hql.append("SELECT DISTINCT e FROM Event e ");
+        }
+
+        if (! StringUtils.isBlank(vessel)) {
+            hql.append("LEFT JOIN e.behaviours AS b ");
+        }
+
+        if (north != null && east != null && south != null && west != null) {
+            // The bounding box of the event is checked first, so that only the tracking points of events which may
+            // be inside the area are joined
+            hql.append("WHERE e.suppressed=false AND e.minLatitude<:north AND e.maxLatitude>:south AND e.minLongitude<:east AND e.maxLongitude>:west AND ");
+            hql.append("EXISTS (SELECT tp.id FROM Event ea JOIN ea.behaviours AS ba JOIN ba.trackingPoints AS tp WHERE ea = e AND tp.latitude<:north AND tp.latitude>:south AND tp.longitude<:east AND tp.longitude>:west) AND ");
+            usesArea = true;
+        } else {
+            hql.append("WHERE e.suppressed=false AND ");
+        }
+
+        if (summaries) {
+            hql.append(EVENT_SUMMARIES_CONDITION).append(" AND ");
+        }
+
+        // from
+        if (from != null) {
+            hql.append("(e.startTime >= :from OR e.endTime >= :from) AND ");
+            usesFrom = true;
+        }
+
+        // to
+        if (to != null) {
+            hql.append("(e.startTime <= :to OR e.endTime <= :to) AND ");
+            usesTo = true;
+        }
+
+        // type
+        if (! StringUtils.isBlank(type)) {
+            hql.append("TYPE(e) IN (:classes) AND ");
+            usesType = true;
+        }
+
+        // vessel
+        if (! StringUtils.isBlank(vessel)) {
+            hql.append("(");
+            hql.append("b.vessel.callsign LIKE :vessel OR ");
+            hql.append("b.vessel.name LIKE :vessel OR ");
+            try {
+                Long vesselAsLong = Long.valueOf(vessel);
+                hql.append("b.vessel.mmsi = :vessel OR ");
+                hql.append("b.vessel.imo = :vessel OR ");
+            } catch (NumberFormatException e) {
+            }
+            hql.replace(hql.length()-3, hql.length(), ") AND "); // "OR " -> ") AND "
+            if (! vessel.startsWith("%")) {
+                vessel = "%" + vessel;
+            }
+            if (! vessel.endsWith("%")) {
+                vessel = vessel + "%";
+            }
+            usesVessel = true;
+        }
+
+        // after
+        if (after != null) {
+            hql.append("(e.startTime > :afterStartTime OR (e.startTime = :afterStartTime AND e.id > :afterId)) AND ");
+            usesAfter = true;
+        }
+
+        //
+        String hqlAsString = hql.toString().trim();
+        if (hqlAsString.endsWith("AND")) {
+            hqlAsString = hqlAsString.substring(0, hqlAsString.lastIndexOf("AND")).trim();
+        }
+        if (ordered) {
+            hqlAsString += " ORDER BY e.startTime, e.id";
+        }
+
+        //
+        Query query = session.createQuery(hqlAsString);
+        if (usesArea) {
+            query.setParameter("north", north);
+            query.setParameter("east", east);
+            query.setParameter("south", south);
+            query.setParameter("west", west);
+        }
+        if (usesFrom) {
+            query.setParameter("from", from);
+        }
+        if (usesTo) {
+            query.setParameter("to", to);
+        }
+        if (usesType) {
+            String className = "dk.dma.ais.abnormal.event.db.domain." + type;
+            try {
+                Class clazz = Class.forName(className);
+                query.setParameter("classes", clazz);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Class " + className + " not found.");
+            }
+        }
+        if (usesVessel) {
+            query.setParameter("vessel", vessel);
+        }
+        if (usesAfter) {
+            query.setParameter("afterStartTime", after.getStartTime());
+            query.setLong("afterId", after.getId());
+        }
+
+        return query;
     }
 
     @Override
@@ -259,8 +607,70 @@ public class JpaEventRepository implements EventRepository {
         return events;
     }
 
+    @Override
+    public List<EventSummary> findRecentEventSummaries(int numberOfEvents) {
+        Session session = getSession();
+
+        List eventSummaries = null;
+        try {
+            Query query = session.createQuery(SELECT_EVENT_SUMMARIES + "WHERE e.suppressed=false AND " + EVENT_SUMMARIES_CONDITION + " ORDER BY e.startTime DESC");
+            query.setMaxResults(numberOfEvents);
+            eventSummaries = query.list();
+        } finally {
+            session.close();
+            LOG.debug("Database session closed: " + session);
+        }
+
+        return eventSummaries;
+    }
+
+    @Override
+    public List<EventCount> getEventCounts(Date from, Date to, EventCount.Resolution resolution, boolean byCell) {
+        Session session = getSession();
+
+        List eventCounts = null;
+        try {
+            Query query = session.createQuery(byCell ?
+                "SELECT c FROM EventCount c " +
+                "WHERE c.resolution = :resolution AND c.periodStart >= :from AND c.periodStart < :to " +
+                "ORDER BY c.periodStart, c.eventType, c.cellLatitude, c.cellLongitude"
+            :
+                "SELECT NEW dk.dma.ais.abnormal.event.db.domain.EventCount(c.resolution, c.periodStart, c.eventType, SUM(c.numberOfEvents)) FROM EventCount c " +
+                "WHERE c.resolution = :resolution AND c.periodStart >= :from AND c.periodStart < :to " +
+                "GROUP BY c.resolution, c.periodStart, c.eventType " +
+                "ORDER BY c.periodStart, c.eventType"
+            );
+            query.setParameter("resolution", resolution);
+            query.setParameter("from", resolution.truncate(toLocalDateTime(from)));
+            query.setParameter("to", toLocalDateTime(to));
+            eventCounts = query.list();
+        } finally {
+            session.close();
+            LOG.debug("Database session closed: " + session);
+        }
+
+        return eventCounts;
+    }
+
     @Override
     public <T extends Event> T findOngoingEventByVessel(int mmsi, Class<T> eventClass) {
+        if (ongoingEvents != null) {
+            checkOngoingEventsIfDue();
+            T event = ongoingEvents.get(mmsi, eventClass);
+            Set<Integer> evictedMmsis = evictedOngoingEvents.get(eventClass);
+            if (event == null && evictedMmsis != null && evictedMmsis.remove(mmsi)) {
+                event = queryOngoingEventByVessel(mmsi, eventClass);
+                if (event != null) {
+                    ongoingEvents.put(event);
+                }
+            }
+            return event;
+        }
+
+        return queryOngoingEventByVessel(mmsi, eventClass);
+    }
+
+    private <T extends Event> T queryOngoingEventByVessel(int mmsi, Class<T> eventClass) {
         Session session = getSession();
 
         T event = null;
@@ -286,4 +696,121 @@ public class JpaEventRepository implements EventRepository {
 
         return event;
     }
+
+    /**
+     * Add the given counts to the event counts of the database - inserting counts of periods and cells which have
+     * no events yet. If another writer inserts a count between the update and the insert, the insert violates
+     * UNIQUE_EVENTCOUNT_KEY and the update is retried.
+     */
+    static void incrementEventCounts(Session session, Collection<EventCount> eventCounts) {
+        for (EventCount eventCount : eventCounts) {
+            if (incrementEventCount(session, eventCount) == 0 && !insertEventCount(session, eventCount) && incrementEventCount(session, eventCount) == 0) {
+                throw new IllegalStateException("Could neither insert nor update " + eventCount + ".");
+            }
+        }
+    }
+
+    /**
+     * @return the no. of updated event counts - 0 if the count does not exist yet.
+     */
+    private static int incrementEventCount(Session session, EventCount eventCount) {
+        return session.createQuery(INCREMENT_EVENT_COUNT)
+            .setParameter("numberOfEvents", eventCount.getNumberOfEvents())
+            .setParameter("resolution", eventCount.getResolution())
+            .setParameter("periodStart", eventCount.getPeriodStart())
+            .setParameter("eventType", eventCount.getEventType())
+            .setParameter("cellLatitude", eventCount.getCellLatitude())
+            .setParameter("cellLongitude", eventCount.getCellLongitude())
+            .executeUpdate();
+    }
+
+    /**
+     * Insert the event count in the transaction of the session. The count is inserted immediately through a
+     * stateless session on the same connection and under a savepoint, so that the transaction can go on if the
+     * insert violates UNIQUE_EVENTCOUNT_KEY.
+     * @return true if inserted; false if an equal count has been inserted by another writer.
+     */
+    private static boolean insertEventCount(Session session, EventCount eventCount) {
+        return session.doReturningWork(connection -> {
+            Savepoint savepoint = connection.setSavepoint();
+            StatelessSession statelessSession = session.getSessionFactory().openStatelessSession(connection);
+            try {
+                statelessSession.insert(eventCount);
+                connection.releaseSavepoint(savepoint);
+                return true;
+            } catch (ConstraintViolationException e) {
+                LOG.debug("Event count inserted by another writer: " + e.getMessage());
+                connection.rollback(savepoint);
+                return false;
+            } finally {
+                statelessSession.close();
+            }
+        });
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+
+    /**
+     * Check the ongoing event index against the database if ongoingEventsCheckIntervalMillis have passed since
+     * the last check: Evict the events which have not been used for ongoingEventsMaxIdleMillis and remove the
+     * events which have been suppressed or ended by other users of the database.
+     */
+    private void checkOngoingEventsIfDue() {
+        final long now = currentTimeMillis();
+        final long lastCheck = lastOngoingEventsCheck.get();
+        if (now - lastCheck < ongoingEventsCheckIntervalMillis || !lastOngoingEventsCheck.compareAndSet(lastCheck, now)) {
+            return;
+        }
+
+        List<Event> evicted = ongoingEvents.removeUnusedSince(now - ongoingEventsMaxIdleMillis);
+        evicted.forEach(event -> event.involvedMmsis().forEach(mmsi ->
+            evictedOngoingEvents.computeIfAbsent(event.getClass(), c -> ConcurrentHashMap.newKeySet()).add(mmsi)
+        ));
+
+        List<Long> ids = ongoingEvents.events().stream().map(Event::getId).collect(Collectors.toList());
+        Set<Long> endedIds = new HashSet<>();
+        if (!ids.isEmpty()) {
+            Session session = getSession();
+            try {
+                for (int i = 0; i < ids.size(); i += MAX_IDS_PER_QUERY) {
+                    Query query = session.createQuery(SELECT_ENDED_EVENT_IDS);
+                    query.setParameterList("ids", ids.subList(i, Math.min(i + MAX_IDS_PER_QUERY, ids.size())));
+                    query.setString("state", "ONGOING");
+                    endedIds.addAll((List<Long>) query.list());
+                }
+            } finally {
+                session.close();
+                LOG.debug("Database session closed: " + session);
+            }
+            ongoingEvents.removeIf(event -> endedIds.contains(event.getId()));
+        }
+
+        LOG.debug("Checked " + ids.size() + " ongoing events in " + (currentTimeMillis() - now) + " msecs; evicted " + evicted.size() + " unused and removed " + endedIds.size() + " suppressed or ended.");
+    }
+
+    /**
+     * Load all ongoing events of the database into the ongoing event index.
+     */
+    private void loadOngoingEvents() {
+        final long t0 = currentTimeMillis();
+        Session session = getSession();
+        try {
+            Query query = session.createQuery("SELECT DISTINCT e FROM Event e WHERE e.state = :state AND e.suppressed=false");
+            query.setString("state", "ONGOING");
+            List<Event> events = query.list();
+            for (Event event : events) {
+                event.involvedMmsis().stream()
+                    .filter(mmsi -> ongoingEvents.get(mmsi, event.getClass()) != null)
+                    .forEach(mmsi -> LOG.warn("More than one ongoing event of type " + event.getClass() + " for MMSI " + mmsi + "; expected max. 1."));
+                ongoingEvents.put(event);
+            }
+            LOG.info("Loaded " + events.size() + " ongoing events in " + (currentTimeMillis() - t0) + " msecs.");
+        } finally {
+            session.close();
+            LOG.debug("Database session closed: " + session);
+        }
+    }
+
 }
@@ -16,16 +16,21 @@
 
 package dk.dma.ais.abnormal.event.db.jpa;
 
+import dk.dma.ais.abnormal.event.db.EventCounts;
 import dk.dma.ais.abnormal.event.db.domain.Behaviour;
 import dk.dma.ais.abnormal.event.db.domain.CloseEncounterEvent;
 import dk.dma.ais.abnormal.event.db.domain.CourseOverGroundEvent;
 import dk.dma.ais.abnormal.event.db.domain.DriftEvent;
+import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.EventCount;
 import dk.dma.ais.abnormal.event.db.domain.ShipSizeOrTypeEvent;
 import dk.dma.ais.abnormal.event.db.domain.SpeedOverGroundEvent;
 import dk.dma.ais.abnormal.event.db.domain.SuddenSpeedChangeEvent;
 import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
 import dk.dma.ais.abnormal.event.db.domain.Vessel;
 import dk.dma.ais.abnormal.event.db.domain.Zone;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.boot.registry.StandardServiceRegistry;
@@ -35,6 +40,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * JpaSessionFactoryFactory builds and delivers Hibernate SessionFactory objects that can
@@ -47,15 +54,35 @@ public final class JpaSessionFactoryFactory {
         LOG.info(this.getClass().getSimpleName() + " created (" + this + ").");
     }
 
+    /**
+     * Number of statements sent to the database in one JDBC batch. Also the number of events saved in one
+     * batch by JpaEventRepository.saveAll before the session is flushed and cleared.
+     */
+    public static final int JDBC_BATCH_SIZE = 50;
+
+    /** The sequence from which the ids of all entities are allocated. */
+    static final String ID_SEQUENCE = "hibernate_sequence";
+
+    /** Number of ids allocated per call to the id sequence. Must match the allocationSize of the entities. */
+    static final int ID_ALLOCATION_SIZE = 50;
+
     /**
      * Create a new SessionFactory which can be used to connect to an H2 file based database.
      */
     public static SessionFactory newH2SessionFactory(File dbFilename) {
+        return newH2SessionFactory(dbFilename, null);
+    }
+
+    /**
+     * Create a new SessionFactory which can be used to connect to an H2 file based database running
+     * in the given compatibility mode (e.g. "PostgreSQL"), or in H2's own mode if null.
+     */
+    public static SessionFactory newH2SessionFactory(File dbFilename, String compatibilityMode) {
         LOG.debug("Loading Hibernate configuration.");
 
         Configuration configuration = new Configuration()
             .setProperty("hibernate.connection.driver_class", "org.h2.Driver")
-            .setProperty("hibernate.connection.url", buildH2ConnectionUrl(dbFilename))
+            .setProperty("hibernate.connection.url", buildH2ConnectionUrl(dbFilename, compatibilityMode))
             .setProperty("hibernate.connection.username", "sa")
             .setProperty("hibernate.connection.password", "")
             .setProperty("hibernate.default_schema", "PUBLIC")
@@ -63,6 +90,9 @@ public final class JpaSessionFactoryFactory {
             //.setProperty("hibernate.show_sql", "true")
             .setProperty("hibernate.hbm2ddl.auto", "update")
             .setProperty("hibernate.order_updates", "true")
+            .setProperty("hibernate.order_inserts", "true")
+            .setProperty("hibernate.jdbc.batch_size", String.valueOf(JDBC_BATCH_SIZE))
+            .setProperty("hibernate.id.new_generator_mappings", "true")
             .setProperty("hibernate.cache.provider_class", "org.hibernate.cache.EhCacheProvider")
             .setProperty("hibernate.cache.use_second_level_cache", "true")
             .setProperty("hibernate.cache.use_query_cache", "true")
@@ -82,6 +112,7 @@ public final class JpaSessionFactoryFactory {
             .addAnnotatedClass(SuddenSpeedChangeEvent.class)
             .addAnnotatedClass(DriftEvent.class)
             .addAnnotatedClass(CloseEncounterEvent.class)
+            .addAnnotatedClass(EventCount.class)
             .addAnnotatedClass(Zone.class)
             .addAnnotatedClass(Vessel.class)
             .addAnnotatedClass(Behaviour.class)
@@ -121,6 +152,9 @@ public final class JpaSessionFactoryFactory {
             //.setProperty("hibernate.show_sql", "true")
             .setProperty("hibernate.hbm2ddl.auto", "update")
             .setProperty("hibernate.order_updates", "true")
+            .setProperty("hibernate.order_inserts", "true")
+            .setProperty("hibernate.jdbc.batch_size", String.valueOf(JDBC_BATCH_SIZE))
+            .setProperty("hibernate.id.new_generator_mappings", "true")
             .setProperty("hibernate.connection_pool_size", "1")
             .setProperty("hibernate.cache.provider_class", "org.hibernate.cache.EhCacheProvider")
             .setProperty("hibernate.cache.use_second_level_cache", "true")
@@ -143,6 +177,7 @@ public final class JpaSessionFactoryFactory {
             .addAnnotatedClass(SuddenSpeedChangeEvent.class)
             .addAnnotatedClass(DriftEvent.class)
             .addAnnotatedClass(CloseEncounterEvent.class)
+            .addAnnotatedClass(EventCount.class)
             .addAnnotatedClass(Zone.class)
             .addAnnotatedClass(Vessel.class)
             .addAnnotatedClass(Behaviour.class)
@@ -158,6 +193,18 @@ public final class JpaSessionFactoryFactory {
         return sessionFactory;
     }
 
+    /**
+     * Bring a database created by an earlier version up to date: align the id sequence with the ids already
+     * in use and backfill the event bounding boxes and event counts. Only the application writing events
+     * should call this, before it creates its writable JpaEventRepository; read-only users of the database
+     * must leave it alone.
+     */
+    public static void migrate(SessionFactory sessionFactory) {
+        alignIdSequence(sessionFactory);
+        backfillEventBoundingBoxes(sessionFactory);
+        backfillEventCounts(sessionFactory);
+    }
+
     private static void testConnection(SessionFactory sessionFactory) {
         Session session = null;
         try {
@@ -171,7 +218,107 @@ public final class JpaSessionFactoryFactory {
         }
     }
 
-    private static String buildH2ConnectionUrl(File dbFilename) {
+    /**
+     * Databases created before ids were allocated in blocks have an id sequence which is incremented by one.
+     * hbm2ddl does not alter existing sequences, so align the increment with the allocation size of the
+     * entities; otherwise the pooled id optimizer would hand out the same ids more than once.
+     */
+    private static void alignIdSequence(SessionFactory sessionFactory) {
+        Session session = null;
+        try {
+            session = sessionFactory.openSession();
+            session.beginTransaction();
+            session.createSQLQuery("ALTER SEQUENCE " + ID_SEQUENCE + " INCREMENT BY " + ID_ALLOCATION_SIZE).executeUpdate();
+            session.getTransaction().commit();
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * Compute the bounding boxes of events saved before events had bounding boxes; otherwise they would never
+     * be found by area searches.
+     */
+    private static void backfillEventBoundingBoxes(SessionFactory sessionFactory) {
+        final String trackingPointsOfEvent =
+            "FROM " + Event.BEHAVIOURS_TABLE + " eb " +
+            "JOIN " + Behaviour.TRACKING_POINTS_TABLE + " btp ON btp." + Behaviour.TRACKING_POINTS_BEHAVIOUR_COLUMN + " = eb." + Event.BEHAVIOURS_BEHAVIOUR_COLUMN + " " +
+            "JOIN TrackingPoint tp ON tp.id = btp." + Behaviour.TRACKING_POINTS_TRACKING_POINT_COLUMN + " " +
+            "WHERE eb." + Event.BEHAVIOURS_EVENT_COLUMN + " = Event.id";
+
+        Session session = null;
+        try {
+            session = sessionFactory.openSession();
+            session.beginTransaction();
+            int n = session.createSQLQuery(
+                "UPDATE Event SET " +
+                "minLatitude = (SELECT MIN(tp.latitude) " + trackingPointsOfEvent + "), " +
+                "maxLatitude = (SELECT MAX(tp.latitude) " + trackingPointsOfEvent + "), " +
+                "minLongitude = (SELECT MIN(tp.longitude) " + trackingPointsOfEvent + "), " +
+                "maxLongitude = (SELECT MAX(tp.longitude) " + trackingPointsOfEvent + ") " +
+                "WHERE minLatitude IS NULL"
+            ).executeUpdate();
+            session.getTransaction().commit();
+            LOG.debug("Computed bounding boxes of " + n + " events.");
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    /**
+     * Count the events of databases created before events were counted; otherwise they would be missing from the
+     * event counts. Nothing is done if there are event counts already. Each event is counted by the position of
+     * its first tracking point; if several share the first timestamp, the one stored first (lowest id) is used.
+     */
+    private static void backfillEventCounts(SessionFactory sessionFactory) {
+        Session session = null;
+        try {
+            session = sessionFactory.openSession();
+            session.beginTransaction();
+            if (((Number) session.createQuery("SELECT COUNT(c) FROM EventCount c").uniqueResult()).longValue() == 0) {
+                EventCounts eventCounts = new EventCounts();
+                ScrollableResults results = session.createQuery(
+                    "SELECT e.class, e.startTime, ptp.latitude, ptp.longitude FROM Event e JOIN e.behaviours AS pb JOIN pb.trackingPoints AS ptp " +
+                    "WHERE pb.isPrimary=true AND ptp.id = (" +
+                        "SELECT MIN(ptp2.id) FROM Behaviour pb2 JOIN pb2.trackingPoints AS ptp2 WHERE pb2 = pb AND ptp2.timestamp = (" +
+                            "SELECT MIN(ptp3.timestamp) FROM Behaviour pb3 JOIN pb3.trackingPoints AS ptp3 WHERE pb3 = pb" +
+                        ")" +
+                    ")"
+                ).setFetchSize(JpaEventRepository.STREAM_FETCH_SIZE).scroll(ScrollMode.FORWARD_ONLY);
+                try {
+                    while (results.next()) {
+                        Double latitude = (Double) results.get(2), longitude = (Double) results.get(3);
+                        if (latitude != null && longitude != null) {
+                            eventCounts.addAll(EventCount.of((String) results.get(0), (LocalDateTime) results.get(1), latitude, longitude));
+                        }
+                    }
+                } finally {
+                    results.close();
+                }
+
+                List<EventCount> counts = eventCounts.getAll();
+                for (int i = 0; i < counts.size(); i++) {
+                    session.save(counts.get(i));
+                    if ((i + 1) % JDBC_BATCH_SIZE == 0) {
+                        session.flush();
+                        session.clear();
+                    }
+                }
+                LOG.debug("Computed " + counts.size() + " event counts.");
+            }
+            session.getTransaction().commit();
+        } finally {
+            if (session != null) {
+                session.close();
+            }
+        }
+    }
+
+    private static String buildH2ConnectionUrl(File dbFilename, String compatibilityMode) {
         StringBuffer connectionUrl = new StringBuffer();
         connectionUrl.append("jdbc:h2:");
         connectionUrl.append(dbFilename.getAbsolutePath());
@@ -179,6 +326,11 @@ public final class JpaSessionFactoryFactory {
         connectionUrl.append("TRACE_LEVEL_FILE=0");
         connectionUrl.append(";");
         connectionUrl.append("TRACE_LEVEL_SYSTEM_OUT=1");
+        if (compatibilityMode != null) {
+            connectionUrl.append(";");
+            connectionUrl.append("MODE=");
+            connectionUrl.append(compatibilityMode);
+        }
         LOG.debug("Using connectionUrl=" + connectionUrl.toString());
         return connectionUrl.toString();
     }
@@ -0,0 +1,313 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db.log;
+
+import dk.dma.ais.abnormal.event.db.domain.Behaviour;
+import dk.dma.ais.abnormal.event.db.domain.CloseEncounterEvent;
+import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
+import dk.dma.ais.abnormal.event.db.domain.Vessel;
+import dk.dma.ais.abnormal.event.db.domain.Zone;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binary encoding of events - with their behaviours, vessels and tracking points - for the event log.
+ *
+ * The encoding is positional: Fields are written in a fixed order, each nullable field preceded by a presence
+ * flag, and times as seconds and nanos of the UTC epoch. The event type is written as the simple name of the
+ * event class, so that the encoding does not depend on the order of the event classes.
+ */
+@ThreadSafe
+final class EventCodec {
+
+    private static final Field EVENT_ID = eventIdField();
+
+    private static final Map<String, Class<? extends Event>> EVENT_CLASSES = new ConcurrentHashMap<>();
+
+    private EventCodec() {
+    }
+
+    static byte[] encode(Event event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            writeString(out, event.getEventType());
+            out.writeLong(event.getId());
+            out.writeByte(event.getState().ordinal());
+            writeTime(out, event.getStartTime());
+            writeTime(out, event.getEndTime());
+            out.writeBoolean(event.isSuppressed());
+            writeString(out, event.getTitle());
+            writeString(out, event.getDescription());
+
+            if (event instanceof CloseEncounterEvent) {
+                writeZone(out, ((CloseEncounterEvent) event).getSafetyZoneOfPrimaryVessel());
+                writeZone(out, ((CloseEncounterEvent) event).getExtentOfSecondaryVessel());
+            }
+
+            Set<Behaviour> behaviours = event.getBehaviours();
+            out.writeInt(behaviours.size());
+            for (Behaviour behaviour : behaviours) {
+                out.writeBoolean(behaviour.isPrimary());
+                writeVessel(out, behaviour.getVessel());
+                Set<TrackingPoint> trackingPoints = behaviour.getTrackingPoints();
+                out.writeInt(trackingPoints.size());
+                for (TrackingPoint trackingPoint : trackingPoints) {
+                    writeTrackingPoint(out, trackingPoint);
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // Not thrown by ByteArrayOutputStream
+        }
+        return bytes.toByteArray();
+    }
+
+    static Event decode(byte[] bytes) {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        try {
+            Event event = newEvent(readString(in));
+            setId(event, in.readLong());
+            event.setState(Event.State.values()[in.readByte()]);
+            event.setStartTime(readTime(in));
+            event.setEndTime(readTime(in));
+            event.setSuppressed(in.readBoolean());
+            event.setTitle(readString(in));
+            event.setDescription(readString(in));
+
+            if (event instanceof CloseEncounterEvent) {
+                ((CloseEncounterEvent) event).setSafetyZoneOfPrimaryVessel(readZone(in));
+                ((CloseEncounterEvent) event).setExtentOfSecondaryVessel(readZone(in));
+            }
+
+            int numberOfBehaviours = in.readInt();
+            for (int i = 0; i < numberOfBehaviours; i++) {
+                Behaviour behaviour = new Behaviour();
+                behaviour.setPrimary(in.readBoolean());
+                behaviour.setVessel(readVessel(in));
+                int numberOfTrackingPoints = in.readInt();
+                for (int j = 0; j < numberOfTrackingPoints; j++) {
+                    behaviour.addTrackingPoint(readTrackingPoint(in));
+                }
+                event.addBehaviour(behaviour);
+            }
+
+            event.updateBoundingBox();
+            return event;
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalStateException("Cannot decode event: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Assign an id to an event which has not been saved before.
+     */
+    static void setId(Event event, long id) {
+        try {
+            EVENT_ID.setLong(event, id);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Event newEvent(String eventType) {
+        Class<? extends Event> eventClass = EVENT_CLASSES.computeIfAbsent(eventType, t -> {
+            try {
+                return Class.forName(Event.class.getPackage().getName() + "." + t).asSubclass(Event.class);
+            } catch (ClassNotFoundException e) {
+                throw new IllegalStateException("Unknown event type: " + t, e);
+            }
+        });
+        try {
+            return eventClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Cannot create event of type " + eventType, e);
+        }
+    }
+
+    private static void writeVessel(DataOutputStream out, Vessel vessel) throws IOException {
+        out.writeInt(vessel.getMmsi());
+        writeString(out, vessel.getName());
+        writeInteger(out, vessel.getImo());
+        writeString(out, vessel.getCallsign());
+        writeInteger(out, vessel.getType());
+        writeInteger(out, vessel.getToBow());
+        writeInteger(out, vessel.getToStern());
+        writeInteger(out, vessel.getToPort());
+        writeInteger(out, vessel.getToStarboard());
+    }
+
+    private static Vessel readVessel(DataInputStream in) throws IOException {
+        Vessel vessel = new Vessel();
+        vessel.setMmsi(in.readInt());
+        vessel.setName(readString(in));
+        vessel.setImo(readInteger(in));
+        vessel.setCallsign(readString(in));
+        vessel.setType(readInteger(in));
+        vessel.setToBow(readInteger(in));
+        vessel.setToStern(readInteger(in));
+        vessel.setToPort(readInteger(in));
+        vessel.setToStarboard(readInteger(in));
+        return vessel;
+    }
+
+    private static void writeTrackingPoint(DataOutputStream out, TrackingPoint trackingPoint) throws IOException {
+        writeTime(out, trackingPoint.getTimestamp());
+        writeDouble(out, trackingPoint.getLatitude());
+        writeDouble(out, trackingPoint.getLongitude());
+        writeFloat(out, trackingPoint.getSpeedOverGround());
+        writeFloat(out, trackingPoint.getCourseOverGround());
+        writeFloat(out, trackingPoint.getTrueHeading());
+        Boolean positionInterpolated = trackingPoint.getPositionInterpolated();
+        out.writeByte(positionInterpolated == null ? -1 : positionInterpolated ? 1 : 0);
+        TrackingPoint.EventCertainty eventCertainty = trackingPoint.getEventCertainty();
+        out.writeByte(eventCertainty == null ? -1 : eventCertainty.ordinal());
+    }
+
+    private static TrackingPoint readTrackingPoint(DataInputStream in) throws IOException {
+        TrackingPoint trackingPoint = new TrackingPoint();
+        trackingPoint.setTimestamp(readTime(in));
+        trackingPoint.setLatitude(readDouble(in));
+        trackingPoint.setLongitude(readDouble(in));
+        trackingPoint.setSpeedOverGround(readFloat(in));
+        trackingPoint.setCourseOverGround(readFloat(in));
+        trackingPoint.setTrueHeading(readFloat(in));
+        byte positionInterpolated = in.readByte();
+        trackingPoint.setPositionInterpolated(positionInterpolated < 0 ? null : positionInterpolated == 1);
+        byte eventCertainty = in.readByte();
+        trackingPoint.setEventCertainty(eventCertainty < 0 ? null : TrackingPoint.EventCertainty.values()[eventCertainty]);
+        return trackingPoint;
+    }
+
+    private static void writeZone(DataOutputStream out, Zone zone) throws IOException {
+        out.writeBoolean(zone != null);
+        if (zone != null) {
+            out.writeLong(zone.getTargetTimestamp() == null ? Long.MIN_VALUE : zone.getTargetTimestamp().getTime());
+            writeDouble(out, zone.getCenterLatitude());
+            writeDouble(out, zone.getCenterLongitude());
+            writeDouble(out, zone.getMajorAxisHeading());
+            writeDouble(out, zone.getMajorSemiAxisLength());
+            writeDouble(out, zone.getMinorSemiAxisLength());
+        }
+    }
+
+    private static Zone readZone(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        Zone zone = new Zone();
+        long targetTimestamp = in.readLong();
+        zone.setTargetTimestamp(targetTimestamp == Long.MIN_VALUE ? null : new Date(targetTimestamp));
+        zone.setCenterLatitude(readDouble(in));
+        zone.setCenterLongitude(readDouble(in));
+        zone.setMajorAxisHeading(readDouble(in));
+        zone.setMajorSemiAxisLength(readDouble(in));
+        zone.setMinorSemiAxisLength(readDouble(in));
+        return zone;
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeBoolean(time != null);
+        if (time != null) {
+            out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(time.getNano());
+        }
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        return in.readBoolean() ? LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC) : null;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeInteger(DataOutputStream out, Integer i) throws IOException {
+        out.writeBoolean(i != null);
+        if (i != null) {
+            out.writeInt(i);
+        }
+    }
+
+    private static Integer readInteger(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    private static void writeDouble(DataOutputStream out, Double d) throws IOException {
+        out.writeBoolean(d != null);
+        if (d != null) {
+            out.writeDouble(d);
+        }
+    }
+
+    private static Double readDouble(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readDouble() : null;
+    }
+
+    private static void writeFloat(DataOutputStream out, Float f) throws IOException {
+        out.writeBoolean(f != null);
+        if (f != null) {
+            out.writeFloat(f);
+        }
+    }
+
+    private static Float readFloat(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readFloat() : null;
+    }
+
+    private static Field eventIdField() {
+        try {
+            Field field = Event.class.getDeclaredField("id");
+            field.setAccessible(true);
+            return field;
+        } catch (NoSuchFieldException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
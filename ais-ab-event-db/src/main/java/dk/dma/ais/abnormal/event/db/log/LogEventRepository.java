@@ -0,0 +1,651 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db.log;
+
+import dk.dma.ais.abnormal.event.db.EventCounts;
+import dk.dma.ais.abnormal.event.db.EventCursor;
+import dk.dma.ais.abnormal.event.db.EventRepository;
+import dk.dma.ais.abnormal.event.db.EventSummary;
+import dk.dma.ais.abnormal.event.db.OngoingEventIndex;
+import dk.dma.ais.abnormal.event.db.domain.Behaviour;
+import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.EventCount;
+import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
+import dk.dma.ais.abnormal.event.db.domain.Vessel;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.Immutable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * LogEventRepository is an implementation of the EventRepository interface which manages persistent Event
+ * objects in an append-only log of memory-mapped segment files in a directory - with no database involved.
+ *
+ * Every save appends the binary encoding of the event (see EventCodec) to the active segment; the most recently
+ * appended record of an event is its current version. All events are indexed in memory by id and by start time
+ * and id, and the index holds what is needed to filter searches (and the EventSummary of each event), so only the
+ * events in search results are read from the log and decoded. Ongoing events are kept in an OngoingEventIndex, and
+ * events are counted in EventCounts when they are first indexed.
+ *
+ * A background task compacts segments in which less than COMPACTION_THRESHOLD of the bytes hold current
+ * versions of events, by appending the current versions to the active segment and deleting the segment.
+ *
+ * The log is recovered by reading all segments when the repository is created. It must only be written by one
+ * repository at a time; a read-only repository sees the events of the log when it was created.
+ */
+@ThreadSafe
+public class LogEventRepository implements EventRepository, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogEventRepository.class);
+    {
+        LOG.info(this.getClass().getSimpleName() + " created (" + this + ").");
+    }
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /** Segments with a smaller fraction of live bytes are compacted */
+    static final double COMPACTION_THRESHOLD = 0.5;
+    static final long COMPACTION_PERIOD_SECONDS = 60;
+
+    private static final String SEGMENT_FILE_PREFIX = "events-";
+    private static final String SEGMENT_FILE_SUFFIX = ".log";
+
+    private static final Comparator<EventCursor> CURSOR_ORDER = Comparator.comparing(EventCursor::getStartTime).thenComparingLong(EventCursor::getId);
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean readonly;
+
+    private final NavigableMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+
+    /** Serializes appends to the log and updates of the indexes */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    @GuardedBy("lock")
+    private Segment activeSegment;
+
+    @GuardedBy("lock")
+    private boolean closed;
+
+    private final Map<Long, IndexEntry> eventsById = new ConcurrentHashMap<>();
+    private final NavigableMap<EventCursor, IndexEntry> eventsByStartTime = new ConcurrentSkipListMap<>(CURSOR_ORDER);
+    private final Map<String, Set<Long>> eventIdsByType = new ConcurrentHashMap<>();
+    private final OngoingEventIndex ongoingEvents = new OngoingEventIndex();
+    private final EventCounts eventCounts = new EventCounts();
+
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    private final ScheduledExecutorService compactor;
+
+    public LogEventRepository(Path directory, boolean readonly) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, readonly);
+    }
+
+    public LogEventRepository(Path directory, int segmentSize, boolean readonly) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.readonly = readonly;
+
+        if (!readonly) {
+            Files.createDirectories(directory);
+        }
+        recover();
+
+        if (readonly) {
+            compactor = null;
+        } else {
+            compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "LogEventRepository-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compact, COMPACTION_PERIOD_SECONDS, COMPACTION_PERIOD_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    @Override
+    public List<String> getEventTypes() {
+        return eventIdsByType.entrySet().stream()
+            .filter(eventIds -> eventIds.getValue().stream().anyMatch(id -> !eventsById.get(id).suppressed))
+            .map(Map.Entry::getKey)
+            .sorted()
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public void save(Event event) {
+        saveAll(Collections.singletonList(event));
+    }
+
+    /**
+     * The events are encoded before the log is locked, and appended while it is locked once.
+     */
+    @Override
+    public void saveAll(Collection<? extends Event> events) {
+        if (readonly) {
+            return;
+        }
+
+        List<byte[]> records = new ArrayList<>(events.size());
+        List<IndexEntry> entries = new ArrayList<>(events.size());
+        for (Event event : events) {
+            Objects.requireNonNull(event.getStartTime(), "startTime");
+            if (event.getId() == 0) {
+                EventCodec.setId(event, nextId.getAndIncrement());
+            }
+            event.updateBoundingBox();
+            byte[] record = EventCodec.encode(event);
+            records.add(record);
+            entries.add(new IndexEntry(event, record.length));
+        }
+
+        lock.lock();
+        try {
+            int i = 0;
+            for (Event event : events) {
+                byte[] record = records.get(i);
+                Segment segment = activeSegment(record);
+                index(entries.get(i).at(segment.getNumber(), segment.append(record)));
+                ongoingEvents.update(event);
+                i++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Event getEvent(long eventId) {
+        IndexEntry entry = eventsById.get(eventId);
+        return entry == null ? null : read(entry);
+    }
+
+    @Override
+    public List<Event> findEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west) {
+        return search(from, to, type, vessel, north, east, south, west, null)
+            .map(this::read)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Event> findEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, EventCursor after, int limit) {
+        return search(from, to, type, vessel, north, east, south, west, after)
+            .limit(limit)
+            .map(this::read)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public void streamEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, Consumer<Event> consumer) {
+        search(from, to, type, vessel, north, east, south, west, null)
+            .map(this::read)
+            .forEach(consumer);
+    }
+
+    @Override
+    public List<EventSummary> findEventSummariesByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, EventCursor after, int limit) {
+        return search(from, to, type, vessel, north, east, south, west, after)
+            .filter(entry -> entry.summary != null)
+            .limit(limit)
+            .map(entry -> entry.summary)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Event> findEventsByFromAndTo(Date from, Date to) {
+        LocalDateTime fromTime = toLocalDateTime(from), toTime = toLocalDateTime(to);
+        return eventsByStartTime.headMap(new EventCursor(toTime, Long.MAX_VALUE), true).values().stream()
+            .filter(entry -> !entry.suppressed)
+            .filter(entry -> isBetween(entry.startTime, fromTime, toTime) || isBetween(entry.endTime, fromTime, toTime))
+            .map(this::read)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Event> findRecentEvents(int numberOfEvents) {
+        return recentEntries()
+            .limit(numberOfEvents)
+            .map(this::read)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<EventSummary> findRecentEventSummaries(int numberOfEvents) {
+        return recentEntries()
+            .filter(entry -> entry.summary != null)
+            .limit(numberOfEvents)
+            .map(entry -> entry.summary)
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<EventCount> getEventCounts(Date from, Date to, EventCount.Resolution resolution, boolean byCell) {
+        return eventCounts.get(toLocalDateTime(from), toLocalDateTime(to), resolution, byCell);
+    }
+
+    @Override
+    public <T extends Event> T findOngoingEventByVessel(int mmsi, Class<T> eventClass) {
+        return ongoingEvents.get(mmsi, eventClass);
+    }
+
+    /**
+     * Stop compaction and write all appended records to the storage device.
+     */
+    @Override
+    public void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(COMPACTION_PERIOD_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Segment segment : segments.values()) {
+                if (!readonly) {
+                    segment.force();
+                }
+                segment.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+        LOG.info("Closed event log in " + directory + ".");
+    }
+
+    /**
+     * Find the index entries of the events matching the search criteria of findEventsByFromAndToAndTypeAndVesselAndArea,
+     * ordered by start time and id, after the given cursor.
+     */
+    private Stream<IndexEntry> search(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west, EventCursor after) {
+        NavigableMap<EventCursor, IndexEntry> candidates = after == null ? eventsByStartTime : eventsByStartTime.tailMap(after, false);
+
+        final LocalDateTime fromTime = toLocalDateTime(from), toTime = toLocalDateTime(to);
+        if (toTime != null) {
+            // An event ending before 'to' also starts before it
+            candidates = candidates.headMap(new EventCursor(toTime, Long.MAX_VALUE), true);
+        }
+
+        Stream<IndexEntry> entries = candidates.values().stream().filter(entry -> !entry.suppressed);
+
+        if (fromTime != null) {
+            entries = entries.filter(entry -> !entry.startTime.isBefore(fromTime) || (entry.endTime != null && !entry.endTime.isBefore(fromTime)));
+        }
+        if (! StringUtils.isBlank(type)) {
+            String eventType = eventType(type);
+            entries = entries.filter(entry -> entry.eventType.equals(eventType));
+        }
+        if (! StringUtils.isBlank(vessel)) {
+            entries = entries.filter(vesselMatcher(vessel));
+        }
+        if (north != null && east != null && south != null && west != null) {
+            // The bounding box of the event is checked first, so that only events which may be inside the area are read
+            entries = entries
+                .filter(entry -> entry.minLatitude != null && entry.minLatitude < north && entry.maxLatitude > south && entry.minLongitude < east && entry.maxLongitude > west)
+                .filter(entry -> hasTrackingPointInside(read(entry), north, east, south, west));
+        }
+        return entries;
+    }
+
+    private Stream<IndexEntry> recentEntries() {
+        return eventsByStartTime.descendingMap().values().stream().filter(entry -> !entry.suppressed);
+    }
+
+    private static boolean hasTrackingPointInside(Event event, double north, double east, double south, double west) {
+        for (Behaviour behaviour : event.getBehaviours()) {
+            for (TrackingPoint trackingPoint : behaviour.getTrackingPoints()) {
+                Double latitude = trackingPoint.getLatitude(), longitude = trackingPoint.getLongitude();
+                if (latitude != null && longitude != null && latitude < north && latitude > south && longitude < east && longitude > west) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return a predicate matching events with a vessel with the given name, callsign, MMSI or IMO no. - where
+     * name and callsign are matched as in SQL LIKE '%vessel%'.
+     */
+    private static Predicate<IndexEntry> vesselMatcher(String vessel) {
+        StringBuilder regex = new StringBuilder(".*");
+        for (char c : vessel.toCharArray()) {
+            if (c == '%') {
+                regex.append(".*");
+            } else if (c == '_') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        regex.append(".*");
+        final Pattern pattern = Pattern.compile(regex.toString(), Pattern.DOTALL);
+
+        Long number = null;
+        try {
+            number = Long.valueOf(vessel);
+        } catch (NumberFormatException e) {
+        }
+        final Long vesselAsLong = number;
+
+        return entry -> entry.vessels.stream().anyMatch(v ->
+            (v.getCallsign() != null && pattern.matcher(v.getCallsign()).matches()) ||
+            (v.getName() != null && pattern.matcher(v.getName()).matches()) ||
+            (vesselAsLong != null && (v.getMmsi() == vesselAsLong || (v.getImo() != null && v.getImo().longValue() == vesselAsLong)))
+        );
+    }
+
+    private static String eventType(String type) {
+        String className = Event.class.getPackage().getName() + "." + type;
+        try {
+            return Class.forName(className).asSubclass(Event.class).getSimpleName();
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IllegalArgumentException("Class " + className + " not found.");
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return date == null ? null : LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+
+    private static boolean isBetween(LocalDateTime time, LocalDateTime from, LocalDateTime to) {
+        return time != null && !time.isBefore(from) && !time.isAfter(to);
+    }
+
+    /**
+     * Read the current version of an event from the log.
+     */
+    private Event read(IndexEntry entry) {
+        for (;;) {
+            Segment segment = segments.get(entry.segment);
+            if (segment != null) {
+                return EventCodec.decode(segment.read(entry.offset));
+            }
+            // The segment has been compacted; the event has moved
+            IndexEntry current = eventsById.get(entry.id);
+            if (current == null || current == entry) {
+                throw new IllegalStateException("Event " + entry.id + " is missing from " + directory);
+            }
+            entry = current;
+        }
+    }
+
+    /**
+     * @return the segment to append the given record to.
+     */
+    @GuardedBy("lock")
+    private Segment activeSegment(byte[] record) throws IOException {
+        if (closed) {
+            throw new IllegalStateException("Event log " + directory + " is closed.");
+        }
+        if (activeSegment == null || !activeSegment.hasRoomFor(record)) {
+            if (activeSegment != null) {
+                activeSegment.force();
+            }
+            int number = segments.isEmpty() ? 1 : segments.lastKey() + 1;
+            activeSegment = Segment.create(segmentPath(number), number, Math.max(segmentSize, Segment.capacityFor(record)));
+            segments.put(number, activeSegment);
+            LOG.debug("Created event log segment " + activeSegment + ".");
+        }
+        return activeSegment;
+    }
+
+    /**
+     * Index the given entry as the current version of its event.
+     */
+    @GuardedBy("lock")
+    private void index(IndexEntry entry) {
+        if (entry.offset < 0) {
+            throw new IllegalStateException("No room for event " + entry.id + " in segment " + entry.segment);
+        }
+        IndexEntry previous = eventsById.put(entry.id, entry);
+        if (previous == null) {
+            eventCounts.addAll(entry.counts);
+        } else {
+            Segment previousSegment = segments.get(previous.segment);
+            if (previousSegment != null) {
+                previousSegment.addLiveBytes(-previous.size);
+            }
+            if (!previous.cursor.equals(entry.cursor)) {
+                eventsByStartTime.remove(previous.cursor);
+            }
+        }
+        eventsByStartTime.put(entry.cursor, entry);
+        eventIdsByType.computeIfAbsent(entry.eventType, t -> ConcurrentHashMap.newKeySet()).add(entry.id);
+        segments.get(entry.segment).addLiveBytes(entry.size);
+    }
+
+    /**
+     * Read all segments of the log into the indexes.
+     */
+    private void recover() throws IOException {
+        List<Path> segmentPaths;
+        try (Stream<Path> files = Files.exists(directory) ? Files.list(directory) : Stream.empty()) {
+            segmentPaths = files.filter(path -> segmentNumber(path) > 0)
+                .sorted(Comparator.comparingInt(LogEventRepository::segmentNumber))
+                .collect(Collectors.toList());
+        }
+
+        lock.lock();
+        try {
+            long maxId = 0;
+            for (Path segmentPath : segmentPaths) {
+                Segment segment = Segment.open(segmentPath, segmentNumber(segmentPath), readonly);
+                segments.put(segment.getNumber(), segment);
+                segment.recover((offset, payload) -> index(new IndexEntry(EventCodec.decode(payload), payload.length).at(segment.getNumber(), offset)));
+                activeSegment = segment;
+            }
+            for (IndexEntry entry : eventsById.values()) {
+                maxId = Math.max(maxId, entry.id);
+                if (entry.state == Event.State.ONGOING && !entry.suppressed) {
+                    ongoingEvents.put(read(entry));
+                }
+            }
+            nextId.set(maxId + 1);
+        } finally {
+            lock.unlock();
+        }
+
+        LOG.info("Recovered " + eventsById.size() + " events from " + segments.size() + " segments in " + directory + ".");
+    }
+
+    /**
+     * Compact the segments - except the active one - with less than COMPACTION_THRESHOLD live bytes.
+     */
+    void compact() {
+        try {
+            for (Segment segment : segments.values()) {
+                Segment active;
+                lock.lock();
+                try {
+                    active = activeSegment;
+                } finally {
+                    lock.unlock();
+                }
+                if (segment != active && segment.getLiveBytes() < COMPACTION_THRESHOLD * (segment.size() - Segment.FILE_HEADER_SIZE)) {
+                    compact(segment);
+                }
+            }
+        } catch (Throwable t) {
+            LOG.error("Failed to compact event log: " + t.getMessage(), t);
+        }
+    }
+
+    private void compact(Segment segment) throws IOException {
+        List<IndexEntry> liveEntries = eventsById.values().stream()
+            .filter(entry -> entry.segment == segment.getNumber())
+            .collect(Collectors.toList());
+
+        for (IndexEntry entry : liveEntries) {
+            byte[] record = segment.read(entry.offset);
+            lock.lock();
+            try {
+                if (eventsById.get(entry.id) == entry) {
+                    Segment target = activeSegment(record);
+                    index(entry.at(target.getNumber(), target.append(record)));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        lock.lock();
+        try {
+            activeSegment.force();
+            segments.remove(segment.getNumber());
+        } finally {
+            lock.unlock();
+        }
+        segment.delete();
+        LOG.info("Compacted event log segment " + segment + " (" + liveEntries.size() + " events moved).");
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_FILE_PREFIX, number, SEGMENT_FILE_SUFFIX));
+    }
+
+    private static final Pattern SEGMENT_FILE_NAME = Pattern.compile(Pattern.quote(SEGMENT_FILE_PREFIX) + "(\\d{8})" + Pattern.quote(SEGMENT_FILE_SUFFIX));
+
+    /**
+     * @return the number of the segment file with the given path; or -1 if it is not a segment file.
+     */
+    private static int segmentNumber(Path path) {
+        Matcher matcher = SEGMENT_FILE_NAME.matcher(path.getFileName().toString());
+        return matcher.matches() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * The location of the current version of an event in the log, and what is needed to search for the event.
+     */
+    @Immutable
+    private static final class IndexEntry {
+        final int segment;
+        final int offset;
+        final int size;
+
+        final long id;
+        final EventCursor cursor;
+        final String eventType;
+        final Event.State state;
+        final LocalDateTime startTime;
+        final LocalDateTime endTime;
+        final boolean suppressed;
+        final Double minLatitude, maxLatitude, minLongitude, maxLongitude;
+        final List<Vessel> vessels;
+        final EventSummary summary;
+        final List<EventCount> counts;
+
+        /** An entry of the given event - with no location in the log yet */
+        IndexEntry(Event event, int payloadSize) {
+            this.segment = -1;
+            this.offset = -1;
+            this.size = Segment.RECORD_HEADER_SIZE + payloadSize;
+            this.id = event.getId();
+            this.cursor = EventCursor.at(event);
+            this.eventType = event.getEventType();
+            this.state = event.getState();
+            this.startTime = event.getStartTime();
+            this.endTime = event.getEndTime();
+            this.suppressed = event.isSuppressed();
+            this.minLatitude = event.getMinLatitude();
+            this.maxLatitude = event.getMaxLatitude();
+            this.minLongitude = event.getMinLongitude();
+            this.maxLongitude = event.getMaxLongitude();
+            this.vessels = event.getBehaviours().stream().map(IndexEntry::copyOf).collect(Collectors.toList());
+            this.summary = EventSummary.of(event);
+            this.counts = EventCount.of(event);
+        }
+
+        private IndexEntry(IndexEntry entry, int segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+            this.size = entry.size;
+            this.id = entry.id;
+            this.cursor = entry.cursor;
+            this.eventType = entry.eventType;
+            this.state = entry.state;
+            this.startTime = entry.startTime;
+            this.endTime = entry.endTime;
+            this.suppressed = entry.suppressed;
+            this.minLatitude = entry.minLatitude;
+            this.maxLatitude = entry.maxLatitude;
+            this.minLongitude = entry.minLongitude;
+            this.maxLongitude = entry.maxLongitude;
+            this.vessels = entry.vessels;
+            this.summary = entry.summary;
+            this.counts = entry.counts;
+        }
+
+        /** @return this entry located at the given offset in the given segment */
+        IndexEntry at(int segment, int offset) {
+            return new IndexEntry(this, segment, offset);
+        }
+
+        /** The index must not refer to the vessels of saved events, which may still be changed */
+        private static Vessel copyOf(Behaviour behaviour) {
+            Vessel vessel = new Vessel();
+            vessel.setMmsi(behaviour.getVessel().getMmsi());
+            vessel.setName(behaviour.getVessel().getName());
+            vessel.setCallsign(behaviour.getVessel().getCallsign());
+            vessel.setImo(behaviour.getVessel().getImo());
+            return vessel;
+        }
+    }
+
+}
@@ -0,0 +1,216 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db.log;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * A segment of the event log: A memory-mapped file of fixed capacity holding a file header followed by records.
+ *
+ * Each record is its length, the CRC32 of its payload and the payload. The length is written last, so a record
+ * with a zero length - e.g. the unwritten, zero-filled tail of the file - or with a wrong checksum ends the segment
+ * when it is recovered.
+ *
+ * Records are appended by one thread at a time (the caller serializes appends), but can be read concurrently by
+ * any number of threads.
+ */
+@ThreadSafe
+final class Segment implements Closeable {
+
+    static final int MAGIC = 0x41424556; // "ABEV"
+    static final int VERSION = 1;
+
+    static final int FILE_HEADER_SIZE = 8;
+    static final int RECORD_HEADER_SIZE = 8;
+
+    interface RecordVisitor {
+        void visit(int offset, byte[] payload);
+    }
+
+    private final int number;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    /** The offset at which the next record is appended */
+    private volatile int position;
+
+    /** The size of the records of this segment which hold the current version of an event */
+    private final AtomicLong liveBytes = new AtomicLong();
+
+    private Segment(int number, Path path, FileChannel channel, MappedByteBuffer buffer, int position) {
+        this.number = number;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.position = position;
+    }
+
+    /**
+     * Create a new, empty segment file.
+     */
+    static Segment create(Path path, int number, int capacity) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        return new Segment(number, path, channel, buffer, FILE_HEADER_SIZE);
+    }
+
+    /**
+     * Open an existing segment file. The records of the segment must be recovered before it is used.
+     */
+    static Segment open(Path path, int number, boolean readonly) throws IOException {
+        FileChannel channel = readonly ? FileChannel.open(path, StandardOpenOption.READ) : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < FILE_HEADER_SIZE || size > Integer.MAX_VALUE) {
+            channel.close();
+            throw new IOException("Illegal size of event log segment " + path + ": " + size);
+        }
+        MappedByteBuffer buffer = channel.map(readonly ? FileChannel.MapMode.READ_ONLY : FileChannel.MapMode.READ_WRITE, 0, size);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            channel.close();
+            throw new IOException("Not an event log segment of version " + VERSION + ": " + path);
+        }
+        return new Segment(number, path, channel, buffer, FILE_HEADER_SIZE);
+    }
+
+    /**
+     * @return the capacity needed for a segment holding just the given payload.
+     */
+    static int capacityFor(byte[] payload) {
+        return FILE_HEADER_SIZE + RECORD_HEADER_SIZE + payload.length;
+    }
+
+    /**
+     * Pass each valid record of the segment to the visitor, and position the segment after the last of them.
+     */
+    void recover(RecordVisitor visitor) {
+        ByteBuffer records = buffer.duplicate();
+        int offset = FILE_HEADER_SIZE;
+        while (offset + RECORD_HEADER_SIZE <= records.capacity()) {
+            int length = records.getInt(offset);
+            if (length <= 0 || offset + RECORD_HEADER_SIZE + length > records.capacity()) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            records.position(offset + RECORD_HEADER_SIZE);
+            records.get(payload);
+            if (crc(payload) != records.getInt(offset + 4)) {
+                break;
+            }
+            visitor.visit(offset, payload);
+            offset += RECORD_HEADER_SIZE + length;
+        }
+        position = offset;
+    }
+
+    boolean hasRoomFor(byte[] payload) {
+        return (long) position + RECORD_HEADER_SIZE + payload.length <= buffer.capacity();
+    }
+
+    /**
+     * Append a record. Must not be called concurrently.
+     *
+     * @return the offset of the record; or -1 if there is no room for it in this segment.
+     */
+    int append(byte[] payload) {
+        if (!hasRoomFor(payload)) {
+            return -1;
+        }
+        int offset = position;
+        ByteBuffer records = buffer.duplicate();
+        records.position(offset + RECORD_HEADER_SIZE);
+        records.put(payload);
+        records.putInt(offset + 4, crc(payload));
+        records.putInt(offset, payload.length);
+        position = offset + RECORD_HEADER_SIZE + payload.length;
+        return offset;
+    }
+
+    /**
+     * @return the payload of the record at the given offset.
+     */
+    byte[] read(int offset) {
+        ByteBuffer records = buffer.duplicate();
+        byte[] payload = new byte[records.getInt(offset)];
+        records.position(offset + RECORD_HEADER_SIZE);
+        records.get(payload);
+        return payload;
+    }
+
+    int getNumber() {
+        return number;
+    }
+
+    /**
+     * @return the number of bytes used by the header and records of this segment.
+     */
+    int size() {
+        return position;
+    }
+
+    long getLiveBytes() {
+        return liveBytes.get();
+    }
+
+    void addLiveBytes(long delta) {
+        liveBytes.addAndGet(delta);
+    }
+
+    /**
+     * Write the records appended to this segment to the storage device.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Close and delete the segment file. Records already read from the segment remain valid.
+     */
+    void delete() throws IOException {
+        close();
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+
+    private static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+}
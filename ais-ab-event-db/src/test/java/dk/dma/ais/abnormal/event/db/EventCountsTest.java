@@ -0,0 +1,71 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db;
+
+import dk.dma.ais.abnormal.event.db.domain.EventCount;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static dk.dma.ais.abnormal.event.db.domain.EventCount.Resolution.DAY;
+import static dk.dma.ais.abnormal.event.db.domain.EventCount.Resolution.HOUR;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EventCountsTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2014, 4, 27, 12, 0, 0);
+
+    @Test
+    public void sumsCountsOverCellsUnlessCountedByCell() {
+        EventCounts eventCounts = new EventCounts();
+        eventCounts.addAll(EventCount.of("DriftEvent", T0.plusMinutes(10), 55.5, 11.5));
+        eventCounts.addAll(EventCount.of("DriftEvent", T0.plusMinutes(20), 55.5, 11.5));
+        eventCounts.addAll(EventCount.of("DriftEvent", T0.plusMinutes(30), 56.5, -0.5));
+        eventCounts.addAll(EventCount.of("SpeedOverGroundEvent", T0.plusMinutes(40), 55.5, 11.5));
+
+        List<EventCount> byCell = eventCounts.get(T0, T0.plusHours(1), HOUR, true);
+        assertEquals(3, byCell.size());
+        assertEquals(2, byCell.get(0).getNumberOfEvents());
+        assertEquals(Integer.valueOf(55), byCell.get(0).getCellLatitude());
+        assertEquals(Integer.valueOf(56), byCell.get(1).getCellLatitude());
+        assertEquals(Integer.valueOf(-1), byCell.get(1).getCellLongitude());
+
+        List<EventCount> summed = eventCounts.get(T0, T0.plusHours(1), HOUR, false);
+        assertEquals(2, summed.size());
+        assertEquals("DriftEvent", summed.get(0).getEventType());
+        assertEquals(3, summed.get(0).getNumberOfEvents());
+        assertNull(summed.get(0).getCellLatitude());
+        assertEquals("SpeedOverGroundEvent", summed.get(1).getEventType());
+        assertEquals(1, summed.get(1).getNumberOfEvents());
+    }
+
+    @Test
+    public void getsPeriodsStartingFromTruncatedFromAndBeforeTo() {
+        EventCounts eventCounts = new EventCounts();
+        eventCounts.addAll(EventCount.of("DriftEvent", T0.minusDays(1), 55.5, 11.5));
+        eventCounts.addAll(EventCount.of("DriftEvent", T0, 55.5, 11.5));
+        eventCounts.addAll(EventCount.of("DriftEvent", T0.plusDays(1), 55.5, 11.5));
+
+        List<EventCount> daily = eventCounts.get(T0.plusHours(6), T0.plusDays(1).withHour(0), DAY, false);
+        assertEquals(1, daily.size());
+        assertEquals(T0.withHour(0), daily.get(0).getPeriodStart());
+        assertEquals(0, eventCounts.get(T0.plusHours(1), T0.plusHours(1), HOUR, false).size());
+    }
+
+}
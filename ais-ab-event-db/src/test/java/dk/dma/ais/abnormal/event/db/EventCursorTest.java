@@ -0,0 +1,69 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db;
+
+import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.ShipSizeOrTypeEvent;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventCursorTest {
+
+    @Test
+    public void canParseToString() {
+        EventCursor cursor = new EventCursor(LocalDateTime.of(2014, 4, 27, 12, 0, 30), 42L);
+        assertEquals("2014-04-27T12:00:30_42", cursor.toString());
+        assertEquals(cursor, EventCursor.parse(cursor.toString()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseRejectsIllegalCursor() {
+        EventCursor.parse("2014-04-27T12:00:30");
+    }
+
+    @Test
+    public void eventsAfterCursorAreOrderedByStartTimeAndId() throws Exception {
+        EventCursor cursor = new EventCursor(LocalDateTime.of(2014, 4, 27, 12, 0, 0), 42L);
+
+        assertFalse(cursor.isBefore(event(LocalDateTime.of(2014, 4, 27, 11, 59, 59), 43L)));
+        assertFalse(cursor.isBefore(event(LocalDateTime.of(2014, 4, 27, 12, 0, 0), 41L)));
+        assertFalse(cursor.isBefore(event(LocalDateTime.of(2014, 4, 27, 12, 0, 0), 42L)));
+        assertTrue(cursor.isBefore(event(LocalDateTime.of(2014, 4, 27, 12, 0, 0), 43L)));
+        assertTrue(cursor.isBefore(event(LocalDateTime.of(2014, 4, 27, 12, 0, 1), 1L)));
+
+        Event event = event(LocalDateTime.of(2014, 4, 27, 12, 0, 0), 43L);
+        assertEquals(0, EventCursor.ORDER.compare(event, event(LocalDateTime.of(2014, 4, 27, 12, 0, 0), 43L)));
+        assertTrue(EventCursor.ORDER.compare(event, event(LocalDateTime.of(2014, 4, 27, 12, 0, 0), 44L)) < 0);
+        assertTrue(EventCursor.ORDER.compare(event, event(LocalDateTime.of(2014, 4, 27, 11, 0, 0), 44L)) > 0);
+    }
+
+    private static Event event(LocalDateTime startTime, long id) throws ReflectiveOperationException {
+        Event event = new ShipSizeOrTypeEvent();
+        event.setStartTime(startTime);
+        Field idField = Event.class.getDeclaredField("id");
+        idField.setAccessible(true);
+        idField.setLong(event, id);
+        return event;
+    }
+
+}
@@ -0,0 +1,91 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db;
+
+import dk.dma.ais.abnormal.event.db.domain.Event;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+
+import static dk.dma.ais.abnormal.event.db.domain.builders.CloseEncounterEventBuilder.CloseEncounterEvent;
+import static dk.dma.ais.abnormal.event.db.domain.builders.TrackingPointBuilder.TrackingPoint;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class EventSummaryTest {
+
+    @Test
+    public void summaryOfEventHoldsPrimaryVesselAndItsLastPosition() {
+        Event event = CloseEncounterEvent()
+            .state(Event.State.ONGOING)
+            .startTime(LocalDateTime.of(2014, 4, 27, 12, 0, 0))
+            .title("Close encounter")
+            .behaviour()
+                .isPrimary(false)
+                .vessel()
+                    .mmsi(219000002)
+                    .name("Other")
+                .trackingPoint()
+                    .timestamp(LocalDateTime.of(2014, 4, 27, 12, 5, 0))
+                    .latitude(55.5).longitude(11.5)
+            .behaviour()
+                .isPrimary(true)
+                .vessel()
+                    .mmsi(219000001)
+                    .callsign("OXYZ")
+                    .type(70)
+                    .toBow(100)
+                    .toStern(20)
+                    .name("Primary")
+                .trackingPoints(TrackingPoint()
+                    .timestamp(LocalDateTime.of(2014, 4, 27, 12, 1, 0))
+                    .latitude(56.0).longitude(12.0)
+                    .getTrackingPoint())
+                .trackingPoint()
+                    .timestamp(LocalDateTime.of(2014, 4, 27, 12, 0, 0))
+                    .latitude(55.0).longitude(11.0)
+            .getEvent();
+        event.updateBoundingBox();
+
+        EventSummary summary = EventSummary.of(event);
+
+        assertEquals("CloseEncounterEvent", summary.getEventType());
+        assertEquals(Event.State.ONGOING, summary.getState());
+        assertEquals(LocalDateTime.of(2014, 4, 27, 12, 0, 0), summary.getStartTime());
+        assertEquals("Close encounter", summary.getTitle());
+        assertEquals(219000001, summary.getPrimaryVesselMmsi());
+        assertEquals("Primary", summary.getPrimaryVesselName());
+        assertEquals("OXYZ", summary.getPrimaryVesselCallsign());
+        assertEquals(Integer.valueOf(70), summary.getPrimaryVesselType());
+        assertEquals(Integer.valueOf(120), summary.getPrimaryVesselLength());
+        assertEquals(56.0, summary.getLatitude(), 1e-9);
+        assertEquals(12.0, summary.getLongitude(), 1e-9);
+        assertEquals(55.0, summary.getMinLatitude(), 1e-9);
+        assertEquals(56.0, summary.getMaxLatitude(), 1e-9);
+        assertEquals(11.0, summary.getMinLongitude(), 1e-9);
+        assertEquals(12.0, summary.getMaxLongitude(), 1e-9);
+    }
+
+    @Test
+    public void lengthIsUnknownIfDimensionsAreUnknown() {
+        EventSummary summary = new EventSummary(1L, "CloseEncounterEvent", Event.State.PAST, LocalDateTime.of(2014, 4, 27, 12, 0, 0), null, null,
+            219000001, null, null, null, 100, null, 55.0, 11.0, 55.0, 55.0, 11.0, 11.0);
+
+        assertNull(summary.getPrimaryVesselLength());
+    }
+
+}
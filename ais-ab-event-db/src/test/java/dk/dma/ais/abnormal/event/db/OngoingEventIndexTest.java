@@ -0,0 +1,114 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db;
+
+import dk.dma.ais.abnormal.event.db.domain.DriftEvent;
+import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.SuddenSpeedChangeEvent;
+import dk.dma.ais.abnormal.event.db.domain.builders.SuddenSpeedChangeEventBuilder;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class OngoingEventIndexTest {
+
+    @Test
+    public void updateIndexesOngoingEventsOnly() {
+        OngoingEventIndex index = new OngoingEventIndex();
+        Event event = event(219000001);
+
+        index.update(event);
+        assertSame(event, index.get(219000001, SuddenSpeedChangeEvent.class));
+        assertNull(index.get(219000001, DriftEvent.class));
+        assertNull(index.get(219000002, SuddenSpeedChangeEvent.class));
+        assertEquals(1, index.size());
+
+        event.setSuppressed(true);
+        index.update(event);
+        assertNull(index.get(219000001, SuddenSpeedChangeEvent.class));
+
+        event.setSuppressed(false);
+        index.update(event);
+        event.setState(Event.State.PAST);
+        index.update(event);
+        assertNull(index.get(219000001, SuddenSpeedChangeEvent.class));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void removeKeepsOtherEventOfSameClass() {
+        OngoingEventIndex index = new OngoingEventIndex();
+        Event oldEvent = event(219000001);
+        Event newEvent = event(219000001);
+
+        index.put(oldEvent);
+        index.put(newEvent);
+        index.remove(oldEvent);
+
+        assertSame(newEvent, index.get(219000001, SuddenSpeedChangeEvent.class));
+    }
+
+    @Test
+    public void removeUnusedSinceRemovesEventsWhichHaveNotBeenUsedSince() throws InterruptedException {
+        OngoingEventIndex index = new OngoingEventIndex();
+        Event unusedEvent = event(219000001);
+        Event usedEvent = event(219000002);
+        index.put(unusedEvent);
+        index.put(usedEvent);
+
+        Thread.sleep(10);
+        long time = System.currentTimeMillis();
+        index.get(219000002, SuddenSpeedChangeEvent.class);
+
+        assertEquals(Arrays.asList(unusedEvent), index.removeUnusedSince(time));
+        assertNull(index.get(219000001, SuddenSpeedChangeEvent.class));
+        assertSame(usedEvent, index.get(219000002, SuddenSpeedChangeEvent.class));
+    }
+
+    @Test
+    public void removeIfRemovesMatchingEvents() {
+        OngoingEventIndex index = new OngoingEventIndex();
+        Event event1 = event(219000001);
+        Event event2 = event(219000002);
+        index.put(event1);
+        index.put(event2);
+
+        index.removeIf(event -> event == event1);
+
+        assertEquals(1, index.events().size());
+        assertSame(event2, index.events().iterator().next());
+    }
+
+    private static Event event(int mmsi) {
+        return SuddenSpeedChangeEventBuilder.SuddenSpeedChangeEvent()
+            .state(Event.State.ONGOING)
+            .behaviour()
+                .isPrimary(true)
+                .vessel()
+                    .mmsi(mmsi)
+                    .name("name")
+                .trackingPoint()
+                    .latitude(56.0)
+                    .longitude(12.0)
+            .getEvent();
+    }
+
+}
@@ -0,0 +1,398 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db;
+
+import dk.dma.ais.abnormal.application.statistics.StatisticsRegistry;
+import dk.dma.ais.abnormal.event.db.domain.Behaviour;
+import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.SuddenSpeedChangeEvent;
+import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
+import dk.dma.ais.abnormal.event.db.domain.builders.SuddenSpeedChangeEventBuilder;
+import dk.dma.ais.abnormal.event.db.domain.builders.TrackingPointBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static java.util.Collections.emptyMap;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WriteBehindEventRepositoryTest {
+
+    private RecordingEventRepository delegate;
+    private StatisticsRegistry statisticsRegistry;
+    private WriteBehindEventRepository sut;
+
+    @Before
+    public void setUp() {
+        delegate = new RecordingEventRepository();
+        statisticsRegistry = new StatisticsRegistry();
+        sut = new WriteBehindEventRepository(delegate, 10, 5, statisticsRegistry);
+    }
+
+    @After
+    public void tearDown() {
+        delegate.release.countDown();
+        sut.close();
+    }
+
+    @Test
+    public void repeatedSavesOfQueuedEventAreCoalesced() throws InterruptedException {
+        Event blocking = event(219000001, Event.State.ONGOING);
+        sut.save(blocking);
+        assertTrue(delegate.writing.await(5, TimeUnit.SECONDS));
+
+        Event event = event(219000002, Event.State.ONGOING);
+        sut.save(event);
+        sut.save(event);
+        sut.save(event);
+        assertEquals(1, sut.getQueueSize());
+        assertEquals(1L, (long) statisticsRegistry.getValue(WriteBehindEventRepository.STATISTICS_GROUP, "# queued events"));
+
+        delegate.release.countDown();
+        assertTrue(sut.flush(5, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(219000001, 219000002), delegate.savedMmsis());
+        assertEquals(0, sut.getQueueSize());
+        assertEquals(0L, sut.getQueueLagMillis());
+        assertEquals(2L, (long) statisticsRegistry.getValue(WriteBehindEventRepository.STATISTICS_GROUP, "# events written"));
+    }
+
+    @Test
+    public void eventSavedAgainWhileBeingWrittenIsWrittenAgain() throws InterruptedException {
+        Event event = event(219000001, Event.State.ONGOING);
+        sut.save(event);
+        assertTrue(delegate.writing.await(5, TimeUnit.SECONDS));
+
+        event.setState(Event.State.PAST);
+        sut.save(event);
+
+        delegate.release.countDown();
+        assertTrue(sut.flush(5, TimeUnit.SECONDS));
+
+        assertEquals(2, delegate.saved.size());
+        assertEquals(Event.State.PAST, delegate.saved.get(1).getState());
+    }
+
+    @Test
+    public void queuedUpdatesAreMerged() throws InterruptedException {
+        Event blocking = event(219000001, Event.State.ONGOING);
+        sut.save(blocking);
+        assertTrue(delegate.writing.await(5, TimeUnit.SECONDS));
+
+        Event event = event(219000002, Event.State.ONGOING);
+        Behaviour behaviour = event.getBehaviour(219000002);
+        TrackingPoint trackingPoint1 = TrackingPointBuilder.TrackingPoint().latitude(56.1).longitude(12.0).getTrackingPoint();
+        TrackingPoint trackingPoint2 = TrackingPointBuilder.TrackingPoint().latitude(56.2).longitude(12.0).getTrackingPoint();
+        sut.update(event, singletonMap(behaviour, singletonList(trackingPoint1)));
+        sut.update(event, singletonMap(behaviour, singletonList(trackingPoint2)));
+        event.setState(Event.State.PAST);
+        sut.update(event, emptyMap());
+        assertEquals(1, sut.getQueueSize());
+
+        delegate.release.countDown();
+        assertTrue(sut.flush(5, TimeUnit.SECONDS));
+
+        assertEquals(1, delegate.saved.size());
+        assertEquals(1, delegate.updated.size());
+        Event updated = delegate.updated.get(0);
+        assertEquals(Event.State.PAST, updated.getState());
+        assertEquals(Arrays.asList(trackingPoint1, trackingPoint2), delegate.appendedTrackingPoints.get(0).get(updated.getBehaviour(219000002)));
+    }
+
+    @Test
+    public void updateOfQueuedSaveIsIncludedInSave() throws InterruptedException {
+        Event blocking = event(219000001, Event.State.ONGOING);
+        sut.save(blocking);
+        assertTrue(delegate.writing.await(5, TimeUnit.SECONDS));
+
+        Event event = event(219000002, Event.State.ONGOING);
+        sut.save(event);
+        sut.update(event, singletonMap(event.getBehaviour(219000002), singletonList(TrackingPointBuilder.TrackingPoint().getTrackingPoint())));
+
+        delegate.release.countDown();
+        assertTrue(sut.flush(5, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(219000001, 219000002), delegate.savedMmsis());
+        assertTrue(delegate.updated.isEmpty());
+    }
+
+    @Test
+    public void queuedOngoingEventIsFoundBeforeItIsWritten() throws InterruptedException {
+        sut.save(event(219000001, Event.State.ONGOING));
+        assertTrue(delegate.writing.await(5, TimeUnit.SECONDS));
+
+        Event event = event(219000002, Event.State.ONGOING);
+        sut.save(event);
+
+        assertSame(event, sut.findOngoingEventByVessel(219000002, SuddenSpeedChangeEvent.class));
+        assertEquals(0, delegate.lookups);
+    }
+
+    @Test
+    public void loweredEventIsNotLookedUpInDelegateBeforeItIsWritten() throws InterruptedException {
+        delegate.ongoingEvent = event(219000002, Event.State.ONGOING);
+
+        sut.save(event(219000001, Event.State.ONGOING));
+        assertTrue(delegate.writing.await(5, TimeUnit.SECONDS));
+
+        Event event = sut.findOngoingEventByVessel(219000002, SuddenSpeedChangeEvent.class);
+        assertSame(delegate.ongoingEvent, event);
+        assertEquals(1, delegate.lookups);
+
+        event.setState(Event.State.PAST);
+        sut.save(event);
+        assertNull(sut.findOngoingEventByVessel(219000002, SuddenSpeedChangeEvent.class));
+        assertEquals(1, delegate.lookups);
+
+        delegate.ongoingEvent = null;
+        delegate.release.countDown();
+        assertTrue(sut.flush(5, TimeUnit.SECONDS));
+
+        assertNull(sut.findOngoingEventByVessel(219000002, SuddenSpeedChangeEvent.class));
+        assertEquals(2, delegate.lookups);
+    }
+
+    @Test
+    public void closeWritesQueuedEvents() {
+        delegate.release.countDown();
+        for (int i = 0; i < 25; i++) {
+            sut.save(event(219000000 + i, Event.State.PAST));
+        }
+        sut.close();
+
+        assertEquals(25, delegate.saved.size());
+        assertEquals(219000024, (int) delegate.saved.get(24).primaryBehaviour().getVessel().getMmsi());
+    }
+
+    @Test
+    public void failedBatchIsRetriedInOrder() throws InterruptedException {
+        useFastRetries();
+        delegate.release.countDown();
+        delegate.failures = 2;
+
+        Event event1 = event(219000001, Event.State.ONGOING);
+        Event event2 = event(219000002, Event.State.ONGOING);
+        sut.save(event1);
+        sut.save(event2);
+        assertTrue(sut.flush(5, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(219000001, 219000002), delegate.savedMmsis());
+        assertEquals(2L, (long) statisticsRegistry.getValue(WriteBehindEventRepository.STATISTICS_GROUP, "# write failures"));
+    }
+
+    @Test
+    public void flushFailsWhileWritesKeepFailingButEventsAreKept() throws InterruptedException {
+        useFastRetries();
+        delegate.release.countDown();
+        delegate.failures = Integer.MAX_VALUE;
+
+        Event event = event(219000001, Event.State.ONGOING);
+        sut.save(event);
+        try {
+            sut.flush(5, TimeUnit.SECONDS);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Failed to write queued events 3 times in a row.", e.getMessage());
+        }
+
+        delegate.failures = 0;
+        for (int i = 0; i < 500 && delegate.saved.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(sut.flush(5, TimeUnit.SECONDS));
+        assertEquals(singletonList(219000001), delegate.savedMmsis());
+    }
+
+    @Test
+    public void closeFailsWhenQueuedEventsCannotBeWritten() {
+        useFastRetries();
+        delegate.release.countDown();
+        delegate.failures = Integer.MAX_VALUE;
+
+        sut.save(event(219000001, Event.State.ONGOING));
+        sut.save(event(219000002, Event.State.ONGOING));
+        try {
+            sut.close();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("WriteBehindEventRepository closed; 2 events could not be written.", e.getMessage());
+        }
+        assertTrue(delegate.saved.isEmpty());
+    }
+
+    @Test
+    public void eventsAreCopiedAndWrittenWithoutHoldingMonitor() throws InterruptedException {
+        Event event = event(219000001, Event.State.ONGOING);
+        sut.save(event);
+        assertTrue(delegate.writing.await(5, TimeUnit.SECONDS));
+
+        CountDownLatch modified = new CountDownLatch(1);
+        new Thread(() -> {
+            synchronized (sut) {
+                event.setState(Event.State.PAST);
+            }
+            modified.countDown();
+        }).start();
+        assertTrue(modified.await(5, TimeUnit.SECONDS));
+
+        delegate.release.countDown();
+        assertTrue(sut.flush(5, TimeUnit.SECONDS));
+
+        assertEquals(Event.State.ONGOING, delegate.saved.get(0).getState());
+        assertNotSame(event, delegate.saved.get(0));
+    }
+
+    @Test
+    public void writeIsDroppedWhenQueueStaysFull() throws InterruptedException {
+        sut.close();
+        statisticsRegistry = new StatisticsRegistry();
+        sut = new WriteBehindEventRepository(delegate, 1, 1, 3, 1, 10, statisticsRegistry);
+
+        sut.save(event(219000001, Event.State.ONGOING));
+        assertTrue(delegate.writing.await(5, TimeUnit.SECONDS));
+        sut.save(event(219000002, Event.State.ONGOING));
+        sut.save(event(219000003, Event.State.ONGOING));
+        assertEquals(1L, (long) statisticsRegistry.getValue(WriteBehindEventRepository.STATISTICS_GROUP, "# writes dropped"));
+
+        delegate.release.countDown();
+        assertTrue(sut.flush(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(219000001, 219000002), delegate.savedMmsis());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void cannotSaveWhenClosed() {
+        sut.close();
+        sut.save(event(219000001, Event.State.ONGOING));
+    }
+
+    private void useFastRetries() {
+        sut.close();
+        statisticsRegistry = new StatisticsRegistry();
+        sut = new WriteBehindEventRepository(delegate, 10, 5, 3, 1, WriteBehindEventRepository.DEFAULT_MAX_QUEUE_WAIT_MILLIS, statisticsRegistry);
+    }
+
+    private static Event event(int mmsi, Event.State state) {
+        return SuddenSpeedChangeEventBuilder.SuddenSpeedChangeEvent()
+            .title("title")
+            .description("description")
+            .state(state)
+            .startTime(LocalDateTime.of(2017, 1, 22, 10, 0, 0))
+            .behaviour()
+                .isPrimary(true)
+                .vessel()
+                    .mmsi(mmsi)
+                    .name("name")
+                .trackingPoint()
+                    .timestamp(LocalDateTime.of(2017, 1, 22, 10, 0, 0))
+                    .positionInterpolated(false)
+                    .eventCertainty(TrackingPoint.EventCertainty.RAISED)
+                    .speedOverGround(12.0f)
+                    .courseOverGround(45f)
+                    .trueHeading(46f)
+                    .latitude(56.0)
+                    .longitude(12.0)
+            .getEvent();
+    }
+
+    /** An event repository which records saved events and blocks the writer until released */
+    private static class RecordingEventRepository implements EventRepository {
+        final List<Event> saved = new CopyOnWriteArrayList<>();
+        final List<Event> updated = new CopyOnWriteArrayList<>();
+        final List<Map<Behaviour, List<TrackingPoint>>> appendedTrackingPoints = new CopyOnWriteArrayList<>();
+        final CountDownLatch writing = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        volatile Event ongoingEvent;
+        volatile int lookups;
+        volatile int failures;
+
+        @Override
+        public void save(Event event) {
+            writing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failures > 0) {
+                failures--;
+                throw new IllegalStateException("Database unavailable");
+            }
+            saved.add(event);
+        }
+
+        List<Integer> savedMmsis() {
+            return saved.stream().map(event -> event.primaryBehaviour().getVessel().getMmsi()).collect(Collectors.toList());
+        }
+
+        @Override
+        public void update(Event event, Map<Behaviour, List<TrackingPoint>> trackingPoints) {
+            updated.add(event);
+            appendedTrackingPoints.add(new HashMap<>(trackingPoints));
+        }
+
+        @Override
+        public <T extends Event> T findOngoingEventByVessel(int mmsi, Class<T> eventClass) {
+            lookups++;
+            return eventClass.cast(ongoingEvent);
+        }
+
+        @Override
+        public List<String> getEventTypes() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public Event getEvent(long eventId) {
+            return null;
+        }
+
+        @Override
+        public List<Event> findEventsByFromAndToAndTypeAndVesselAndArea(Date from, Date to, String type, String vessel, Double north, Double east, Double south, Double west) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Event> findEventsByFromAndTo(Date from, Date to) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Event> findRecentEvents(int numberOfEvents) {
+            return Collections.emptyList();
+        }
+    }
+
+}
@@ -1,14 +1,24 @@
 package dk.dma.ais.abnormal.event.db.csv;
 
+import dk.dma.ais.abnormal.application.statistics.StatisticsRegistry;
 import dk.dma.ais.abnormal.event.db.domain.Event;
 import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
 import dk.dma.ais.abnormal.event.db.domain.builders.SuddenSpeedChangeEventBuilder;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class CsvEventRepositoryTest {
 
@@ -17,39 +27,8 @@ public class CsvEventRepositoryTest {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
 
         CsvEventRepository sut = new CsvEventRepository(out, false);
-
-        Event event =
-            SuddenSpeedChangeEventBuilder.SuddenSpeedChangeEvent()
-                .title("title")
-                .description("description")
-                .state(Event.State.PAST)
-                .startTime(LocalDateTime.of(2017, 1, 22, 10, 0, 0))
-                .endTime(LocalDateTime.of(2017, 1, 22, 12, 32, 1))
-                .endTime(null)
-                .behaviour()
-                    .isPrimary(true)
-                    .vessel()
-                        .mmsi(123456789)
-                        .imo(123456)
-                        .callsign("callsign")
-                        .type(1)
-                        .toBow(10)
-                        .toStern(20)
-                        .toPort(30)
-                        .toStarboard(40)
-                        .name("name")
-                    .trackingPoint()
-                        .timestamp(LocalDateTime.of(2017, 1, 22, 10, 0, 0))
-                        .positionInterpolated(false)
-                        .eventCertainty(TrackingPoint.EventCertainty.RAISED)
-                        .speedOverGround(12.0f)
-                        .courseOverGround(45f)
-                        .trueHeading(46f)
-                        .latitude(56.0)
-                        .longitude(12.0)
-            .getEvent();
-
-        sut.save(event);
+        sut.save(pastEvent());
+        sut.close();
 
         assertEquals(
             "eventId,eventType,startTime,endTime,title,description,mmsis,pMmsi,pName,pCallsign,pType,pLength,pLat,pLon,pSog,pCog,pHdg,sMmsi,sName,sCallsign,sType,sLength,sLat,sLon,sSog,sCog,sHdg,filterSuggest\r\n" +
@@ -58,4 +37,75 @@ public class CsvEventRepositoryTest {
         );
     }
 
-}
\ No newline at end of file
+    @Test
+    public void rotatesFilesBySizeWithoutOverwritingExistingFiles() throws Exception {
+        Path directory = Files.createTempDirectory("events-");
+        Path file = directory.resolve("events.csv");
+
+        CsvEventRepository first = new CsvEventRepository(file, 1, Duration.ofDays(1), new StatisticsRegistry(), false);
+        first.save(pastEvent());
+        first.flush();
+        first.save(pastEvent());
+        first.close();
+
+        CsvEventRepository second = new CsvEventRepository(file, 1, Duration.ofDays(1), new StatisticsRegistry(), false);
+        second.save(pastEvent());
+        second.close();
+
+        List<Path> files = list(directory);
+        assertEquals(3, files.size());
+        for (Path f : files) {
+            assertTrue(f.getFileName().toString().matches("events-\\d{8}-\\d{6}(-\\d+)?\\.csv"));
+            assertTrue(new String(Files.readAllBytes(f), StandardCharsets.UTF_8).startsWith("eventId,eventType,"));
+        }
+        assertEquals(3, files.stream().mapToLong(CsvEventRepositoryTest::countRecords).sum());
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.collect(Collectors.toList());
+        }
+    }
+
+    private static long countRecords(Path file) {
+        try {
+            return Files.readAllLines(file, StandardCharsets.UTF_8).stream().filter(line -> line.startsWith("0,")).count();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Event pastEvent() {
+        return
+            SuddenSpeedChangeEventBuilder.SuddenSpeedChangeEvent()
+            .title("title")
+            .description("description")
+            .state(Event.State.PAST)
+            .startTime(LocalDateTime.of(2017, 1, 22, 10, 0, 0))
+            .endTime(LocalDateTime.of(2017, 1, 22, 12, 32, 1))
+            .endTime(null)
+            .behaviour()
+                .isPrimary(true)
+                .vessel()
+                    .mmsi(123456789)
+                    .imo(123456)
+                    .callsign("callsign")
+                    .type(1)
+                    .toBow(10)
+                    .toStern(20)
+                    .toPort(30)
+                    .toStarboard(40)
+                    .name("name")
+                .trackingPoint()
+                    .timestamp(LocalDateTime.of(2017, 1, 22, 10, 0, 0))
+                    .positionInterpolated(false)
+                    .eventCertainty(TrackingPoint.EventCertainty.RAISED)
+                    .speedOverGround(12.0f)
+                    .courseOverGround(45f)
+                    .trueHeading(46f)
+                    .latitude(56.0)
+                    .longitude(12.0)
+            .getEvent();
+    }
+
+}
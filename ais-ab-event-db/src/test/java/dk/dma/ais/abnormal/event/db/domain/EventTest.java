@@ -0,0 +1,148 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db.domain;
+
+import dk.dma.ais.abnormal.event.db.domain.builders.CloseEncounterEventBuilder;
+import dk.dma.ais.abnormal.event.db.domain.builders.TrackingPointBuilder;
+import org.junit.Test;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class EventTest {
+
+    @Test
+    public void boundingBoxCoversTrackingPointsOfAllBehaviours() {
+        Event event = CloseEncounterEventBuilder.CloseEncounterEvent()
+            .startTime(LocalDateTime.of(2014, 4, 27, 12, 0, 0))
+            .behaviour()
+                .isPrimary(true)
+                .vessel()
+                    .mmsi(219886000)
+                    .name("primary")
+                .trackingPoint()
+                    .timestamp(LocalDateTime.of(2014, 4, 27, 12, 0, 0))
+                    .latitude(56.0)
+                    .longitude(12.0)
+            .behaviour()
+                .isPrimary(false)
+                .vessel()
+                    .mmsi(219886001)
+                    .name("secondary")
+                .trackingPoint()
+                    .timestamp(LocalDateTime.of(2014, 4, 27, 12, 0, 0))
+                    .latitude(55.9)
+                    .longitude(12.2)
+            .getEvent();
+
+        assertNull(event.getMinLatitude());
+
+        event.updateBoundingBox();
+        assertEquals(55.9, event.getMinLatitude(), 1e-9);
+        assertEquals(56.0, event.getMaxLatitude(), 1e-9);
+        assertEquals(12.0, event.getMinLongitude(), 1e-9);
+        assertEquals(12.2, event.getMaxLongitude(), 1e-9);
+
+        event.extendBoundingBox(TrackingPointBuilder.TrackingPoint().timestamp(LocalDateTime.of(2014, 4, 27, 12, 1, 0)).latitude(56.3).longitude(11.8).getTrackingPoint());
+        assertEquals(55.9, event.getMinLatitude(), 1e-9);
+        assertEquals(56.3, event.getMaxLatitude(), 1e-9);
+        assertEquals(11.8, event.getMinLongitude(), 1e-9);
+        assertEquals(12.2, event.getMaxLongitude(), 1e-9);
+    }
+
+    @Test
+    public void copyKeepsItsTrackingPointsWhenEventIsModifiedAndBoundingBoxOfCopyIsAdopted() {
+        Event event = CloseEncounterEventBuilder.CloseEncounterEvent()
+            .startTime(LocalDateTime.of(2014, 4, 27, 12, 0, 0))
+            .behaviour()
+                .isPrimary(true)
+                .vessel()
+                    .mmsi(219886000)
+                    .name("primary")
+                .trackingPoint()
+                    .timestamp(LocalDateTime.of(2014, 4, 27, 12, 0, 0))
+                    .latitude(56.0)
+                    .longitude(12.0)
+            .getEvent();
+
+        Event copy = event.copy();
+        event.setState(Event.State.PAST);
+        event.getBehaviour(219886000).addTrackingPoint(TrackingPointBuilder.TrackingPoint().timestamp(LocalDateTime.of(2014, 4, 27, 12, 1, 0)).latitude(56.3).longitude(11.8).getTrackingPoint());
+
+        assertSame(CloseEncounterEvent.class, copy.getClass());
+        assertEquals(Event.State.ONGOING, copy.getState());
+        assertEquals(1, copy.getBehaviour(219886000).getTrackingPoints().size());
+        assertSame(event.getBehaviour(219886000).getVessel(), copy.getBehaviour(219886000).getVessel());
+
+        copy.updateBoundingBox();
+        event.adoptWrittenCopy(copy);
+        assertEquals(56.0, event.getMinLatitude(), 1e-9);
+        assertEquals(56.0, event.getMaxLatitude(), 1e-9);
+        assertEquals(Event.State.PAST, event.getState());
+        assertEquals(2, event.getBehaviour(219886000).getTrackingPoints().size());
+    }
+
+    @Test
+    public void idResetOfUnsavedEntitiesResetsOnlyEntitiesWhichWereNotSavedBefore() throws ReflectiveOperationException {
+        Event event = CloseEncounterEventBuilder.CloseEncounterEvent()
+            .startTime(LocalDateTime.of(2014, 4, 27, 12, 0, 0))
+            .behaviour()
+                .isPrimary(true)
+                .vessel()
+                    .mmsi(219886000)
+                    .name("primary")
+                .trackingPoint()
+                    .timestamp(LocalDateTime.of(2014, 4, 27, 12, 0, 0))
+                    .latitude(56.0)
+                    .longitude(12.0)
+            .getEvent();
+        Behaviour behaviour = event.getBehaviour(219886000);
+        TrackingPoint savedTrackingPoint = behaviour.getTrackingPoints().first();
+        TrackingPoint newTrackingPoint = TrackingPointBuilder.TrackingPoint().timestamp(LocalDateTime.of(2014, 4, 27, 12, 0, 0)).latitude(56.1).longitude(12.0).getTrackingPoint();
+        behaviour.addTrackingPoint(newTrackingPoint);
+        setId(savedTrackingPoint, 1L);
+
+        Runnable idReset = event.idResetOfUnsavedEntities();
+        setId(event, 2L);
+        setId(behaviour, 3L);
+        setId(behaviour.getVessel(), 4L);
+        setId(newTrackingPoint, 5L);
+        idReset.run();
+
+        assertEquals(0L, event.getId());
+        assertEquals(0L, behaviour.getId());
+        assertEquals(0L, behaviour.getVessel().getId());
+        assertEquals(0L, newTrackingPoint.getId());
+        assertEquals(1L, savedTrackingPoint.getId());
+    }
+
+    private static void setId(Object entity, long id) throws ReflectiveOperationException {
+        Class<?> entityClass = entity.getClass();
+        while (Arrays.stream(entityClass.getDeclaredFields()).noneMatch(field -> field.getName().equals("id"))) {
+            entityClass = entityClass.getSuperclass();
+        }
+        Field idField = entityClass.getDeclaredField("id");
+        idField.setAccessible(true);
+        idField.setLong(entity, id);
+    }
+
+}
@@ -2,6 +2,7 @@ package dk.dma.ais.abnormal.event.db.domain;
 
 import dk.dma.ais.abnormal.event.db.EventRepository;
 import dk.dma.ais.abnormal.event.db.jpa.JpaEventRepository;
+import org.hibernate.Query;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.jmock.Expectations;
@@ -9,6 +10,8 @@ import org.jmock.integration.junit4.JUnit4Mockery;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
+
 public class ShipSizeOrTypeEventTest {
 
     private JUnit4Mockery context;
@@ -25,6 +28,16 @@ public class ShipSizeOrTypeEventTest {
 
     @Test
     public void canSaveShipSizeOrTypeEvent() {
+        final Query query = context.mock(Query.class);
+        context.checking(new Expectations() {{
+            // Loading the ongoing events on creation
+            oneOf(sessionFactory).openSession(); will(returnValue(session));
+            oneOf(session).createQuery(with(any(String.class))); will(returnValue(query));
+            oneOf(query).setString("state", "ONGOING");
+            oneOf(query).list(); will(returnValue(Collections.emptyList()));
+            oneOf(session).close();
+        }});
+
         EventRepository eventRepository = new JpaEventRepository(sessionFactory, false);
         ShipSizeOrTypeEvent event = new ShipSizeOrTypeEvent();
 
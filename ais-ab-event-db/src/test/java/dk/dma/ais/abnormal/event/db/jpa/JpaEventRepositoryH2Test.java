@@ -0,0 +1,107 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package dk.dma.ais.abnormal.event.db.jpa;
+
+import dk.dma.ais.abnormal.event.db.EventSummary;
+import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static dk.dma.ais.abnormal.event.db.domain.builders.CloseEncounterEventBuilder.CloseEncounterEvent;
+import static dk.dma.ais.abnormal.event.db.domain.builders.TrackingPointBuilder.TrackingPoint;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the queries of JpaEventRepository against an H2 database.
+ */
+public class JpaEventRepositoryH2Test {
+
+    private Path directory;
+    private SessionFactory sessionFactory;
+    private JpaEventRepository eventRepository;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("eventdb-");
+        sessionFactory = JpaSessionFactoryFactory.newH2SessionFactory(directory.resolve("events").toFile());
+        JpaSessionFactoryFactory.migrate(sessionFactory);
+        eventRepository = new JpaEventRepository(sessionFactory, false);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        sessionFactory.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void summaryHoldsOneLastPositionWhenLatestTrackingPointsShareTimestamp() {
+        LocalDateTime latest = LocalDateTime.of(2014, 4, 27, 12, 1, 0);
+        Event event = CloseEncounterEvent()
+            .state(Event.State.ONGOING)
+            .startTime(LocalDateTime.of(2014, 4, 27, 12, 0, 0))
+            .title("Close encounter")
+            .behaviour()
+                .isPrimary(true)
+                .vessel()
+                    .mmsi(219000001)
+                    .name("Primary")
+                .trackingPoints(
+                    trackingPoint(LocalDateTime.of(2014, 4, 27, 12, 0, 0), 55.0, 11.0),
+                    trackingPoint(latest, 55.5, 11.5)
+                )
+                .trackingPoint()
+                    .timestamp(latest)
+                    .latitude(56.0).longitude(12.0)
+                    .positionInterpolated(false)
+                    .eventCertainty(TrackingPoint.EventCertainty.RAISED)
+            .getEvent();
+        event.updateBoundingBox();
+        eventRepository.save(event);
+
+        List<EventSummary> summaries = eventRepository.findRecentEventSummaries(10);
+
+        assertEquals(1, summaries.size());
+        assertEquals(56.0, summaries.get(0).getLatitude(), 1e-9);
+        assertEquals(12.0, summaries.get(0).getLongitude(), 1e-9);
+    }
+
+    private static TrackingPoint trackingPoint(LocalDateTime timestamp, double latitude, double longitude) {
+        return TrackingPoint()
+            .timestamp(timestamp)
+            .latitude(latitude).longitude(longitude)
+            .positionInterpolated(false)
+            .eventCertainty(TrackingPoint.EventCertainty.RAISED)
+            .getTrackingPoint();
+    }
+
+}
@@ -16,22 +16,50 @@
 
 package dk.dma.ais.abnormal.event.db.jpa;
 
+import dk.dma.ais.abnormal.event.db.EventCursor;
+import dk.dma.ais.abnormal.event.db.domain.Behaviour;
+import dk.dma.ais.abnormal.event.db.domain.CloseEncounterEvent;
 import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.EventCount;
 import dk.dma.ais.abnormal.event.db.domain.ShipSizeOrTypeEvent;
+import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
+import dk.dma.ais.abnormal.event.db.domain.builders.CloseEncounterEventBuilder;
+import dk.dma.ais.abnormal.event.db.domain.builders.TrackingPointBuilder;
 import dk.dma.ais.test.helpers.ArgumentCaptor;
 import org.hibernate.Query;
+import org.hibernate.SQLQuery;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.jdbc.ReturningWork;
 import org.jmock.Expectations;
+import org.jmock.Sequence;
+import org.jmock.api.Action;
+import org.jmock.api.Invocation;
 import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class JpaEventRepositoryTest {
 
@@ -39,6 +67,8 @@ public class JpaEventRepositoryTest {
     private SessionFactory sessionFactory;
     private Session session;
     private Query query;
+    private Session loadSession;
+    private Query loadQuery;
     private JpaEventRepository eventRepository;
 
     @Before
@@ -48,8 +78,29 @@ public class JpaEventRepositoryTest {
         sessionFactory = context.mock(SessionFactory.class);
         session = context.mock(Session.class);
         query = context.mock(Query.class);
+        loadSession = context.mock(Session.class, "loadSession");
+        loadQuery = context.mock(Query.class, "loadQuery");
 
-        eventRepository = new JpaEventRepository(sessionFactory, false);
+        eventRepository = writableRepository(Collections.emptyList());
+    }
+
+    /**
+     * Create a writable repository, which loads the given ongoing events of the database into its index.
+     */
+    private JpaEventRepository writableRepository(final List<Event> ongoingEvents) {
+        return writableRepository(ongoingEvents, JpaEventRepository.DEFAULT_ONGOING_EVENTS_CHECK_INTERVAL_MILLIS, JpaEventRepository.DEFAULT_ONGOING_EVENTS_MAX_IDLE_MILLIS);
+    }
+
+    private JpaEventRepository writableRepository(final List<Event> ongoingEvents, long checkIntervalMillis, long maxIdleMillis) {
+        context.checking(new Expectations() {{
+            oneOf(sessionFactory).openSession(); will(returnValue(loadSession));
+            oneOf(loadSession).createQuery("SELECT DISTINCT e FROM Event e WHERE e.state = :state AND e.suppressed=false"); will(returnValue(loadQuery));
+            oneOf(loadQuery).setString("state", "ONGOING");
+            oneOf(loadQuery).list(); will(returnValue(ongoingEvents));
+            oneOf(loadSession).close();
+        }});
+
+        return new JpaEventRepository(sessionFactory, false, checkIntervalMillis, maxIdleMillis);
     }
 
     @After
@@ -81,7 +132,6 @@ public class JpaEventRepositoryTest {
             oneOf(session).close();
         }});
 
-        eventRepository = new JpaEventRepository(sessionFactory, false);
         eventRepository.getEvent(1);
 
         context.assertIsSatisfied();
@@ -89,12 +139,11 @@ public class JpaEventRepositoryTest {
 
     @Test
     public void testFindOngoingEventByVessel() {
-        ShipSizeOrTypeEvent event = new ShipSizeOrTypeEvent();
-
         final ArgumentCaptor<String> queryString = ArgumentCaptor.forClass(String.class);
 
         context.checking(new Expectations() {{
             oneOf(sessionFactory).openSession(); will(returnValue(session));
+            oneOf(session).setDefaultReadOnly(true);
             oneOf(session).createQuery(with(queryString.getMatcher())); will(returnValue(query));
             allowing(query).setCacheable(with(any(Boolean.class)));
             allowing(query).setParameter(with(aNonNull(String.class)), with(aNonNull(Object.class)));
@@ -104,6 +153,7 @@ public class JpaEventRepositoryTest {
             oneOf(session).close();
         }});
 
+        eventRepository = new JpaEventRepository(sessionFactory, true);
         eventRepository.findOngoingEventByVessel(219886000, ShipSizeOrTypeEvent.class);
 
         assertTrue(queryString.getCapturedObject().toString().matches(".*WHERE.*TYPE[(]e[)] = [:]clazz.*"));
@@ -112,6 +162,277 @@ public class JpaEventRepositoryTest {
         context.assertIsSatisfied();
     }
 
+    @Test
+    public void testFindOngoingEventByVesselUsesIndexLoadedOnCreation() {
+        final Event ongoingEvent = event(219886000, 219886001, Event.State.ONGOING);
+        eventRepository = writableRepository(Arrays.asList(ongoingEvent));
+
+        context.checking(new Expectations() {{
+            never(sessionFactory).openSession();
+        }});
+
+        assertSame(ongoingEvent, eventRepository.findOngoingEventByVessel(219886000, CloseEncounterEvent.class));
+        assertSame(ongoingEvent, eventRepository.findOngoingEventByVessel(219886001, CloseEncounterEvent.class));
+        assertNull(eventRepository.findOngoingEventByVessel(219886002, CloseEncounterEvent.class));
+        assertNull(eventRepository.findOngoingEventByVessel(219886000, ShipSizeOrTypeEvent.class));
+
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testFindOngoingEventByVesselDropsEventsSuppressedByOtherUsersOfTheDatabase() throws Exception {
+        final Event ongoingEvent = event(219886000, 219886001, Event.State.ONGOING);
+        setId(ongoingEvent, 1L);
+        eventRepository = writableRepository(Arrays.asList(ongoingEvent), 0, Long.MAX_VALUE);
+
+        context.checking(new Expectations() {{
+            oneOf(sessionFactory).openSession(); will(returnValue(session));
+            oneOf(session).createQuery(JpaEventRepository.SELECT_ENDED_EVENT_IDS); will(returnValue(query));
+            oneOf(query).setParameterList("ids", Arrays.asList(1L)); will(returnValue(query));
+            oneOf(query).setString("state", "ONGOING"); will(returnValue(query));
+            oneOf(query).list(); will(returnValue(Arrays.asList(1L)));
+            oneOf(session).close();
+        }});
+
+        assertNull(eventRepository.findOngoingEventByVessel(219886000, CloseEncounterEvent.class));
+        assertNull(eventRepository.findOngoingEventByVessel(219886001, CloseEncounterEvent.class));
+
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testFindOngoingEventByVesselQueriesDatabaseForEvictedEvents() throws Exception {
+        final Event ongoingEvent = event(219886000, 219886001, Event.State.ONGOING);
+        setId(ongoingEvent, 1L);
+        eventRepository = writableRepository(Arrays.asList(ongoingEvent), 0, 0);
+        Thread.sleep(5);
+
+        context.checking(new Expectations() {{
+            oneOf(sessionFactory).openSession(); will(returnValue(session));
+            never(session).createQuery(JpaEventRepository.SELECT_ENDED_EVENT_IDS);
+            oneOf(session).createQuery(with(any(String.class))); will(returnValue(query));
+            allowing(query).setCacheable(with(any(Boolean.class)));
+            allowing(query).setParameter(with(aNonNull(String.class)), with(aNonNull(Object.class)));
+            allowing(query).setString(with(aNonNull(String.class)), with(aNonNull(String.class)));
+            allowing(query).setInteger(with(aNonNull(String.class)), with(aNonNull(Integer.class)));
+            oneOf(query).list(); will(returnValue(Arrays.asList(ongoingEvent)));
+            oneOf(session).close();
+        }});
+
+        assertSame(ongoingEvent, eventRepository.findOngoingEventByVessel(219886000, CloseEncounterEvent.class));
+
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testSaveMaintainsOngoingEventIndex() {
+        final Event event = event(219886000, 219886001, Event.State.ONGOING);
+        final Transaction transaction = context.mock(Transaction.class);
+
+        context.checking(new Expectations() {{
+            allowing(sessionFactory).openSession(); will(returnValue(session));
+            allowing(session).createQuery(JpaEventRepository.INCREMENT_EVENT_COUNT); will(returnValue(query));
+            allowing(query).setParameter(with(aNonNull(String.class)), with(aNonNull(Object.class))); will(returnValue(query));
+            allowing(query).executeUpdate(); will(returnValue(1));
+            allowing(session).beginTransaction(); will(returnValue(transaction));
+            allowing(session).getTransaction(); will(returnValue(transaction));
+            exactly(2).of(session).saveOrUpdate(event);
+            exactly(2).of(transaction).commit();
+            exactly(2).of(session).close();
+        }});
+
+        assertNull(eventRepository.findOngoingEventByVessel(219886001, CloseEncounterEvent.class));
+
+        eventRepository.save(event);
+        assertSame(event, eventRepository.findOngoingEventByVessel(219886001, CloseEncounterEvent.class));
+
+        event.setState(Event.State.PAST);
+        eventRepository.save(event);
+        assertNull(eventRepository.findOngoingEventByVessel(219886001, CloseEncounterEvent.class));
+
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testUpdateInsertsOnlyUnsavedTrackingPoints() throws Exception {
+        final Event event = event(219886000, 219886001, Event.State.PAST);
+        final Behaviour behaviour = event.getBehaviour(219886000);
+        final TrackingPoint savedTrackingPoint = behaviour.getTrackingPoints().first();
+        final TrackingPoint newTrackingPoint = TrackingPointBuilder.TrackingPoint().timestamp(LocalDateTime.of(2014, 4, 27, 12, 1, 0)).latitude(56.1).longitude(12.0).getTrackingPoint();
+        behaviour.addTrackingPoint(newTrackingPoint);
+        setId(event, 1L);
+        setId(behaviour, 2L);
+        setId(savedTrackingPoint, 3L);
+
+        final StatelessSession statelessSession = context.mock(StatelessSession.class);
+        final Transaction transaction = context.mock(Transaction.class);
+        final SQLQuery sqlQuery = context.mock(SQLQuery.class);
+        final ArgumentCaptor<String> sqlString = ArgumentCaptor.forClass(String.class);
+        final ArgumentCaptor<String> queryString = ArgumentCaptor.forClass(String.class);
+
+        context.checking(new Expectations() {{
+            oneOf(sessionFactory).openStatelessSession(); will(returnValue(statelessSession));
+            oneOf(statelessSession).beginTransaction(); will(returnValue(transaction));
+            oneOf(statelessSession).insert(newTrackingPoint);
+            never(statelessSession).insert(savedTrackingPoint);
+            oneOf(statelessSession).createSQLQuery(with(sqlString.getMatcher())); will(returnValue(sqlQuery));
+            allowing(sqlQuery).setLong(with(aNonNull(String.class)), with(any(Long.class))); will(returnValue(sqlQuery));
+            oneOf(sqlQuery).executeUpdate(); will(returnValue(1));
+            oneOf(statelessSession).createQuery(with(queryString.getMatcher())); will(returnValue(query));
+            allowing(query).setParameter(with(aNonNull(String.class)), with(any(Object.class))); will(returnValue(query));
+            allowing(query).setLong(with(aNonNull(String.class)), with(any(Long.class))); will(returnValue(query));
+            oneOf(query).executeUpdate(); will(returnValue(1));
+            oneOf(transaction).commit();
+            oneOf(statelessSession).close();
+            never(sessionFactory).openSession();
+        }});
+
+        eventRepository.update(event, Collections.singletonMap(behaviour, Arrays.asList(savedTrackingPoint, newTrackingPoint)));
+
+        assertTrue(sqlString.getCapturedObject().toString().matches("INSERT INTO Behaviour_TrackingPoint .*"));
+        assertTrue(queryString.getCapturedObject().toString().matches("UPDATE Event e SET e.state = :state, e.endTime = :endTime, .*e.maxLongitude = :maxLongitude WHERE e.id = :id"));
+        assertEquals(56.0, event.getMinLatitude(), 1e-9);
+        assertEquals(56.1, event.getMaxLatitude(), 1e-9);
+        assertEquals(12.0, event.getMinLongitude(), 1e-9);
+        assertEquals(12.01, event.getMaxLongitude(), 1e-9);
+
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testUpdateInsertsTrackingPointAgainWhenFirstAttemptIsRolledBack() throws Exception {
+        final Event event = event(219886000, 219886001, Event.State.PAST);
+        final Behaviour behaviour = event.getBehaviour(219886000);
+        final TrackingPoint savedTrackingPoint = behaviour.getTrackingPoints().first();
+        final TrackingPoint newTrackingPoint = TrackingPointBuilder.TrackingPoint().timestamp(LocalDateTime.of(2014, 4, 27, 12, 1, 0)).latitude(56.1).longitude(12.0).getTrackingPoint();
+        behaviour.addTrackingPoint(newTrackingPoint);
+        setId(event, 1L);
+        setId(behaviour, 2L);
+        setId(savedTrackingPoint, 3L);
+
+        final StatelessSession statelessSession = context.mock(StatelessSession.class);
+        final Transaction transaction = context.mock(Transaction.class);
+        final SQLQuery sqlQuery = context.mock(SQLQuery.class);
+        final Sequence attempts = context.sequence("attempts");
+
+        context.checking(new Expectations() {{
+            exactly(2).of(sessionFactory).openStatelessSession(); will(returnValue(statelessSession));
+            exactly(2).of(statelessSession).beginTransaction(); will(returnValue(transaction));
+            exactly(2).of(statelessSession).insert(newTrackingPoint); will(assignId(newTrackingPoint, 4L));
+            exactly(2).of(statelessSession).createSQLQuery(with(aNonNull(String.class))); will(returnValue(sqlQuery));
+            allowing(sqlQuery).setLong(with(aNonNull(String.class)), with(any(Long.class))); will(returnValue(sqlQuery));
+            exactly(2).of(sqlQuery).executeUpdate(); will(returnValue(1));
+            exactly(2).of(statelessSession).createQuery(with(aNonNull(String.class))); will(returnValue(query));
+            allowing(query).setParameter(with(aNonNull(String.class)), with(any(Object.class))); will(returnValue(query));
+            allowing(query).setLong(with(aNonNull(String.class)), with(any(Long.class))); will(returnValue(query));
+            oneOf(query).executeUpdate(); inSequence(attempts); will(throwException(new IllegalStateException("Database unavailable")));
+            oneOf(transaction).rollback(); inSequence(attempts);
+            oneOf(query).executeUpdate(); inSequence(attempts); will(returnValue(1));
+            oneOf(transaction).commit(); inSequence(attempts);
+            exactly(2).of(statelessSession).close();
+        }});
+
+        try {
+            eventRepository.update(event, Collections.singletonMap(behaviour, Arrays.asList(savedTrackingPoint, newTrackingPoint)));
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Database unavailable", e.getMessage());
+        }
+        assertEquals(0L, newTrackingPoint.getId());
+        assertEquals(3L, savedTrackingPoint.getId());
+
+        eventRepository.update(event, Collections.singletonMap(behaviour, Arrays.asList(savedTrackingPoint, newTrackingPoint)));
+        assertEquals(4L, newTrackingPoint.getId());
+
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testSaveAllSavesInOneSessionAndTransactionInBatches() {
+        final int numberOfEvents = JpaSessionFactoryFactory.JDBC_BATCH_SIZE * 2 + 1;
+        final List<Event> events = new ArrayList<>(numberOfEvents);
+        for (int i = 0; i < numberOfEvents; i++) {
+            events.add(event(219886000 + 2 * i, 219886001 + 2 * i, Event.State.ONGOING));
+        }
+        final Transaction transaction = context.mock(Transaction.class);
+
+        context.checking(new Expectations() {{
+            oneOf(sessionFactory).openSession(); will(returnValue(session));
+            oneOf(session).beginTransaction(); will(returnValue(transaction));
+            for (Event event : events) {
+                oneOf(session).saveOrUpdate(event);
+            }
+            exactly(2).of(session).flush();
+            exactly(2).of(session).clear();
+            // The events are all counted in the same hour, day and cell
+            exactly(2).of(session).createQuery(JpaEventRepository.INCREMENT_EVENT_COUNT); will(returnValue(query));
+            allowing(query).setParameter(with(aNonNull(String.class)), with(aNonNull(Object.class))); will(returnValue(query));
+            exactly(2).of(query).executeUpdate(); will(returnValue(0));
+            exactly(2).of(session).doReturningWork(with(any(ReturningWork.class))); will(returnValue(true));
+            oneOf(transaction).commit();
+            oneOf(session).close();
+        }});
+
+        eventRepository.saveAll(events);
+
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testSaveAllAfterRollbackSavesAndCountsNewEventsAsNewAgain() throws Exception {
+        final Event event1 = event(219886000, 219886001, Event.State.ONGOING);
+        final Event event2 = event(219886002, 219886003, Event.State.ONGOING);
+        final TrackingPoint trackingPoint1 = event1.getBehaviour(219886000).getTrackingPoints().first();
+        final Transaction transaction = context.mock(Transaction.class);
+        final Sequence attempts = context.sequence("attempts");
+
+        context.checking(new Expectations() {{
+            exactly(2).of(sessionFactory).openSession(); will(returnValue(session));
+            exactly(2).of(session).beginTransaction(); will(returnValue(transaction));
+            oneOf(session).saveOrUpdate(event1); inSequence(attempts); will(doAll(assignId(event1, 10L), assignId(trackingPoint1, 11L)));
+            oneOf(session).saveOrUpdate(event2); inSequence(attempts); will(throwException(new IllegalStateException("Database unavailable")));
+            oneOf(transaction).rollback(); inSequence(attempts);
+            oneOf(session).saveOrUpdate(event1); inSequence(attempts);
+            oneOf(session).saveOrUpdate(event2); inSequence(attempts);
+            // Both events are counted as new in the same hour, day and cell
+            exactly(2).of(session).createQuery(JpaEventRepository.INCREMENT_EVENT_COUNT); will(returnValue(query));
+            exactly(2).of(query).setParameter("numberOfEvents", 2L); will(returnValue(query));
+            allowing(query).setParameter(with(aNonNull(String.class)), with(aNonNull(Object.class))); will(returnValue(query));
+            exactly(2).of(query).executeUpdate(); will(returnValue(1));
+            oneOf(transaction).commit(); inSequence(attempts);
+            exactly(2).of(session).close();
+        }});
+
+        try {
+            eventRepository.saveAll(Arrays.asList(event1, event2));
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Database unavailable", e.getMessage());
+        }
+        assertEquals(0L, event1.getId());
+        assertEquals(0L, trackingPoint1.getId());
+
+        eventRepository.saveAll(Arrays.asList(event1, event2));
+
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testIncrementEventCountsRetriesUpdateWhenCountIsInsertedByAnotherWriter() {
+        final EventCount eventCount = new EventCount(EventCount.Resolution.HOUR, LocalDateTime.of(2014, 4, 27, 12, 0), "SpeedOverGroundEvent", 5543, 1212, 1);
+
+        context.checking(new Expectations() {{
+            exactly(2).of(session).createQuery(JpaEventRepository.INCREMENT_EVENT_COUNT); will(returnValue(query));
+            allowing(query).setParameter(with(aNonNull(String.class)), with(aNonNull(Object.class))); will(returnValue(query));
+            exactly(2).of(query).executeUpdate(); will(onConsecutiveCalls(returnValue(0), returnValue(1)));
+            oneOf(session).doReturningWork(with(any(ReturningWork.class))); will(returnValue(false));
+        }});
+
+        JpaEventRepository.incrementEventCounts(session, Collections.singletonList(eventCount));
+
+        context.assertIsSatisfied();
+    }
+
     @Test
     public void testFindEventsByFromAndTo() {
         final ArgumentCaptor<String> queryString = ArgumentCaptor.forClass(String.class);
@@ -175,6 +496,7 @@ public class JpaEventRepositoryTest {
         assertTrue(queryString.getCapturedObject().toString().matches(".*WHERE.*latitude>:south.*"));
         assertTrue(queryString.getCapturedObject().toString().matches(".*WHERE.*longitude<:east.*"));
         assertTrue(queryString.getCapturedObject().toString().matches(".*WHERE.*longitude>:west.*"));
+        assertTrue(queryString.getCapturedObject().toString().matches(".*WHERE.*e.minLatitude<:north AND e.maxLatitude>:south AND e.minLongitude<:east AND e.maxLongitude>:west.*"));
         assertTrue(queryString.getCapturedObject().toString().matches(".*WHERE.*[(]e.startTime >= :from OR e.endTime >= :from[)] AND [(]e.startTime <= :to OR e.endTime <= :to[)].*"));
         assertTrue(queryString.getCapturedObject().toString().matches(".*WHERE.*TYPE[(]e[)] IN [(].*[)].*"));
         assertTrue(queryString.getCapturedObject().toString().matches(".*WHERE.*b.vessel.callsign LIKE :vessel OR b.vessel.name LIKE :vessel.*"));
@@ -182,6 +504,63 @@ public class JpaEventRepositoryTest {
         context.assertIsSatisfied();
     }
 
+    @Test
+    public void testFindEventsByFromAndToAndTypeAndVesselAndAreaAfterCursor() {
+        final ArgumentCaptor<String> queryString = ArgumentCaptor.forClass(String.class);
+        final EventCursor after = new EventCursor(LocalDateTime.of(2014, 4, 27, 12, 0, 0), 42L);
+
+        context.checking(new Expectations() {{
+            oneOf(sessionFactory).openSession(); will(returnValue(session));
+            oneOf(session).createQuery(with(queryString.getMatcher())); will(returnValue(query));
+            oneOf(query).setParameter("afterStartTime", after.getStartTime());
+            allowing(query).setParameter(with(aNonNull(String.class)), with(aNonNull(Object.class)));
+            oneOf(query).setLong("afterId", 42L);
+            oneOf(query).setMaxResults(100);
+            oneOf(query).list(); will(returnValue(Collections.emptyList()));
+            oneOf(session).close();
+        }});
+
+        eventRepository.findEventsByFromAndToAndTypeAndVesselAndArea(new Date(0), null, null, "vessel", null, null, null, null, after, 100);
+
+        assertTrue(queryString.getCapturedObject().toString().matches(".*b.vessel.name LIKE :vessel [)] AND [(]e.startTime > :afterStartTime OR [(]e.startTime = :afterStartTime AND e.id > :afterId[)][)] ORDER BY e.startTime, e.id"));
+
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testStreamEventsByFromAndToAndTypeAndVesselAndArea() {
+        final Event event1 = event(219886000, 219886001, Event.State.PAST);
+        final Event event2 = event(219886002, 219886003, Event.State.PAST);
+        final Transaction transaction = context.mock(Transaction.class);
+        final ScrollableResults results = context.mock(ScrollableResults.class);
+        final ArgumentCaptor<String> queryString = ArgumentCaptor.forClass(String.class);
+
+        context.checking(new Expectations() {{
+            oneOf(sessionFactory).openSession(); will(returnValue(session));
+            oneOf(session).beginTransaction(); will(returnValue(transaction));
+            oneOf(session).createQuery(with(queryString.getMatcher())); will(returnValue(query));
+            allowing(query).setParameter(with(aNonNull(String.class)), with(aNonNull(Object.class)));
+            oneOf(query).setFetchSize(JpaEventRepository.STREAM_FETCH_SIZE);
+            oneOf(query).setReadOnly(true);
+            oneOf(query).scroll(ScrollMode.FORWARD_ONLY); will(returnValue(results));
+            exactly(3).of(results).next(); will(onConsecutiveCalls(returnValue(true), returnValue(true), returnValue(false)));
+            exactly(2).of(results).get(0); will(onConsecutiveCalls(returnValue(event1), returnValue(event2)));
+            oneOf(session).evict(event1);
+            oneOf(session).evict(event2);
+            oneOf(results).close();
+            oneOf(transaction).rollback();
+            oneOf(session).close();
+        }});
+
+        List<Event> streamed = new ArrayList<>();
+        eventRepository.streamEventsByFromAndToAndTypeAndVesselAndArea(new Date(0), new Date(), null, null, null, null, null, null, streamed::add);
+
+        assertEquals(Arrays.asList(event1, event2), streamed);
+        assertTrue(queryString.getCapturedObject().toString().matches(".* ORDER BY e.startTime, e.id"));
+
+        context.assertIsSatisfied();
+    }
+
     @Test
     public void testFindRecentEvents() {
         final ArgumentCaptor<String> queryString = ArgumentCaptor.forClass(String.class);
@@ -201,6 +580,73 @@ public class JpaEventRepositoryTest {
         context.assertIsSatisfied();
     }
 
+    @Test
+    public void testFindRecentEventSummaries() {
+        final ArgumentCaptor<String> queryString = ArgumentCaptor.forClass(String.class);
+
+        context.checking(new Expectations() {{
+            oneOf(sessionFactory).openSession(); will(returnValue(session));
+            oneOf(session).createQuery(with(queryString.getMatcher())); will(returnValue(query));
+            oneOf(query).setMaxResults(3);
+            oneOf(query).list();
+            oneOf(session).close();
+        }});
+
+        eventRepository.findRecentEventSummaries(3);
+
+        String hql = queryString.getCapturedObject().toString();
+        assertTrue(hql.startsWith("SELECT DISTINCT NEW dk.dma.ais.abnormal.event.db.EventSummary(e.id, e.class, "));
+        assertTrue(hql.endsWith("WHERE e.suppressed=false AND pb.isPrimary=true AND ptp.id = (SELECT MAX(ptp2.id) FROM Behaviour pb2 JOIN pb2.trackingPoints AS ptp2 WHERE pb2 = pb AND ptp2.timestamp = (SELECT MAX(ptp3.timestamp) FROM Behaviour pb3 JOIN pb3.trackingPoints AS ptp3 WHERE pb3 = pb)) ORDER BY e.startTime DESC"));
+
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testFindEventSummariesByFromAndToAndTypeAndVesselAndArea() {
+        final ArgumentCaptor<String> queryString = ArgumentCaptor.forClass(String.class);
+
+        context.checking(new Expectations() {{
+            oneOf(sessionFactory).openSession(); will(returnValue(session));
+            oneOf(session).createQuery(with(queryString.getMatcher())); will(returnValue(query));
+            allowing(query).setParameter(with(aNonNull(String.class)), with(aNonNull(Object.class)));
+            oneOf(query).setMaxResults(100);
+            oneOf(query).list(); will(returnValue(Collections.emptyList()));
+            oneOf(session).close();
+        }});
+
+        eventRepository.findEventSummariesByFromAndToAndTypeAndVesselAndArea(new Date(0), null, null, "vessel", null, null, null, null, null, 100);
+
+        String hql = queryString.getCapturedObject().toString();
+        assertTrue(hql.startsWith(JpaEventRepository.SELECT_EVENT_SUMMARIES + "LEFT JOIN e.behaviours AS b WHERE e.suppressed=false AND " + JpaEventRepository.EVENT_SUMMARIES_CONDITION + " AND "));
+        assertTrue(hql.endsWith("b.vessel.name LIKE :vessel ) ORDER BY e.startTime, e.id"));
+
+        context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testGetEventCounts() {
+        final ArgumentCaptor<String> queryString = ArgumentCaptor.forClass(String.class);
+
+        context.checking(new Expectations() {{
+            oneOf(sessionFactory).openSession(); will(returnValue(session));
+            oneOf(session).createQuery(with(queryString.getMatcher())); will(returnValue(query));
+            oneOf(query).setParameter("resolution", EventCount.Resolution.DAY);
+            oneOf(query).setParameter("from", LocalDateTime.of(2014, 4, 27, 0, 0));
+            oneOf(query).setParameter(with("to"), with(any(LocalDateTime.class)));
+            oneOf(query).list(); will(returnValue(Collections.emptyList()));
+            oneOf(session).close();
+        }});
+
+        Date from = Date.from(LocalDateTime.of(2014, 4, 27, 12, 30).atZone(ZoneId.systemDefault()).toInstant());
+        eventRepository.getEventCounts(from, new Date(), EventCount.Resolution.DAY, false);
+
+        String hql = queryString.getCapturedObject().toString();
+        assertTrue(hql.startsWith("SELECT NEW dk.dma.ais.abnormal.event.db.domain.EventCount(c.resolution, c.periodStart, c.eventType, SUM(c.numberOfEvents)) FROM EventCount c "));
+        assertTrue(hql.endsWith("GROUP BY c.resolution, c.periodStart, c.eventType ORDER BY c.periodStart, c.eventType"));
+
+        context.assertIsSatisfied();
+    }
+
     @Test
     public void testGetEventTypes() {
         final ArgumentCaptor<String> queryString = ArgumentCaptor.forClass(String.class);
@@ -218,4 +664,51 @@ public class JpaEventRepositoryTest {
 
         context.assertIsSatisfied();
     }
+
+    /** @return an action which assigns the id to the entity - like Hibernate does when inserting it */
+    private static Action assignId(final Object entity, final long id) {
+        return new CustomAction("assign id " + id) {
+            @Override
+            public Object invoke(Invocation invocation) throws Throwable {
+                setId(entity, id);
+                return null;
+            }
+        };
+    }
+
+    private static void setId(Object entity, long id) throws ReflectiveOperationException {
+        Class<?> entityClass = entity.getClass();
+        while (Arrays.stream(entityClass.getDeclaredFields()).noneMatch(field -> field.getName().equals("id"))) {
+            entityClass = entityClass.getSuperclass();
+        }
+        Field idField = entityClass.getDeclaredField("id");
+        idField.setAccessible(true);
+        idField.setLong(entity, id);
+    }
+
+    private static Event event(int mmsi1, int mmsi2, Event.State state) {
+        return CloseEncounterEventBuilder.CloseEncounterEvent()
+            .state(state)
+            .startTime(LocalDateTime.of(2014, 4, 27, 12, 0, 0))
+            .behaviour()
+                .isPrimary(true)
+                .vessel()
+                    .mmsi(mmsi1)
+                    .name("primary")
+                .trackingPoint()
+                    .timestamp(LocalDateTime.of(2014, 4, 27, 12, 0, 0))
+                    .latitude(56.0)
+                    .longitude(12.0)
+            .behaviour()
+                .isPrimary(false)
+                .vessel()
+                    .mmsi(mmsi2)
+                    .name("secondary")
+                .trackingPoint()
+                    .timestamp(LocalDateTime.of(2014, 4, 27, 12, 0, 0))
+                    .latitude(56.0)
+                    .longitude(12.01)
+            .getEvent();
+    }
+
 }
@@ -0,0 +1,228 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.db.log;
+
+import dk.dma.ais.abnormal.event.db.EventCursor;
+import dk.dma.ais.abnormal.event.db.domain.CloseEncounterEvent;
+import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.EventCount;
+import dk.dma.ais.abnormal.event.db.domain.SpeedOverGroundEvent;
+import dk.dma.ais.abnormal.event.db.domain.TrackingPoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static dk.dma.ais.abnormal.event.db.domain.builders.CloseEncounterEventBuilder.CloseEncounterEvent;
+import static dk.dma.ais.abnormal.event.db.domain.builders.SpeedOverGroundEventBuilder.SpeedOverGroundEvent;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LogEventRepositoryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2014, 4, 27, 12, 0, 0);
+
+    private Path directory;
+    private LogEventRepository eventRepository;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("events-");
+        eventRepository = new LogEventRepository(directory, false);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        eventRepository.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void savedEventsAreRecoveredWhenReopened() throws IOException {
+        Event ongoing = closeEncounterEvent(219000001, "Sofie", T0, 55.0, 11.0);
+        Event past = speedOverGroundEvent(219000002, "Martha", T0.plusMinutes(1), 56.0, 12.0);
+        past.setState(Event.State.PAST);
+        eventRepository.saveAll(Arrays.asList(ongoing, past));
+
+        assertEquals(1, ongoing.getId());
+        assertEquals(2, past.getId());
+        assertSame(ongoing, eventRepository.findOngoingEventByVessel(219000001, CloseEncounterEvent.class));
+
+        eventRepository.close();
+        eventRepository = new LogEventRepository(directory, false);
+
+        Event event = eventRepository.getEvent(1);
+        assertTrue(event instanceof CloseEncounterEvent);
+        assertEquals(T0, event.getStartTime());
+        assertEquals("Sofie", event.primaryBehaviour().getVessel().getName());
+        assertEquals(55.0, event.primaryBehaviour().mostRecentTrackingPoint().getLatitude(), 1e-9);
+        assertEquals(TrackingPoint.EventCertainty.RAISED, event.primaryBehaviour().mostRecentTrackingPoint().getEventCertainty());
+        assertEquals(1, eventRepository.findOngoingEventByVessel(219000001, CloseEncounterEvent.class).getId());
+        assertNull(eventRepository.findOngoingEventByVessel(219000002, SpeedOverGroundEvent.class));
+        assertEquals(Arrays.asList("CloseEncounterEvent", "SpeedOverGroundEvent"), eventRepository.getEventTypes());
+
+        Event next = speedOverGroundEvent(219000003, "Anna", T0, 55.0, 11.0);
+        eventRepository.save(next);
+        assertEquals(3, next.getId());
+    }
+
+    @Test
+    public void findsEventsByTypeVesselAndArea() {
+        eventRepository.saveAll(Arrays.asList(
+            closeEncounterEvent(219000001, "Sofie", T0, 55.0, 11.0),
+            speedOverGroundEvent(219000002, "Martha", T0.plusMinutes(1), 56.0, 12.0),
+            speedOverGroundEvent(219000003, "Sofie Marie", T0.plusMinutes(2), 57.0, 13.0)
+        ));
+
+        assertEquals(Arrays.asList(2L, 3L), ids(eventRepository.findEventsByFromAndToAndTypeAndVesselAndArea(null, null, "SpeedOverGroundEvent", null, null, null, null, null)));
+        assertEquals(Arrays.asList(1L, 3L), ids(eventRepository.findEventsByFromAndToAndTypeAndVesselAndArea(null, null, null, "Sofie", null, null, null, null)));
+        assertEquals(Arrays.asList(2L), ids(eventRepository.findEventsByFromAndToAndTypeAndVesselAndArea(null, null, null, "219000002", null, null, null, null)));
+        assertEquals(Arrays.asList(2L), ids(eventRepository.findEventsByFromAndToAndTypeAndVesselAndArea(null, null, null, null, 56.5, 12.5, 55.5, 11.5)));
+        assertEquals(Arrays.asList(2L, 3L), ids(eventRepository.findEventsByFromAndToAndTypeAndVesselAndArea(date(T0.plusMinutes(1)), date(T0.plusMinutes(2)), null, null, null, null, null, null)));
+        assertEquals(Arrays.asList(3L, 2L), ids(eventRepository.findRecentEvents(2)));
+        assertEquals(1L, eventRepository.findRecentEventSummaries(3).get(2).getId());
+    }
+
+    @Test
+    public void findsPagesAfterCursor() {
+        for (int i = 0; i < 5; i++) {
+            eventRepository.save(speedOverGroundEvent(219000001 + i, "Vessel " + i, T0.plusMinutes(5 - i), 55.0, 11.0));
+        }
+
+        List<Event> page1 = eventRepository.findEventsByFromAndToAndTypeAndVesselAndArea(null, null, null, null, null, null, null, null, null, 2);
+        List<Event> page2 = eventRepository.findEventsByFromAndToAndTypeAndVesselAndArea(null, null, null, null, null, null, null, null, EventCursor.at(page1.get(1)), 2);
+
+        assertEquals(Arrays.asList(5L, 4L), ids(page1));
+        assertEquals(Arrays.asList(3L, 2L), ids(page2));
+    }
+
+    @Test
+    public void countsEventsOnceWhenFirstSaved() throws IOException {
+        Event event = closeEncounterEvent(219000001, "Sofie", T0, 55.5, 11.5);
+        eventRepository.save(event);
+        event.setState(Event.State.PAST);
+        eventRepository.save(event);
+        eventRepository.save(speedOverGroundEvent(219000002, "Martha", T0.plusMinutes(1), 56.5, 12.5));
+        eventRepository.save(speedOverGroundEvent(219000003, "Anna", T0.plusHours(1), 56.5, 12.5));
+
+        eventRepository.close();
+        eventRepository = new LogEventRepository(directory, false);
+
+        List<EventCount> hourly = eventRepository.getEventCounts(date(T0.plusMinutes(30)), date(T0.plusHours(2)), EventCount.Resolution.HOUR, false);
+        assertEquals(3, hourly.size());
+        assertEquals("CloseEncounterEvent", hourly.get(0).getEventType());
+        assertEquals(T0, hourly.get(0).getPeriodStart());
+        assertEquals(1, hourly.get(0).getNumberOfEvents());
+        assertEquals("SpeedOverGroundEvent", hourly.get(1).getEventType());
+        assertEquals(1, hourly.get(1).getNumberOfEvents());
+        assertEquals(T0.plusHours(1), hourly.get(2).getPeriodStart());
+
+        List<EventCount> daily = eventRepository.getEventCounts(date(T0), date(T0.plusDays(1)), EventCount.Resolution.DAY, true);
+        assertEquals(2, daily.size());
+        assertEquals(Integer.valueOf(55), daily.get(0).getCellLatitude());
+        assertEquals(Integer.valueOf(11), daily.get(0).getCellLongitude());
+        assertEquals(2, daily.get(1).getNumberOfEvents());
+    }
+
+    @Test
+    public void compactionKeepsCurrentVersionOfEvents() throws IOException {
+        eventRepository.close();
+        eventRepository = new LogEventRepository(directory, 4096, false);
+
+        Event event = closeEncounterEvent(219000001, "Sofie", T0, 55.0, 11.0);
+        for (int i = 0; i < 100; i++) {
+            event.setTitle("Version " + i);
+            eventRepository.save(event);
+        }
+        long segmentsBefore = numberOfSegmentFiles();
+
+        eventRepository.compact();
+
+        assertTrue(numberOfSegmentFiles() < segmentsBefore);
+        assertEquals("Version 99", eventRepository.getEvent(event.getId()).getTitle());
+
+        eventRepository.close();
+        eventRepository = new LogEventRepository(directory, 4096, false);
+        assertEquals("Version 99", eventRepository.getEvent(event.getId()).getTitle());
+    }
+
+    private long numberOfSegmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static List<Long> ids(List<Event> events) {
+        return events.stream().map(Event::getId).collect(Collectors.toList());
+    }
+
+    private static Date date(LocalDateTime time) {
+        return Date.from(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static Event closeEncounterEvent(int mmsi, String name, LocalDateTime startTime, double latitude, double longitude) {
+        return CloseEncounterEvent()
+            .startTime(startTime)
+            .title("Close encounter")
+            .behaviour()
+                .isPrimary(true)
+                .vessel()
+                    .mmsi(mmsi)
+                    .name(name)
+                .trackingPoint()
+                    .timestamp(startTime)
+                    .latitude(latitude)
+                    .longitude(longitude)
+                    .eventCertainty(TrackingPoint.EventCertainty.RAISED)
+            .getEvent();
+    }
+
+    private static Event speedOverGroundEvent(int mmsi, String name, LocalDateTime startTime, double latitude, double longitude) {
+        return SpeedOverGroundEvent()
+            .startTime(startTime)
+            .title("Speed over ground")
+            .behaviour()
+                .isPrimary(true)
+                .vessel()
+                    .mmsi(mmsi)
+                    .name(name)
+                .trackingPoint()
+                    .timestamp(startTime)
+                    .latitude(latitude)
+                    .longitude(longitude)
+                    .eventCertainty(TrackingPoint.EventCertainty.RAISED)
+            .getEvent();
+    }
+
+}
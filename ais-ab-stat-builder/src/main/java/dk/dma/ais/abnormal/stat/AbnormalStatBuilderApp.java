@@ -17,20 +17,35 @@ package dk.dma.ais.abnormal.stat;
 
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.ParameterException;
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Guice;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
 import dk.dma.ais.abnormal.application.ApplicationSupport;
+import dk.dma.ais.abnormal.application.statistics.MetricsHttpServer;
 import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
 import dk.dma.ais.abnormal.stat.db.data.DatasetMetaData;
+import dk.dma.ais.abnormal.stat.statistics.CourseOverGroundStatistic;
+import dk.dma.ais.abnormal.stat.statistics.ShipTypeAndSizeStatistic;
+import dk.dma.ais.abnormal.stat.statistics.SpeedOverGroundStatistic;
+import dk.dma.ais.abnormal.stat.statistics.TrackingEventListener;
 import dk.dma.ais.concurrency.stripedexecutor.StripedExecutorService;
+import dk.dma.ais.filter.ReplayDownSampleFilter;
 import dk.dma.ais.reader.AisReader;
+import dk.dma.ais.tracker.eventEmittingTracker.EventEmittingTracker;
 import dk.dma.commons.app.AbstractDaemon;
 import dk.dma.enav.model.geometry.grid.Grid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -52,6 +67,10 @@ public final class AbnormalStatBuilderApp extends AbstractDaemon {
 
     private PacketHandler packetHandler;
 
+    private ReadAheadDirectoryReader readAheadReader;
+
+    private CellTransitionLogWriter transitionLogWriter;
+
     @Inject
     private PacketHandlerFactory packetHandlerFactory;
 
@@ -76,19 +95,76 @@ public final class AbnormalStatBuilderApp extends AbstractDaemon {
     protected void runDaemon(Injector injector) throws Exception {
         LOG.info("Application starting.");
 
+        MetricsHttpServer metricsServer = null;
+        if (userArguments.getMetricsPort() > 0) {
+            metricsServer = new MetricsHttpServer(statisticsService, userArguments.getMetricsPort());
+            metricsServer.start();
+        }
+
+        try {
+            build();
+        } finally {
+            if (metricsServer != null) {
+                metricsServer.stop();
+            }
+        }
+    }
+
+    private void build() throws Exception {
+        if (userArguments.getAggregateFilename() != null) {
+            aggregate(userArguments.getAggregateFilename());
+            return;
+        }
+
         Grid grid = getInjector().getInstance(Grid.class);
 
+        if (userArguments.getPartitions() > 1) {
+            readAheadReader = prepareForPartition(userArguments.getPartition(), userArguments.getPartitions());
+            progressIndicator.setReadAheadReader(readAheadReader);
+        } else if (userArguments.getReadAhead() > 0) {
+            readAheadReader = getInjector().getInstance(ReadAheadDirectoryReader.class);
+            progressIndicator.setReadAheadReader(readAheadReader);
+        }
+
         progressIndicator.init();
-        packetHandler = packetHandlerFactory.create(userArguments.isMultiThreaded());
+        packetHandler = packetHandlerFactory.create(userArguments.isMultiThreaded(), userArguments.isLeanTracker());
         // Write dataset metadata before we start
         DatasetMetaData metadata = new DatasetMetaData(grid.getResolution(), userArguments.getDownSampling());
         statisticsRepository.putMetaData(metadata);
+
+        List<GridStatisticSet> additionalGridStatisticSets = Collections.emptyList();
+        if (userArguments.getGridSizes().size() > 1) {
+            additionalGridStatisticSets = getInjector().getInstance(Key.get(new TypeLiteral<List<GridStatisticSet>>() {}));
+            for (GridStatisticSet gridStatisticSet : additionalGridStatisticSets) {
+                if (userArguments.isLeanTracker()) {
+                    gridStatisticSet.start(userArguments.getDownSampling(), getInjector().getInstance(CellTransitionTracker.class));
+                } else {
+                    gridStatisticSet.start(userArguments.getDownSampling());
+                }
+            }
+        }
+
+        if (userArguments.getTransitionLogFilename() != null) {
+            transitionLogWriter = getInjector().getInstance(CellTransitionLogWriter.class);
+            if (userArguments.isLeanTracker()) {
+                getInjector().getInstance(CellTransitionTracker.class).addListener(grid, transitionLogWriter);
+            } else {
+                transitionLogWriter.start();
+            }
+        }
+
         statisticsService.start();
         progressIndicator.start();
 
-        reader.registerPacketHandler(packetHandler);
-        reader.start();
-        reader.join();
+        if (readAheadReader != null) {
+            readAheadReader.registerPacketHandler(packetHandler);
+            readAheadReader.start();
+            readAheadReader.join();
+        } else {
+            reader.registerPacketHandler(packetHandler);
+            reader.start();
+            reader.join();
+        }
 
         progressIndicator.shutdown();
         executorService.shutdown();
@@ -99,18 +175,80 @@ public final class AbnormalStatBuilderApp extends AbstractDaemon {
         } while(!shutdown);
         LOG.info("All worker tasks completed.");
 
+        if (transitionLogWriter != null) {
+            transitionLogWriter.close();
+        }
+
         statisticsService.dumpStatistics();
 
         statisticsRepository.close();
+        additionalGridStatisticSets.forEach(GridStatisticSet::close);
         statisticsService.stop();
     }
     
+    /**
+     * Run as worker of a partitioned build: Feed the warm-up files preceding the partition to the tracker while no
+     * statistics are listening, and return a reader of the files of the partition itself.
+     */
+    private ReadAheadDirectoryReader prepareForPartition(int partition, int numberOfPartitions) throws Exception {
+        List<Path> files = ReadAheadDirectoryReader.findFiles(Paths.get(userArguments.getInputDirectory()), userArguments.getInputFilenamePattern(), userArguments.isRecursive());
+        List<Path> warmUpFiles = PartitionedBuildCoordinator.warmUpFiles(files, partition, numberOfPartitions, userArguments.getWarmUpFiles());
+        List<Path> partitionFiles = PartitionedBuildCoordinator.partitionFiles(files, partition, numberOfPartitions);
+        final int readAhead = Math.max(1, userArguments.getReadAhead());
+
+        LOG.info("Processing partition " + partition + " of " + numberOfPartitions + ": " + partitionFiles.size() + " files after " + warmUpFiles.size() + " warm-up files.");
+
+        if (!warmUpFiles.isEmpty()) {
+            final ReplayDownSampleFilter downSampleFilter = getInjector().getInstance(ReplayDownSampleFilter.class);
+            final EventEmittingTracker trackingService = getInjector().getInstance(EventEmittingTracker.class);
+            ReadAheadDirectoryReader warmUpReader = new ReadAheadDirectoryReader(warmUpFiles, readAhead);
+            warmUpReader.registerPacketHandler(packet -> {
+                if (!downSampleFilter.rejectedByFilter(packet)) {
+                    trackingService.update(packet);
+                }
+            });
+            warmUpReader.start();
+            warmUpReader.join();
+            LOG.info("Warm-up completed.");
+        }
+
+        return new ReadAheadDirectoryReader(partitionFiles, readAhead);
+    }
+
+    /**
+     * Build statistics from a cell transition log instead of reading, decoding and tracking AIS input.
+     */
+    private void aggregate(String transitionLogFilename) throws Exception {
+        if (userArguments.getGridSizes().size() > 1) {
+            LOG.warn("Only one grid size is supported when aggregating a cell transition log. Using " + userArguments.getGridSize() + ".");
+        }
+
+        CellTransitionLogAggregator aggregator = new CellTransitionLogAggregator(transitionLogFilename, Runtime.getRuntime().availableProcessors());
+        statisticsRepository.putMetaData(new DatasetMetaData(aggregator.getGridResolution(), aggregator.getDownSampling()));
+
+        Set<TrackingEventListener> statistics = new ImmutableSet.Builder<TrackingEventListener>()
+            .add(getInjector().getInstance(ShipTypeAndSizeStatistic.class))
+            .add(getInjector().getInstance(CourseOverGroundStatistic.class))
+            .add(getInjector().getInstance(SpeedOverGroundStatistic.class))
+            .build();
+
+        statisticsService.start();
+        aggregator.aggregate(statistics);
+        statisticsService.dumpStatistics();
+
+        statisticsRepository.close();
+        statisticsService.stop();
+    }
+
     @Override
     protected void preShutdown() {
         LOG.info("AbnormalStatBuilderApp shutting down");
         if (reader != null) {
             reader.stopReader();
         }
+        if (readAheadReader != null) {
+            readAheadReader.stopReader();
+        }
         if (packetHandler != null) {
             packetHandler.cancel();
         }
@@ -156,15 +294,36 @@ public final class AbnormalStatBuilderApp extends AbstractDaemon {
             userArguments.setHelp(true);
         }
 
+        if (!userArguments.isHelp() && userArguments.getInputFilenamePattern() == null && userArguments.getAggregateFilename() == null) {
+            System.out.println("One of the following options is required: -input, -aggregate");
+            userArguments.setHelp(true);
+        }
+
+        if (!userArguments.isHelp() && (userArguments.getWorkers() > 1 || userArguments.getPartitions() > 1)) {
+            if (userArguments.isLeanTracker() || userArguments.getGridSizes().size() > 1 || userArguments.getTransitionLogFilename() != null || userArguments.getAggregateFilename() != null) {
+                System.out.println("Options -leantracker, -transitionlog, -aggregate and multiple grid sizes are not supported with -workers.");
+                userArguments.setHelp(true);
+            }
+        }
+
         if (userArguments.isHelp()) {
             jCommander = new JCommander(userArguments, "-help", "-input", "-output");
             jCommander.setProgramName("AbnormalStatBuilderApp");
             jCommander.usage();
         } else {
-            Injector injector = Guice.createInjector(new AbnormalStatBuilderAppModule(userArguments.getOutputFilename(), userArguments.getInputDirectory(), userArguments.getInputFilenamePattern(), userArguments.isRecursive(), userArguments.getGridSize(), userArguments.getDownSampling()));
+            Long spillCells = userArguments.getSpillCells();
+            if (userArguments.getWorkers() > 1 && spillCells == 0) {
+                // The output of all workers is merged into one repository; never hold it all on the heap
+                spillCells = PartitionedBuildCoordinator.DEFAULT_MERGE_SPILL_CELLS;
+            }
+            Injector injector = Guice.createInjector(new AbnormalStatBuilderAppModule(userArguments.getOutputFilename(), userArguments.getInputDirectory(), userArguments.getInputFilenamePattern(), userArguments.isRecursive(), userArguments.getGridSizes(), userArguments.getDownSampling(), userArguments.getReadAhead(), userArguments.getTransitionLogFilename(), spillCells));
             AbnormalStatBuilderApp.setInjector(injector);
-            AbnormalStatBuilderApp app = injector.getInstance(AbnormalStatBuilderApp.class);
-            app.execute(new String[]{} /* no cmd args - we handled them already */ );
+            if (userArguments.getWorkers() > 1) {
+                new PartitionedBuildCoordinator(args, userArguments).run(injector.getInstance(StatisticDataRepository.class));
+            } else {
+                AbnormalStatBuilderApp app = injector.getInstance(AbnormalStatBuilderApp.class);
+                app.execute(new String[]{} /* no cmd args - we handled them already */);
+            }
             // app.handler.printAllStatisticStatistics(System.out);
         }
     }
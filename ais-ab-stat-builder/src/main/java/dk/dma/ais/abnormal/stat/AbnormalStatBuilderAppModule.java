@@ -22,6 +22,7 @@ import com.google.inject.Singleton;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
 import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
 import dk.dma.ais.abnormal.stat.db.mapdb.StatisticDataRepositoryMapDB;
+import dk.dma.ais.abnormal.stat.db.mapdb.StatisticDataRepositorySpillToDisk;
 import dk.dma.ais.abnormal.stat.statistics.CourseOverGroundStatistic;
 import dk.dma.ais.abnormal.stat.statistics.ShipTypeAndSizeStatistic;
 import dk.dma.ais.concurrency.stripedexecutor.StripedExecutorService;
@@ -46,20 +47,28 @@ import java.util.List;
 public final class AbnormalStatBuilderAppModule extends AbstractModule {
     private static Logger LOG = LoggerFactory.getLogger(AbnormalStatBuilderAppModule.class);
 
+    private static final String OUTPUT_FILENAME_SUFFIX = ".statistics";
+
     private final String outputFilename;
     private final String inputDirectory;
     private final String inputFilenamePattern;
     private final boolean inputRecursive;
-    private final Integer gridSize;
+    private final List<Integer> gridSizes;
     private final Integer downSampling;
+    private final Integer readAhead;
+    private final String transitionLogFilename;
+    private final Long spillCells;
 
-    public AbnormalStatBuilderAppModule(String outputFilename, String inputDirectory, String inputFilenamePattern, boolean inputRecursive, Integer gridSize, Integer downSampling) {
+    public AbnormalStatBuilderAppModule(String outputFilename, String inputDirectory, String inputFilenamePattern, boolean inputRecursive, List<Integer> gridSizes, Integer downSampling, Integer readAhead, String transitionLogFilename, Long spillCells) {
         this.outputFilename = outputFilename;
         this.inputDirectory = inputDirectory;
         this.inputFilenamePattern = inputFilenamePattern;
         this.inputRecursive = inputRecursive;
-        this.gridSize = gridSize;
+        this.gridSizes = gridSizes;
         this.downSampling = downSampling;
+        this.readAhead = readAhead;
+        this.transitionLogFilename = transitionLogFilename;
+        this.spillCells = spillCells;
     }
 
     @Override
@@ -84,6 +93,26 @@ public final class AbnormalStatBuilderAppModule extends AbstractModule {
     }
 
     @Provides
+    @Singleton
+    CellTransitionTracker provideCellTransitionTracker() {
+        return new CellTransitionTracker(initVesselBlackList(provideConfiguration()));
+    }
+
+    @Provides
+    @Singleton
+    CellTransitionLogWriter provideCellTransitionLogWriter(EventEmittingTracker trackingService, Grid grid) {
+        CellTransitionLogWriter transitionLogWriter = null;
+        try {
+            transitionLogWriter = new CellTransitionLogWriter(trackingService, transitionLogFilename, grid.getResolution(), downSampling);
+            LOG.info("Created CellTransitionLogWriter.");
+        } catch (Exception e) {
+            LOG.error("Failed to create CellTransitionLogWriter object", e);
+        }
+        return transitionLogWriter;
+    }
+
+    @Provides
+    @Singleton
     ReplayDownSampleFilter provideReplayDownSampleFilter() {
         ReplayDownSampleFilter filter = null;
         try {
@@ -113,6 +142,43 @@ public final class AbnormalStatBuilderAppModule extends AbstractModule {
     @Provides
     @Singleton
     Grid provideGrid() {
+        return createGrid(gridSizes.get(0));
+    }
+
+    @Provides
+    @Singleton
+    StatisticDataRepository provideStatisticDataRepository() {
+        return createStatisticDataRepository(outputFilenameFor(gridSizes.get(0)));
+    }
+
+    /**
+     * Provide statistic sets for all but the first grid size. The first grid size
+     * is handled by the tracker and the injected statistics.
+     */
+    @Provides
+    @Singleton
+    List<GridStatisticSet> provideAdditionalGridStatisticSets(AppStatisticsService appStatisticsService, EventEmittingTracker trackingService) {
+        List<GridStatisticSet> gridStatisticSets = new ArrayList<>();
+        for (Integer gridSize : gridSizes.subList(1, gridSizes.size())) {
+            StatisticDataRepository statisticsRepository = createStatisticDataRepository(outputFilenameFor(gridSize));
+            gridStatisticSets.add(new GridStatisticSet(createGrid(gridSize), statisticsRepository, appStatisticsService, trackingService));
+        }
+        return gridStatisticSets;
+    }
+
+    /**
+     * Compute the name of the output file for the given grid size. If statistics are built
+     * for more than one grid size, the grid size is appended to the output file name.
+     */
+    String outputFilenameFor(Integer gridSize) {
+        if (gridSizes.size() <= 1) {
+            return outputFilename;
+        }
+        String filenameBase = outputFilename.endsWith(OUTPUT_FILENAME_SUFFIX) ? outputFilename.substring(0, outputFilename.length() - OUTPUT_FILENAME_SUFFIX.length()) : outputFilename;
+        return filenameBase + "-grid" + gridSize + OUTPUT_FILENAME_SUFFIX;
+    }
+
+    private static Grid createGrid(Integer gridSize) {
         Grid grid = null;
         try {
             grid = Grid.createSize(gridSize);
@@ -123,12 +189,14 @@ public final class AbnormalStatBuilderAppModule extends AbstractModule {
         return grid;
     }
 
-    @Provides
-    @Singleton
-    StatisticDataRepository provideStatisticDataRepository() {
+    private StatisticDataRepository createStatisticDataRepository(String outputFilename) {
         StatisticDataRepository statisticsRepository = null;
         try {
-            statisticsRepository = new StatisticDataRepositoryMapDB(outputFilename);
+            if (spillCells > 0) {
+                statisticsRepository = new StatisticDataRepositorySpillToDisk(outputFilename, spillCells);
+            } else {
+                statisticsRepository = new StatisticDataRepositoryMapDB(outputFilename);
+            }
             statisticsRepository.openForWrite(true);
             LOG.info("Opened statistic set database with filename '" + outputFilename + "'.");
         } catch (Exception e) {
@@ -150,6 +218,19 @@ public final class AbnormalStatBuilderAppModule extends AbstractModule {
         return aisReader;
     }
 
+    @Provides
+    @Singleton
+    ReadAheadDirectoryReader provideReadAheadDirectoryReader() {
+        ReadAheadDirectoryReader readAheadReader = null;
+        try {
+            readAheadReader = new ReadAheadDirectoryReader(inputDirectory, inputFilenamePattern, inputRecursive, readAhead);
+            LOG.info("Created ReadAheadDirectoryReader.");
+        } catch (Exception e) {
+            LOG.error("Failed to create ReadAheadDirectoryReader object", e);
+        }
+        return readAheadReader;
+    }
+
     /**
      * Initialize internal data structures required to accept/reject track updates based on black list mechanism.
      * @param configuration
@@ -16,8 +16,17 @@
 
 package dk.dma.ais.abnormal.stat;
 
+import dk.dma.ais.abnormal.application.statistics.Counter;
+
 public interface AppStatisticsService extends dk.dma.ais.abnormal.application.statistics.AppStatisticsService {
     void setTrackCount(int trackCount);
+
+    /**
+     * Get (and register if necessary) the counter with the given name for the given statistic. Statistics should
+     * obtain their counters once and keep them, rather than calling incStatisticStatistics() per event.
+     */
+    Counter getStatisticCounter(String statisticName, String statisticsName);
+
     void incStatisticStatistics(String statisticName, String statisticsName);
     Long getStatisticStatistics(String statisticName, String statisticsName);
 }
@@ -17,14 +17,15 @@ package dk.dma.ais.abnormal.stat;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import dk.dma.ais.abnormal.application.statistics.Counter;
+import dk.dma.ais.abnormal.application.statistics.Metric;
+import dk.dma.ais.abnormal.application.statistics.PrometheusTextWriter;
+import dk.dma.ais.abnormal.application.statistics.StatisticsRegistry;
 import dk.dma.ais.concurrency.stripedexecutor.StripedExecutorService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Class for holding information on the file processing process
@@ -37,38 +38,22 @@ public final class AppStatisticsServiceImpl extends dk.dma.ais.abnormal.applicat
     @Inject
     private StripedExecutorService executorService;
 
-    private Map<String, HashMap<String, Long>> allStatisticStatistics = new ConcurrentHashMap<>();
-
     public AppStatisticsServiceImpl() {
     }
 
+    @Override
+    public Counter getStatisticCounter(String statisticName, String statisticsName) {
+        return getStatisticsRegistry().counter(statisticName, statisticsName);
+    }
+
     @Override
     public void incStatisticStatistics(String statisticName, String statisticsName) {
-        HashMap<String, Long> statisticStatistics = (HashMap<String, Long>) this.allStatisticStatistics.get(statisticName);
-        if (statisticStatistics == null) {
-            statisticStatistics = new HashMap<>();
-            this.allStatisticStatistics.put(statisticName, statisticStatistics);
-        }
-        Long statistic = statisticStatistics.get(statisticsName);
-        if (statistic == null) {
-            statistic = 0L;
-            statisticStatistics.put(statisticsName, statistic);
-        }
-        statistic++;
-        statisticStatistics.put(statisticsName, statistic);
+        getStatisticCounter(statisticName, statisticsName).increment();
     }
 
     @Override
     public Long getStatisticStatistics(String statisticName, String statisticsName) {
-        HashMap<String, Long> statisticStatistics = (HashMap<String, Long>) this.allStatisticStatistics.get(statisticName);
-        if (statisticStatistics == null) {
-            return null;
-        }
-        Long statistic = statisticStatistics.get(statisticsName);
-        if (statistic == null) {
-            return null;
-        }
-        return statistic;
+        return getStatisticsRegistry().getValue(statisticName, statisticsName);
     }
 
     @Override
@@ -85,18 +70,27 @@ public final class AppStatisticsServiceImpl extends dk.dma.ais.abnormal.applicat
         }
 
         LOG.info("==== Stat builder statistic statistics (statistics) ====");
-        Set<String> statisticNames = this.allStatisticStatistics.keySet();
-        for (String statisticName : statisticNames) {
+        StatisticsRegistry statisticsRegistry = getStatisticsRegistry();
+        for (String statisticName : statisticsRegistry.getGroupNames()) {
             LOG.info(String.format("%-30s %s", "TrackingEventListener name", statisticName));
 
-            HashMap<String, Long> statisticStatistics = this.allStatisticStatistics.get(statisticName);
-            Set<String> statisticsNames = statisticStatistics.keySet();
-            for (String statisticsName : statisticsNames) {
-                Long statistics = statisticStatistics.get(statisticsName);
-                LOG.info(String.format("     %-25s %9d", statisticsName, statistics));
+            for (Map.Entry<String, Metric> statistics : statisticsRegistry.getMetrics(statisticName).entrySet()) {
+                LOG.info(String.format("     %-25s %9d", statistics.getKey(), statistics.getValue().getValue()));
             }
 
         }
         LOG.info("==== Stat builder statistic statistics ====");
     }
+
+    @Override
+    public void writeMetrics(PrometheusTextWriter writer) {
+        super.writeMetrics(writer);
+
+        writer.family("ais_ab_executor_threads", "gauge", "No. of threads of the striped executor.")
+              .sample("ais_ab_executor_threads", executorService.numberOfExecutors());
+        writer.family("ais_ab_executor_queue_size", "gauge", "No. of tasks queued for each thread of the striped executor.");
+        for (Map.Entry<String,Integer> queueSize : executorService.serialExecutorQueueSizes().entrySet()) {
+            writer.sample("ais_ab_executor_queue_size", queueSize.getValue(), "thread", queueSize.getKey());
+        }
+    }
 }
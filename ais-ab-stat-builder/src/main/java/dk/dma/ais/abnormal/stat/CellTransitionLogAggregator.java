@@ -0,0 +1,213 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat;
+
+import dk.dma.ais.abnormal.stat.statistics.TrackingEventListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static dk.dma.ais.abnormal.stat.CellTransitionLogWriter.HEADER_SIZE;
+import static dk.dma.ais.abnormal.stat.CellTransitionLogWriter.MAGIC;
+import static dk.dma.ais.abnormal.stat.CellTransitionLogWriter.RECORD_SIZE;
+import static dk.dma.ais.abnormal.stat.CellTransitionLogWriter.UNKNOWN;
+import static dk.dma.ais.abnormal.stat.CellTransitionLogWriter.VERSION;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Builds statistics from a cell transition log written by CellTransitionLogWriter.
+ *
+ * The log is read sequentially by the calling thread, and the records are partitioned by cell id onto a number
+ * of worker threads which feed them to the statistics. As all transitions into the same cell are handled by the
+ * same worker, the statistic data of a cell is never updated concurrently.
+ */
+public class CellTransitionLogAggregator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CellTransitionLogAggregator.class);
+
+    private static final int READ_BUFFER_SIZE = RECORD_SIZE * 65536;
+    private static final int BATCH_SIZE = RECORD_SIZE * 4096;
+    private static final int BATCHES_PER_WORKER = 4;
+    private static final ByteBuffer END_OF_LOG = ByteBuffer.allocate(0);
+
+    private final String filename;
+    private final int numberOfWorkers;
+
+    private double gridResolution;
+    private int downSampling;
+
+    public CellTransitionLogAggregator(String filename, int numberOfWorkers) throws IOException {
+        if (numberOfWorkers < 1) {
+            throw new IllegalArgumentException("numberOfWorkers must be >= 1; not " + numberOfWorkers + ".");
+        }
+        this.filename = filename;
+        this.numberOfWorkers = numberOfWorkers;
+        readHeader();
+    }
+
+    /** @return the resolution of the grid used when the log was written. */
+    public double getGridResolution() {
+        return gridResolution;
+    }
+
+    /** @return the down sampling period used when the log was written. */
+    public int getDownSampling() {
+        return downSampling;
+    }
+
+    /**
+     * Feed all cell transitions in the log to the given statistics.
+     * @return the no. of cell transitions read from the log.
+     */
+    public long aggregate(Collection<? extends TrackingEventListener> statistics) throws IOException, InterruptedException {
+        final TrackingEventListener[] listeners = statistics.toArray(new TrackingEventListener[statistics.size()]);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+        final List<BlockingQueue<ByteBuffer>> queues = new ArrayList<>(numberOfWorkers);
+        final List<Thread> workers = new ArrayList<>(numberOfWorkers);
+        for (int w = 0; w < numberOfWorkers; w++) {
+            BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(BATCHES_PER_WORKER);
+            Thread worker = new Thread(() -> consume(queue, listeners, failure), CellTransitionLogAggregator.class.getSimpleName() + "-" + w);
+            queues.add(queue);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long numberOfRecords = 0;
+        final ByteBuffer[] batches = new ByteBuffer[numberOfWorkers];
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), READ)) {
+            channel.position(HEADER_SIZE);
+            final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+            while (channel.read(readBuffer) >= 0 && failure.get() == null) {
+                readBuffer.flip();
+                while (readBuffer.remaining() >= RECORD_SIZE) {
+                    final long cellId = readBuffer.getLong(readBuffer.position());
+                    final int w = (int) ((cellId ^ (cellId >>> 32)) & Integer.MAX_VALUE) % numberOfWorkers;
+                    if (batches[w] == null) {
+                        batches[w] = ByteBuffer.allocate(BATCH_SIZE);
+                    }
+                    final int limit = readBuffer.limit();
+                    readBuffer.limit(readBuffer.position() + RECORD_SIZE);
+                    batches[w].put(readBuffer);
+                    readBuffer.limit(limit);
+                    if (!batches[w].hasRemaining()) {
+                        batches[w].flip();
+                        queues.get(w).put(batches[w]);
+                        batches[w] = null;
+                    }
+                    numberOfRecords++;
+                }
+                readBuffer.compact();
+            }
+            if (readBuffer.position() > 0) {
+                LOG.warn("Ignoring " + readBuffer.position() + " trailing bytes of incomplete record in " + filename + ".");
+            }
+        } finally {
+            for (int w = 0; w < numberOfWorkers; w++) {
+                if (batches[w] != null) {
+                    batches[w].flip();
+                    queues.get(w).put(batches[w]);
+                }
+                queues.get(w).put(END_OF_LOG);
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        }
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        LOG.info("Aggregated " + numberOfRecords + " cell transitions from " + filename + " on " + numberOfWorkers + " threads.");
+        return numberOfRecords;
+    }
+
+    private static void consume(BlockingQueue<ByteBuffer> queue, TrackingEventListener[] listeners, AtomicReference<RuntimeException> failure) {
+        try {
+            ByteBuffer batch;
+            while ((batch = queue.take()) != END_OF_LOG) {
+                if (failure.get() != null) {
+                    continue; // Keep draining so that the reader is not blocked
+                }
+                while (batch.hasRemaining()) {
+                    final long cellId = batch.getLong();
+                    final long timestamp = batch.getLong();
+                    final int mmsi = batch.getInt();
+                    final short shipType = batch.getShort();
+                    final short shipLength = batch.getShort();
+                    final float sog = batch.getFloat();
+                    final float cog = batch.getFloat();
+
+                    final Integer shipTypeBoxed = shipType == UNKNOWN ? null : Integer.valueOf(shipType);
+                    final Integer shipLengthBoxed = shipLength == UNKNOWN ? null : Integer.valueOf(shipLength);
+                    final Float sogBoxed = Float.isNaN(sog) ? null : Float.valueOf(sog);
+                    final Float cogBoxed = Float.isNaN(cog) ? null : Float.valueOf(cog);
+                    for (TrackingEventListener listener : listeners) {
+                        listener.onCellIdChanged(mmsi, timestamp, cellId, shipTypeBoxed, shipLengthBoxed, sogBoxed, cogBoxed);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            LOG.error(e.getMessage(), e);
+            failure.compareAndSet(null, e);
+            drain(queue);
+        }
+    }
+
+    private static void drain(BlockingQueue<ByteBuffer> queue) {
+        try {
+            while (queue.take() != END_OF_LOG) {
+                // Discard
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void readHeader() throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Read until header is complete
+            }
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(filename + " is not a cell transition log.");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of cell transition log " + filename + ".");
+            }
+            gridResolution = header.getDouble();
+            downSampling = header.getInt();
+        }
+    }
+
+}
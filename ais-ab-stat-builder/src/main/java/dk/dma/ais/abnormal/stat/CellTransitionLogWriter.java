@@ -0,0 +1,153 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import dk.dma.ais.abnormal.stat.statistics.TrackingEventListener;
+import dk.dma.ais.tracker.eventEmittingTracker.EventEmittingTracker;
+import dk.dma.ais.tracker.eventEmittingTracker.Track;
+import dk.dma.ais.tracker.eventEmittingTracker.events.CellChangedEvent;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Writes every cell transition consumed by the statistics to a compact append-only binary log, so that
+ * statistics can later be recomputed by CellTransitionLogAggregator without decoding and tracking the AIS input again.
+ *
+ * The log consists of a header followed by fixed size records:
+ * <pre>
+ * header: int magic, int version, double grid resolution, int down sampling period
+ * record: long cellId, long timestamp, int mmsi, short shipType, short shipLength, float sog, float cog
+ * </pre>
+ * Unknown ship types and lengths are stored as -1; unknown speeds and courses as NaN.
+ */
+@ThreadSafe
+public class CellTransitionLogWriter implements TrackingEventListener {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CellTransitionLogWriter.class);
+
+    static final int MAGIC = 0x41495354; // "AIST"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    static final int RECORD_SIZE = 8 + 8 + 4 + 2 + 2 + 4 + 4;
+
+    static final short UNKNOWN = -1;
+
+    private static final int BUFFER_SIZE = RECORD_SIZE * 32768;
+
+    private final EventEmittingTracker trackingService;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final AtomicBoolean started = new AtomicBoolean(false);
+
+    private long numberOfRecords;
+
+    public CellTransitionLogWriter(EventEmittingTracker trackingService, String filename, double gridResolution, int downSampling) throws IOException {
+        this.trackingService = trackingService;
+        this.channel = FileChannel.open(Paths.get(filename), CREATE, WRITE, TRUNCATE_EXISTING);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putDouble(gridResolution).putInt(downSampling);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+
+        LOG.info("Writing cell transitions to " + filename + ".");
+    }
+
+    /**
+     * Start listening to cell changes from the full tracker.
+     */
+    @Override
+    public void start() {
+        if (started.compareAndSet(false, true)) {
+            trackingService.registerSubscriber(this);
+        }
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void onCellIdChanged(CellChangedEvent event) {
+        Track track = event.getTrack();
+        onCellIdChanged(track.getMmsi(), track.getTimeOfLastPositionReport(), (Long) track.getProperty(Track.CELL_ID), track.getShipType(), track.getVesselLength(), track.getSpeedOverGround(), track.getCourseOverGround());
+    }
+
+    @Override
+    public void onCellIdChanged(int mmsi, long timestamp, Long cellId, Integer shipType, Integer shipLength, Float sog, Float cog) {
+        if (cellId == null) {
+            return;
+        }
+
+        synchronized (buffer) {
+            if (buffer.remaining() < RECORD_SIZE) {
+                flushBuffer();
+            }
+            buffer.putLong(cellId);
+            buffer.putLong(timestamp);
+            buffer.putInt(mmsi);
+            buffer.putShort(shipType == null ? UNKNOWN : shipType.shortValue());
+            buffer.putShort(shipLength == null ? UNKNOWN : shipLength.shortValue());
+            buffer.putFloat(sog == null ? Float.NaN : sog);
+            buffer.putFloat(cog == null ? Float.NaN : cog);
+            numberOfRecords++;
+        }
+    }
+
+    /**
+     * Flush all buffered records and close the log.
+     */
+    public void close() {
+        synchronized (buffer) {
+            try {
+                flushBuffer();
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                LOG.error("Failed to close cell transition log: " + e.getMessage(), e);
+            }
+            LOG.info("Wrote " + numberOfRecords + " cell transitions.");
+        }
+    }
+
+    private void flushBuffer() {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write cell transition log", e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
+}
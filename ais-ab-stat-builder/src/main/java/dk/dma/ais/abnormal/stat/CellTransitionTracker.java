@@ -0,0 +1,379 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat;
+
+import dk.dma.ais.abnormal.stat.statistics.TrackingEventListener;
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.message.AisMessage24;
+import dk.dma.ais.message.AisMessage5;
+import dk.dma.ais.message.IVesselPositionMessage;
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.enav.model.geometry.grid.Grid;
+import net.jcip.annotations.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A lean tracker which only keeps the per-vessel state needed to build statistics: The last known cell id in
+ * each grid, the static ship type and length (from message type 5 and part B of message type 24), and the latest
+ * speed and course over ground.
+ *
+ * The state is kept in primitive arrays of open-addressing hash maps keyed by MMSI no., and cell transitions are
+ * delivered directly to the registered statistics without passing through an event bus. Unlike EventEmittingTrackerImpl
+ * no tracking report history is kept, and positions are not interpolated between reports. Like EventEmittingTrackerImpl,
+ * vessels which have not reported for TRACK_STALE_MILLIS of data time are forgotten.
+ *
+ * The tracker is safe to update from several threads as long as all packets from the same vessel are
+ * delivered in order by the same thread.
+ */
+@ThreadSafe
+public class CellTransitionTracker {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CellTransitionTracker.class);
+
+    private static final int NUMBER_OF_SEGMENTS = 64;
+    private static final int INITIAL_SEGMENT_CAPACITY = 256;
+
+    private static final long NO_CELL = -1L;
+    private static final short UNKNOWN = -1;
+
+    /** Vessels which have not reported for this long are evicted. */
+    static final long TRACK_STALE_MILLIS = 30 * 60 * 1000;
+
+    /** Each segment is checked for stale vessels whenever data time has advanced this much. */
+    private static final long EVICTION_PERIOD_MILLIS = 60 * 1000;
+
+    private final int[] blacklistedMmsis;
+    private final Segment[] segments = new Segment[NUMBER_OF_SEGMENTS];
+    private final AtomicInteger numberOfTracks = new AtomicInteger(0);
+
+    private final List<Grid> grids = new ArrayList<>();
+    private final List<TrackingEventListener[]> listeners = new ArrayList<>();
+
+    /** Per-thread buffers of cell ids and change flags, so that no arrays are allocated per packet. */
+    private final ThreadLocal<CellBuffers> cellBuffers = ThreadLocal.withInitial(() -> new CellBuffers(grids.size()));
+
+    private volatile boolean updated;
+
+    public CellTransitionTracker(int[] blacklistedMmsis) {
+        this.blacklistedMmsis = Arrays.copyOf(blacklistedMmsis, blacklistedMmsis.length);
+        Arrays.sort(this.blacklistedMmsis);
+    }
+
+    /**
+     * Track cell transitions in the given grid and deliver them to the given statistics.
+     * All grids must be added before the first update.
+     */
+    public synchronized void addGrid(Grid grid, Collection<? extends TrackingEventListener> statistics) {
+        if (updated) {
+            throw new IllegalStateException("Grids cannot be added after tracking has started.");
+        }
+        grids.add(grid);
+        listeners.add(statistics.toArray(new TrackingEventListener[statistics.size()]));
+        LOG.info("Tracking cell transitions in grid of size " + Math.round(grid.getSize()) + " meters for " + statistics.size() + " statistics.");
+    }
+
+    /**
+     * Deliver the cell transitions of a grid which has already been added to the given listener as well; the cells
+     * of the grid are still computed only once per position.
+     * Listeners must be added before the first update.
+     */
+    public synchronized void addListener(Grid grid, TrackingEventListener listener) {
+        if (updated) {
+            throw new IllegalStateException("Listeners cannot be added after tracking has started.");
+        }
+        for (int g = 0; g < grids.size(); g++) {
+            if (grids.get(g) == grid) {
+                TrackingEventListener[] listenersOfGrid = listeners.get(g);
+                TrackingEventListener[] extendedListeners = Arrays.copyOf(listenersOfGrid, listenersOfGrid.length + 1);
+                extendedListeners[listenersOfGrid.length] = listener;
+                listeners.set(g, extendedListeners);
+                return;
+            }
+        }
+        throw new IllegalArgumentException("Grid of size " + Math.round(grid.getSize()) + " meters has not been added.");
+    }
+
+    /**
+     * Update the tracker with a new AIS packet.
+     * @param packet
+     */
+    public void update(AisPacket packet) {
+        if (!updated) {
+            startTracking();
+        }
+
+        AisMessage message = packet.tryGetAisMessage();
+        if (message == null) {
+            return;
+        }
+
+        final int mmsi = message.getUserId();
+        if (mmsi <= 0 || Arrays.binarySearch(blacklistedMmsis, mmsi) >= 0) {
+            return;
+        }
+
+        final Segment segment = segments[(hash(mmsi) >>> 26) & (NUMBER_OF_SEGMENTS - 1)];
+        final long timestamp = packet.getBestTimestamp();
+        if (message instanceof AisMessage5) {
+            AisMessage5 staticMessage = (AisMessage5) message;
+            updateStatic(segment, mmsi, timestamp, staticMessage.getShipType(), staticMessage.getDimBow(), staticMessage.getDimStern());
+        } else if (message instanceof AisMessage24) {
+            AisMessage24 staticMessage = (AisMessage24) message;
+            if (staticMessage.getPartNumber() == 1) {
+                updateStatic(segment, mmsi, timestamp, staticMessage.getShipType(), staticMessage.getDimBow(), staticMessage.getDimStern());
+            }
+        } else if (message instanceof IVesselPositionMessage) {
+            IVesselPositionMessage positionMessage = (IVesselPositionMessage) message;
+            Position position = positionMessage.getValidPosition();
+            if (position == null) {
+                return;
+            }
+
+            final int n = grids.size();
+            final CellBuffers buffers = cellBuffers.get();
+            final long[] cellIds = buffers.cellIds;
+            final boolean[] changed = buffers.changed;
+            for (int g = 0; g < n; g++) {
+                cellIds[g] = grids.get(g).getCell(position).getCellId();
+            }
+            final float sog = positionMessage.getSog() < 1023 ? positionMessage.getSog() / 10f : Float.NaN;
+            final float cog = positionMessage.getCog() < 3600 ? positionMessage.getCog() / 10f : Float.NaN;
+
+            short shipType, shipLength;
+            synchronized (segment) {
+                segment.evictStaleTracksIfNecessary(timestamp);
+                int slot = segment.updateKinematics(mmsi, timestamp, sog, cog);
+                segment.updateCells(slot, cellIds, changed);
+                shipType = segment.shipTypes[slot];
+                shipLength = segment.shipLengths[slot];
+            }
+
+            for (int g = 0; g < n; g++) {
+                if (changed[g]) {
+                    fireCellIdChanged(listeners.get(g), mmsi, timestamp, cellIds[g], shipType, shipLength, sog, cog);
+                }
+            }
+        }
+    }
+
+    private static void updateStatic(Segment segment, int mmsi, long timestamp, int shipType, int dimBow, int dimStern) {
+        synchronized (segment) {
+            segment.evictStaleTracksIfNecessary(timestamp);
+            segment.updateStatic(mmsi, timestamp, (short) shipType, (short) (dimBow + dimStern));
+        }
+    }
+
+    /**
+     * @return the no. of vessels currently tracked.
+     */
+    public int getNumberOfTracks() {
+        return numberOfTracks.get();
+    }
+
+    private synchronized void startTracking() {
+        if (!updated) {
+            for (int s = 0; s < NUMBER_OF_SEGMENTS; s++) {
+                segments[s] = new Segment(INITIAL_SEGMENT_CAPACITY, grids.size(), numberOfTracks);
+            }
+            updated = true;
+        }
+    }
+
+    private static void fireCellIdChanged(TrackingEventListener[] statistics, int mmsi, long timestamp, long cellId, short shipType, short shipLength, float sog, float cog) {
+        final Integer shipTypeBoxed = shipType == UNKNOWN ? null : Integer.valueOf(shipType);
+        final Integer shipLengthBoxed = shipLength == UNKNOWN ? null : Integer.valueOf(shipLength);
+        final Float sogBoxed = Float.isNaN(sog) ? null : Float.valueOf(sog);
+        final Float cogBoxed = Float.isNaN(cog) ? null : Float.valueOf(cog);
+        for (TrackingEventListener statistic : statistics) {
+            statistic.onCellIdChanged(mmsi, timestamp, cellId, shipTypeBoxed, shipLengthBoxed, sogBoxed, cogBoxed);
+        }
+    }
+
+    private static final class CellBuffers {
+        final long[] cellIds;
+        final boolean[] changed;
+
+        CellBuffers(int numberOfGrids) {
+            cellIds = new long[numberOfGrids];
+            changed = new boolean[numberOfGrids];
+        }
+    }
+
+    static int hash(int a) {
+        // https://gist.github.com/badboy/6267743
+        a = ~a + (a << 15); // key = (key << 15) - key - 1;
+        a = a ^ (a >>> 12);
+        a = a + (a << 2);
+        a = a ^ (a >>> 4);
+        a = a * 2057; // key = (key + (key << 3)) + (key << 11);
+        a = a ^ (a >>> 16);
+        return a;
+    }
+
+    /**
+     * Open-addressing (linear probing) hash map from MMSI no. to vessel state stored in parallel primitive arrays.
+     * Not MT-safe; guarded by the monitor of the segment.
+     */
+    private static final class Segment {
+        private final int numberOfGrids;
+        private final AtomicInteger numberOfTracks;
+
+        int size;
+        long nextEviction = Long.MIN_VALUE;
+        int[] mmsis;        // 0 = empty slot
+        long[] lastReports;
+        short[] shipTypes;
+        short[] shipLengths;
+        float[] sogs;
+        float[] cogs;
+        long[] cellIds;     // numberOfGrids entries per slot
+
+        Segment(int capacity, int numberOfGrids, AtomicInteger numberOfTracks) {
+            this.numberOfGrids = numberOfGrids;
+            this.numberOfTracks = numberOfTracks;
+            allocate(capacity);
+        }
+
+        void updateStatic(int mmsi, long timestamp, short shipType, short shipLength) {
+            int slot = findOrInsert(mmsi);
+            lastReports[slot] = Math.max(lastReports[slot], timestamp);
+            shipTypes[slot] = shipType;
+            shipLengths[slot] = shipLength;
+        }
+
+        int updateKinematics(int mmsi, long timestamp, float sog, float cog) {
+            int slot = findOrInsert(mmsi);
+            lastReports[slot] = Math.max(lastReports[slot], timestamp);
+            sogs[slot] = sog;
+            cogs[slot] = cog;
+            return slot;
+        }
+
+        void updateCells(int slot, long[] newCellIds, boolean[] changed) {
+            final int offset = slot * numberOfGrids;
+            for (int g = 0; g < numberOfGrids; g++) {
+                changed[g] = cellIds[offset + g] != newCellIds[g];
+                cellIds[offset + g] = newCellIds[g];
+            }
+        }
+
+        /**
+         * Remove the vessels which have not reported for TRACK_STALE_MILLIS before the given time; at most once
+         * per EVICTION_PERIOD_MILLIS of data time.
+         */
+        void evictStaleTracksIfNecessary(long timestamp) {
+            if (timestamp < nextEviction) {
+                return;
+            }
+            if (nextEviction != Long.MIN_VALUE && hasTracksReportedBefore(timestamp - TRACK_STALE_MILLIS)) {
+                final int sizeBefore = size;
+                rehash(mmsis.length, timestamp - TRACK_STALE_MILLIS);
+                numberOfTracks.addAndGet(size - sizeBefore);
+            }
+            nextEviction = timestamp + EVICTION_PERIOD_MILLIS;
+        }
+
+        private boolean hasTracksReportedBefore(long staleBefore) {
+            for (int i = 0; i < mmsis.length; i++) {
+                if (mmsis[i] != 0 && lastReports[i] < staleBefore) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private int findOrInsert(int mmsi) {
+            int mask = mmsis.length - 1;
+            int slot = hash(mmsi) & mask;
+            while (mmsis[slot] != 0) {
+                if (mmsis[slot] == mmsi) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if (4 * (size + 1) > 3 * mmsis.length) {
+                rehash(2 * mmsis.length, Long.MIN_VALUE);
+                return findOrInsert(mmsi);
+            }
+
+            mmsis[slot] = mmsi;
+            size++;
+            numberOfTracks.incrementAndGet();
+            return slot;
+        }
+
+        /**
+         * Move all vessels, except those which last reported before staleBefore, into new arrays of the given capacity.
+         */
+        private void rehash(int capacity, long staleBefore) {
+            final int[] oldMmsis = mmsis;
+            final long[] oldLastReports = lastReports;
+            final short[] oldShipTypes = shipTypes;
+            final short[] oldShipLengths = shipLengths;
+            final float[] oldSogs = sogs;
+            final float[] oldCogs = cogs;
+            final long[] oldCellIds = cellIds;
+
+            allocate(capacity);
+            size = 0;
+
+            final int mask = mmsis.length - 1;
+            for (int i = 0; i < oldMmsis.length; i++) {
+                final int mmsi = oldMmsis[i];
+                if (mmsi != 0 && oldLastReports[i] >= staleBefore) {
+                    int slot = hash(mmsi) & mask;
+                    while (mmsis[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    mmsis[slot] = mmsi;
+                    size++;
+                    lastReports[slot] = oldLastReports[i];
+                    shipTypes[slot] = oldShipTypes[i];
+                    shipLengths[slot] = oldShipLengths[i];
+                    sogs[slot] = oldSogs[i];
+                    cogs[slot] = oldCogs[i];
+                    System.arraycopy(oldCellIds, i * numberOfGrids, cellIds, slot * numberOfGrids, numberOfGrids);
+                }
+            }
+        }
+
+        private void allocate(int capacity) {
+            mmsis = new int[capacity];
+            lastReports = new long[capacity];
+            shipTypes = new short[capacity];
+            shipLengths = new short[capacity];
+            sogs = new float[capacity];
+            cogs = new float[capacity];
+            cellIds = new long[capacity * numberOfGrids];
+            Arrays.fill(lastReports, Long.MIN_VALUE);
+            Arrays.fill(shipTypes, UNKNOWN);
+            Arrays.fill(shipLengths, UNKNOWN);
+            Arrays.fill(sogs, Float.NaN);
+            Arrays.fill(cogs, Float.NaN);
+            Arrays.fill(cellIds, NO_CELL);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat;
+
+import com.beust.jcommander.IParameterValidator;
+import com.beust.jcommander.ParameterException;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GridSizesValidator implements IParameterValidator {
+    /**
+     * Validate a comma-separated list of grid sizes; e.g. "100,200,500".
+     *
+     * @param name
+     * @param value
+     * @throws ParameterException
+     */
+    @Override
+    public void validate(String name, String value) throws ParameterException {
+        List<Integer> gridSizes = parse(value);
+        if (gridSizes.isEmpty()) {
+            throw new ParameterException("At least one grid size required for " + name + ".");
+        }
+        for (Integer gridSize : gridSizes) {
+            if (gridSize <= 0) {
+                throw new ParameterException("Grid size must be positive; not " + gridSize + ".");
+            }
+        }
+        if (gridSizes.stream().distinct().count() != gridSizes.size()) {
+            throw new ParameterException("Grid sizes must be unique: " + value + ".");
+        }
+    }
+
+    static List<Integer> parse(String value) throws ParameterException {
+        List<Integer> gridSizes = new ArrayList<>();
+        for (String gridSize : value.split(",")) {
+            if (gridSize.trim().length() > 0) {
+                try {
+                    gridSizes.add(Integer.valueOf(gridSize.trim()));
+                } catch (NumberFormatException e) {
+                    throw new ParameterException("Grid size \"" + gridSize.trim() + "\" is not an integer.");
+                }
+            }
+        }
+        return gridSizes;
+    }
+}
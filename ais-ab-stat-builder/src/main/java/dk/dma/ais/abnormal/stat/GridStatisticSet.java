@@ -0,0 +1,134 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.Subscribe;
+import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
+import dk.dma.ais.abnormal.stat.db.data.DatasetMetaData;
+import dk.dma.ais.abnormal.stat.statistics.CourseOverGroundStatistic;
+import dk.dma.ais.abnormal.stat.statistics.ShipTypeAndSizeStatistic;
+import dk.dma.ais.abnormal.stat.statistics.SpeedOverGroundStatistic;
+import dk.dma.ais.abnormal.stat.statistics.TrackingEventListener;
+import dk.dma.ais.tracker.eventEmittingTracker.EventEmittingTracker;
+import dk.dma.ais.tracker.eventEmittingTracker.Track;
+import dk.dma.ais.tracker.eventEmittingTracker.events.PositionChangedEvent;
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.enav.model.geometry.grid.Grid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+
+/**
+ * A set of statistics built on a grid which is different from the grid of the tracker.
+ *
+ * The tracker only emits cell change events for its own grid. Instances of this class listen to position changes
+ * of the tracker instead, and detect cell changes in their own grid. In this way statistics can be built for several
+ * grid resolutions in a single pass over the input data sharing the same reader, decoding and tracking.
+ *
+ * The counters of the statistics are registered with the grid size appended to the statistic name (e.g.
+ * ShipTypeAndSizeStatistic-grid500), so that they are not added to those of the tracker's grid.
+ */
+public class GridStatisticSet {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GridStatisticSet.class);
+
+    private final Grid grid;
+    private final StatisticDataRepository statisticsRepository;
+    private final EventEmittingTracker trackingService;
+    private final Set<TrackingEventListener> statistics;
+
+    /** Name of track property holding last known cell id in this grid */
+    private final String cellIdProperty;
+
+    private boolean started;
+
+    public GridStatisticSet(Grid grid, StatisticDataRepository statisticsRepository, AppStatisticsService appStatisticsService, EventEmittingTracker trackingService) {
+        this.grid = grid;
+        this.statisticsRepository = statisticsRepository;
+        this.trackingService = trackingService;
+        this.cellIdProperty = Track.CELL_ID + "-" + Math.round(grid.getSize());
+
+        String counterGroupSuffix = "-grid" + Math.round(grid.getSize());
+        this.statistics = new ImmutableSet.Builder<TrackingEventListener>()
+            .add(new ShipTypeAndSizeStatistic(appStatisticsService, trackingService, statisticsRepository, ShipTypeAndSizeStatistic.class.getSimpleName() + counterGroupSuffix))
+            .add(new CourseOverGroundStatistic(appStatisticsService, trackingService, statisticsRepository, CourseOverGroundStatistic.class.getSimpleName() + counterGroupSuffix))
+            .add(new SpeedOverGroundStatistic(appStatisticsService, trackingService, statisticsRepository, SpeedOverGroundStatistic.class.getSimpleName() + counterGroupSuffix))
+            .build();
+    }
+
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Write dataset metadata and start listening to position changes from the tracker.
+     * @param downSampling the down sampling period used for the dataset.
+     */
+    public void start(Integer downSampling) {
+        if (!started) {
+            statisticsRepository.putMetaData(new DatasetMetaData(grid.getResolution(), downSampling));
+            trackingService.registerSubscriber(this);
+            started = true;
+            LOG.info("Started building statistics for grid size " + Math.round(grid.getSize()) + " meters.");
+        }
+    }
+
+    /**
+     * Write dataset metadata and let the statistics be fed directly by the given lean tracker.
+     * @param downSampling the down sampling period used for the dataset.
+     * @param cellTransitionTracker the lean tracker.
+     */
+    public void start(Integer downSampling, CellTransitionTracker cellTransitionTracker) {
+        if (!started) {
+            statisticsRepository.putMetaData(new DatasetMetaData(grid.getResolution(), downSampling));
+            cellTransitionTracker.addGrid(grid, statistics);
+            started = true;
+            LOG.info("Started building statistics for grid size " + Math.round(grid.getSize()) + " meters.");
+        }
+    }
+
+    public void close() {
+        statisticsRepository.close();
+    }
+
+    @AllowConcurrentEvents
+    @Subscribe
+    public void onPositionChanged(PositionChangedEvent event) {
+        Track track = event.getTrack();
+        Position position = track.getPosition();
+        if (position == null) {
+            return;
+        }
+
+        Long cellId = grid.getCell(position).getCellId();
+        Long previousCellId = (Long) track.getProperty(cellIdProperty);
+        if (!cellId.equals(previousCellId)) {
+            track.setProperty(cellIdProperty, cellId);
+            Integer shipType = track.getShipType();
+            Integer shipLength = track.getVesselLength();
+            Float sog = track.getSpeedOverGround();
+            Float cog = track.getCourseOverGround();
+            for (TrackingEventListener statistic : statistics) {
+                statistic.onCellIdChanged(track.getMmsi(), track.getTimeOfLastPositionReport(), cellId, shipType, shipLength, sog, cog);
+            }
+        }
+    }
+
+}
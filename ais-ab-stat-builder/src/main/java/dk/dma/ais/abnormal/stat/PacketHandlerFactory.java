@@ -16,6 +16,8 @@
 
 package dk.dma.ais.abnormal.stat;
 
+import com.google.inject.assistedinject.Assisted;
+
 interface PacketHandlerFactory {
-    PacketHandler create(boolean multiThreaded);
+    PacketHandler create(@Assisted("multiThreaded") boolean multiThreaded, @Assisted("leanTracker") boolean leanTracker);
 }
@@ -31,6 +31,7 @@ import dk.dma.ais.message.IPositionMessage;
 import dk.dma.ais.packet.AisPacket;
 import dk.dma.ais.tracker.eventEmittingTracker.EventEmittingTracker;
 import dk.dma.ais.tracker.eventEmittingTracker.EventEmittingTrackerImpl;
+import dk.dma.enav.model.geometry.grid.Grid;
 import eu.javaspecialists.tjsn.concurrency.StripedRunnable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,6 +51,8 @@ public class PacketHandlerImpl implements PacketHandler {
     private ReplayDownSampleFilter downSampleFilter;
     private StripedExecutorService workerThreads;
     private final boolean multiThreaded;
+    private final boolean leanTracker;
+    private CellTransitionTracker cellTransitionTracker;
 
     private volatile boolean cancel;
 
@@ -58,15 +61,16 @@ public class PacketHandlerImpl implements PacketHandler {
     private static final int NUMBER_OF_CORES = Runtime.getRuntime().availableProcessors();
 
     @Inject
-    public PacketHandlerImpl(AppStatisticsService statisticsService, EventEmittingTracker trackingService, ReplayDownSampleFilter downSampleFilter, StripedExecutorService executorService, @Assisted boolean multiThreaded) {
+    public PacketHandlerImpl(AppStatisticsService statisticsService, EventEmittingTracker trackingService, ReplayDownSampleFilter downSampleFilter, StripedExecutorService executorService, @Assisted("multiThreaded") boolean multiThreaded, @Assisted("leanTracker") boolean leanTracker) {
         LOG.debug("Detected " + NUMBER_OF_CORES + " CPU cores.");
-        LOG.info("Creating " + (multiThreaded ? "multi threaded ":"single threaded ")+ "AIS packet handler.");
+        LOG.info("Creating " + (multiThreaded ? "multi threaded ":"single threaded ")+ "AIS packet handler" + (leanTracker ? " with lean tracker." : "."));
 
         this.statisticsService = statisticsService;
         this.trackingService = trackingService;
         this.downSampleFilter = downSampleFilter;
         this.workerThreads = executorService;
         this.multiThreaded = multiThreaded;
+        this.leanTracker = leanTracker;
 
         initStatistics();
     }
@@ -129,9 +133,14 @@ public class PacketHandlerImpl implements PacketHandler {
     }
 
     private void doWork(AisPacket p) {
-        trackingService.update(p);
-        if (trackingService instanceof EventEmittingTrackerImpl) {
-            statisticsService.setTrackCount(((EventEmittingTrackerImpl) trackingService).getNumberOfTracks());
+        if (leanTracker) {
+            cellTransitionTracker.update(p);
+            statisticsService.setTrackCount(cellTransitionTracker.getNumberOfTracks());
+        } else {
+            trackingService.update(p);
+            if (trackingService instanceof EventEmittingTrackerImpl) {
+                statisticsService.setTrackCount(((EventEmittingTrackerImpl) trackingService).getNumberOfTracks());
+            }
         }
     }
 
@@ -155,9 +164,15 @@ public class PacketHandlerImpl implements PacketHandler {
             .add(injector.getInstance(SpeedOverGroundStatistic.class))
             .build();
 
-        Iterator<TrackingEventListener> statisticIterator = this.statistics.iterator();
-        while (statisticIterator.hasNext()) {
-            statisticIterator.next().start();
+        if (leanTracker) {
+            // Statistics are fed directly by the lean tracker; not through the event bus of the full tracker
+            this.cellTransitionTracker = injector.getInstance(CellTransitionTracker.class);
+            this.cellTransitionTracker.addGrid(injector.getInstance(Grid.class), this.statistics);
+        } else {
+            Iterator<TrackingEventListener> statisticIterator = this.statistics.iterator();
+            while (statisticIterator.hasNext()) {
+                statisticIterator.next().start();
+            }
         }
     }
 
@@ -0,0 +1,209 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat;
+
+import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
+import dk.dma.ais.abnormal.stat.db.data.MergeableStatisticData;
+import dk.dma.ais.abnormal.stat.db.data.StatisticData;
+import dk.dma.ais.abnormal.stat.db.mapdb.StatisticDataRepositoryMapDB;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Coordinator of a statistics build which is split over several local worker processes.
+ *
+ * The input files are sorted by name (i.e. by time for the usual AIS file naming) and split into time-contiguous
+ * partitions - one per worker. Each worker JVM runs AbnormalStatBuilderApp on its own partition, but first feeds a
+ * number of warm-up files preceding the partition to the tracker with no statistics listening. In this way tracks
+ * are established - with their current cell - when the partition starts, so that a vessel which crosses a partition
+ * boundary is not counted again in the cell it was already in. When all workers have completed, their output files
+ * are merged into the final statistics file and deleted.
+ *
+ * The merged statistics of all partitions typically do not fit in the heap, so the merge should go into a
+ * StatisticDataRepositorySpillToDisk. Unless -spillcells is given, it spills every DEFAULT_MERGE_SPILL_CELLS cells.
+ */
+public class PartitionedBuildCoordinator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PartitionedBuildCoordinator.class);
+
+    /** Options which are handled by the coordinator and must not be passed on to the workers */
+    private static final List<String> COORDINATOR_OPTIONS = Arrays.asList("-workers", "-output", "-metricsport");
+
+    /** Max. no. of cells held in memory while merging, if not given by -spillcells */
+    static final long DEFAULT_MERGE_SPILL_CELLS = 100000L;
+
+    private final String[] args;
+    private final UserArguments userArguments;
+
+    public PartitionedBuildCoordinator(String[] args, UserArguments userArguments) {
+        this.args = args;
+        this.userArguments = userArguments;
+    }
+
+    /**
+     * Launch the workers, wait for them to complete and merge their output into the given repository. The
+     * repository is closed and the output files of the workers are deleted - also if a worker fails.
+     */
+    public void run(StatisticDataRepository statisticsRepository) throws IOException, InterruptedException {
+        final int numberOfWorkers = userArguments.getWorkers();
+        LOG.info("Starting " + numberOfWorkers + " worker processes.");
+
+        List<Process> workers = new ArrayList<>(numberOfWorkers);
+        List<String> partFilenames = new ArrayList<>(numberOfWorkers);
+        try {
+            try {
+                for (int partition = 0; partition < numberOfWorkers; partition++) {
+                    String partFilename = partFilenameFor(userArguments.getOutputFilename(), partition);
+                    partFilenames.add(partFilename);
+                    workers.add(new ProcessBuilder(workerCommand(partition, numberOfWorkers, partFilename)).inheritIO().start());
+                }
+
+                for (int partition = 0; partition < numberOfWorkers; partition++) {
+                    int exitCode = workers.get(partition).waitFor();
+                    if (exitCode != 0) {
+                        throw new IOException("Worker for partition " + partition + " failed with exit code " + exitCode + ".");
+                    }
+                    LOG.info("Worker for partition " + partition + " completed.");
+                }
+            } finally {
+                workers.forEach(Process::destroy);
+            }
+
+            merge(partFilenames, statisticsRepository);
+        } finally {
+            statisticsRepository.close();
+            partFilenames.forEach(PartitionedBuildCoordinator::deleteStatisticsFile);
+        }
+        LOG.info("Partitioned build completed.");
+    }
+
+    /**
+     * Merge the statistic data of the given statistics files into the given repository.
+     */
+    static void merge(List<String> partFilenames, StatisticDataRepository statisticsRepository) {
+        boolean metaDataCopied = false;
+        for (String partFilename : partFilenames) {
+            LOG.info("Merging " + partFilename + ".");
+            StatisticDataRepository partRepository;
+            try {
+                partRepository = new StatisticDataRepositoryMapDB(partFilename);
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to open " + partFilename, e);
+            }
+            partRepository.openForRead();
+            try {
+                if (!metaDataCopied && partRepository.getMetaData() != null) {
+                    statisticsRepository.putMetaData(partRepository.getMetaData());
+                    metaDataCopied = true;
+                }
+                for (String statisticName : partRepository.getStatisticNames()) {
+                    for (Long cellId : partRepository.getCellsWithData(statisticName)) {
+                        StatisticData partData = partRepository.getStatisticData(statisticName, cellId);
+                        StatisticData data = statisticsRepository.getStatisticData(statisticName, cellId);
+                        if (data instanceof MergeableStatisticData) {
+                            ((MergeableStatisticData) data).merge(partData);
+                        } else {
+                            data = partData;
+                        }
+                        statisticsRepository.putStatisticData(statisticName, cellId, data);
+                    }
+                }
+            } finally {
+                partRepository.close();
+            }
+        }
+    }
+
+    /**
+     * @return the index of the first file of the given partition when numberOfFiles files are split into
+     * numberOfPartitions contiguous partitions of (almost) equal size.
+     */
+    static int partitionStart(int numberOfFiles, int partition, int numberOfPartitions) {
+        return (int) ((long) numberOfFiles * partition / numberOfPartitions);
+    }
+
+    /**
+     * @return the files of the given partition.
+     */
+    static List<Path> partitionFiles(List<Path> files, int partition, int numberOfPartitions) {
+        return files.subList(partitionStart(files.size(), partition, numberOfPartitions), partitionStart(files.size(), partition + 1, numberOfPartitions));
+    }
+
+    /**
+     * @return the warm-up files preceding the given partition.
+     */
+    static List<Path> warmUpFiles(List<Path> files, int partition, int numberOfPartitions, int numberOfWarmUpFiles) {
+        int start = partitionStart(files.size(), partition, numberOfPartitions);
+        return files.subList(Math.max(0, start - numberOfWarmUpFiles), start);
+    }
+
+    static String partFilenameFor(String outputFilename, int partition) {
+        String filenameBase = outputFilename.endsWith(".statistics") ? outputFilename.substring(0, outputFilename.length() - ".statistics".length()) : outputFilename;
+        return filenameBase + "-part" + partition + ".statistics";
+    }
+
+    /**
+     * Build the command line for a worker: The same JVM and class path as this process, and the same arguments
+     * except for the options handled by the coordinator.
+     */
+    List<String> workerCommand(int partition, int numberOfPartitions, String partFilename) {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        ManagementFactory.getRuntimeMXBean().getInputArguments().stream()
+            .filter(arg -> arg.startsWith("-X") || arg.startsWith("-D"))
+            .forEach(command::add);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(AbnormalStatBuilderApp.class.getName());
+
+        for (int i = 0; i < args.length; i++) {
+            if (COORDINATOR_OPTIONS.contains(args[i])) {
+                i++; // Skip option value
+            } else {
+                command.add(args[i]);
+            }
+        }
+        command.addAll(Arrays.asList(
+            "-output", partFilename,
+            "-partition", String.valueOf(partition),
+            "-partitions", String.valueOf(numberOfPartitions)
+        ));
+        if (userArguments.getMetricsPort() > 0) {
+            command.addAll(Arrays.asList("-metricsport", String.valueOf(userArguments.getMetricsPort() + 1 + partition)));
+        }
+
+        LOG.debug("Worker command: " + command);
+        return command;
+    }
+
+    private static void deleteStatisticsFile(String filename) {
+        for (File file : new File[] {new File(filename), new File(filename + ".p")}) {
+            if (file.exists() && !file.delete()) {
+                LOG.warn("Could not delete " + file.getAbsolutePath());
+            }
+        }
+    }
+
+}
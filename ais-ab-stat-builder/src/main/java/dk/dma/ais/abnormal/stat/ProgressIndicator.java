@@ -33,6 +33,7 @@ public class ProgressIndicator {
     private static final Logger LOG = LoggerFactory.getLogger(ProgressIndicator.class);
 
     private final AisReader reader;
+    private ReadAheadDirectoryReader readAheadReader;
     private final ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(1);
     private long startTime;
     private static final int PROGRESS_INDICATION_PERIOD_MINUTES = 10;
@@ -43,9 +44,16 @@ public class ProgressIndicator {
         LOG.info("ProgressIndicator created (" + this + ").");
     }
 
+    /**
+     * Report progress of the given read ahead reader instead of the injected AisReader.
+     */
+    public void setReadAheadReader(ReadAheadDirectoryReader readAheadReader) {
+        this.readAheadReader = readAheadReader;
+    }
+
     public void init() {
         LOG.debug("reader: " + reader);
-        if (reader instanceof AisDirectoryReader) {
+        if (readAheadReader == null && reader instanceof AisDirectoryReader) {
             LOG.info("Scanning input files...");
             ((AisDirectoryReader) reader).getEstimatedFractionOfPacketsRead();
             LOG.debug("Scanning input files... done.");
@@ -64,8 +72,8 @@ public class ProgressIndicator {
             }
 
             private void showProgress() {
-                if (reader instanceof AisDirectoryReader) {
-                    final float fractionCompleted = ((AisDirectoryReader) reader).getEstimatedFractionOfPacketsRead();
+                if (readAheadReader != null || reader instanceof AisDirectoryReader) {
+                    final float fractionCompleted = readAheadReader != null ? readAheadReader.getEstimatedFractionOfPacketsRead() : ((AisDirectoryReader) reader).getEstimatedFractionOfPacketsRead();
                     final NumberFormat pctFormatter = NumberFormat.getPercentInstance();
                     final String pctComplete = pctFormatter.format(fractionCompleted);
                     final long elapsedMillis = System.currentTimeMillis() - startTime;
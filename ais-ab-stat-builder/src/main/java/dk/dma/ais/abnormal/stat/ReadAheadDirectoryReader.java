@@ -0,0 +1,224 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat;
+
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.reader.AisReader;
+import dk.dma.ais.reader.AisReaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reader of AIS files in a directory which decompresses, parses and decodes the next input files on a pool
+ * of worker threads while the packets of the current file are being delivered to the registered packet handlers.
+ *
+ * Files are read in the same (file name) order as by AisDirectoryReader, and each file is delivered as one
+ * block of packets in that order, so the time order of the packets is preserved. At most readAhead + 1 blocks
+ * are held in memory at any time. As every packet of a block is kept with its decoded message, a block takes
+ * several times the uncompressed size of its file on the heap, so readAhead must be chosen with the size of the
+ * input files in mind.
+ *
+ * If an input file cannot be read, the reader stops and join fails with the cause.
+ */
+public class ReadAheadDirectoryReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReadAheadDirectoryReader.class);
+
+    private final List<Path> files;
+    private final long totalBytes;
+    private final AtomicLong bytesDelivered = new AtomicLong(0);
+
+    private final int readAhead;
+    private final ExecutorService decoderThreads;
+
+    private final List<Consumer<AisPacket>> packetHandlers = new CopyOnWriteArrayList<>();
+
+    private volatile boolean stopped;
+    private volatile Throwable failure;
+    private Thread readerThread;
+
+    public ReadAheadDirectoryReader(String directory, String filenamePattern, boolean recursive, int readAhead) throws IOException {
+        this(findFiles(Paths.get(directory), filenamePattern, recursive), readAhead);
+    }
+
+    /**
+     * Create a reader of the given files which are read in the given order.
+     */
+    public ReadAheadDirectoryReader(List<Path> files, int readAhead) {
+        if (readAhead < 1) {
+            throw new IllegalArgumentException("readAhead must be >= 1; not " + readAhead + ".");
+        }
+
+        this.files = new ArrayList<>(files);
+        this.totalBytes = files.stream().mapToLong(file -> file.toFile().length()).sum();
+        this.readAhead = readAhead;
+        this.decoderThreads = Executors.newFixedThreadPool(readAhead);
+
+        LOG.info("Created ReadAheadDirectoryReader for " + files.size() + " files (" + totalBytes + " bytes) with read ahead of " + readAhead + " files.");
+    }
+
+    public void registerPacketHandler(Consumer<AisPacket> packetHandler) {
+        packetHandlers.add(packetHandler);
+    }
+
+    /**
+     * Start reading the input files on a separate thread.
+     */
+    public void start() {
+        readerThread = new Thread(this::run, ReadAheadDirectoryReader.class.getSimpleName());
+        readerThread.start();
+    }
+
+    /**
+     * Wait for all input files to be read and delivered.
+     * @throws IOException if an input file could not be read or a packet handler failed, so that not all
+     * packets were delivered.
+     */
+    public void join() throws InterruptedException, IOException {
+        if (readerThread != null) {
+            readerThread.join();
+        }
+        if (failure != null) {
+            throw new IOException("Failed to read input files: " + failure.getMessage(), failure);
+        }
+    }
+
+    public void stopReader() {
+        stopped = true;
+        if (readerThread != null) {
+            readerThread.interrupt();
+        }
+    }
+
+    /**
+     * @return the fraction (0.0 - 1.0) of input bytes whose packets have been delivered to the packet handlers.
+     */
+    public float getEstimatedFractionOfPacketsRead() {
+        return totalBytes == 0 ? 1.0f : (float) bytesDelivered.get() / (float) totalBytes;
+    }
+
+    private void run() {
+        final Deque<Future<List<AisPacket>>> blocks = new ArrayDeque<>(readAhead + 1);
+        final Deque<Path> blockFiles = new ArrayDeque<>(readAhead + 1);
+        final Iterator<Path> pendingFiles = files.iterator();
+
+        try {
+            while (!stopped && (pendingFiles.hasNext() || !blocks.isEmpty())) {
+                while (pendingFiles.hasNext() && blocks.size() <= readAhead) {
+                    final Path file = pendingFiles.next();
+                    blocks.addLast(decoderThreads.submit(() -> readBlock(file)));
+                    blockFiles.addLast(file);
+                }
+
+                List<AisPacket> block = blocks.removeFirst().get();
+                Path blockFile = blockFiles.removeFirst();
+                for (AisPacket packet : block) {
+                    if (stopped) {
+                        break;
+                    }
+                    for (Consumer<AisPacket> packetHandler : packetHandlers) {
+                        packetHandler.accept(packet);
+                    }
+                }
+                bytesDelivered.addAndGet(blockFile.toFile().length());
+            }
+        } catch (InterruptedException e) {
+            LOG.info("Reader interrupted.");
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            failure = e.getCause();
+            LOG.error("Failed to read input file: " + failure.getMessage(), failure);
+        } catch (Throwable t) {
+            failure = t;
+            LOG.error("Failed to deliver packet: " + t.getMessage(), t);
+        } finally {
+            blocks.forEach(block -> block.cancel(true));
+            decoderThreads.shutdownNow();
+            try {
+                decoderThreads.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                LOG.error(e.getMessage(), e);
+            }
+        }
+
+        LOG.info("Reader completed.");
+    }
+
+    /**
+     * Decompress, parse and decode all packets of a single input file.
+     * Runs on one of the decoder threads.
+     */
+    private List<AisPacket> readBlock(Path file) throws IOException {
+        LOG.debug("Reading " + file);
+
+        final List<AisPacket> block = new ArrayList<>();
+        AisReader fileReader = AisReaders.createReaderFromFile(file.toString());
+        fileReader.registerPacketHandler(packet -> {
+            packet.tryGetAisMessage(); // Decoded message is cached in packet
+            block.add(packet);
+        });
+        fileReader.run();
+
+        LOG.debug("Read " + block.size() + " packets from " + file);
+
+        return block;
+    }
+
+    static List<Path> findFiles(Path directory, String filenamePattern, boolean recursive) throws IOException {
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + filenamePattern);
+
+        List<Path> files;
+        try (Stream<Path> paths = recursive ? Files.walk(directory) : Files.list(directory)) {
+            files = paths
+                .filter(path -> Files.isRegularFile(path))
+                .filter(path -> matcher.matches(path.getFileName()))
+                .collect(Collectors.toList());
+        }
+
+        Collections.sort(files, (f1, f2) -> f1.getFileName().toString().compareTo(f2.getFileName().toString()));
+
+        if (files.isEmpty()) {
+            LOG.warn("No files matching '" + filenamePattern + "' found in " + directory.toAbsolutePath() + File.separator);
+        }
+
+        return files;
+    }
+}
@@ -18,6 +18,8 @@ package dk.dma.ais.abnormal.stat;
 
 import com.beust.jcommander.Parameter;
 
+import java.util.List;
+
 @SuppressWarnings("FieldCanBeLocal")
 public class UserArguments {
 
@@ -27,24 +29,54 @@ public class UserArguments {
     @Parameter(names = "-mt", description = "Run multi-threaded.")
     private boolean multiThreaded;
 
+    @Parameter(names = "-leantracker", description = "Use lean cell transition tracker instead of full tracker (less memory per vessel; no position interpolation).")
+    private boolean leanTracker;
+
+    @Parameter(names = "-readahead", description = "No. of input files to decompress and parse in parallel ahead of the file being processed (0 = read files sequentially). Up to readahead + 1 decoded files are held in memory; each takes several times its uncompressed size.")
+    private Integer readAhead = 0;
+
+    @Parameter(names = "-workers", description = "No. of local worker processes to split the input files between. Their results are merged into the output file.")
+    private Integer workers = 1;
+
+    @Parameter(names = "-warmup", description = "No. of input files preceding each worker's partition to track without building statistics.")
+    private Integer warmUpFiles = 1;
+
+    @Parameter(names = "-partition", description = "Index of partition to process (set by coordinator).", hidden = true)
+    private Integer partition = 0;
+
+    @Parameter(names = "-partitions", description = "Total no. of partitions (set by coordinator).", hidden = true)
+    private Integer partitions = 1;
+
     @Parameter(names = "-inputDirectory", description = "Directory to scan for files to read")
     private String inputDirectory = ".";
 
     @Parameter(names = "-r", description = "Recursive directory scan")
     private boolean recursive;
 
-    @Parameter(names = "-input", description = "Glob pattern for files to read. '.zip' and '.gz' files are decompressed automatically.", required = true)
+    @Parameter(names = "-input", description = "Glob pattern for files to read. '.zip' and '.gz' files are decompressed automatically. Required unless -aggregate is given.")
     private String inputFilenamePattern;
 
     @Parameter(names = "-output", description = "Name of output file.", required = true)
     private String outputFilename;
 
-    @Parameter(names = "-gridsize", description = "Grid resolution (approx. cell size in meters).")
-    private Integer gridSize = 200;
+    @Parameter(names = "-gridsize", description = "Grid resolution (approx. cell size in meters). A comma-separated list (e.g. 100,200,500) builds one output file per grid size in a single pass.", validateWith = GridSizesValidator.class)
+    private String gridSizes = "200";
+
+    @Parameter(names = "-spillcells", description = "Max. no. of cells with statistic data to hold in memory before spilling to disk (0 = hold all data in memory until done; with -workers the merge spills every 100000 cells).")
+    private Long spillCells = 0L;
+
+    @Parameter(names = "-transitionlog", description = "Also write all cell transitions in the (first) grid to this binary log, so that statistics can be rebuilt using -aggregate.")
+    private String transitionLogFilename;
+
+    @Parameter(names = "-aggregate", description = "Build statistics from this cell transition log instead of reading AIS input.")
+    private String aggregateFilename;
 
     @Parameter(names = "-downsampling", description = "Downsampling period (in secs).")
     private Integer downSampling = 60;
 
+    @Parameter(names = "-metricsport", description = "Serve metrics in Prometheus format on http://<host>:<port>/metrics (0 = disabled). Workers use the following ports.")
+    private Integer metricsPort = 0;
+
     public void setHelp(boolean help) {
         this.help = help;
     }
@@ -57,8 +89,36 @@ public class UserArguments {
         return multiThreaded;
     }
 
+    public boolean isLeanTracker() {
+        return leanTracker;
+    }
+
+    public Integer getReadAhead() {
+        return readAhead;
+    }
+
     public Integer getGridSize() {
-        return gridSize;
+        return getGridSizes().get(0);
+    }
+
+    public List<Integer> getGridSizes() {
+        return GridSizesValidator.parse(gridSizes);
+    }
+
+    public Integer getWorkers() {
+        return workers;
+    }
+
+    public Integer getWarmUpFiles() {
+        return warmUpFiles;
+    }
+
+    public Integer getPartition() {
+        return partition;
+    }
+
+    public Integer getPartitions() {
+        return partitions;
     }
 
     public String getInputDirectory() {
@@ -77,7 +137,23 @@ public class UserArguments {
         return outputFilename;
     }
 
+    public Long getSpillCells() {
+        return spillCells;
+    }
+
+    public String getTransitionLogFilename() {
+        return transitionLogFilename;
+    }
+
+    public String getAggregateFilename() {
+        return aggregateFilename;
+    }
+
     public Integer getDownSampling() {
         return downSampling;
     }
+
+    public Integer getMetricsPort() {
+        return metricsPort;
+    }
 }
@@ -19,6 +19,7 @@ package dk.dma.ais.abnormal.stat.statistics;
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 import com.google.inject.Inject;
+import dk.dma.ais.abnormal.application.statistics.Counter;
 import dk.dma.ais.abnormal.stat.AppStatisticsService;
 import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
 import dk.dma.ais.abnormal.stat.db.data.CourseOverGroundStatisticData;
@@ -40,19 +41,39 @@ public class CourseOverGroundStatistic implements TrackingEventListener {
      */
     private static final transient Logger LOG = LoggerFactory.getLogger(CourseOverGroundStatistic.class);
 
-    private final transient AppStatisticsService appStatisticsService;
     private final transient StatisticDataRepository statisticsRepository;
     private final transient EventEmittingTracker trackingService;
 
+    private final transient Counter eventsProcessed;
+    private final transient Counter eventsProcessedOk;
+    private final transient Counter unknownMmsi;
+    private final transient Counter unknownShipType;
+    private final transient Counter unknownShipLength;
+    private final transient Counter unknownCourseOverGround;
+
     private final transient AtomicBoolean started = new AtomicBoolean(false);
 
     static final String STATISTIC_NAME = CourseOverGroundStatistic.class.getSimpleName();
 
     @Inject
     public CourseOverGroundStatistic(AppStatisticsService appStatisticsService, EventEmittingTracker trackingService, StatisticDataRepository statisticsRepository) {
-        this.appStatisticsService = appStatisticsService;
+        this(appStatisticsService, trackingService, statisticsRepository, STATISTIC_NAME);
+    }
+
+    /**
+     * @param counterGroup name under which the counters of this statistic are registered; statistics built
+     *                     for different grids must use different names.
+     */
+    public CourseOverGroundStatistic(AppStatisticsService appStatisticsService, EventEmittingTracker trackingService, StatisticDataRepository statisticsRepository, String counterGroup) {
         this.trackingService = trackingService;
         this.statisticsRepository = statisticsRepository;
+
+        this.eventsProcessed = appStatisticsService.getStatisticCounter(counterGroup, "Events processed");
+        this.eventsProcessedOk = appStatisticsService.getStatisticCounter(counterGroup, "Events processed ok");
+        this.unknownMmsi = appStatisticsService.getStatisticCounter(counterGroup, "Unknown mmsi");
+        this.unknownShipType = appStatisticsService.getStatisticCounter(counterGroup, "Unknown ship type");
+        this.unknownShipLength = appStatisticsService.getStatisticCounter(counterGroup, "Unknown ship length");
+        this.unknownCourseOverGround = appStatisticsService.getStatisticCounter(counterGroup, "Unknown course over ground");
     }
 
     /**
@@ -71,17 +92,15 @@ public class CourseOverGroundStatistic implements TrackingEventListener {
     @AllowConcurrentEvents
     @Subscribe
     public void onCellIdChanged(CellChangedEvent event) {
-        appStatisticsService.incStatisticStatistics(STATISTIC_NAME, "Events processed");
-
         Track track = event.getTrack();
-        Float sog = track.getSpeedOverGround();
+        onCellIdChanged(track.getMmsi(), track.getTimeOfLastPositionReport(), (Long) track.getProperty(Track.CELL_ID), track.getShipType(), track.getVesselLength(), track.getSpeedOverGround(), track.getCourseOverGround());
+    }
 
-        if (sog != null && sog >= 2.0) {
-            Long cellId = (Long) track.getProperty(Track.CELL_ID);
-            Integer shipType = track.getShipType();
-            Integer shipLength = track.getVesselLength();
-            Float cog = track.getCourseOverGround();
+    @Override
+    public void onCellIdChanged(int mmsi, long timestamp, Long cellId, Integer shipType, Integer shipLength, Float sog, Float cog) {
+        eventsProcessed.increment();
 
+        if (sog != null && sog >= 2.0) {
             if (isInputValid(cellId, shipType, shipLength, cog)) {
                 short shipTypeBucket = Categorizer.mapShipTypeToCategory(shipType);
                 short shipSizeBucket = Categorizer.mapShipLengthToCategory(shipLength);
@@ -89,7 +108,7 @@ public class CourseOverGroundStatistic implements TrackingEventListener {
 
                 incrementStatisticStatistics(cellId, shipTypeBucket, shipSizeBucket, cogBucket);
 
-                appStatisticsService.incStatisticStatistics(this.getClass().getSimpleName(), "Events processed ok");
+                eventsProcessedOk.increment();
             }
         }
     }
@@ -98,22 +117,22 @@ public class CourseOverGroundStatistic implements TrackingEventListener {
         boolean valid = true;
 
         if (cellId == null) {
-            appStatisticsService.incStatisticStatistics(STATISTIC_NAME, "Unknown mmsi");
+            unknownMmsi.increment();
             valid = false;
         }
 
         if (shipType == null) {
-            appStatisticsService.incStatisticStatistics(STATISTIC_NAME, "Unknown ship type");
+            unknownShipType.increment();
             valid = false;
         }
 
         if (shipLength == null) {
-            appStatisticsService.incStatisticStatistics(STATISTIC_NAME, "Unknown ship length");
+            unknownShipLength.increment();
             valid = false;
         }
 
         if (cog == null) {
-            appStatisticsService.incStatisticStatistics(STATISTIC_NAME, "Unknown course over ground");
+            unknownCourseOverGround.increment();
             valid = false;
         }
 
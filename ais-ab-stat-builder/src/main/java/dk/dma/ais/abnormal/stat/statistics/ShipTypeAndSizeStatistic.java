@@ -19,6 +19,7 @@ package dk.dma.ais.abnormal.stat.statistics;
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 import com.google.inject.Inject;
+import dk.dma.ais.abnormal.application.statistics.Counter;
 import dk.dma.ais.abnormal.stat.AppStatisticsService;
 import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
 import dk.dma.ais.abnormal.stat.db.data.ShipTypeAndSizeStatisticData;
@@ -35,19 +36,37 @@ public class ShipTypeAndSizeStatistic implements TrackingEventListener {
     /** The logger */
     private static final transient Logger LOG = LoggerFactory.getLogger(ShipTypeAndSizeStatistic.class);
 
-    private final transient AppStatisticsService appStatisticsService;
     private final transient StatisticDataRepository statisticsRepository;
     private final transient EventEmittingTracker trackingService;
 
+    private final transient Counter eventsProcessed;
+    private final transient Counter eventsProcessedOk;
+    private final transient Counter unknownMmsi;
+    private final transient Counter unknownShipType;
+    private final transient Counter unknownShipLength;
+
     private transient boolean started;
 
     static final String STATISTIC_NAME = ShipTypeAndSizeStatistic.class.getSimpleName();
 
     @Inject
     public ShipTypeAndSizeStatistic(AppStatisticsService appStatisticsService, EventEmittingTracker trackingService, StatisticDataRepository statisticsRepository) {
-        this.appStatisticsService = appStatisticsService;
+        this(appStatisticsService, trackingService, statisticsRepository, STATISTIC_NAME);
+    }
+
+    /**
+     * @param counterGroup name under which the counters of this statistic are registered; statistics built
+     *                     for different grids must use different names.
+     */
+    public ShipTypeAndSizeStatistic(AppStatisticsService appStatisticsService, EventEmittingTracker trackingService, StatisticDataRepository statisticsRepository, String counterGroup) {
         this.trackingService = trackingService;
         this.statisticsRepository = statisticsRepository;
+
+        this.eventsProcessed = appStatisticsService.getStatisticCounter(counterGroup, "Events processed");
+        this.eventsProcessedOk = appStatisticsService.getStatisticCounter(counterGroup, "Events processed ok");
+        this.unknownMmsi = appStatisticsService.getStatisticCounter(counterGroup, "Unknown mmsi");
+        this.unknownShipType = appStatisticsService.getStatisticCounter(counterGroup, "Unknown ship type");
+        this.unknownShipLength = appStatisticsService.getStatisticCounter(counterGroup, "Unknown ship length");
     }
 
     /**
@@ -66,36 +85,35 @@ public class ShipTypeAndSizeStatistic implements TrackingEventListener {
     @AllowConcurrentEvents
     @Subscribe
     public void onCellIdChanged(CellChangedEvent event) {
-        appStatisticsService.incStatisticStatistics(this.getClass().getSimpleName(), "Events processed");
-
         LOG.debug("Received " + event.toString());
 
         Track track = event.getTrack();
+        onCellIdChanged(track.getMmsi(), track.getTimeOfLastPositionReport(), (Long) track.getProperty(Track.CELL_ID), track.getShipType(), track.getVesselLength(), track.getSpeedOverGround(), track.getCourseOverGround());
+    }
+
+    @Override
+    public void onCellIdChanged(int mmsi, long timestamp, Long cellId, Integer shipType, Integer shipLength, Float sog, Float cog) {
+        eventsProcessed.increment();
 
-        Float sog = track.getSpeedOverGround();
         if (sog != null && sog < 2.0) {
             return; // If track has a sog and it is < 2 - don't run this statistic
         }
 
-        Long cellId = (Long) track.getProperty(Track.CELL_ID);
-        Integer shipType = track.getShipType();
-        Integer shipLength = track.getVesselLength();
-
         if (cellId == null) {
-            LOG.debug("cellId is null - position is likely not valid (mmsi " + track.getMmsi() + ")");
-            appStatisticsService.incStatisticStatistics(this.getClass().getSimpleName(), "Unknown mmsi");
+            LOG.debug("cellId is null - position is likely not valid (mmsi " + mmsi + ")");
+            unknownMmsi.increment();
             return;
         }
 
         if (shipType == null) {
-            LOG.debug("shipType is null - probably no static data received yet (mmsi " + track.getMmsi() + ")");
-            appStatisticsService.incStatisticStatistics(this.getClass().getSimpleName(), "Unknown ship type");
+            LOG.debug("shipType is null - probably no static data received yet (mmsi " + mmsi + ")");
+            unknownShipType.increment();
             return;
         }
 
         if (shipLength == null) {
-            LOG.debug("shipLength is null - probably no static data received yet (mmsi " + track.getMmsi() + ")");
-            appStatisticsService.incStatisticStatistics(this.getClass().getSimpleName(), "Unknown ship length");
+            LOG.debug("shipLength is null - probably no static data received yet (mmsi " + mmsi + ")");
+            unknownShipLength.increment();
             return;
         }
 
@@ -116,7 +134,7 @@ public class ShipTypeAndSizeStatistic implements TrackingEventListener {
         LOG.debug("TrackingEventListener data for cellId " + cellId + ", statisticName " + STATISTIC_NAME + " stored.");
 
         // TODO expensive: appStatisticsService.setStatisticStatistics(this.getClass().getSimpleName(), "Cell count", statisticsRepository.getNumberOfCells(STATISTIC_NAME));
-        appStatisticsService.incStatisticStatistics(this.getClass().getSimpleName(), "Events processed ok");
+        eventsProcessedOk.increment();
     }
 
 }
@@ -19,6 +19,7 @@ package dk.dma.ais.abnormal.stat.statistics;
 import com.google.common.eventbus.AllowConcurrentEvents;
 import com.google.common.eventbus.Subscribe;
 import com.google.inject.Inject;
+import dk.dma.ais.abnormal.application.statistics.Counter;
 import dk.dma.ais.abnormal.stat.AppStatisticsService;
 import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
 import dk.dma.ais.abnormal.stat.db.data.ShipTypeAndSizeStatisticData;
@@ -40,19 +41,39 @@ public class SpeedOverGroundStatistic implements TrackingEventListener {
      */
     private static final transient Logger LOG = LoggerFactory.getLogger(SpeedOverGroundStatistic.class);
 
-    private final transient AppStatisticsService appStatisticsService;
     private final transient StatisticDataRepository statisticsRepository;
     private final transient EventEmittingTracker trackingService;
 
+    private final transient Counter eventsProcessed;
+    private final transient Counter eventsProcessedOk;
+    private final transient Counter unknownMmsi;
+    private final transient Counter unknownShipType;
+    private final transient Counter unknownShipLength;
+    private final transient Counter unknownSpeedOverGround;
+
     private final transient AtomicBoolean started = new AtomicBoolean(false);
 
     static final String STATISTIC_NAME = SpeedOverGroundStatistic.class.getSimpleName();
 
     @Inject
     public SpeedOverGroundStatistic(AppStatisticsService appStatisticsService, EventEmittingTracker trackingService, StatisticDataRepository statisticsRepository) {
-        this.appStatisticsService = appStatisticsService;
+        this(appStatisticsService, trackingService, statisticsRepository, STATISTIC_NAME);
+    }
+
+    /**
+     * @param counterGroup name under which the counters of this statistic are registered; statistics built
+     *                     for different grids must use different names.
+     */
+    public SpeedOverGroundStatistic(AppStatisticsService appStatisticsService, EventEmittingTracker trackingService, StatisticDataRepository statisticsRepository, String counterGroup) {
         this.trackingService = trackingService;
         this.statisticsRepository = statisticsRepository;
+
+        this.eventsProcessed = appStatisticsService.getStatisticCounter(counterGroup, "Events processed");
+        this.eventsProcessedOk = appStatisticsService.getStatisticCounter(counterGroup, "Events processed ok");
+        this.unknownMmsi = appStatisticsService.getStatisticCounter(counterGroup, "Unknown mmsi");
+        this.unknownShipType = appStatisticsService.getStatisticCounter(counterGroup, "Unknown ship type");
+        this.unknownShipLength = appStatisticsService.getStatisticCounter(counterGroup, "Unknown ship length");
+        this.unknownSpeedOverGround = appStatisticsService.getStatisticCounter(counterGroup, "Unknown speed over ground");
     }
 
     /**
@@ -71,16 +92,15 @@ public class SpeedOverGroundStatistic implements TrackingEventListener {
     @AllowConcurrentEvents
     @Subscribe
     public void onCellIdChanged(CellChangedEvent event) {
-        appStatisticsService.incStatisticStatistics(STATISTIC_NAME, "Events processed");
-
         Track track = event.getTrack();
-        Float sog = track.getSpeedOverGround();
+        onCellIdChanged(track.getMmsi(), track.getTimeOfLastPositionReport(), (Long) track.getProperty(Track.CELL_ID), track.getShipType(), track.getVesselLength(), track.getSpeedOverGround(), track.getCourseOverGround());
+    }
 
-        if (sog != null) {
-            Long cellId = (Long) track.getProperty(Track.CELL_ID);
-            Integer shipType = track.getShipType();
-            Integer shipLength = track.getVesselLength();
+    @Override
+    public void onCellIdChanged(int mmsi, long timestamp, Long cellId, Integer shipType, Integer shipLength, Float sog, Float cog) {
+        eventsProcessed.increment();
 
+        if (sog != null) {
             if (isInputValid(cellId, shipType, shipLength, sog)) {
                 short shipTypeBucket = Categorizer.mapShipTypeToCategory(shipType);
                 short shipSizeBucket = Categorizer.mapShipLengthToCategory(shipLength);
@@ -88,7 +108,7 @@ public class SpeedOverGroundStatistic implements TrackingEventListener {
 
                 incrementStatisticStatistics(cellId, shipTypeBucket, shipSizeBucket, sogBucket);
 
-                appStatisticsService.incStatisticStatistics(this.getClass().getSimpleName(), "Events processed ok");
+                eventsProcessedOk.increment();
             }
         }
     }
@@ -97,22 +117,22 @@ public class SpeedOverGroundStatistic implements TrackingEventListener {
         boolean valid = true;
 
         if (cellId == null) {
-            appStatisticsService.incStatisticStatistics(STATISTIC_NAME, "Unknown mmsi");
+            unknownMmsi.increment();
             valid = false;
         }
 
         if (shipType == null) {
-            appStatisticsService.incStatisticStatistics(STATISTIC_NAME, "Unknown ship type");
+            unknownShipType.increment();
             valid = false;
         }
 
         if (shipLength == null) {
-            appStatisticsService.incStatisticStatistics(STATISTIC_NAME, "Unknown ship length");
+            unknownShipLength.increment();
             valid = false;
         }
 
         if (sog == null) {
-            appStatisticsService.incStatisticStatistics(STATISTIC_NAME, "Unknown speed over ground");
+            unknownSpeedOverGround.increment();
             valid = false;
         }
 
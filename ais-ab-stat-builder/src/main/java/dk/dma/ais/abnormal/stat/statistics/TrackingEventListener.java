@@ -21,4 +21,17 @@ public interface TrackingEventListener {
      * Start to listen for tracking events
      */
     void start();
+
+    /**
+     * Update the statistic for a vessel which has just entered a new cell.
+     *
+     * @param mmsi the MMSI no. of the vessel.
+     * @param timestamp the time of the position report which caused the cell change (msecs since the epoch).
+     * @param cellId the id of the entered cell; or null if unknown.
+     * @param shipType the AIS ship type of the vessel; or null if unknown.
+     * @param shipLength the length of the vessel in meters; or null if unknown.
+     * @param sog the speed over ground of the vessel; or null if unknown.
+     * @param cog the course over ground of the vessel; or null if unknown.
+     */
+    void onCellIdChanged(int mmsi, long timestamp, Long cellId, Integer shipType, Integer shipLength, Float sog, Float cog);
 }
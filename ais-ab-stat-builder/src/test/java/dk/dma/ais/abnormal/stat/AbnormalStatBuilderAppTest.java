@@ -20,6 +20,7 @@ import com.beust.jcommander.ParameterException;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
+import dk.dma.ais.abnormal.stat.db.mapdb.StatisticDataRepositoryMapDB;
 import org.junit.Test;
 
 import java.io.File;
@@ -98,6 +99,56 @@ public class AbnormalStatBuilderAppTest {
         assertEquals((Short) (short) 1, statisticsRepository.getMetaData().getFormatVersion());
     }
 
+    @Test
+    public void testOnePassOverSeveralGridSizesBuildsSameStatisticsAsOnePassPerGridSize() throws Exception {
+        String outputFilename = File.createTempFile("ais-ab-stat-builder", "").getCanonicalPath();
+
+        AppStatisticsService appStatistics = buildStatistics(outputFilename, "100,200");
+        AppStatisticsService appStatistics100 = buildStatistics(outputFilename + "-single100", "100");
+        AppStatisticsService appStatistics200 = buildStatistics(outputFilename + "-single200", "200");
+
+        assertSameStatistics(outputFilename + "-single100", outputFilename + "-grid100");
+        assertSameStatistics(outputFilename + "-single200", outputFilename + "-grid200");
+
+        assertEquals(appStatistics100.getStatisticStatistics("ShipTypeAndSizeStatistic", "Events processed"), appStatistics.getStatisticStatistics("ShipTypeAndSizeStatistic", "Events processed"));
+        assertEquals(appStatistics200.getStatisticStatistics("ShipTypeAndSizeStatistic", "Events processed"), appStatistics.getStatisticStatistics("ShipTypeAndSizeStatistic-grid200", "Events processed"));
+    }
+
+    private static AppStatisticsService buildStatistics(String outputFilename, String gridSizes) throws Exception {
+        String inputDirectory = "src/test/resources";
+        String inputFilenamePattern = "ais-sample-micro.txt.gz";
+        String[] args = new String[]{"-inputDirectory", inputDirectory, "-input", inputFilenamePattern, "-output", outputFilename, "-gridsize", gridSizes};
+
+        UserArguments userArguments = parseUserArguments(args);
+        Injector injector = Guice.createInjector(new AbnormalStatBuilderAppModule(outputFilename, inputDirectory, inputFilenamePattern, false, userArguments.getGridSizes(), userArguments.getDownSampling(), userArguments.getReadAhead(), null, 0L));
+        AbnormalStatBuilderApp.setInjector(injector);
+        AbnormalStatBuilderApp app = injector.getInstance(AbnormalStatBuilderApp.class);
+        AbnormalStatBuilderApp.userArguments = userArguments;
+        app.execute(new String[]{});
+
+        return injector.getInstance(AppStatisticsService.class);
+    }
+
+    private static void assertSameStatistics(String expectedFilename, String actualFilename) throws Exception {
+        StatisticDataRepository expected = new StatisticDataRepositoryMapDB(expectedFilename);
+        StatisticDataRepository actual = new StatisticDataRepositoryMapDB(actualFilename);
+        expected.openForRead();
+        actual.openForRead();
+        try {
+            assertEquals(expected.getMetaData().getGridResolution(), actual.getMetaData().getGridResolution());
+            assertEquals(expected.getStatisticNames(), actual.getStatisticNames());
+            for (String statisticName : expected.getStatisticNames()) {
+                assertEquals(expected.getCellsWithData(statisticName), actual.getCellsWithData(statisticName));
+                for (Long cellId : expected.getCellsWithData(statisticName)) {
+                    assertEquals(expected.getStatisticData(statisticName, cellId).getData(), actual.getStatisticData(statisticName, cellId).getData());
+                }
+            }
+        } finally {
+            expected.close();
+            actual.close();
+        }
+    }
+
     private static UserArguments parseUserArguments(String[] args) {
         UserArguments userArguments = new UserArguments();
         try {
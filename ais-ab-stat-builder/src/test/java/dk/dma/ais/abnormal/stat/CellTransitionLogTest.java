@@ -0,0 +1,121 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat;
+
+import dk.dma.ais.abnormal.stat.statistics.TrackingEventListener;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class CellTransitionLogTest {
+
+    @Test
+    public void testAggregatorReadsAllTransitionsWrittenByWriter() throws Exception {
+        File tempFile = File.createTempFile("ais-ab-stat-builder", ".transitions");
+        tempFile.deleteOnExit();
+
+        Set<String> expected = new HashSet<>();
+        CellTransitionLogWriter writer = new CellTransitionLogWriter(null, tempFile.getAbsolutePath(), 0.005, 60);
+        for (int i = 0; i < 100000; i++) {
+            int mmsi = 219000000 + i % 1000;
+            Integer shipType = i % 7 == 0 ? null : 70;
+            Integer shipLength = i % 11 == 0 ? null : 100 + i % 50;
+            Float sog = i % 13 == 0 ? null : (float) (i % 300) / 10f;
+            Float cog = i % 17 == 0 ? null : (float) (i % 3600) / 10f;
+            writer.onCellIdChanged(mmsi, 1000L * i, (long) (i % 5000), shipType, shipLength, sog, cog);
+            expected.add(toString(mmsi, 1000L * i, (long) (i % 5000), shipType, shipLength, sog, cog));
+        }
+        writer.onCellIdChanged(219000000, 0L, null, 70, 100, 1.0f, 1.0f);  // Unknown cell is not logged
+        writer.close();
+
+        assertEquals(CellTransitionLogWriter.HEADER_SIZE + 100000L * CellTransitionLogWriter.RECORD_SIZE, tempFile.length());
+
+        final Set<String> actual = Collections.synchronizedSet(new HashSet<>());
+        CellTransitionLogAggregator aggregator = new CellTransitionLogAggregator(tempFile.getAbsolutePath(), 3);
+        assertEquals(0.005, aggregator.getGridResolution(), 1e-9);
+        assertEquals(60, aggregator.getDownSampling());
+
+        long n = aggregator.aggregate(Arrays.asList(new TrackingEventListener() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void onCellIdChanged(int mmsi, long timestamp, Long cellId, Integer shipType, Integer shipLength, Float sog, Float cog) {
+                actual.add(CellTransitionLogTest.toString(mmsi, timestamp, cellId, shipType, shipLength, sog, cog));
+            }
+        }));
+
+        assertEquals(100000L, n);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testTransitionsIntoSameCellAreHandledBySameThread() throws Exception {
+        File tempFile = File.createTempFile("ais-ab-stat-builder", ".transitions");
+        tempFile.deleteOnExit();
+
+        CellTransitionLogWriter writer = new CellTransitionLogWriter(null, tempFile.getAbsolutePath(), 0.005, 60);
+        for (int i = 0; i < 10000; i++) {
+            writer.onCellIdChanged(219000000 + i, i, (long) (i % 10), 70, 100, 10.0f, 90.0f);
+        }
+        writer.close();
+
+        final List<String> threadsOfCell0 = Collections.synchronizedList(new ArrayList<>());
+        new CellTransitionLogAggregator(tempFile.getAbsolutePath(), 4).aggregate(Arrays.asList(new TrackingEventListener() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void onCellIdChanged(int mmsi, long timestamp, Long cellId, Integer shipType, Integer shipLength, Float sog, Float cog) {
+                if (cellId == 0L) {
+                    threadsOfCell0.add(Thread.currentThread().getName());
+                }
+            }
+        }));
+
+        assertEquals(1000, threadsOfCell0.size());
+        assertEquals(1, new HashSet<>(threadsOfCell0).size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testAggregatorRejectsOtherFiles() throws Exception {
+        File tempFile = File.createTempFile("ais-ab-stat-builder", ".transitions");
+        tempFile.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(tempFile)) {
+            out.write("This is not a cell transition log".getBytes());
+        }
+
+        new CellTransitionLogAggregator(tempFile.getAbsolutePath(), 1);
+    }
+
+    private static String toString(int mmsi, long timestamp, Long cellId, Integer shipType, Integer shipLength, Float sog, Float cog) {
+        return mmsi + "," + timestamp + "," + cellId + "," + shipType + "," + shipLength + "," + sog + "," + cog;
+    }
+
+}
@@ -0,0 +1,220 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat;
+
+import dk.dma.ais.abnormal.stat.statistics.TrackingEventListener;
+import dk.dma.ais.message.IVesselPositionMessage;
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.enav.model.geometry.Position;
+import dk.dma.enav.model.geometry.grid.Grid;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CellTransitionTrackerTest {
+
+    final String[] NMEA_TEST_STRINGS = {
+        // [msgId=1, repeat=0, userId=219000606, cog=2010, navStatus=0, pos=(33024811,6011092) = (33024811,6011092), posAcc=1, raim=0, specialManIndicator=0, rot=0, sog=108, spare=0, syncState=1, trueHeading=200, utcSec=60, slotTimeout=6, subMessage=1063]
+        "$PGHP,1,2014,4,10,13,30,28,385,219,,2190067,1,12*26\r\n" +
+        "!BSVDM,1,1,,A,13@ng7P01dPeo6`OOc:onVAp0p@W,0*12",
+
+        // [msgId=5, repeat=0, userId=219000606, callsign=OWNM@@@, dest=BOEJDEN-FYNSHAV@@@@@, dimBow=12, dimPort=8, dimStarboard=4, dimStern=58, draught=30, dte=0, eta=67584, imo=8222824, name=FRIGG SYDFYEN@@@@@@@, posType=1, shipType=61, spare=0, version=0]
+        "$PGHP,1,2014,4,10,13,30,29,165,219,,2190067,1,28*22\r\n" +
+        "!BSVDM,2,1,1,A,53@ng7P1uN6PuLpl000I8TLN1=T@ITDp0000000u1Pr844@P07PSiBQ1,0*7B\r\n" +
+        "!BSVDM,2,2,1,A,CcAVCTj0EP00000,2*53",
+
+        // [msgId=24, repeat=0, userId=219000606, partNumber=1, shipType=37, callsign=OWNM@@@, dimBow=5, dimStern=7, dimPort=2, dimStarboard=2]
+        "$PGHP,1,2014,4,10,13,30,27,0,219,,2190067,1,17*22\r\n" +
+        "!BSVDM,1,1,,A,H3@ng7TU0000000?G>=0000`7220,0*17",
+
+        // Same as [0] one hour later
+        "$PGHP,1,2014,4,10,14,30,28,385,219,,2190067,1,12*21\r\n" +
+        "!BSVDM,1,1,,A,13@ng7P01dPeo6`OOc:onVAp0p@W,0*12"
+    };
+
+    final List<Object[]> transitions = new ArrayList<>();
+
+    final TrackingEventListener recorder = new TrackingEventListener() {
+        @Override
+        public void start() {
+        }
+
+        @Override
+        public void onCellIdChanged(int mmsi, long timestamp, Long cellId, Integer shipType, Integer shipLength, Float sog, Float cog) {
+            transitions.add(new Object[] {mmsi, cellId, shipType, shipLength, sog, cog});
+        }
+    };
+
+    Grid grid;
+
+    @Before
+    public void setUp() {
+        transitions.clear();
+        grid = Grid.createSize(200);
+    }
+
+    @Test
+    public void testTransitionIsEmittedOnlyWhenCellChanges() {
+        CellTransitionTracker tracker = new CellTransitionTracker(new int[0]);
+        tracker.addGrid(grid, Arrays.asList(recorder));
+
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[0]));
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[1]));
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[0]));
+
+        assertEquals(1, transitions.size());
+        assertEquals(1, tracker.getNumberOfTracks());
+
+        Object[] transition = transitions.get(0);
+        assertEquals(219000606, transition[0]);
+        assertNull(transition[2]);  // No static data received yet
+        assertNull(transition[3]);
+        assertEquals(10.8f, (Float) transition[4], 1e-6);
+        assertEquals(201.0f, (Float) transition[5], 1e-6);
+    }
+
+    @Test
+    public void testStaticDataIsIncludedInTransition() {
+        CellTransitionTracker tracker = new CellTransitionTracker(new int[0]);
+        tracker.addGrid(grid, Arrays.asList(recorder));
+
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[1]));
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[0]));
+
+        assertEquals(1, transitions.size());
+        Object[] transition = transitions.get(0);
+        assertEquals(61, transition[2]);
+        assertEquals(12 + 58, transition[3]);
+    }
+
+    @Test
+    public void testClassBStaticDataIsIncludedInTransition() {
+        CellTransitionTracker tracker = new CellTransitionTracker(new int[0]);
+        tracker.addGrid(grid, Arrays.asList(recorder));
+
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[2]));
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[0]));
+
+        assertEquals(1, transitions.size());
+        Object[] transition = transitions.get(0);
+        assertEquals(37, transition[2]);
+        assertEquals(5 + 7, transition[3]);
+    }
+
+    @Test
+    public void testStaleVesselIsEvicted() {
+        CellTransitionTracker tracker = new CellTransitionTracker(new int[0]);
+        tracker.addGrid(grid, Arrays.asList(recorder));
+
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[1]));
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[0]));
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[3]));
+
+        // The vessel is tracked anew when it reappears after being stale; in the same cell but without static data
+        assertEquals(2, transitions.size());
+        assertEquals(transitions.get(0)[1], transitions.get(1)[1]);
+        assertEquals(61, transitions.get(0)[2]);
+        assertNull(transitions.get(1)[2]);
+        assertEquals(1, tracker.getNumberOfTracks());
+    }
+
+    @Test
+    public void testBlacklistedVesselIsNotTracked() {
+        CellTransitionTracker tracker = new CellTransitionTracker(new int[] {219000606});
+        tracker.addGrid(grid, Arrays.asList(recorder));
+
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[1]));
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[0]));
+
+        assertEquals(0, transitions.size());
+        assertEquals(0, tracker.getNumberOfTracks());
+    }
+
+    @Test
+    public void testTransitionsAreEmittedForEachGrid() {
+        final List<Object[]> coarseTransitions = new ArrayList<>();
+        CellTransitionTracker tracker = new CellTransitionTracker(new int[0]);
+        tracker.addGrid(grid, Arrays.asList(recorder));
+        tracker.addGrid(Grid.createSize(1000), Arrays.asList(new TrackingEventListener() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void onCellIdChanged(int mmsi, long timestamp, Long cellId, Integer shipType, Integer shipLength, Float sog, Float cog) {
+                coarseTransitions.add(new Object[] {mmsi, cellId});
+            }
+        }));
+
+        AisPacket packet = AisPacket.from(NMEA_TEST_STRINGS[0]);
+        tracker.update(packet);
+
+        Position position = ((IVesselPositionMessage) packet.tryGetAisMessage()).getValidPosition();
+        assertEquals(1, transitions.size());
+        assertEquals(1, coarseTransitions.size());
+        assertEquals(grid.getCell(position).getCellId(), transitions.get(0)[1]);
+        assertEquals(Grid.createSize(1000).getCell(position).getCellId(), coarseTransitions.get(0)[1]);
+    }
+
+    @Test
+    public void testListenerAddedToGridReceivesSameTransitions() {
+        final List<Object[]> otherTransitions = new ArrayList<>();
+        CellTransitionTracker tracker = new CellTransitionTracker(new int[0]);
+        tracker.addGrid(grid, Arrays.asList(recorder));
+        tracker.addListener(grid, new TrackingEventListener() {
+            @Override
+            public void start() {
+            }
+
+            @Override
+            public void onCellIdChanged(int mmsi, long timestamp, Long cellId, Integer shipType, Integer shipLength, Float sog, Float cog) {
+                otherTransitions.add(new Object[] {mmsi, cellId, shipType, shipLength, sog, cog});
+            }
+        });
+
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[0]));
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[1]));
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[0]));
+
+        assertEquals(1, transitions.size());
+        assertEquals(1, otherTransitions.size());
+        assertArrayEquals(transitions.get(0), otherTransitions.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testListenerCannotBeAddedToUnknownGrid() {
+        CellTransitionTracker tracker = new CellTransitionTracker(new int[0]);
+        tracker.addGrid(grid, Arrays.asList(recorder));
+        tracker.addListener(Grid.createSize(1000), recorder);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testGridsCannotBeAddedAfterStart() {
+        CellTransitionTracker tracker = new CellTransitionTracker(new int[0]);
+        tracker.addGrid(grid, Arrays.asList(recorder));
+        tracker.update(AisPacket.from(NMEA_TEST_STRINGS[0]));
+        tracker.addGrid(Grid.createSize(1000), Arrays.asList(recorder));
+    }
+
+}
@@ -0,0 +1,67 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class GridSizesValidatorTest {
+
+    @Test
+    public void testSingleGridSize() {
+        UserArguments userArguments = new UserArguments();
+        new JCommander(userArguments, "-input", "x", "-output", "y", "-gridsize", "200");
+        assertEquals(Arrays.asList(200), userArguments.getGridSizes());
+        assertEquals((Integer) 200, userArguments.getGridSize());
+    }
+
+    @Test
+    public void testDefaultGridSize() {
+        UserArguments userArguments = new UserArguments();
+        new JCommander(userArguments, "-input", "x", "-output", "y");
+        assertEquals(Arrays.asList(200), userArguments.getGridSizes());
+    }
+
+    @Test
+    public void testMultipleGridSizes() {
+        UserArguments userArguments = new UserArguments();
+        new JCommander(userArguments, "-input", "x", "-output", "y", "-gridsize", "100, 200,500");
+        assertEquals(Arrays.asList(100, 200, 500), userArguments.getGridSizes());
+        assertEquals((Integer) 100, userArguments.getGridSize());
+    }
+
+    @Test(expected = ParameterException.class)
+    public void testNonNumericGridSizeIsRejected() {
+        new GridSizesValidator().validate("-gridsize", "100,abc");
+    }
+
+    @Test(expected = ParameterException.class)
+    public void testDuplicateGridSizesAreRejected() {
+        new GridSizesValidator().validate("-gridsize", "100,100");
+    }
+
+    @Test(expected = ParameterException.class)
+    public void testNegativeGridSizeIsRejected() {
+        new GridSizesValidator().validate("-gridsize", "-100");
+    }
+
+}
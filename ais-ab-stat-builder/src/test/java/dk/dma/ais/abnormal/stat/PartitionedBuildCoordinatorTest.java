@@ -0,0 +1,195 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat;
+
+import com.beust.jcommander.JCommander;
+import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
+import dk.dma.ais.abnormal.stat.db.data.DatasetMetaData;
+import dk.dma.ais.abnormal.stat.db.data.ShipTypeAndSizeStatisticData;
+import dk.dma.ais.abnormal.stat.db.mapdb.StatisticDataRepositoryMapDB;
+import dk.dma.ais.abnormal.stat.db.mapdb.StatisticDataRepositorySpillToDisk;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PartitionedBuildCoordinatorTest {
+
+    @Test
+    public void testPartitionsAreContiguousAndCoverAllFiles() {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            files.add(Paths.get("aisdk_2014010" + i + ".txt.gz"));
+        }
+
+        List<Path> allPartitionFiles = new ArrayList<>();
+        for (int partition = 0; partition < 3; partition++) {
+            allPartitionFiles.addAll(PartitionedBuildCoordinator.partitionFiles(files, partition, 3));
+        }
+        assertEquals(files, allPartitionFiles);
+
+        assertEquals(files.subList(0, 3), PartitionedBuildCoordinator.partitionFiles(files, 0, 3));
+        assertEquals(files.subList(3, 6), PartitionedBuildCoordinator.partitionFiles(files, 1, 3));
+        assertEquals(files.subList(6, 10), PartitionedBuildCoordinator.partitionFiles(files, 2, 3));
+    }
+
+    @Test
+    public void testWarmUpFilesPrecedePartition() {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            files.add(Paths.get("aisdk_2014010" + i + ".txt.gz"));
+        }
+
+        assertTrue(PartitionedBuildCoordinator.warmUpFiles(files, 0, 3, 2).isEmpty());
+        assertEquals(files.subList(1, 3), PartitionedBuildCoordinator.warmUpFiles(files, 1, 3, 2));
+        assertEquals(files.subList(0, 6), PartitionedBuildCoordinator.warmUpFiles(files, 2, 3, 100));
+    }
+
+    @Test
+    public void testWorkerCommand() {
+        String[] args = {"-inputDirectory", "/data", "-input", "*.gz", "-workers", "4", "-output", "dk.statistics", "-mt"};
+        UserArguments userArguments = new UserArguments();
+        new JCommander(userArguments, args);
+
+        List<String> command = new PartitionedBuildCoordinator(args, userArguments).workerCommand(2, 4, "dk-part2.statistics");
+
+        int mainClass = command.indexOf(AbnormalStatBuilderApp.class.getName());
+        assertTrue(mainClass > 0);
+        assertEquals(
+            Arrays.asList("-inputDirectory", "/data", "-input", "*.gz", "-mt", "-output", "dk-part2.statistics", "-partition", "2", "-partitions", "4"),
+            command.subList(mainClass + 1, command.size())
+        );
+        assertFalse(command.contains("-workers"));
+    }
+
+    @Test
+    public void testPartFilename() {
+        assertEquals("dk-part3.statistics", PartitionedBuildCoordinator.partFilenameFor("dk.statistics", 3));
+        assertEquals("dk-part0.statistics", PartitionedBuildCoordinator.partFilenameFor("dk", 0));
+    }
+
+    @Test
+    public void testMergeAddsUpStatisticDataOfAllParts() throws Exception {
+        File tempDir = File.createTempFile("ais-ab-stat-builder", "").getParentFile();
+        String base = tempDir.getAbsolutePath() + File.separator + "merge-" + System.nanoTime();
+
+        String part0 = PartitionedBuildCoordinator.partFilenameFor(base, 0);
+        String part1 = PartitionedBuildCoordinator.partFilenameFor(base, 1);
+        writePart(part0, new long[] {1L, 2L}, 3);
+        writePart(part1, new long[] {2L, 3L}, 4);
+
+        StatisticDataRepository merged = new StatisticDataRepositoryMapDB(base + ".statistics");
+        merged.openForWrite(true);
+        PartitionedBuildCoordinator.merge(Arrays.asList(part0, part1), merged);
+        merged.close();
+
+        assertMergedStatisticData(base + ".statistics");
+    }
+
+    @Test
+    public void testMergeIntoSpillToDiskRepositoryAddsUpStatisticDataOfAllParts() throws Exception {
+        File tempDir = File.createTempFile("ais-ab-stat-builder", "").getParentFile();
+        String base = tempDir.getAbsolutePath() + File.separator + "merge-" + System.nanoTime();
+
+        String part0 = PartitionedBuildCoordinator.partFilenameFor(base, 0);
+        String part1 = PartitionedBuildCoordinator.partFilenameFor(base, 1);
+        writePart(part0, new long[] {1L, 2L}, 3);
+        writePart(part1, new long[] {2L, 3L}, 4);
+
+        StatisticDataRepositorySpillToDisk merged = new StatisticDataRepositorySpillToDisk(base + ".statistics", 1);
+        merged.openForWrite(true);
+        PartitionedBuildCoordinator.merge(Arrays.asList(part0, part1), merged);
+        assertTrue(merged.getNumberOfSpills() > 0);
+        merged.close();
+
+        assertMergedStatisticData(base + ".statistics");
+    }
+
+    @Test
+    public void testFailedWorkerClosesRepositoryAndDeletesPartFiles() throws Exception {
+        Path directory = Files.createTempDirectory("ais-ab-stat-builder");
+        String output = directory.resolve("dk.statistics").toString();
+        String[] args = {"-inputDirectory", "/data", "-input", "*.gz", "-workers", "2", "-output", output};
+        UserArguments userArguments = new UserArguments();
+        new JCommander(userArguments, args);
+
+        String part0 = PartitionedBuildCoordinator.partFilenameFor(output, 0);
+        writePart(part0, new long[] {1L}, 3);
+
+        StatisticDataRepositorySpillToDisk statisticsRepository = new StatisticDataRepositorySpillToDisk(output, 1);
+        statisticsRepository.openForWrite(true);
+        PartitionedBuildCoordinator coordinator = new PartitionedBuildCoordinator(args, userArguments) {
+            @Override
+            List<String> workerCommand(int partition, int numberOfPartitions, String partFilename) {
+                // A JVM which fails to find its main class
+                return Arrays.asList(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java", "-cp", directory.toString(), "NoSuchWorker");
+            }
+        };
+
+        try {
+            coordinator.run(statisticsRepository);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("Worker for partition 0 failed"));
+        }
+
+        assertFalse(new File(part0).exists());
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().contains("-spill-")));
+        }
+    }
+
+    private static void assertMergedStatisticData(String filename) throws Exception {
+        StatisticDataRepository result = new StatisticDataRepositoryMapDB(filename);
+        result.openForRead();
+        try {
+            assertEquals(123.0, result.getMetaData().getGridResolution(), 1e-9);
+            assertEquals((Integer) 3, ((ShipTypeAndSizeStatisticData) result.getStatisticData("ShipTypeAndSizeStatistic", 1L)).getValue(2, 1, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT));
+            assertEquals((Integer) 7, ((ShipTypeAndSizeStatisticData) result.getStatisticData("ShipTypeAndSizeStatistic", 2L)).getValue(2, 1, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT));
+            assertEquals((Integer) 4, ((ShipTypeAndSizeStatisticData) result.getStatisticData("ShipTypeAndSizeStatistic", 3L)).getValue(2, 1, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT));
+            assertNull(result.getStatisticData("ShipTypeAndSizeStatistic", 4L));
+        } finally {
+            result.close();
+        }
+    }
+
+    private static void writePart(String filename, long[] cellIds, int shipCount) throws Exception {
+        StatisticDataRepository part = new StatisticDataRepositoryMapDB(filename);
+        part.openForWrite(false);
+        part.putMetaData(new DatasetMetaData(123.0, 60));
+        for (long cellId : cellIds) {
+            ShipTypeAndSizeStatisticData data = ShipTypeAndSizeStatisticData.create();
+            data.setValue(2, 1, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT, shipCount);
+            part.putStatisticData("ShipTypeAndSizeStatistic", cellId, data);
+        }
+        part.close();
+    }
+
+}
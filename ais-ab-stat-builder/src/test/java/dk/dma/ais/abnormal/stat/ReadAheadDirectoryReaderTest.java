@@ -0,0 +1,91 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat;
+
+import dk.dma.ais.packet.AisPacket;
+import dk.dma.ais.reader.AisReader;
+import dk.dma.ais.reader.AisReaders;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReadAheadDirectoryReaderTest {
+
+    @Test
+    public void testFindFilesIsSortedByName() throws Exception {
+        List<Path> files = ReadAheadDirectoryReader.findFiles(Paths.get("src/test/resources"), "ais-sample*.txt.gz", false);
+
+        assertEquals(2, files.size());
+        assertEquals("ais-sample-micro.txt.gz", files.get(0).getFileName().toString());
+        assertEquals("ais-sample.txt.gz", files.get(1).getFileName().toString());
+    }
+
+    @Test
+    public void testPacketsAreDeliveredInSameOrderAsSequentialRead() throws Exception {
+        final List<String> expected = new ArrayList<>();
+        for (String filename : new String[] {"ais-sample-micro.txt.gz", "ais-sample.txt.gz"}) {
+            AisReader reader = AisReaders.createReaderFromFile("src/test/resources/" + filename);
+            reader.registerPacketHandler(packet -> expected.add(packet.getStringMessage()));
+            reader.run();
+        }
+
+        final List<String> actual = new ArrayList<>();
+        ReadAheadDirectoryReader readAheadReader = new ReadAheadDirectoryReader("src/test/resources", "ais-sample*.txt.gz", false, 2);
+        readAheadReader.registerPacketHandler((AisPacket packet) -> actual.add(packet.getStringMessage()));
+        readAheadReader.start();
+        readAheadReader.join();
+
+        assertTrue(expected.size() > 0);
+        assertEquals(expected, actual);
+        assertEquals(1.0f, readAheadReader.getEstimatedFractionOfPacketsRead(), 1e-6);
+    }
+
+    @Test(expected = IOException.class)
+    public void testJoinFailsWhenFileCannotBeRead() throws Exception {
+        List<Path> files = Arrays.asList(Paths.get("src/test/resources/ais-sample-micro.txt.gz"), Paths.get("src/test/resources/no-such-file.txt.gz"));
+        ReadAheadDirectoryReader readAheadReader = new ReadAheadDirectoryReader(files, 1);
+        readAheadReader.registerPacketHandler(packet -> {});
+        readAheadReader.start();
+        readAheadReader.join();
+    }
+
+    @Test
+    public void testJoinFailsWhenPacketHandlerFails() throws Exception {
+        List<Path> files = Arrays.asList(Paths.get("src/test/resources/ais-sample-micro.txt.gz"));
+        ReadAheadDirectoryReader readAheadReader = new ReadAheadDirectoryReader(files, 1);
+        readAheadReader.registerPacketHandler(packet -> {
+            throw new IllegalStateException("Handler failed");
+        });
+        readAheadReader.start();
+        try {
+            readAheadReader.join();
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+}
@@ -16,6 +16,7 @@
 
 package dk.dma.ais.abnormal.stat.statistics;
 
+import dk.dma.ais.abnormal.application.statistics.Counter;
 import dk.dma.ais.abnormal.stat.AppStatisticsService;
 import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
 import dk.dma.ais.abnormal.stat.db.data.CourseOverGroundStatisticData;
@@ -68,6 +69,9 @@ public class CourseOverGroundStatisticTest {
         // Mock dependencies
         trackingService = context.mock(EventEmittingTracker.class);
         statisticsService = context.mock(AppStatisticsService.class);
+        context.checking(new Expectations() {{
+            allowing(statisticsService).getStatisticCounter(with(any(String.class)), with(any(String.class))); will(returnValue(new Counter()));
+        }});
         statisticsRepository = context.mock(StatisticDataRepository.class);
 
         // Setup test data
@@ -29,7 +29,7 @@ import java.util.TreeMap;
  * AIS statistic statistics for one grid cell.
  *
  */
-public abstract class FourKeyStatisticData implements StatisticData, FourKeyMap {
+public abstract class FourKeyStatisticData implements MergeableStatisticData, FourKeyMap {
 
     private final TShortIntHashMap data;
 
@@ -96,6 +96,26 @@ public abstract class FourKeyStatisticData implements StatisticData, FourKeyMap
         return statisticsValue;
     }
 
+    @Override
+    public void merge(StatisticData other) {
+        if (other == null || other.getClass() != getClass()) {
+            throw new IllegalArgumentException("Cannot merge " + (other == null ? null : other.getClass().getSimpleName()) + " into " + getClass().getSimpleName() + ".");
+        }
+        FourKeyStatisticData otherData = (FourKeyStatisticData) other;
+        if (otherData.MAX_KEY_1 != MAX_KEY_1 || otherData.MAX_KEY_2 != MAX_KEY_2 || otherData.MAX_KEY_3 != MAX_KEY_3) {
+            throw new IllegalArgumentException("Cannot merge statistic data of different dimensions.");
+        }
+        otherData.data.forEachEntry((key, value) -> {
+            data.adjustOrPutValue(key, value, value);
+            return true;
+        });
+    }
+
+    @Override
+    public void compact() {
+        data.compact();
+    }
+
     public int aggregateSumOverKey1(int key2, int key3, String key4) {
         int shipCount = 0;
         final int n = getMaxKey1();
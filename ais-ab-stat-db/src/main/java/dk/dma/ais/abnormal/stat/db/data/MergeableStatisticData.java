@@ -0,0 +1,38 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat.db.data;
+
+/**
+ * Statistic data which can be combined with other statistic data of the same type, such as partial
+ * statistic data for the same cell built from different parts of the input data.
+ */
+public interface MergeableStatisticData extends StatisticData {
+
+    /**
+     * Add all values of the given statistic data to the values of these statistic data.
+     * @param other statistic data of the same type as these.
+     * @throws IllegalArgumentException if other is of a different type or dimension.
+     */
+    void merge(StatisticData other);
+
+    /**
+     * Release memory which is no longer needed after merging. merge does not compact, as statistic data are
+     * often merged many times; call this once the data are complete.
+     */
+    void compact();
+
+}
@@ -30,7 +30,7 @@ import java.util.TreeMap;
  * AIS statistic statistics of type ShipTypeAndSizeStatisticData for one grid cell.
  *
  */
-public class ShipTypeAndSizeStatisticData implements StatisticData, ThreeKeyMap {
+public class ShipTypeAndSizeStatisticData implements MergeableStatisticData, ThreeKeyMap {
 
     private TShortIntHashMap data = new TShortIntHashMap(1);
 
@@ -150,6 +150,26 @@ public class ShipTypeAndSizeStatisticData implements StatisticData, ThreeKeyMap
         return statisticsValue;
     }
 
+    @Override
+    public void merge(StatisticData other) {
+        if (other == null || other.getClass() != getClass()) {
+            throw new IllegalArgumentException("Cannot merge " + (other == null ? null : other.getClass().getSimpleName()) + " into " + getClass().getSimpleName() + ".");
+        }
+        ShipTypeAndSizeStatisticData otherData = (ShipTypeAndSizeStatisticData) other;
+        if (otherData.MAX_KEY_1 != MAX_KEY_1 || otherData.MAX_KEY_2 != MAX_KEY_2) {
+            throw new IllegalArgumentException("Cannot merge statistic data of different dimensions.");
+        }
+        otherData.data.forEachEntry((key, value) -> {
+            data.adjustOrPutValue(key, value, value);
+            return true;
+        });
+    }
+
+    @Override
+    public void compact() {
+        data.compact();
+    }
+
     @Override
     public int getSumFor(String key3) {
         return Ints.asList(data.values()).stream().mapToInt(value -> value).sum();
@@ -0,0 +1,392 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat.db.mapdb;
+
+import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
+import dk.dma.ais.abnormal.stat.db.data.DatasetMetaData;
+import dk.dma.ais.abnormal.stat.db.data.MergeableStatisticData;
+import dk.dma.ais.abnormal.stat.db.data.StatisticData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A write-only statistic data repository for building statistics with bounded memory usage.
+ *
+ * Statistic data are accumulated in memory until more than maxCellsInMemory cells hold data. The accumulated
+ * data are then spilled to disk as one sorted run per statistic and memory is cleared. When the repository is
+ * closed, all runs are merged in cell id order - adding up partial statistic data for the same cell - into the
+ * final MapDB statistics file.
+ *
+ * The repository never hands out the statistic data it holds: getStatisticData always returns null, so the
+ * statistics of the stat builder put new statistic data holding just their latest update, and putStatisticData
+ * merges these into the data already held for the cell - without compacting them, which is done once per cell
+ * when the runs are merged on close. A spill can therefore happen between a get and the
+ * following put without losing or double counting updates. Each put holds a read lock only while it merges, and
+ * spills are done under the write lock. All statistic data put into this repository must be
+ * MergeableStatisticData.
+ */
+public class StatisticDataRepositorySpillToDisk implements StatisticDataRepository {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StatisticDataRepositorySpillToDisk.class);
+
+    private static final String RUN_FILENAME_SUFFIX = ".run";
+    private static final int RESET_OBJECT_STREAM_INTERVAL = 1000;
+    private static final long SPILL_LOCK_TIMEOUT_SECS = 10;
+
+    private final StatisticDataRepositoryMapDB outputRepository;
+    private final File outputFile;
+    private final long maxCellsInMemory;
+
+    private final Map<String, Map<Long, StatisticData>> cellData = new ConcurrentHashMap<>();
+    private final AtomicLong cellsInMemory = new AtomicLong();
+
+    private final ReentrantReadWriteLock spillLock = new ReentrantReadWriteLock();
+
+    private final Map<String, List<File>> runs = new ConcurrentHashMap<>();
+    private Path spillDirectory;
+    private int numberOfSpills;
+
+    private DatasetMetaData metaData;
+    private volatile boolean open;
+
+    public StatisticDataRepositorySpillToDisk(String dbFileName, long maxCellsInMemory) throws Exception {
+        if (maxCellsInMemory < 1) {
+            throw new IllegalArgumentException("maxCellsInMemory must be >= 1; not " + maxCellsInMemory + ".");
+        }
+        this.outputRepository = new StatisticDataRepositoryMapDB(dbFileName);
+        this.outputFile = new File(dbFileName).getAbsoluteFile();
+        this.maxCellsInMemory = maxCellsInMemory;
+    }
+
+    @Override
+    public void openForRead() {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is write-only.");
+    }
+
+    /**
+     * Open for write. Statistic data are always cached in memory and spilled to disk when needed.
+     * @param cacheInMemoryDumpToDiskOnClose ignored.
+     */
+    @Override
+    public void openForWrite(boolean cacheInMemoryDumpToDiskOnClose) {
+        if (open) {
+            throw new IllegalStateException("Database already opened.");
+        }
+        try {
+            spillDirectory = Files.createTempDirectory(outputFile.getParentFile().toPath(), outputFile.getName() + "-spill-");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to create spill directory", e);
+        }
+        open = true;
+        LOG.info("Opened for write. Holding up to " + maxCellsInMemory + " cells in memory; spilling to " + spillDirectory + ".");
+    }
+
+    /**
+     * Spill remaining data to disk and merge all spilled runs into the output file. Must not be called
+     * while other threads are still updating the repository.
+     */
+    @Override
+    public void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+
+        try {
+            if (cellsInMemory.get() > 0) {
+                spill();
+            }
+
+            outputRepository.openForWrite(false);
+            if (metaData != null) {
+                outputRepository.putMetaData(metaData);
+            }
+            for (Map.Entry<String, List<File>> statisticRuns : runs.entrySet()) {
+                mergeRuns(statisticRuns.getKey(), statisticRuns.getValue());
+            }
+            outputRepository.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to merge spilled statistic data", e);
+        } finally {
+            deleteSpillDirectory();
+        }
+    }
+
+    @Override
+    public DatasetMetaData getMetaData() {
+        return metaData;
+    }
+
+    @Override
+    public void putMetaData(DatasetMetaData datasetMetadata) {
+        this.metaData = datasetMetadata;
+    }
+
+    /**
+     * @return null; the statistic data of this repository are write-only.
+     */
+    @Override
+    public StatisticData getStatisticData(String statisticName, long cellId) {
+        return null;
+    }
+
+    /**
+     * Merge the given statistic data into those already put for the cell. The given statistic data must not be
+     * modified afterwards.
+     */
+    @Override
+    public void putStatisticData(String statisticName, long cellId, StatisticData statistics) {
+        if (!(statistics instanceof MergeableStatisticData)) {
+            throw new IllegalArgumentException((statistics == null ? null : statistics.getClass().getSimpleName()) + " does not support merging.");
+        }
+
+        spillLock.readLock().lock();
+        try {
+            Map<Long, StatisticData> statisticData = cellData.computeIfAbsent(statisticName, name -> new ConcurrentHashMap<>());
+            statisticData.compute(cellId, (id, existing) -> {
+                if (existing == null) {
+                    cellsInMemory.incrementAndGet();
+                    return statistics;
+                }
+                ((MergeableStatisticData) existing).merge(statistics);
+                return existing;
+            });
+        } finally {
+            spillLock.readLock().unlock();
+        }
+
+        if (cellsInMemory.get() > maxCellsInMemory) {
+            trySpill();
+        }
+    }
+
+    /**
+     * @return the names of the statistics which have received data so far.
+     */
+    @Override
+    public Set<String> getStatisticNames() {
+        Set<String> statisticNames = new LinkedHashSet<>(runs.keySet());
+        statisticNames.addAll(cellData.keySet());
+        return statisticNames;
+    }
+
+    @Override
+    public long getNumberOfCells(String statisticName) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is write-only.");
+    }
+
+    @Override
+    public Set<Long> getCellsWithData(String statisticName) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is write-only.");
+    }
+
+    @Override
+    public StatisticData getStatisticDataForRandomCell(String statisticName) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " is write-only.");
+    }
+
+    /**
+     * @return the no. of times data have been spilled to disk.
+     */
+    public int getNumberOfSpills() {
+        return numberOfSpills;
+    }
+
+    private void trySpill() {
+        try {
+            if (spillLock.writeLock().tryLock(SPILL_LOCK_TIMEOUT_SECS, TimeUnit.SECONDS)) {
+                try {
+                    if (cellsInMemory.get() > maxCellsInMemory) {
+                        spill();
+                    }
+                } finally {
+                    spillLock.writeLock().unlock();
+                }
+            } else {
+                LOG.warn("Could not obtain exclusive access to spill statistic data to disk. Will retry.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to spill statistic data to disk", e);
+        }
+    }
+
+    /**
+     * Write all statistic data in memory to disk as one sorted run per statistic and clear memory.
+     * Caller must hold write lock or otherwise ensure exclusive access.
+     */
+    private void spill() throws IOException {
+        LOG.info("Spilling " + cellsInMemory.get() + " cells to disk.");
+
+        for (Map.Entry<String, Map<Long, StatisticData>> statisticData : cellData.entrySet()) {
+            final String statisticName = statisticData.getKey();
+            final Map<Long, StatisticData> data = statisticData.getValue();
+
+            long[] cellIds = data.keySet().stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(cellIds);
+
+            File runFile = spillDirectory.resolve(statisticName + "-" + numberOfSpills + RUN_FILENAME_SUFFIX).toFile();
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(runFile), 1 << 16))) {
+                for (int i = 0; i < cellIds.length; i++) {
+                    out.writeLong(cellIds[i]);
+                    out.writeObject(data.get(cellIds[i]));
+                    if (i % RESET_OBJECT_STREAM_INTERVAL == 0) {
+                        out.reset();
+                    }
+                }
+            }
+            runs.computeIfAbsent(statisticName, name -> new ArrayList<>()).add(runFile);
+        }
+
+        cellData.clear();
+        cellsInMemory.set(0);
+        numberOfSpills++;
+
+        LOG.info("Spill no. " + numberOfSpills + " completed.");
+    }
+
+    /**
+     * K-way merge of the sorted runs of a statistic into the output repository.
+     */
+    private void mergeRuns(String statisticName, List<File> runFiles) throws IOException {
+        LOG.info("Merging " + runFiles.size() + " runs of " + statisticName + ".");
+
+        PriorityQueue<RunReader> readers = new PriorityQueue<>(runFiles.size(), Comparator.comparingLong(RunReader::getCellId));
+        try {
+            for (File runFile : runFiles) {
+                RunReader reader = new RunReader(runFile);
+                if (reader.next()) {
+                    readers.add(reader);
+                } else {
+                    reader.close();
+                }
+            }
+
+            long numberOfCells = 0;
+            while (!readers.isEmpty()) {
+                RunReader reader = readers.poll();
+                final long cellId = reader.getCellId();
+                final MergeableStatisticData statistics = reader.getStatisticData();
+                advance(reader, readers);
+
+                while (!readers.isEmpty() && readers.peek().getCellId() == cellId) {
+                    RunReader sameCellReader = readers.poll();
+                    statistics.merge(sameCellReader.getStatisticData());
+                    advance(sameCellReader, readers);
+                }
+                statistics.compact();
+
+                outputRepository.putStatisticData(statisticName, cellId, statistics);
+                numberOfCells++;
+            }
+
+            LOG.info("Merged " + numberOfCells + " cells of " + statisticName + ".");
+        } finally {
+            for (RunReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    private static void advance(RunReader reader, PriorityQueue<RunReader> readers) throws IOException {
+        if (reader.next()) {
+            readers.add(reader);
+        } else {
+            reader.close();
+        }
+    }
+
+    private void deleteSpillDirectory() {
+        File[] files = spillDirectory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    LOG.warn("Could not delete " + file.getAbsolutePath());
+                }
+            }
+        }
+        if (!spillDirectory.toFile().delete()) {
+            LOG.warn("Could not delete " + spillDirectory);
+        }
+    }
+
+    /**
+     * Sequential reader of a sorted run.
+     */
+    private static final class RunReader {
+        private final ObjectInputStream in;
+        private long cellId;
+        private MergeableStatisticData statisticData;
+
+        RunReader(File runFile) throws IOException {
+            this.in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(runFile), 1 << 16));
+        }
+
+        boolean next() throws IOException {
+            try {
+                cellId = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            try {
+                statisticData = (MergeableStatisticData) in.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException(e);
+            }
+            return true;
+        }
+
+        long getCellId() {
+            return cellId;
+        }
+
+        MergeableStatisticData getStatisticData() {
+            return statisticData;
+        }
+
+        void close() throws IOException {
+            in.close();
+        }
+    }
+
+}
@@ -104,6 +104,28 @@ public class ShipTypeAndSizeStatisticDataTest {
         assertEquals(29, statistics.computeMapKey(5, 4, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT));
     }
 
+    @Test
+    public void canMerge() {
+        statistics.setValue(1, 3, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT, 17);
+        statistics.setValue(2, 3, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT, 42);
+
+        ShipTypeAndSizeStatisticData other = ShipTypeAndSizeStatisticData.create();
+        other.setValue(2, 3, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT, 8);
+        other.setValue(4, 0, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT, 431);
+
+        statistics.merge(other);
+
+        assertEquals((Integer) 17, statistics.getValue(1, 3, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT));
+        assertEquals((Integer) 50, statistics.getValue(2, 3, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT));
+        assertEquals((Integer) 431, statistics.getValue(4, 0, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT));
+        assertEquals((Integer) 8, other.getValue(2, 3, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cannotMergeOtherType() {
+        statistics.merge(SpeedOverGroundStatisticData.create());
+    }
+
     @Test
     public void extractStatisticsId() {
         assertEquals(0, statistics.extractStatisticId((short) 0));
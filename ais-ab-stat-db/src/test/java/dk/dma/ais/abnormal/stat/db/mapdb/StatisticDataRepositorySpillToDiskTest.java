@@ -0,0 +1,150 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.stat.db.mapdb;
+
+import dk.dma.ais.abnormal.stat.db.StatisticDataRepository;
+import dk.dma.ais.abnormal.stat.db.data.DatasetMetaData;
+import dk.dma.ais.abnormal.stat.db.data.ShipTypeAndSizeStatisticData;
+import dk.dma.ais.abnormal.stat.db.data.SpeedOverGroundStatisticData;
+import dk.dma.ais.abnormal.stat.db.data.StatisticData;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StatisticDataRepositorySpillToDiskTest {
+
+    static final long NUM_CELLS = 500;
+    static final int NUM_PASSES = 7;
+
+    @Test
+    public void testSpilledDataIsMergedIntoOutputFile() throws Exception {
+        File tempDir = File.createTempFile("tmp-", ".tmp").getParentFile();
+        String dbFileName = tempDir.getAbsolutePath() + File.separator + UUID.randomUUID() + ".statistics";
+
+        StatisticDataRepositorySpillToDisk spillingRepository = new StatisticDataRepositorySpillToDisk(dbFileName, 100);
+        spillingRepository.openForWrite(true);
+        spillingRepository.putMetaData(new DatasetMetaData(123.0, 60));
+
+        // Update every cell NUM_PASSES times in the same way as the statistics of the stat builder
+        for (int pass = 0; pass < NUM_PASSES; pass++) {
+            for (long cellId = 0; cellId < NUM_CELLS; cellId++) {
+                StatisticData tmp = spillingRepository.getStatisticData("ShipTypeAndSizeStatistic", cellId);
+                ShipTypeAndSizeStatisticData shipTypeAndSize = tmp == null ? ShipTypeAndSizeStatisticData.create() : (ShipTypeAndSizeStatisticData) tmp;
+                shipTypeAndSize.incrementValue((int) (cellId % 8), 2, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT);
+                spillingRepository.putStatisticData("ShipTypeAndSizeStatistic", cellId, shipTypeAndSize);
+
+                if (cellId % 2 == 0) {
+                    tmp = spillingRepository.getStatisticData("SpeedOverGroundStatistic", cellId);
+                    SpeedOverGroundStatisticData speedOverGround = tmp == null ? SpeedOverGroundStatisticData.create() : (SpeedOverGroundStatisticData) tmp;
+                    speedOverGround.incrementValue(1, 2, pass % 3, SpeedOverGroundStatisticData.STAT_SHIP_COUNT);
+                    spillingRepository.putStatisticData("SpeedOverGroundStatistic", cellId, speedOverGround);
+                }
+            }
+        }
+
+        assertTrue(spillingRepository.getNumberOfSpills() > NUM_PASSES);
+        spillingRepository.close();
+
+        StatisticDataRepository statisticsRepository = new StatisticDataRepositoryMapDB(dbFileName);
+        statisticsRepository.openForRead();
+        try {
+            assertEquals(123.0, statisticsRepository.getMetaData().getGridResolution(), 1e-9);
+            assertEquals(NUM_CELLS, statisticsRepository.getNumberOfCells("ShipTypeAndSizeStatistic"));
+            assertEquals(NUM_CELLS / 2, statisticsRepository.getNumberOfCells("SpeedOverGroundStatistic"));
+
+            for (long cellId = 0; cellId < NUM_CELLS; cellId++) {
+                ShipTypeAndSizeStatisticData shipTypeAndSize = (ShipTypeAndSizeStatisticData) statisticsRepository.getStatisticData("ShipTypeAndSizeStatistic", cellId);
+                assertEquals((Integer) NUM_PASSES, shipTypeAndSize.getValue((int) (cellId % 8), 2, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT));
+                assertEquals(NUM_PASSES, shipTypeAndSize.getSumFor(ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT));
+            }
+
+            SpeedOverGroundStatisticData speedOverGround = (SpeedOverGroundStatisticData) statisticsRepository.getStatisticData("SpeedOverGroundStatistic", 42L);
+            assertEquals((Integer) 3, speedOverGround.getValue(1, 2, 0, SpeedOverGroundStatisticData.STAT_SHIP_COUNT));
+            assertEquals((Integer) 2, speedOverGround.getValue(1, 2, 1, SpeedOverGroundStatisticData.STAT_SHIP_COUNT));
+            assertEquals((Integer) 2, speedOverGround.getValue(1, 2, 2, SpeedOverGroundStatisticData.STAT_SHIP_COUNT));
+        } finally {
+            statisticsRepository.close();
+        }
+
+        File[] spillDirectories = tempDir.listFiles((dir, name) -> name.startsWith(new File(dbFileName).getName() + "-spill-"));
+        assertFalse(spillDirectories == null || spillDirectories.length > 0);
+    }
+
+    @Test
+    public void getWithoutPutAndRejectedPutDoNotBlockSpills() throws Exception {
+        File tempDir = File.createTempFile("tmp-", ".tmp").getParentFile();
+        String dbFileName = tempDir.getAbsolutePath() + File.separator + UUID.randomUUID() + ".statistics";
+
+        StatisticDataRepositorySpillToDisk spillingRepository = new StatisticDataRepositorySpillToDisk(dbFileName, 10);
+        spillingRepository.openForWrite(true);
+        try {
+            // A thread which gets without putting, and one whose put is rejected
+            Thread getter = new Thread(() -> spillingRepository.getStatisticData("ShipTypeAndSizeStatistic", 1L));
+            getter.start();
+            getter.join();
+            Thread rejectedPutter = new Thread(() -> {
+                spillingRepository.getStatisticData("ShipTypeAndSizeStatistic", 2L);
+                try {
+                    spillingRepository.putStatisticData("ShipTypeAndSizeStatistic", 2L, new NonMergeableStatisticData());
+                } catch (IllegalArgumentException e) {
+                    // Expected
+                }
+            });
+            rejectedPutter.start();
+            rejectedPutter.join();
+
+            assertNull(spillingRepository.getStatisticData("ShipTypeAndSizeStatistic", 1L));
+
+            long start = System.currentTimeMillis();
+            for (long cellId = 0; cellId < 20; cellId++) {
+                ShipTypeAndSizeStatisticData shipTypeAndSize = ShipTypeAndSizeStatisticData.create();
+                shipTypeAndSize.incrementValue(1, 2, ShipTypeAndSizeStatisticData.STAT_SHIP_COUNT);
+                spillingRepository.putStatisticData("ShipTypeAndSizeStatistic", cellId, shipTypeAndSize);
+            }
+            assertEquals(1, spillingRepository.getNumberOfSpills());
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        } finally {
+            spillingRepository.close();
+            new File(dbFileName).delete();
+            new File(dbFileName + ".p").delete();
+        }
+    }
+
+    private static class NonMergeableStatisticData implements StatisticData {
+        @Override
+        public String getStatisticName() {
+            return "ShipTypeAndSizeStatistic";
+        }
+
+        @Override
+        public String getStatisticDataType() {
+            return getClass().getSimpleName();
+        }
+
+        @Override
+        public Object getData() {
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.generator;
+
+import dk.dma.ais.binary.SixbitException;
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.message.AisMessage1;
+import dk.dma.ais.message.AisMessage5;
+import dk.dma.ais.message.AisPosition;
+import dk.dma.ais.sentence.Vdm;
+import dk.dma.enav.model.geometry.Position;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.Locale;
+
+/**
+ * Encodes the state of simulated vessels as NMEA VDM sentences, prefixed by a comment block holding the
+ * timestamp of the message - i.e. in the same form as AIS data recorded by the AisStore.
+ */
+@NotThreadSafe
+final class AisSentenceEncoder {
+
+    private static final String CRLF = "\r\n";
+
+    private int sequence;
+
+    /**
+     * @return a position report (message type 1) of the vessel.
+     */
+    String positionReport(SimulatedVessel vessel, long timeMillis) {
+        AisMessage1 message = new AisMessage1();
+        message.setUserId(vessel.mmsi);
+        message.setNavStatus(0);
+        message.setRot(-128);
+        message.setSog(Math.round(vessel.speedOverGround * 10));
+        message.setPosAcc(1);
+        message.setPos(new AisPosition(Position.create(vessel.latitude, vessel.longitude)));
+        message.setCog(Math.round(vessel.courseOverGround * 10) % 3600);
+        message.setTrueHeading(Math.round(vessel.heading) % 360);
+        message.setUtcSec((int) ((timeMillis / 1000) % 60));
+        return encode(message, timeMillis);
+    }
+
+    /**
+     * @return a static and voyage related data report (message type 5) of the vessel.
+     */
+    String staticDataReport(SimulatedVessel vessel, long timeMillis) {
+        AisMessage5 message = new AisMessage5();
+        message.setUserId(vessel.mmsi);
+        message.setImo(0);
+        message.setCallsign("SIM" + (vessel.mmsi % 10000));
+        message.setName(vessel.category.name().replace('_', ' ') + " " + vessel.mmsi);
+        message.setShipType(vessel.category.shipType);
+        message.setDimBow(vessel.length / 2);
+        message.setDimStern(vessel.length - vessel.length / 2);
+        message.setDimPort(vessel.beam / 2);
+        message.setDimStarboard(vessel.beam - vessel.beam / 2);
+        message.setPosType(1);
+        message.setDraught(Math.max(10, vessel.length / 3));
+        message.setDest("SIMULATED");
+        return encode(message, timeMillis);
+    }
+
+    private String encode(AisMessage message, long timeMillis) {
+        String[] sentences;
+        try {
+            sentences = Vdm.createSentences(message, sequence);
+        } catch (SixbitException e) {
+            throw new IllegalStateException("Failed to encode message for " + message.getUserId(), e);
+        }
+        sequence = (sequence + 1) % 10;
+
+        StringBuilder packet = new StringBuilder(100 * sentences.length);
+        packet.append(commentBlock(timeMillis));
+        for (int i = 0; i < sentences.length; i++) {
+            if (i > 0) {
+                packet.append(CRLF);
+            }
+            packet.append(sentences[i]);
+        }
+        return packet.toString();
+    }
+
+    static String commentBlock(long timeMillis) {
+        String content = "c:" + timeMillis / 1000;
+        return "\\" + content + "*" + checksum(content) + "\\";
+    }
+
+    static String checksum(String content) {
+        int checksum = 0;
+        for (int i = 0; i < content.length(); i++) {
+            checksum ^= content.charAt(i);
+        }
+        return String.format(Locale.ENGLISH, "%02X", checksum);
+    }
+
+}
@@ -0,0 +1,37 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.generator;
+
+/**
+ * Scripted behaviours which the analyzer is expected to detect. Vessels following a scenario are generated in
+ * addition to the ordinary traffic.
+ */
+public enum Scenario {
+
+    /** Two vessels on crossing courses which meet at the middle of the simulated period */
+    CLOSE_ENCOUNTER,
+
+    /** A vessel moving slowly with a course over ground 90 degrees off its heading */
+    DRIFT,
+
+    /** A vessel cruising at 12 knots which drops to almost standstill at the middle of the simulated period */
+    SUDDEN_SPEED_CHANGE,
+
+    /** A vessel sailing a traffic lane in the opposite direction of the ordinary traffic */
+    WRONG_WAY
+
+}
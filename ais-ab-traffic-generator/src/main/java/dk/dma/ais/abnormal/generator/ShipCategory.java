@@ -0,0 +1,56 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.generator;
+
+/**
+ * Categories of simulated vessels with their AIS ship type, range of length overall and cruising speed.
+ */
+public enum ShipCategory {
+
+    CARGO(70, 90, 300, 12.0f, 40),
+    TANKER(80, 80, 330, 11.0f, 15),
+    PASSENGER(60, 50, 250, 16.0f, 10),
+    FISHING(30, 12, 45, 7.0f, 15),
+    PLEASURE(37, 8, 25, 6.0f, 15),
+    TUG(52, 15, 35, 8.0f, 3),
+    HIGH_SPEED_CRAFT(40, 30, 80, 30.0f, 2);
+
+    /** AIS ship type code */
+    final int shipType;
+
+    /** Range of length overall (in meters) */
+    final int minLength, maxLength;
+
+    /** Mean speed over ground when under way (in knots) */
+    final float cruisingSpeed;
+
+    /** Share of the traffic unless another mix is given (in percent) */
+    final int defaultShare;
+
+    ShipCategory(int shipType, int minLength, int maxLength, float cruisingSpeed, int defaultShare) {
+        this.shipType = shipType;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.cruisingSpeed = cruisingSpeed;
+        this.defaultShare = defaultShare;
+    }
+
+    public int getShipType() {
+        return shipType;
+    }
+
+}
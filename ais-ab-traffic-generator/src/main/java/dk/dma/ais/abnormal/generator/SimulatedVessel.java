@@ -0,0 +1,123 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.generator;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * The state of one simulated vessel, which moves along a rhumb line with constant course and speed
+ * (using a flat earth approximation which is good enough over one time step).
+ */
+@NotThreadSafe
+public final class SimulatedVessel {
+
+    private static final double METERS_PER_NM = 1852.0;
+
+    final int mmsi;
+    final ShipCategory category;
+    final int length;
+    final int beam;
+    final Scenario scenario;
+
+    double latitude;
+    double longitude;
+    float courseOverGround;
+    float speedOverGround;
+    float heading;
+
+    /** Time (in millis since the epoch) of the scripted change of a scenario - if any */
+    long scenarioTime = Long.MAX_VALUE;
+
+    SimulatedVessel(int mmsi, ShipCategory category, int length, Scenario scenario) {
+        this.mmsi = mmsi;
+        this.category = category;
+        this.length = length;
+        this.beam = Math.max(2, length / 6);
+        this.scenario = scenario;
+    }
+
+    /**
+     * Move the vessel to the position of the given time.
+     *
+     * @param timeMillis the time after the move.
+     * @param secs the time elapsed since the previous move.
+     */
+    void move(long timeMillis, double secs) {
+        if (scenario == Scenario.SUDDEN_SPEED_CHANGE && timeMillis >= scenarioTime) {
+            speedOverGround = 0.3f;
+        }
+
+        final double distanceNm = speedOverGround * secs / 3600.0;
+        final double cog = Math.toRadians(courseOverGround);
+        latitude += distanceNm * Math.cos(cog) / 60.0;
+        longitude += distanceNm * Math.sin(cog) / 60.0 / Math.cos(Math.toRadians(latitude));
+    }
+
+    /**
+     * Place the vessel so that it will be at the given position after the given no. of seconds.
+     */
+    void placeToReach(double latitude, double longitude, double secs) {
+        final double distanceNm = speedOverGround * secs / 3600.0;
+        final double cog = Math.toRadians(courseOverGround);
+        this.latitude = latitude - distanceNm * Math.cos(cog) / 60.0;
+        this.longitude = longitude - distanceNm * Math.sin(cog) / 60.0 / Math.cos(Math.toRadians(latitude));
+    }
+
+    public int getMmsi() {
+        return mmsi;
+    }
+
+    public ShipCategory getCategory() {
+        return category;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public Scenario getScenario() {
+        return scenario;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public float getCourseOverGround() {
+        return courseOverGround;
+    }
+
+    public float getSpeedOverGround() {
+        return speedOverGround;
+    }
+
+    public float getHeading() {
+        return heading;
+    }
+
+    /** @return the distance in meters to the other vessel using a flat earth approximation. */
+    double distanceTo(SimulatedVessel other) {
+        final double dy = (other.latitude - latitude) * 60.0 * METERS_PER_NM;
+        final double dx = (other.longitude - longitude) * 60.0 * METERS_PER_NM * Math.cos(Math.toRadians((latitude + other.latitude) / 2.0));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+}
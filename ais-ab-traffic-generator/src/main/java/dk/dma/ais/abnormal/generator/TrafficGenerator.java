@@ -0,0 +1,257 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.generator;
+
+import dk.dma.ais.packet.AisPacket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Consumer;
+
+/**
+ * Generator of synthetic AIS traffic for scale and stress testing of the analyzer and the statistics builder.
+ *
+ * The ordinary traffic consists of the given number of vessels placed at random in the area. Most sail one of the
+ * traffic lanes at the cruising speed of their category (with some random variation) and re-enter the area on the
+ * opposite side when they leave it; fishing vessels and pleasure craft sail random courses. Vessels following a
+ * scenario are added near the centre of the area with their mmsi's in a separate range, so that the expected
+ * events can be told apart from the ordinary traffic.
+ *
+ * Every vessel sends a position report every position interval and a static data report every static interval.
+ * The reports of a time step are spread evenly over the interval, so that the output is in chronological order.
+ * The same arguments and seed always generate the same traffic.
+ */
+public class TrafficGenerator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrafficGenerator.class);
+
+    static final int FIRST_MMSI = 219000000;
+    static final int FIRST_SCENARIO_MMSI = 211000000;
+
+    private static final float SCENARIO_SPEED = 12.0f;
+    private static final float DRIFT_SPEED = 2.0f;
+
+    private final UserArguments userArguments;
+    private final double north, east, south, west;
+    private final long startMillis;
+    private final int steps;
+    private final int positionIntervalMillis;
+    private final int staticEvery;
+    private final List<SimulatedVessel> vessels;
+
+    public TrafficGenerator(UserArguments userArguments) {
+        this.userArguments = userArguments;
+        double[] area = userArguments.getArea();
+        this.north = area[0];
+        this.east = area[1];
+        this.south = area[2];
+        this.west = area[3];
+        this.startMillis = userArguments.getStart().toEpochMilli();
+        this.positionIntervalMillis = userArguments.getPositionInterval() * 1000;
+        this.steps = userArguments.getDuration() * 60 / userArguments.getPositionInterval() + 1;
+        this.staticEvery = Math.max(1, userArguments.getStaticInterval() / userArguments.getPositionInterval());
+        this.vessels = Collections.unmodifiableList(createVessels(new Random(userArguments.getSeed())));
+    }
+
+    public List<SimulatedVessel> getVessels() {
+        return vessels;
+    }
+
+    /**
+     * Generate the traffic.
+     *
+     * @param sink receives every message as one or more NMEA sentences (separated by CR LF) prefixed by a comment
+     *             block with the timestamp.
+     */
+    public void generate(Consumer<String> sink) {
+        LOG.info("Generating " + userArguments.getDuration() + " minutes of traffic from " + vessels.size() + " vessels.");
+
+        final AisSentenceEncoder encoder = new AisSentenceEncoder();
+        final int n = vessels.size();
+        final double intervalSecs = userArguments.getPositionInterval();
+
+        for (int step = 0; step < steps; step++) {
+            final long stepStartMillis = startMillis + (long) step * positionIntervalMillis;
+            for (int i = 0; i < n; i++) {
+                final SimulatedVessel vessel = vessels.get(i);
+                final long timeMillis = stepStartMillis + (long) i * positionIntervalMillis / n;
+                if (step > 0) {
+                    vessel.move(timeMillis, intervalSecs);
+                    if (vessel.scenario == null) {
+                        wrapAround(vessel);
+                    }
+                }
+                if (step == 0 || (step + i) % staticEvery == 0) {
+                    sink.accept(encoder.staticDataReport(vessel, timeMillis));
+                }
+                sink.accept(encoder.positionReport(vessel, timeMillis));
+            }
+            if (step % 60 == 0) {
+                LOG.debug("Generated step " + step + " of " + steps + ".");
+            }
+        }
+    }
+
+    /**
+     * Generate the traffic as AisPackets - e.g. to feed the packet handler of the analyzer directly.
+     */
+    public void generatePackets(Consumer<AisPacket> sink) {
+        generate(message -> sink.accept(AisPacket.from(message)));
+    }
+
+    /**
+     * Generate the traffic to the given stream - one message per line.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.US_ASCII), 1 << 16);
+        try {
+            generate(message -> {
+                try {
+                    writer.write(message);
+                    writer.write("\r\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    private List<SimulatedVessel> createVessels(Random random) {
+        final List<SimulatedVessel> result = new ArrayList<>();
+        final List<Float> lanes = userArguments.getLanes();
+        final ShipCategory[] categories = categoriesByShare(userArguments.getMix());
+
+        for (int i = 0; i < userArguments.getVessels(); i++) {
+            ShipCategory category = categories[random.nextInt(categories.length)];
+            SimulatedVessel vessel = new SimulatedVessel(FIRST_MMSI + i, category, randomLength(random, category), null);
+            vessel.latitude = south + random.nextDouble() * (north - south);
+            vessel.longitude = west + random.nextDouble() * (east - west);
+            if (category == ShipCategory.FISHING || category == ShipCategory.PLEASURE || lanes.isEmpty()) {
+                vessel.courseOverGround = random.nextInt(3600) / 10.0f;
+            } else {
+                vessel.courseOverGround = normalize(lanes.get(random.nextInt(lanes.size())) + random.nextInt(11) - 5);
+            }
+            vessel.speedOverGround = (float) (category.cruisingSpeed * (1.0 + userArguments.getSpeedVariation() * (2.0 * random.nextDouble() - 1.0)));
+            vessel.heading = vessel.courseOverGround;
+            result.add(vessel);
+        }
+
+        final double halfDurationSecs = userArguments.getDuration() * 30.0;
+        int mmsi = FIRST_SCENARIO_MMSI;
+
+        for (int i = 0; i < userArguments.getCloseEncounters(); i++) {
+            double latitude = randomCentralLatitude(random);
+            double longitude = randomCentralLongitude(random);
+            float course = random.nextInt(360);
+            for (float cog : new float[] {course, normalize(course + 90)}) {
+                SimulatedVessel vessel = scenarioVessel(random, mmsi++, Scenario.CLOSE_ENCOUNTER, cog, SCENARIO_SPEED);
+                vessel.placeToReach(latitude, longitude, halfDurationSecs);
+                result.add(vessel);
+            }
+        }
+
+        for (int i = 0; i < userArguments.getDrifts(); i++) {
+            SimulatedVessel vessel = scenarioVessel(random, mmsi++, Scenario.DRIFT, random.nextInt(360), DRIFT_SPEED);
+            vessel.heading = normalize(vessel.courseOverGround + 90);
+            result.add(vessel);
+        }
+
+        for (int i = 0; i < userArguments.getSuddenSpeedChanges(); i++) {
+            SimulatedVessel vessel = scenarioVessel(random, mmsi++, Scenario.SUDDEN_SPEED_CHANGE, random.nextInt(360), SCENARIO_SPEED);
+            vessel.scenarioTime = startMillis + (long) (halfDurationSecs * 1000);
+            result.add(vessel);
+        }
+
+        for (int i = 0; i < userArguments.getWrongWays(); i++) {
+            float laneCourse = lanes.isEmpty() ? 0.0f : lanes.get(random.nextInt(lanes.size()));
+            result.add(scenarioVessel(random, mmsi++, Scenario.WRONG_WAY, normalize(laneCourse + 180), SCENARIO_SPEED));
+        }
+
+        return result;
+    }
+
+    private SimulatedVessel scenarioVessel(Random random, int mmsi, Scenario scenario, float cog, float sog) {
+        SimulatedVessel vessel = new SimulatedVessel(mmsi, ShipCategory.CARGO, randomLength(random, ShipCategory.CARGO), scenario);
+        vessel.latitude = randomCentralLatitude(random);
+        vessel.longitude = randomCentralLongitude(random);
+        vessel.courseOverGround = cog;
+        vessel.speedOverGround = sog;
+        vessel.heading = cog;
+        return vessel;
+    }
+
+    private double randomCentralLatitude(Random random) {
+        return south + (0.25 + random.nextDouble() / 2.0) * (north - south);
+    }
+
+    private double randomCentralLongitude(Random random) {
+        return west + (0.25 + random.nextDouble() / 2.0) * (east - west);
+    }
+
+    private void wrapAround(SimulatedVessel vessel) {
+        if (vessel.latitude > north) {
+            vessel.latitude -= north - south;
+        } else if (vessel.latitude < south) {
+            vessel.latitude += north - south;
+        }
+        if (vessel.longitude > east) {
+            vessel.longitude -= east - west;
+        } else if (vessel.longitude < west) {
+            vessel.longitude += east - west;
+        }
+    }
+
+    private static int randomLength(Random random, ShipCategory category) {
+        return category.minLength + random.nextInt(category.maxLength - category.minLength + 1);
+    }
+
+    private static float normalize(float course) {
+        return ((course % 360.0f) + 360.0f) % 360.0f;
+    }
+
+    /**
+     * @return an array with one element per percent of share of each category - to draw categories from.
+     */
+    private static ShipCategory[] categoriesByShare(Map<ShipCategory, Integer> mix) {
+        List<ShipCategory> categories = new ArrayList<>();
+        mix.forEach((category, share) -> {
+            for (int i = 0; i < share; i++) {
+                categories.add(category);
+            }
+        });
+        if (categories.isEmpty()) {
+            throw new IllegalArgumentException("Empty ship category mix.");
+        }
+        return categories.toArray(new ShipCategory[categories.size()]);
+    }
+
+}
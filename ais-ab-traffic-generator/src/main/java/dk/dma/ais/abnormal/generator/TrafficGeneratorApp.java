@@ -0,0 +1,77 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.generator;
+
+import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Command line application writing synthetic AIS traffic to a file (or standard output) in the same format as
+ * the AIS data read by the statistics builder and the analyzer.
+ */
+public final class TrafficGeneratorApp {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TrafficGeneratorApp.class);
+
+    private TrafficGeneratorApp() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        UserArguments userArguments = new UserArguments();
+
+        try {
+            new JCommander(userArguments, args);
+        } catch (ParameterException e) {
+            System.out.println(e.getMessage());
+            userArguments.setHelp(true);
+        }
+
+        if (userArguments.isHelp()) {
+            JCommander jCommander = new JCommander(userArguments, "-help");
+            jCommander.setProgramName("TrafficGeneratorApp");
+            jCommander.usage();
+            return;
+        }
+
+        TrafficGenerator generator = new TrafficGenerator(userArguments);
+        String outputFilename = userArguments.getOutputFilename();
+
+        long start = System.currentTimeMillis();
+        if (outputFilename == null) {
+            generator.writeTo(System.out);
+        } else {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(outputFilename), 1 << 16);
+            if (outputFilename.endsWith(".gz")) {
+                out = new GZIPOutputStream(out, 1 << 16);
+            }
+            try {
+                generator.writeTo(out);
+            } finally {
+                out.close();
+            }
+        }
+        LOG.info("Traffic generated in " + (System.currentTimeMillis() - start) + " msecs.");
+    }
+
+}
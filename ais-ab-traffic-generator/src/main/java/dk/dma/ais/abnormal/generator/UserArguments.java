@@ -0,0 +1,176 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.generator;
+
+import com.beust.jcommander.Parameter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+@SuppressWarnings("FieldCanBeLocal")
+public class UserArguments {
+
+    @Parameter(names = "-help", help = true, description = "Print this help", hidden = true)
+    protected boolean help;
+
+    @Parameter(names = "-output", description = "Name of output file. Output is gzip'ed if the name ends with '.gz'.")
+    private String outputFilename;
+
+    @Parameter(names = "-vessels", description = "No. of vessels in the ordinary traffic.")
+    private Integer vessels = 10000;
+
+    @Parameter(names = "-area", description = "Area of the simulated traffic given as north,east,south,west (in degrees).")
+    private String area = "58.0,16.0,54.4,7.0";
+
+    @Parameter(names = "-start", description = "Start time of the simulated traffic (ISO-8601, e.g. 2014-10-01T00:00:00Z).")
+    private String start = "2014-10-01T00:00:00Z";
+
+    @Parameter(names = "-duration", description = "Duration of the simulated traffic (in minutes).")
+    private Integer duration = 60;
+
+    @Parameter(names = "-interval", description = "Interval between position reports from each vessel (in secs).")
+    private Integer positionInterval = 10;
+
+    @Parameter(names = "-staticinterval", description = "Interval between static and voyage related data reports from each vessel (in secs).")
+    private Integer staticInterval = 360;
+
+    @Parameter(names = "-mix", description = "Ship category mix in percent, e.g. cargo=40,tanker=15,passenger=10,fishing=15,pleasure=15,tug=3,high_speed_craft=2.")
+    private String mix;
+
+    @Parameter(names = "-lanes", description = "Comma-separated courses (in degrees) of one-way traffic lanes. Ordinary traffic sails these courses.")
+    private String lanes = "20,110,200,290";
+
+    @Parameter(names = "-speedvariation", description = "Max. relative deviation of each vessel's speed from the cruising speed of its category.")
+    private Double speedVariation = 0.2;
+
+    @Parameter(names = "-closeencounters", description = "No. of pairs of vessels in close encounter scenarios.")
+    private Integer closeEncounters = 0;
+
+    @Parameter(names = "-drifts", description = "No. of vessels in drift scenarios.")
+    private Integer drifts = 0;
+
+    @Parameter(names = "-suddenspeedchanges", description = "No. of vessels in sudden speed change scenarios.")
+    private Integer suddenSpeedChanges = 0;
+
+    @Parameter(names = "-wrongways", description = "No. of vessels sailing a traffic lane in the wrong direction.")
+    private Integer wrongWays = 0;
+
+    @Parameter(names = "-seed", description = "Seed of the random generator. The same seed and arguments generate the same traffic.")
+    private Long seed = 42L;
+
+    public void setHelp(boolean help) {
+        this.help = help;
+    }
+
+    public boolean isHelp() {
+        return help;
+    }
+
+    public String getOutputFilename() {
+        return outputFilename;
+    }
+
+    public Integer getVessels() {
+        return vessels;
+    }
+
+    /**
+     * @return the area as {north, east, south, west}.
+     */
+    public double[] getArea() {
+        double[] nesw = Arrays.stream(area.split(",")).mapToDouble(s -> Double.parseDouble(s.trim())).toArray();
+        if (nesw.length != 4 || nesw[0] <= nesw[2] || nesw[1] <= nesw[3]) {
+            throw new IllegalArgumentException("Illegal area: " + area);
+        }
+        return nesw;
+    }
+
+    public Instant getStart() {
+        return Instant.parse(start);
+    }
+
+    public Integer getDuration() {
+        return duration;
+    }
+
+    public Integer getPositionInterval() {
+        return positionInterval;
+    }
+
+    public Integer getStaticInterval() {
+        return staticInterval;
+    }
+
+    /**
+     * @return the share of each ship category in percent.
+     */
+    public Map<ShipCategory, Integer> getMix() {
+        Map<ShipCategory, Integer> shares = new EnumMap<>(ShipCategory.class);
+        if (mix == null) {
+            for (ShipCategory category : ShipCategory.values()) {
+                shares.put(category, category.defaultShare);
+            }
+        } else {
+            for (String entry : mix.split(",")) {
+                String[] keyValue = entry.split("=");
+                if (keyValue.length != 2) {
+                    throw new IllegalArgumentException("Illegal mix: " + mix);
+                }
+                shares.put(ShipCategory.valueOf(keyValue[0].trim().toUpperCase(Locale.ENGLISH)), Integer.valueOf(keyValue[1].trim()));
+            }
+        }
+        return shares;
+    }
+
+    public List<Float> getLanes() {
+        List<Float> courses = new ArrayList<>();
+        for (String course : lanes.split(",")) {
+            courses.add(Float.valueOf(course.trim()));
+        }
+        return courses;
+    }
+
+    public Double getSpeedVariation() {
+        return speedVariation;
+    }
+
+    public Integer getCloseEncounters() {
+        return closeEncounters;
+    }
+
+    public Integer getDrifts() {
+        return drifts;
+    }
+
+    public Integer getSuddenSpeedChanges() {
+        return suddenSpeedChanges;
+    }
+
+    public Integer getWrongWays() {
+        return wrongWays;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+}
@@ -0,0 +1,118 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.generator;
+
+import com.beust.jcommander.JCommander;
+import dk.dma.ais.message.AisMessage;
+import dk.dma.ais.packet.AisPacket;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TrafficGeneratorTest {
+
+    @Test
+    public void testEveryVesselReportsPositionEveryInterval() throws Exception {
+        TrafficGenerator generator = new TrafficGenerator(arguments("-vessels", "100", "-duration", "10", "-interval", "10", "-staticinterval", "360"));
+
+        final List<AisPacket> packets = new ArrayList<>();
+        generator.generatePackets(packets::add);
+
+        int positionReports = 0, staticDataReports = 0;
+        long previousTimestamp = Long.MIN_VALUE;
+        Set<Integer> mmsis = new HashSet<>();
+        for (AisPacket packet : packets) {
+            AisMessage message = packet.getAisMessage();
+            mmsis.add(message.getUserId());
+            if (message.getMsgId() == 1) {
+                positionReports++;
+            } else if (message.getMsgId() == 5) {
+                staticDataReports++;
+            }
+            assertTrue(packet.getBestTimestamp() >= previousTimestamp);
+            previousTimestamp = packet.getBestTimestamp();
+        }
+
+        assertEquals(100, mmsis.size());
+        assertEquals(100 * 61, positionReports);
+        assertTrue(staticDataReports >= 200);
+        assertEquals(packets.size(), positionReports + staticDataReports);
+    }
+
+    @Test
+    public void testSameSeedGeneratesSameTraffic() {
+        final List<String> first = new ArrayList<>(), second = new ArrayList<>(), third = new ArrayList<>();
+        new TrafficGenerator(arguments("-vessels", "50", "-duration", "2", "-drifts", "2")).generate(first::add);
+        new TrafficGenerator(arguments("-vessels", "50", "-duration", "2", "-drifts", "2")).generate(second::add);
+        new TrafficGenerator(arguments("-vessels", "50", "-duration", "2", "-drifts", "2", "-seed", "7")).generate(third::add);
+
+        assertEquals(first, second);
+        assertTrue(!first.equals(third));
+    }
+
+    @Test
+    public void testCloseEncounterVesselsMeetAtMiddleOfPeriod() {
+        TrafficGenerator generator = new TrafficGenerator(arguments("-vessels", "0", "-duration", "60", "-closeencounters", "1"));
+        final SimulatedVessel vessel1 = generator.getVessels().get(0);
+        final SimulatedVessel vessel2 = generator.getVessels().get(1);
+
+        assertEquals(Scenario.CLOSE_ENCOUNTER, vessel1.getScenario());
+        assertEquals(TrafficGenerator.FIRST_SCENARIO_MMSI, vessel1.getMmsi());
+        assertEquals(TrafficGenerator.FIRST_SCENARIO_MMSI + 1, vessel2.getMmsi());
+        assertTrue(vessel1.distanceTo(vessel2) > 10000);
+
+        final double[] minDistance = {Double.MAX_VALUE};
+        generator.generate(message -> minDistance[0] = Math.min(minDistance[0], vessel1.distanceTo(vessel2)));
+
+        assertTrue(minDistance[0] < 100);
+    }
+
+    @Test
+    public void testScenarioVessels() {
+        TrafficGenerator generator = new TrafficGenerator(arguments("-vessels", "10", "-duration", "20", "-drifts", "1", "-suddenspeedchanges", "1", "-wrongways", "1", "-lanes", "20"));
+        List<SimulatedVessel> vessels = generator.getVessels();
+        assertEquals(13, vessels.size());
+
+        SimulatedVessel drift = vessels.get(10);
+        assertEquals(Scenario.DRIFT, drift.getScenario());
+        assertEquals(90.0f, (drift.getHeading() - drift.getCourseOverGround() + 360.0f) % 360.0f, 1e-3);
+
+        SimulatedVessel suddenSpeedChange = vessels.get(11);
+        assertEquals(Scenario.SUDDEN_SPEED_CHANGE, suddenSpeedChange.getScenario());
+        assertEquals(12.0f, suddenSpeedChange.getSpeedOverGround(), 1e-3);
+
+        SimulatedVessel wrongWay = vessels.get(12);
+        assertEquals(Scenario.WRONG_WAY, wrongWay.getScenario());
+        assertEquals(200.0f, wrongWay.getCourseOverGround(), 1e-3);
+
+        generator.generate(message -> {});
+        assertTrue(suddenSpeedChange.getSpeedOverGround() < 1.0f);
+    }
+
+    private static UserArguments arguments(String... args) {
+        UserArguments userArguments = new UserArguments();
+        new JCommander(userArguments, args);
+        return userArguments;
+    }
+
+}
@@ -0,0 +1,55 @@
+/* Copyright (c) 2011 Danish Maritime Authority
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this library.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package dk.dma.ais.abnormal.event.rest;
+
+import dk.dma.ais.abnormal.event.db.EventCursor;
+import dk.dma.ais.abnormal.event.db.EventSummary;
+import dk.dma.ais.abnormal.event.db.domain.Event;
+
+import java.util.List;
+
+/**
+ * A page of event search results - events or event summaries - and the cursor of the next page - or null if this
+ * is the last page.
+ */
+public class EventPage {
+
+    private final List<?> events;
+    private final String next;
+
+    private EventPage(List<?> events, EventCursor last, int limit) {
+        this.events = events;
+        this.next = events.size() < limit ? null : last.toString();
+    }
+
+    static EventPage ofEvents(List<Event> events, int limit) {
+        return new EventPage(events, events.isEmpty() ? null : EventCursor.at(events.get(events.size() - 1)), limit);
+    }
+
+    static EventPage ofEventSummaries(List<EventSummary> eventSummaries, int limit) {
+        return new EventPage(eventSummaries, eventSummaries.isEmpty() ? null : EventCursor.at(eventSummaries.get(eventSummaries.size() - 1)), limit);
+    }
+
+    public List<?> getEvents() {
+        return events;
+    }
+
+    public String getNext() {
+        return next;
+    }
+
+}
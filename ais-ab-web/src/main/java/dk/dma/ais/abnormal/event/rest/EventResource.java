@@ -18,9 +18,12 @@ package dk.dma.ais.abnormal.event.rest;
 
 import com.google.inject.Inject;
 import com.google.inject.servlet.RequestScoped;
+import dk.dma.ais.abnormal.event.db.EventCursor;
 import dk.dma.ais.abnormal.event.db.EventRepository;
 import dk.dma.ais.abnormal.event.db.domain.Event;
+import dk.dma.ais.abnormal.event.db.domain.EventCount;
 import dk.dma.ais.abnormal.event.rest.parameters.DateParameter;
+import org.codehaus.jackson.map.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -32,6 +35,10 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
@@ -46,6 +53,10 @@ public class EventResource {
         LOG.debug(this.getClass().getSimpleName() + " created (" + this + " ).");
     }
 
+    static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
     private EventRepository eventRepository;
 
     @Inject
@@ -107,26 +118,142 @@ public class EventResource {
         @QueryParam("north") Double north,
         @QueryParam("east") Double east,
         @QueryParam("south") Double south,
-        @QueryParam("west") Double west
+        @QueryParam("west") Double west,
+        @QueryParam("after") String after,
+        @QueryParam("limit") Integer limit
     ) {
         // Check validity of parameters and parameter combinations
-        if (north != null || east != null || south != null || west != null ) {
-            if (! (north != null && east != null && south != null && west != null)) {
-                throw new IllegalArgumentException("Most provide all of north, east, south, west.");
-            }
+        checkParameters(from, to, type, vessel, numberOfRecentEvents, north, east, south, west, after, limit);
+
+        // Figure out which service method to call
+        if (numberOfRecentEvents != null) {
+            return eventRepository.findRecentEvents(numberOfRecentEvents);
+        } else if (limit != null) {
+            EventCursor cursor = after == null ? null : EventCursor.parse(after);
+            return EventPage.ofEvents(eventRepository.findEventsByFromAndToAndTypeAndVesselAndArea(from == null ? null : from.value(), to == null ? null : to.value(), type, vessel, north, east, south, west, cursor, limit), limit);
+        } else {
+            return eventRepository.findEventsByFromAndToAndTypeAndVesselAndArea(from == null ? null : from.value(), to == null ? null : to.value(), type, vessel, north, east, south, west);
         }
+    }
+
+    /**
+     * Search events like get - but return summaries of the events instead of the full events. The full event is
+     * found by get(id).
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/summary")
+    public Object getSummaries(
+        @QueryParam("from") DateParameter from,
+        @QueryParam("to") DateParameter to,
+        @QueryParam("type") String type,
+        @QueryParam("vessel") String vessel,
+        @QueryParam("numberOfRecentEvents") Integer numberOfRecentEvents,
+        @QueryParam("north") Double north,
+        @QueryParam("east") Double east,
+        @QueryParam("south") Double south,
+        @QueryParam("west") Double west,
+        @QueryParam("after") String after,
+        @QueryParam("limit") Integer limit
+    ) {
+        checkParameters(from, to, type, vessel, numberOfRecentEvents, north, east, south, west, after, limit);
 
         if (numberOfRecentEvents != null) {
-            if (from != null || to != null || type != null || vessel != null || north != null) {
+            return eventRepository.findRecentEventSummaries(numberOfRecentEvents);
+        } else if (limit != null) {
+            EventCursor cursor = after == null ? null : EventCursor.parse(after);
+            return EventPage.ofEventSummaries(eventRepository.findEventSummariesByFromAndToAndTypeAndVesselAndArea(from == null ? null : from.value(), to == null ? null : to.value(), type, vessel, north, east, south, west, cursor, limit), limit);
+        } else {
+            return eventRepository.findEventSummariesByFromAndToAndTypeAndVesselAndArea(from == null ? null : from.value(), to == null ? null : to.value(), type, vessel, north, east, south, west, null, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Get the number of events per event type in each hour or day (resolution HOUR or DAY; default DAY) from 'from'
+     * to 'to' - and per area cell if byCell is true. The counts are maintained by the repository, so no events are
+     * loaded.
+     */
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/count")
+    public List<EventCount> getCounts(
+        @QueryParam("from") DateParameter from,
+        @QueryParam("to") DateParameter to,
+        @QueryParam("resolution") String resolution,
+        @QueryParam("byCell") Boolean byCell
+    ) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Parameters 'from' and 'to' are required.");
+        }
+
+        EventCount.Resolution countResolution;
+        try {
+            countResolution = resolution == null ? EventCount.Resolution.DAY : EventCount.Resolution.valueOf(resolution.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Parameter 'resolution' must be one of " + Arrays.toString(EventCount.Resolution.values()) + ".");
+        }
+
+        return eventRepository.getEventCounts(from.value(), to.value(), countResolution, byCell != null && byCell);
+    }
+
+    /**
+     * Search events like get - but write the matching events as newline delimited JSON (one event per line) while
+     * they are read from the database, so that the web server need not hold all of them in memory.
+     */
+    @GET
+    @Produces(MEDIA_TYPE_NDJSON)
+    @Path("/stream")
+    public StreamingOutput stream(
+        @QueryParam("from") DateParameter from,
+        @QueryParam("to") DateParameter to,
+        @QueryParam("type") String type,
+        @QueryParam("vessel") String vessel,
+        @QueryParam("north") Double north,
+        @QueryParam("east") Double east,
+        @QueryParam("south") Double south,
+        @QueryParam("west") Double west
+    ) {
+        checkArea(north, east, south, west);
+
+        return output -> {
+            try {
+                eventRepository.streamEventsByFromAndToAndTypeAndVesselAndArea(from == null ? null : from.value(), to == null ? null : to.value(), type, vessel, north, east, south, west, event -> {
+                    try {
+                        output.write(JSON.writeValueAsBytes(event));
+                        output.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+    }
+
+    private static void checkParameters(DateParameter from, DateParameter to, String type, String vessel, Integer numberOfRecentEvents, Double north, Double east, Double south, Double west, String after, Integer limit) {
+        checkArea(north, east, south, west);
+
+        if (numberOfRecentEvents != null) {
+            if (from != null || to != null || type != null || vessel != null || north != null || after != null || limit != null) {
                 throw new IllegalArgumentException("Parameter 'numberOfRecentEvents' cannot be used in combination with other parameters.");
             }
         }
 
-        // Figure out which service method to call
-        if (numberOfRecentEvents != null) {
-            return eventRepository.findRecentEvents(numberOfRecentEvents);
-        } else {
-            return eventRepository.findEventsByFromAndToAndTypeAndVesselAndArea(from == null ? null : from.value(), to == null ? null : to.value(), type, vessel, north, east, south, west);
+        if (after != null && limit == null) {
+            throw new IllegalArgumentException("Parameter 'after' can only be used in combination with parameter 'limit'.");
+        }
+
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("Parameter 'limit' must be positive.");
+        }
+    }
+
+    private static void checkArea(Double north, Double east, Double south, Double west) {
+        if (north != null || east != null || south != null || west != null ) {
+            if (! (north != null && east != null && south != null && west != null)) {
+                throw new IllegalArgumentException("Most provide all of north, east, south, west.");
+            }
         }
     }
 }
@@ -6,6 +6,8 @@ var eventModule = {
 
     searchResults: new Array(),
     eventResourceService: "/abnormal/rest/event",
+    eventSummaryResourceService: "/abnormal/rest/event/summary",
+    searchPageSize: 500,
 
     init: function () {
         $("#events-remove").click(function() {
@@ -137,13 +139,32 @@ var eventModule = {
         eventModule.searchResults = new Array();
     },
 
+    /* Convert a full event to the form of the event summaries of the event summary resource */
+    toEventSummary: function(event) {
+        var vessel = event.behaviours[0].vessel;
+        return {
+            id: event.id,
+            eventType: event.eventType,
+            state: event.state,
+            startTime: event.startTime,
+            endTime: event.endTime,
+            title: event.title,
+            primaryVesselMmsi: vessel.mmsi,
+            primaryVesselName: vessel.name,
+            primaryVesselCallsign: vessel.callsign,
+            primaryVesselType: vessel.type,
+            primaryVesselLength: vessel.toBow + vessel.toStern
+        };
+    },
+
+    /* Add an event summary to the search results; the full event is loaded when it is shown on the map */
     addSearchResult: function(event) {
         try {
             var eventStart = eventModule.formatTimestamp(event.startTime);
             var eventType = event.eventType.replace('Event', '');
-            var shipType = event.behaviours[0].vessel.type;
-            var shipLength = event.behaviours[0].vessel.toBow + event.behaviours[0].vessel.toStern;
-            var shipName = event.behaviours[0].vessel.name;
+            var shipType = event.primaryVesselType;
+            var shipLength = event.primaryVesselLength;
+            var shipName = event.primaryVesselName;
 
             var searchResultHtml = "<tr id='event-search-result-event-" + event.id + "'>";
             searchResultHtml += "<td class='glyphicon-1'><span id='result-remove-" + event.id + "' class='glyphicon glyphicon-remove-sign' data-toggle='tooltip' title='Permanently suppress event'></span></td>";
@@ -160,7 +181,7 @@ var eventModule = {
             $('#event-search-modal .search-results .search-data tbody').append(searchResultHtml);
 
             $("#event-search-modal .search-results #result-show-" + event.id).on("click", function () {
-                eventModule.visualizeEvent(event);
+                eventModule.visualizeEventId(event.id);
                 $('#event-search-modal').modal('hide');
             });
 
@@ -205,31 +226,50 @@ var eventModule = {
 
             var start_time = new Date();
 
-            var eventRequest = eventModule.eventResourceService + "?" + $.param(queryParams);
+            var numberOfEvents = 0;
 
-            $.getJSON(eventRequest).done(function (events) {
-                $.each(events, function (idx, event) {
-                    eventModule.addSearchResult(event);
-                });
-                $("table#event-search-results").tablesorter(
-                    {
-                        theme: 'bootstrap',
-                        headerTemplate: '{content} {icon}',
-                        widgets: ['zebra', 'columns', 'uitheme'],
-                        headers: {
-                            '.no-sort': {
-                                sorter: false
+            // Fetch the search results page by page
+            var fetchPage = function (after) {
+                queryParams['limit'] = eventModule.searchPageSize;
+                if (after) {
+                    queryParams['after'] = after;
+                }
+                var eventRequest = eventModule.eventSummaryResourceService + "?" + $.param(queryParams);
+
+                $.getJSON(eventRequest).done(function (page) {
+                    $.each(page.events, function (idx, event) {
+                        eventModule.addSearchResult(event);
+                    });
+                    numberOfEvents += page.events.length;
+
+                    if (page.next) {
+                        eventModule.setSearchStarted("Searching... found " + numberOfEvents + " matching events so far.");
+                        fetchPage(page.next);
+                        return;
+                    }
+
+                    $("table#event-search-results").tablesorter(
+                        {
+                            theme: 'bootstrap',
+                            headerTemplate: '{content} {icon}',
+                            widgets: ['zebra', 'columns', 'uitheme'],
+                            headers: {
+                                '.no-sort': {
+                                    sorter: false
+                                }
                             }
                         }
-                    }
-                );
+                    );
 
-                var end_time = new Date();
+                    var end_time = new Date();
 
-                eventModule.setSearchCompleted("Found " + events.length + " matching events in " + (end_time-start_time) + " msecs.");
-            }).fail(function (jqXHR, textStatus) {
-                eventModule.setSearchCompleted("Search failed. Try to narrow your search for fewer expected results. [" + jqXHR.status + " " + jqXHR.statusText + "]");
-            });
+                    eventModule.setSearchCompleted("Found " + numberOfEvents + " matching events in " + (end_time-start_time) + " msecs.");
+                }).fail(function (jqXHR, textStatus) {
+                    eventModule.setSearchCompleted("Search failed. Try to narrow your search for fewer expected results. [" + jqXHR.status + " " + jqXHR.statusText + "]");
+                });
+            };
+
+            fetchPage(null);
         } else {
             $('div#event-search-warning').empty();
             $('div#event-search-warning').append("<div><b>ERROR! Please enter either 'from'+'to' or 'vessel'.</b></div>");
@@ -251,7 +291,7 @@ var eventModule = {
             var eventResourceService = "/abnormal/rest/event";
             var eventResource = eventResourceService + "/" + eventId;
             $.getJSON(eventResource).done(function (event) {
-                eventModule.addSearchResult(event);
+                eventModule.addSearchResult(eventModule.toEventSummary(event));
                 eventModule.setSearchCompleted("Found " + (event ? "":"no ") + "matching event.");
             }).fail(function (jqXHR, textStatus) {
                 eventModule.setSearchCompleted("Search failed [" + jqXHR.status + " " + jqXHR.statusText + "].");
@@ -315,7 +355,7 @@ var eventModule = {
 
     visualizeAllSearchResults: function() {
         $.each(eventModule.searchResults, function(i, event) {
-            eventModule.visualizeEvent(event);
+            eventModule.visualizeEventId(event.id);
         });
     },
 
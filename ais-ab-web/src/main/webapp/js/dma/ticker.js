@@ -5,7 +5,7 @@ var tickerModule = {
     },
 
     reloadTickerData: function() {
-        $.get('/abnormal/rest/event?numberOfRecentEvents=5', function(events) {
+        $.get('/abnormal/rest/event/summary?numberOfRecentEvents=5', function(events) {
 
             $("#ticker").empty();
 
@@ -33,18 +33,16 @@ var tickerModule = {
     },
 
     eventToString: function(event) {
-        var bounds = eventModule.computeEventExtent(event);
-
         var s = eventModule.formatTimestamp(event.startTime) + ": "
                 + (event.state == 'ONGOING' ? "Ongoing " : "Past ")
                 + eventModule.camelCaseToSentenceCase(event.eventType).toLowerCase() + " event involving "
-                + event.behaviours[0].vessel.name + " "
-                + "(" + event.behaviours[0].vessel.callsign + ") "
+                + event.primaryVesselName + " "
+                + "(" + event.primaryVesselCallsign + ") "
                 + " near "
                 + "["
-                + OpenLayers.Util.getFormattedLonLat(bounds.getCenterLonLat().lat, 'lat', 'dms')
+                + OpenLayers.Util.getFormattedLonLat((event.minLatitude + event.maxLatitude) / 2, 'lat', 'dms')
                 + ", "
-                + OpenLayers.Util.getFormattedLonLat(bounds.getCenterLonLat().lon, 'lon', 'dms')
+                + OpenLayers.Util.getFormattedLonLat((event.minLongitude + event.maxLongitude) / 2, 'lon', 'dms')
                 + "] ";
 
         return s;